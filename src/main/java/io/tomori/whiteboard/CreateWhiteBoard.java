@@ -10,8 +10,12 @@ import io.tomori.whiteboard.core.Registry;
 import io.tomori.whiteboard.core.Server;
 import io.tomori.whiteboard.gui.AdminGUI;
 import io.tomori.whiteboard.service.AdminService;
+import io.tomori.whiteboard.service.AutoSaveService;
 import io.tomori.whiteboard.service.ChatService;
 import io.tomori.whiteboard.service.WhiteboardService;
+import io.tomori.whiteboard.util.BoardJournal;
+
+import java.nio.file.Path;
 
 /**
  * Main class for create and start whiteboard app as admin.
@@ -33,6 +37,9 @@ public class CreateWhiteBoard {
         Registry.getInstance().registerController(WhiteboardController.getInstance());
         Registry.getInstance().registerController(AdminController.getInstance());
         Registry.getInstance().registerController(ChatController.getInstance());
+        whiteboardService.attachJournal(new BoardJournal(Path.of(config.getJournalDir()),
+                () -> whiteboardService.getDocumentShapes(whiteboardService.getSnapshot())));
+        AutoSaveService.initialize(config.getAutosaveInterval());
     }
 
     /**
@@ -52,6 +59,7 @@ public class CreateWhiteBoard {
     public void start() {
         final AdminGUI gui = new AdminGUI(networkManager.getUsername(), this);
         networkManager.start();
+        WhiteboardService.getInstance().startSync();
     }
 
     /**
@@ -26,6 +26,14 @@ public class ServerConfig {
      * Admin username
      */
     private String username;
+    /**
+     * Directory of the board journal used for crash recovery
+     */
+    private String journalDir;
+    /**
+     * Seconds between autosaves of the open document, 0 to disable autosave
+     */
+    private int autosaveInterval;
 
     /**
      * Create a server config from command line args.
@@ -37,6 +45,8 @@ public class ServerConfig {
         port = 8080;
         mcpPort = 8081;
         username = "defaultAdmin";
+        journalDir = "whiteboard-journal";
+        autosaveInterval = 30;
         if (args.length >= 1) {
             host = args[0];
         }
@@ -59,6 +69,17 @@ public class ServerConfig {
                 System.exit(1);
             }
         }
+        if (args.length >= 5) {
+            journalDir = args[4];
+        }
+        if (args.length >= 6) {
+            try {
+                autosaveInterval = Integer.parseInt(args[5]);
+            } catch (final NumberFormatException e) {
+                System.out.println("Error: Autosave interval must be a number");
+                System.exit(1);
+            }
+        }
         System.out.println("Initialized server with: " + this);
     }
 }
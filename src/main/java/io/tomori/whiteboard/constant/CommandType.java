@@ -11,6 +11,30 @@ public enum CommandType {
      * Update shapes list on whiteboard
      */
     UPDATE_SHAPES,
+    /**
+     * Apply an incremental change to the shapes list on whiteboard
+     */
+    UPDATE_SHAPE_DELTA,
+    /**
+     * Digest of the server's shapes, published periodically so clients can detect drift
+     */
+    SYNC_DIGEST,
+    /**
+     * Bucket hashes of a client's shapes in the digest groups that differ from the server
+     */
+    SYNC_REQUEST,
+    /**
+     * IDs and content hashes of the server's shapes in the digest buckets that differ from a client
+     */
+    SYNC_REPAIR,
+    /**
+     * IDs of the shapes a client fetches from the server to repair its board
+     */
+    SYNC_FETCH,
+    /**
+     * Board region in a client's view, whose shapes the server loads first while paging in a board file
+     */
+    REGION_REQUEST,
     /**
      * Server is shutting down
      */
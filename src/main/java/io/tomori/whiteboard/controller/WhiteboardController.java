@@ -5,11 +5,15 @@ package io.tomori.whiteboard.controller;
 import com.google.gson.internal.LinkedTreeMap;
 import io.tomori.whiteboard.annotations.Command;
 import io.tomori.whiteboard.constant.CommandType;
+import io.tomori.whiteboard.model.ShapeDelta;
 import io.tomori.whiteboard.model.SocketMessage;
+import io.tomori.whiteboard.model.SyncRepair;
 import io.tomori.whiteboard.model.shapes.Shape;
 import io.tomori.whiteboard.service.WhiteboardService;
 
+import java.awt.*;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Controller for whiteboard command.
@@ -53,4 +57,96 @@ public class WhiteboardController {
             System.out.println("Invalid data for update all shapes operation.");
         }
     }
+
+    /**
+     * Apply an incremental change received from another user to the whiteboard.
+     *
+     * @param update Socket message containing the shape delta
+     */
+    @Command(CommandType.UPDATE_SHAPE_DELTA)
+    public void updateShapeDelta(final SocketMessage update) {
+        System.out.println("Applying shape delta...");
+        if (update.getData() instanceof final LinkedTreeMap<?, ?> map) {
+            whiteboardService.applyDelta(ShapeDelta.fromLinkedTreeMap(map));
+        } else {
+            System.out.println("Invalid data for shape delta operation.");
+        }
+    }
+
+    /**
+     * Compare the shapes digest published by the server with the local shapes.
+     *
+     * @param update Socket message containing the digest group hashes
+     */
+    @Command(CommandType.SYNC_DIGEST)
+    public void syncDigest(final SocketMessage update) {
+        if (update.getData() instanceof List) {
+            @SuppressWarnings("unchecked") final List<String> groups = (List<String>) update.getData();
+            whiteboardService.compareDigest(groups);
+        } else {
+            System.out.println("Invalid data for sync digest operation.");
+        }
+    }
+
+    /**
+     * Answer a client whose shapes differ from the digest with the content hashes of the differing buckets.
+     *
+     * @param update Socket message containing the client's bucket hashes by group
+     */
+    @Command(CommandType.SYNC_REQUEST)
+    public void syncRequest(final SocketMessage update) {
+        if (update.getData() instanceof Map) {
+            @SuppressWarnings("unchecked") final Map<String, List<String>> groups = (Map<String, List<String>>) update.getData();
+            whiteboardService.answerSyncRequest(update.getUsername(), groups);
+        } else {
+            System.out.println("Invalid data for sync request operation.");
+        }
+    }
+
+    /**
+     * Repair the local shapes in the buckets where they differ from the server.
+     *
+     * @param update Socket message containing the sync repair
+     */
+    @Command(CommandType.SYNC_REPAIR)
+    public void syncRepair(final SocketMessage update) {
+        if (update.getData() instanceof final LinkedTreeMap<?, ?> map) {
+            whiteboardService.applyRepair(SyncRepair.fromLinkedTreeMap(map));
+        } else {
+            System.out.println("Invalid data for sync repair operation.");
+        }
+    }
+
+    /**
+     * Send a client the shapes it fetches to repair its board.
+     *
+     * @param update Socket message containing the IDs of the fetched shapes
+     */
+    @Command(CommandType.SYNC_FETCH)
+    public void syncFetch(final SocketMessage update) {
+        if (update.getData() instanceof List) {
+            @SuppressWarnings("unchecked") final List<String> ids = (List<String>) update.getData();
+            whiteboardService.answerFetch(update.getUsername(), ids);
+        } else {
+            System.out.println("Invalid data for sync fetch operation.");
+        }
+    }
+
+    /**
+     * Load the shapes in a client's view first while the server pages in a board file.
+     *
+     * @param update Socket message containing the region in view
+     */
+    @Command(CommandType.REGION_REQUEST)
+    public void regionRequest(final SocketMessage update) {
+        if (update.getData() instanceof final LinkedTreeMap<?, ?> map) {
+            whiteboardService.requestRegion(new Rectangle(
+                    ((Number) map.get("x")).intValue(),
+                    ((Number) map.get("y")).intValue(),
+                    ((Number) map.get("width")).intValue(),
+                    ((Number) map.get("height")).intValue()));
+        } else {
+            System.out.println("Invalid data for region request operation.");
+        }
+    }
 }
@@ -129,7 +129,11 @@ public class Server implements NetworkManager {
                 final SocketMessage update = JsonUtil.fromJson(data, SocketMessage.class);
                 if (update != null && !username.equals(update.getUsername())) {
                     Registry.getInstance().process(update);
-                    sendUpdate(update);
+                    if (update.getType() != CommandType.SYNC_REQUEST
+                            && update.getType() != CommandType.SYNC_FETCH
+                            && update.getType() != CommandType.REGION_REQUEST) {
+                        sendUpdate(update);
+                    }
                 }
             });
             socketIoServer.addDisconnectListener(client -> handleClientDisconnect(getConnectionBySocketId(client.getSessionId())));
@@ -281,6 +285,21 @@ public class Server implements NetworkManager {
         socketIoServer.getBroadcastOperations().sendEvent("whiteboard", json);
     }
 
+    /**
+     * Send a message to a single connected client.
+     *
+     * @param username username of the receiving client
+     * @param update   message to send
+     */
+    public void sendUpdate(final String username, final SocketMessage update) {
+        for (final Connection client : clients) {
+            if (client.getUsername().equals(username)) {
+                client.sendMessage(update);
+                return;
+            }
+        }
+    }
+
     /**
      * Notify all clients of server shutdown.
      */
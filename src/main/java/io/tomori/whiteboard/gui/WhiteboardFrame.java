@@ -10,7 +10,9 @@ import io.tomori.whiteboard.gui.panels.ChatPanel;
 import io.tomori.whiteboard.gui.panels.DrawingPanel;
 import io.tomori.whiteboard.gui.panels.ToolPanel;
 import io.tomori.whiteboard.gui.panels.UserPanel;
+import io.tomori.whiteboard.service.AutoSaveService;
 import io.tomori.whiteboard.service.WhiteboardService;
+import io.tomori.whiteboard.util.BoardFile;
 import io.tomori.whiteboard.util.DocumentManager;
 
 import javax.swing.*;
@@ -18,6 +20,8 @@ import java.awt.*;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Main application window for the whiteboard application.
@@ -127,7 +131,7 @@ public class WhiteboardFrame extends JFrame {
     }
 
     /**
-     * Create the edit menu with undo, redo, and clear canvas options.
+     * Create the edit menu with undo, redo, reset view, and clear canvas options.
      *
      * @return configured edit menu
      */
@@ -144,6 +148,11 @@ public class WhiteboardFrame extends JFrame {
         redoMenuItem.addActionListener(e -> {
             WhiteboardService.getInstance().redo();
         });
+        final JMenuItem resetViewMenuItem = new JMenuItem("Reset View", KeyEvent.VK_R);
+        resetViewMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_0, InputEvent.CTRL_DOWN_MASK));
+        resetViewMenuItem.addActionListener(e -> {
+            DrawingPanel.getInstance().resetView();
+        });
         final JMenuItem clearMenuItem = new JMenuItem("Clear Canvas", KeyEvent.VK_C);
         clearMenuItem.addActionListener(e -> {
             final int option = JOptionPane.showConfirmDialog(
@@ -159,6 +168,8 @@ public class WhiteboardFrame extends JFrame {
         editMenu.add(undoMenuItem);
         editMenu.add(redoMenuItem);
         editMenu.addSeparator();
+        editMenu.add(resetViewMenuItem);
+        editMenu.addSeparator();
         editMenu.add(clearMenuItem);
         return editMenu;
     }
@@ -187,7 +198,7 @@ public class WhiteboardFrame extends JFrame {
         chatDockable.setVisible(true);
         toolDockable.setVisible(true);
         fileChooser = new JFileChooser();
-        fileChooser.setFileFilter(new javax.swing.filechooser.FileFilter() {
+        fileChooser.addChoosableFileFilter(new javax.swing.filechooser.FileFilter() {
             @Override
             public boolean accept(final File f) {
                 return f.isDirectory() || f.getName().toLowerCase().endsWith(".svg");
@@ -198,6 +209,17 @@ public class WhiteboardFrame extends JFrame {
                 return "Scalable Vector Graphics (*.svg)";
             }
         });
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileFilter() {
+            @Override
+            public boolean accept(final File f) {
+                return f.isDirectory() || BoardFile.hasExtension(f);
+            }
+
+            @Override
+            public String getDescription() {
+                return "Whiteboard (*" + BoardFile.EXTENSION + ")";
+            }
+        });
     }
 
     /**
@@ -275,18 +297,43 @@ public class WhiteboardFrame extends JFrame {
             final int result = fileChooser.showOpenDialog(this);
             if (result == JFileChooser.APPROVE_OPTION) {
                 final File file = fileChooser.getSelectedFile();
-                final boolean opened = WhiteboardService.getInstance().loadFromDocument(file);
-                if (opened) {
-                    setTitle("Whiteboard Application - " + file.getName());
-                    enableAllFileMenuItems();
-                } else {
-                    JOptionPane.showMessageDialog(
-                            null,
-                            "Cannot open file: " + file.getName(),
-                            "Error",
-                            JOptionPane.ERROR_MESSAGE
-                    );
-                }
+                final String previousTitle = getTitle();
+                setTitle("Whiteboard Application - Opening " + file.getName());
+                new SwingWorker<Boolean, Integer>() {
+                    @Override
+                    protected Boolean doInBackground() {
+                        return WhiteboardService.getInstance().loadFromDocument(file, this::publish);
+                    }
+
+                    @Override
+                    protected void process(final List<Integer> percentages) {
+                        setTitle("Whiteboard Application - Opening " + file.getName()
+                                + " (" + percentages.getLast() + "%)");
+                    }
+
+                    @Override
+                    protected void done() {
+                        boolean opened;
+                        try {
+                            opened = get();
+                        } catch (final Exception e) {
+                            System.out.println("Error opening document: " + e.getMessage());
+                            opened = false;
+                        }
+                        if (opened) {
+                            setTitle("Whiteboard Application - " + file.getName());
+                            enableAllFileMenuItems();
+                        } else {
+                            setTitle(previousTitle);
+                            JOptionPane.showMessageDialog(
+                                    null,
+                                    "Cannot open file: " + file.getName(),
+                                    "Error",
+                                    JOptionPane.ERROR_MESSAGE
+                            );
+                        }
+                    }
+                }.execute();
             }
         }
     }
@@ -307,7 +354,7 @@ public class WhiteboardFrame extends JFrame {
             if (option == JOptionPane.CANCEL_OPTION) {
                 return false;
             } else if (option == JOptionPane.YES_OPTION) {
-                return saveDocument(false);
+                return saveDocument(false).join();
             }
         }
         return true;
@@ -315,36 +362,50 @@ public class WhiteboardFrame extends JFrame {
 
     /**
      * Save the current whiteboard document to a file.
+     * The file is written in the background so that large boards do not block the UI.
      *
      * @param saveAs True to force "Save As" dialog, false for normal save
-     * @return True if the save was successful
+     * @return future completing with true if the save was successful
      */
-    private boolean saveDocument(final boolean saveAs) {
+    private CompletableFuture<Boolean> saveDocument(final boolean saveAs) {
         if (saveAs || documentManager.getCurrentFile() == null) {
             final int result = fileChooser.showSaveDialog(this);
             if (result != JFileChooser.APPROVE_OPTION) {
-                return false;
+                return CompletableFuture.completedFuture(false);
             }
             File file = fileChooser.getSelectedFile();
-            if (!file.getName().toLowerCase().endsWith(".svg")) {
-                file = new File(file.getAbsolutePath() + ".svg");
+            final boolean svgChosen = fileChooser.getFileFilter().accept(new File("board.svg"));
+            if (!file.getName().toLowerCase().endsWith(".svg") && !BoardFile.hasExtension(file)) {
+                file = new File(file.getAbsolutePath() + (svgChosen ? ".svg" : BoardFile.EXTENSION));
             }
             documentManager.setCurrentFile(file);
         }
-        documentManager.saveShapes(WhiteboardService.getInstance().getShapes());
-        if (documentManager.saveDocument()) {
-            setTitle("Whiteboard Application - " + documentManager.getCurrentFile().getName());
-            WhiteboardService.getInstance().setModified(false);
-            return true;
-        } else {
-            JOptionPane.showMessageDialog(
-                    null,
-                    "Cannot save file: " + documentManager.getCurrentFile().getName(),
-                    "Error",
-                    JOptionPane.ERROR_MESSAGE
-            );
-            return false;
+        final File file = documentManager.getCurrentFile();
+        if (!documentManager.saveDocument()) {
+            showSaveError(file);
+            return CompletableFuture.completedFuture(false);
         }
+        setTitle("Whiteboard Application - " + file.getName());
+        return AutoSaveService.getInstance().save().thenApply(saved -> {
+            if (!saved) {
+                SwingUtilities.invokeLater(() -> showSaveError(file));
+            }
+            return saved;
+        });
+    }
+
+    /**
+     * Show an error dialog for a file that cannot be saved.
+     *
+     * @param file file that cannot be saved
+     */
+    private void showSaveError(final File file) {
+        JOptionPane.showMessageDialog(
+                null,
+                "Cannot save file: " + file.getName(),
+                "Error",
+                JOptionPane.ERROR_MESSAGE
+        );
     }
 
     /**
@@ -2,25 +2,37 @@
 
 package io.tomori.whiteboard.gui.panels;
 
-import io.tomori.whiteboard.model.shapes.Shape;
+import io.tomori.whiteboard.model.board.BoardSnapshot;
 import io.tomori.whiteboard.model.tools.EraserTool;
+import io.tomori.whiteboard.model.tools.Tool;
 import io.tomori.whiteboard.service.WhiteboardService;
+import io.tomori.whiteboard.util.RenderUtil;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.util.Base64;
+import java.awt.geom.AffineTransform;
 
 /**
  * Panel for drawing and rendering shapes on the whiteboard canvas.
  * Handle mouse events for drawing operations and render the current state of shapes.
+ * The canvas is unbounded: drag with the middle or right mouse button to pan and use the wheel to zoom.
  */
 public class DrawingPanel extends JPanel {
+    /**
+     * Lowest zoom level, 1/16 of the original size
+     */
+    private static final int MIN_ZOOM_LEVEL = -16;
+    /**
+     * Highest zoom level, 16 times the original size
+     */
+    private static final int MAX_ZOOM_LEVEL = 16;
+    /**
+     * Milliseconds the view must stay still before its region is requested from a board being paged in
+     */
+    private static final int REGION_REQUEST_DELAY = 300;
     /**
      * Singleton instance of the DrawingPanel
      */
@@ -29,6 +41,34 @@ public class DrawingPanel extends JPanel {
      * Service for managing whiteboard operations
      */
     private final WhiteboardService whiteboardService;
+    /**
+     * Cache of rendered tiles of the committed shapes
+     */
+    private final TileCache tileCache;
+    /**
+     * Timer requesting the region in view once the view stops moving
+     */
+    private final Timer regionTimer;
+    /**
+     * Current zoom level, see {@link TileCache#zoomOf(int)}
+     */
+    private int zoomLevel = 0;
+    /**
+     * Horizontal offset of the view in zoomed pixels
+     */
+    private int viewX = 0;
+    /**
+     * Vertical offset of the view in zoomed pixels
+     */
+    private int viewY = 0;
+    /**
+     * Last mouse position of an ongoing pan, null if not panning
+     */
+    private Point panAnchor = null;
+    /**
+     * Area covered by the active tool's preview at the last repaint, in world coordinates
+     */
+    private Rectangle lastTemporaryBounds = null;
 
     /**
      * Private constructor for singleton pattern implementation.
@@ -37,44 +77,56 @@ public class DrawingPanel extends JPanel {
         whiteboardService = WhiteboardService.getInstance();
         setBackground(Color.WHITE);
         setPreferredSize(new Dimension(800, 600));
+        tileCache = new TileCache(whiteboardService::getSnapshot, getBackground(), this::repaint);
+        regionTimer = new Timer(REGION_REQUEST_DELAY, e -> whiteboardService.requestRegion(getViewRegion()));
+        regionTimer.setRepeats(false);
         addMouseListener(new MouseAdapter() {
             @Override
             public void mousePressed(final MouseEvent e) {
-                if (ToolPanel.getInstance().getCurrentActiveTool() != null) {
-                    whiteboardService.saveState();
-                    if (ToolPanel.getInstance().getCurrentActiveTool().mousePressed(e, whiteboardService.getShapes())) {
-                        repaint();
-                    }
+                if (!SwingUtilities.isLeftMouseButton(e)) {
+                    panAnchor = e.getPoint();
+                    return;
+                }
+                final Tool tool = ToolPanel.getInstance().getCurrentActiveTool();
+                if (tool != null) {
+                    tool.mousePressed(toWorld(e), whiteboardService.getShapes());
+                    repaintTool(tool);
                 }
             }
 
             @Override
             public void mouseReleased(final MouseEvent e) {
-                if (ToolPanel.getInstance().getCurrentActiveTool() != null) {
-                    if (ToolPanel.getInstance().getCurrentActiveTool().mouseReleased(e, whiteboardService.getShapes())) {
-                        repaint();
-                        if (ToolPanel.getInstance().getCurrentActiveTool() instanceof final EraserTool eraserTool) {
-                            whiteboardService.handleToolReleased(eraserTool);
-                        } else {
-                            whiteboardService.handleToolReleased(null);
-                        }
-                    }
+                if (panAnchor != null) {
+                    panAnchor = null;
+                    return;
+                }
+                final Tool tool = ToolPanel.getInstance().getCurrentActiveTool();
+                if (tool != null) {
+                    tool.mouseReleased(toWorld(e), whiteboardService.getShapes());
+                    repaintTool(tool);
+                    whiteboardService.applyToolOperations(tool.consumeOperations(), true);
                 }
             }
         });
         addMouseMotionListener(new MouseMotionAdapter() {
             @Override
             public void mouseDragged(final MouseEvent e) {
-                if (ToolPanel.getInstance().getCurrentActiveTool() != null) {
-                    if (ToolPanel.getInstance().getCurrentActiveTool().mouseDragged(e, whiteboardService.getShapes())) {
-                        repaint();
-                        if (ToolPanel.getInstance().getCurrentActiveTool() instanceof final EraserTool eraserTool) {
-                            whiteboardService.handleToolReleased(eraserTool);
-                        }
+                if (panAnchor != null) {
+                    panBy(panAnchor.x - e.getX(), panAnchor.y - e.getY());
+                    panAnchor = e.getPoint();
+                    return;
+                }
+                final Tool tool = ToolPanel.getInstance().getCurrentActiveTool();
+                if (tool != null) {
+                    final boolean handled = tool.mouseDragged(toWorld(e), whiteboardService.getShapes());
+                    repaintTool(tool);
+                    if (handled && tool instanceof EraserTool) {
+                        whiteboardService.applyToolOperations(tool.consumeOperations(), false);
                     }
                 }
             }
         });
+        addMouseWheelListener(e -> zoomAt(e.getPoint(), zoomLevel - e.getWheelRotation()));
     }
 
     /**
@@ -90,7 +142,148 @@ public class DrawingPanel extends JPanel {
     }
 
     /**
-     * Render all shapes and active drawing tool's temporary state.
+     * Reset the view to the original position and zoom.
+     */
+    public void resetView() {
+        zoomLevel = 0;
+        viewX = 0;
+        viewY = 0;
+        regionTimer.restart();
+        repaint();
+    }
+
+    /**
+     * Return the board region currently in view.
+     *
+     * @return visible region in world coordinates
+     */
+    public Rectangle getViewRegion() {
+        final double zoom = TileCache.zoomOf(zoomLevel);
+        final int width = getWidth() > 0 ? getWidth() : getPreferredSize().width;
+        final int height = getHeight() > 0 ? getHeight() : getPreferredSize().height;
+        final int x = (int) Math.floor(viewX / zoom);
+        final int y = (int) Math.floor(viewY / zoom);
+        return new Rectangle(x, y, (int) Math.ceil(width / zoom) + 1, (int) Math.ceil(height / zoom) + 1);
+    }
+
+    /**
+     * Mark every rendered tile as outdated and schedule a full repaint.
+     * Used when the shape list is replaced wholesale.
+     */
+    public void invalidateShapes() {
+        tileCache.invalidateAll();
+        repaint();
+    }
+
+    /**
+     * Mark the rendered tiles overlapping a region as outdated and schedule a repaint of that region.
+     * Safe to call from any thread.
+     *
+     * @param region world region where shapes were added, removed or modified, null if nothing changed
+     */
+    public void invalidateShapes(final Rectangle region) {
+        if (region == null || region.isEmpty()) {
+            return;
+        }
+        tileCache.invalidate(region);
+        if (SwingUtilities.isEventDispatchThread()) {
+            repaint(toScreen(region));
+        } else {
+            SwingUtilities.invokeLater(() -> repaint(toScreen(region)));
+        }
+    }
+
+    /**
+     * Repaint the regions changed by the last tool event: shapes the tool modified
+     * and the area of its old and new temporary preview.
+     *
+     * @param tool tool that handled the event
+     */
+    private void repaintTool(final Tool tool) {
+        invalidateShapes(tool.consumeDirtyRegion());
+        final Rectangle temporaryBounds = tool.getTemporaryBounds();
+        if (lastTemporaryBounds != null) {
+            repaint(toScreen(lastTemporaryBounds));
+        }
+        if (temporaryBounds != null) {
+            repaint(toScreen(temporaryBounds));
+        }
+        lastTemporaryBounds = temporaryBounds;
+    }
+
+    /**
+     * Move the view by a number of screen pixels.
+     *
+     * @param dx horizontal distance
+     * @param dy vertical distance
+     */
+    private void panBy(final int dx, final int dy) {
+        viewX += dx;
+        viewY += dy;
+        regionTimer.restart();
+        repaint();
+    }
+
+    /**
+     * Change the zoom level while keeping the world point under a screen point in place.
+     *
+     * @param anchor screen point to zoom around
+     * @param level  requested zoom level, clamped to the supported range
+     */
+    private void zoomAt(final Point anchor, final int level) {
+        final int newLevel = Math.clamp(level, MIN_ZOOM_LEVEL, MAX_ZOOM_LEVEL);
+        if (newLevel == zoomLevel) {
+            return;
+        }
+        final double ratio = TileCache.zoomOf(newLevel) / TileCache.zoomOf(zoomLevel);
+        viewX = (int) Math.round((anchor.x + viewX) * ratio - anchor.x);
+        viewY = (int) Math.round((anchor.y + viewY) * ratio - anchor.y);
+        zoomLevel = newLevel;
+        regionTimer.restart();
+        repaint();
+    }
+
+    /**
+     * Convert a mouse event from screen to world coordinates for the drawing tools.
+     *
+     * @param e mouse event in screen coordinates
+     * @return equivalent mouse event in world coordinates
+     */
+    private MouseEvent toWorld(final MouseEvent e) {
+        final double zoom = TileCache.zoomOf(zoomLevel);
+        return new MouseEvent(this, e.getID(), e.getWhen(), e.getModifiersEx(),
+                (int) Math.floor((e.getX() + viewX) / zoom), (int) Math.floor((e.getY() + viewY) / zoom),
+                e.getClickCount(), e.isPopupTrigger(), e.getButton());
+    }
+
+    /**
+     * Convert a world region to the screen pixels it covers.
+     *
+     * @param region world region
+     * @return covering screen region
+     */
+    private Rectangle toScreen(final Rectangle region) {
+        final double zoom = TileCache.zoomOf(zoomLevel);
+        final int x = (int) Math.floor(region.x * zoom) - viewX - 1;
+        final int y = (int) Math.floor(region.y * zoom) - viewY - 1;
+        return new Rectangle(x, y, (int) Math.ceil(region.width * zoom) + 2, (int) Math.ceil(region.height * zoom) + 2);
+    }
+
+    /**
+     * Apply the world-to-screen transform of the view to a graphics context.
+     *
+     * @param g2d graphics context in screen coordinates
+     */
+    private void applyViewTransform(final Graphics2D g2d) {
+        final double zoom = TileCache.zoomOf(zoomLevel);
+        g2d.translate(-viewX, -viewY);
+        g2d.scale(zoom, zoom);
+    }
+
+    /**
+     * Render shapes and active drawing tool's temporary state within the clip region.
+     * Committed shapes are blitted from cached tiles when painting to screen, including HiDPI screens whose scale is
+     * folded into the tiles, so frames that only change the tool preview or the view position do not redraw any shape.
      *
      * @param g graphics context to paint on
      */
@@ -98,38 +291,26 @@ public class DrawingPanel extends JPanel {
     protected void paintComponent(final Graphics g) {
         super.paintComponent(g);
         final Graphics2D g2d = (Graphics2D) g.create();
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        for (final Shape shape : whiteboardService.getShapes()) {
-            shape.draw(g2d);
+        final AffineTransform transform = g2d.getTransform();
+        if ((transform.getType() & ~(AffineTransform.TYPE_TRANSLATION | AffineTransform.TYPE_UNIFORM_SCALE)) == 0
+                && transform.getScaleX() > 0) {
+            final double scale = transform.getScaleX();
+            final Graphics2D device = (Graphics2D) g2d.create();
+            device.setTransform(AffineTransform.getTranslateInstance(transform.getTranslateX(), transform.getTranslateY()));
+            tileCache.paint(device, device.getClipBounds(), zoomLevel, scale,
+                    (int) Math.round(viewX * scale), (int) Math.round(viewY * scale));
+            device.dispose();
+            applyViewTransform(g2d);
+        } else {
+            applyViewTransform(g2d);
+            final BoardSnapshot snapshot = whiteboardService.getSnapshot();
+            final Rectangle clip = g2d.getClipBounds();
+            RenderUtil.drawShapes(g2d, clip == null ? snapshot : snapshot.query(clip), clip, RenderUtil.getScale(g2d));
         }
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         if (ToolPanel.getInstance().getCurrentActiveTool() != null) {
             ToolPanel.getInstance().getCurrentActiveTool().drawTemporary(g2d);
         }
         g2d.dispose();
     }
-
-    /**
-     * Convert the drawing panel to a Base64-encoded PNG image.
-     *
-     * @param scale scale factor to apply to the image
-     * @return Base64-encoded string representation of the image
-     */
-    public String toBase64(final double scale) {
-        final int width = (int) (getWidth() * scale);
-        final int height = (int) (getHeight() * scale);
-        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        final Graphics2D g2d = image.createGraphics();
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2d.scale(scale, scale);
-        paint(g2d);
-        g2d.dispose();
-        try (final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "png", byteArrayOutputStream);
-            final byte[] imageBytes = byteArrayOutputStream.toByteArray();
-            return Base64.getEncoder().encodeToString(imageBytes);
-        } catch (final Exception e) {
-            System.out.println("Error converting to Base64: " + e.getMessage());
-            return null;
-        }
-    }
 }
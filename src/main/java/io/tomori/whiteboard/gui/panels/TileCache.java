@@ -0,0 +1,383 @@
+package io.tomori.whiteboard.gui.panels;
+
+import io.tomori.whiteboard.model.board.BoardSnapshot;
+import io.tomori.whiteboard.util.RenderUtil;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Cache of rendered canvas tiles keyed by zoom level, device scale and tile position.
+ * Tiles are rendered in device pixels, so HiDPI displays are served from the cache too.
+ * Tiles newly exposed by panning or zooming are rendered on background threads. Tiles touched by shape edits are
+ * re-rendered in the background as well, limited to the changed area, and keep showing their previous image until
+ * the new one is ready.
+ */
+public class TileCache {
+    /**
+     * Width and height of a tile in device pixels
+     */
+    public static final int TILE_SIZE = 256;
+    /**
+     * Maximum number of cached tiles, about 48 MB of pixels
+     */
+    private static final int MAX_TILES = 192;
+    /**
+     * Zoom levels searched for a stand-in image while a tile renders, coarser levels first
+     */
+    private static final int[] FALLBACK_LEVEL_OFFSETS = {-1, -2, -3, -4, 1, 2};
+    /**
+     * Cached tiles in least recently used order
+     */
+    private final Map<TileKey, Tile> tiles = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<TileKey, Tile> eldest) {
+            return size() > MAX_TILES;
+        }
+    };
+    /**
+     * Background renderer, serving the most recently requested tile first
+     */
+    private final ExecutorService renderer;
+    /**
+     * Source of the board to render
+     */
+    private final Supplier<BoardSnapshot> shapes;
+    /**
+     * Callback run when a background tile is ready to be painted
+     */
+    private final Runnable onTileRendered;
+    /**
+     * Background color of the canvas
+     */
+    private final Color background;
+    /**
+     * Zoom level painted most recently, background work for other levels is skipped
+     */
+    private volatile int activeLevel;
+
+    /**
+     * Create a tile cache.
+     *
+     * @param shapes         source of the board to render
+     * @param background     background color of the canvas
+     * @param onTileRendered callback run when a background tile is ready
+     */
+    public TileCache(final Supplier<BoardSnapshot> shapes, final Color background, final Runnable onTileRendered) {
+        this.shapes = shapes;
+        this.background = background;
+        this.onTileRendered = onTileRendered;
+        final int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        renderer = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingDeque<>() {
+                    @Override
+                    public boolean offer(final Runnable task) {
+                        return offerFirst(task);
+                    }
+                },
+                task -> {
+                    final Thread thread = new Thread(task, "tile-renderer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Return the zoom factor of a zoom level, doubling every four levels.
+     *
+     * @param level zoom level
+     * @return device pixels per world unit
+     */
+    public static double zoomOf(final int level) {
+        return Math.pow(2, level / 4.0);
+    }
+
+    /**
+     * Paint the tiles covering a region of the device.
+     * The view maps world point w to device pixel w * zoom * scale - view.
+     *
+     * @param g2d   graphics context in device pixels
+     * @param clip  device region to paint
+     * @param level zoom level of the view
+     * @param scale device pixels per screen pixel
+     * @param viewX horizontal offset of the view in device pixels
+     * @param viewY vertical offset of the view in device pixels
+     */
+    public void paint(final Graphics2D g2d, final Rectangle clip, final int level, final double scale,
+                      final int viewX, final int viewY) {
+        activeLevel = level;
+        final int firstX = Math.floorDiv(clip.x + viewX, TILE_SIZE);
+        final int lastX = Math.floorDiv(clip.x + clip.width - 1 + viewX, TILE_SIZE);
+        final int firstY = Math.floorDiv(clip.y + viewY, TILE_SIZE);
+        final int lastY = Math.floorDiv(clip.y + clip.height - 1 + viewY, TILE_SIZE);
+        for (int tileY = firstY; tileY <= lastY; tileY++) {
+            for (int tileX = firstX; tileX <= lastX; tileX++) {
+                final TileKey key = new TileKey(level, scale, tileX, tileY);
+                final int screenX = tileX * TILE_SIZE - viewX;
+                final int screenY = tileY * TILE_SIZE - viewY;
+                final BufferedImage image = getTileImage(key);
+                if (image != null) {
+                    g2d.drawImage(image, screenX, screenY, null);
+                } else {
+                    paintFallback(g2d, key, screenX, screenY, viewX, viewY);
+                }
+            }
+        }
+    }
+
+    /**
+     * Mark the tiles overlapping a world region as outdated.
+     *
+     * @param region changed world region
+     */
+    public synchronized void invalidate(final Rectangle region) {
+        for (final Map.Entry<TileKey, Tile> entry : tiles.entrySet()) {
+            final TileKey key = entry.getKey();
+            final Rectangle tileRegion = toTilePixels(key, region);
+            if (tileRegion != null) {
+                entry.getValue().markDirty(tileRegion);
+            }
+        }
+    }
+
+    /**
+     * Mark every cached tile as outdated.
+     */
+    public synchronized void invalidateAll() {
+        for (final Tile tile : tiles.values()) {
+            tile.markDirty(new Rectangle(0, 0, TILE_SIZE, TILE_SIZE));
+        }
+    }
+
+    /**
+     * Return the latest image of a tile, scheduling a background render if it is missing or outdated.
+     *
+     * @param key tile to look up
+     * @return tile image, possibly outdated while a render is pending, or null while its first render is pending
+     */
+    private synchronized BufferedImage getTileImage(final TileKey key) {
+        final Tile cached = tiles.get(key);
+        if (cached == null) {
+            final Tile tile = new Tile();
+            tile.pending = true;
+            tiles.put(key, tile);
+            renderer.execute(() -> renderInBackground(key, tile));
+            return null;
+        }
+        if (cached.image != null && cached.dirty != null && !cached.pending) {
+            cached.pending = true;
+            renderer.execute(() -> refreshInBackground(key, cached));
+        }
+        return cached.image;
+    }
+
+    /**
+     * Render a newly requested tile on a background thread.
+     *
+     * @param key  tile to render
+     * @param tile cache entry receiving the image
+     */
+    private void renderInBackground(final TileKey key, final Tile tile) {
+        final long startVersion;
+        synchronized (this) {
+            if (key.level != activeLevel || tiles.get(key) != tile) {
+                tiles.remove(key, tile);
+                return;
+            }
+            startVersion = tile.version;
+            tile.dirty = null;
+        }
+        final BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        render(key, image, new Rectangle(0, 0, TILE_SIZE, TILE_SIZE));
+        synchronized (this) {
+            tile.image = image;
+            tile.pending = false;
+            if (tile.version != startVersion) {
+                tile.dirty = new Rectangle(0, 0, TILE_SIZE, TILE_SIZE);
+            }
+        }
+        onTileRendered.run();
+    }
+
+    /**
+     * Re-render the outdated area of a tile on a background thread, into a copy of its image so that the
+     * previous image can still be painted meanwhile.
+     *
+     * @param key  tile to refresh
+     * @param tile cache entry holding the outdated image
+     */
+    private void refreshInBackground(final TileKey key, final Tile tile) {
+        final Rectangle dirty;
+        final BufferedImage previous;
+        synchronized (this) {
+            if (tiles.get(key) != tile || tile.dirty == null) {
+                tile.pending = false;
+                return;
+            }
+            dirty = tile.dirty;
+            tile.dirty = null;
+            previous = tile.image;
+        }
+        final BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g2d = image.createGraphics();
+        g2d.drawImage(previous, 0, 0, null);
+        g2d.dispose();
+        render(key, image, dirty);
+        synchronized (this) {
+            tile.image = image;
+            tile.pending = false;
+        }
+        onTileRendered.run();
+    }
+
+    /**
+     * Render the shapes covering part of a tile into its image.
+     *
+     * @param key    tile to render
+     * @param image  image of the tile
+     * @param region area of the tile to render, in tile pixels
+     */
+    private void render(final TileKey key, final BufferedImage image, final Rectangle region) {
+        final double zoom = key.zoom();
+        final Graphics2D g2d = image.createGraphics();
+        g2d.clip(region);
+        g2d.setColor(background);
+        g2d.fill(region);
+        g2d.translate(-key.x * TILE_SIZE, -key.y * TILE_SIZE);
+        g2d.scale(zoom, zoom);
+        final int worldX = (int) Math.floor((key.x * TILE_SIZE + region.x) / zoom) - 1;
+        final int worldY = (int) Math.floor((key.y * TILE_SIZE + region.y) / zoom) - 1;
+        final int worldWidth = (int) Math.ceil(region.width / zoom) + 2;
+        final int worldHeight = (int) Math.ceil(region.height / zoom) + 2;
+        final Rectangle world = new Rectangle(worldX, worldY, worldWidth, worldHeight);
+        RenderUtil.drawShapes(g2d, shapes.get().query(world), world, zoom);
+        g2d.dispose();
+    }
+
+    /**
+     * Paint a stand-in for a pending tile by scaling cached tiles of nearby zoom levels.
+     *
+     * @param g2d     graphics context in screen coordinates
+     * @param key     pending tile
+     * @param screenX screen x-coord of the pending tile
+     * @param screenY screen y-coord of the pending tile
+     * @param viewX   horizontal offset of the view in zoomed pixels
+     * @param viewY   vertical offset of the view in zoomed pixels
+     */
+    private void paintFallback(final Graphics2D g2d, final TileKey key, final int screenX, final int screenY,
+                               final int viewX, final int viewY) {
+        final double zoom = zoomOf(key.level);
+        final Graphics2D tileGraphics = (Graphics2D) g2d.create();
+        tileGraphics.clipRect(screenX, screenY, TILE_SIZE, TILE_SIZE);
+        tileGraphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        for (final int offset : FALLBACK_LEVEL_OFFSETS) {
+            final int level = key.level + offset;
+            final double ratio = zoomOf(level) / zoom;
+            final int firstX = (int) Math.floor(key.x * TILE_SIZE * ratio / TILE_SIZE);
+            final int lastX = (int) Math.floor(((key.x + 1) * TILE_SIZE * ratio - 1) / TILE_SIZE);
+            final int firstY = (int) Math.floor(key.y * TILE_SIZE * ratio / TILE_SIZE);
+            final int lastY = (int) Math.floor(((key.y + 1) * TILE_SIZE * ratio - 1) / TILE_SIZE);
+            boolean covered = true;
+            for (int tileY = firstY; tileY <= lastY; tileY++) {
+                for (int tileX = firstX; tileX <= lastX; tileX++) {
+                    final BufferedImage image;
+                    synchronized (this) {
+                        final Tile tile = tiles.get(new TileKey(level, key.scale, tileX, tileY));
+                        image = tile == null ? null : tile.image;
+                    }
+                    if (image == null) {
+                        covered = false;
+                        continue;
+                    }
+                    final int x = (int) Math.floor(tileX * TILE_SIZE / ratio) - viewX;
+                    final int y = (int) Math.floor(tileY * TILE_SIZE / ratio) - viewY;
+                    final int size = (int) Math.ceil(TILE_SIZE / ratio);
+                    tileGraphics.drawImage(image, x, y, size, size, null);
+                }
+            }
+            if (covered) {
+                break;
+            }
+        }
+        tileGraphics.dispose();
+    }
+
+    /**
+     * Convert a world region to the pixels it covers in a tile.
+     *
+     * @param key    tile
+     * @param region world region
+     * @return covered tile pixels, or null if the region misses the tile
+     */
+    private static Rectangle toTilePixels(final TileKey key, final Rectangle region) {
+        final double zoom = key.zoom();
+        final int x = (int) Math.floor(region.x * zoom) - key.x * TILE_SIZE - 1;
+        final int y = (int) Math.floor(region.y * zoom) - key.y * TILE_SIZE - 1;
+        final int width = (int) Math.ceil(region.width * zoom) + 2;
+        final int height = (int) Math.ceil(region.height * zoom) + 2;
+        final Rectangle pixels = new Rectangle(x, y, width, height).intersection(new Rectangle(0, 0, TILE_SIZE, TILE_SIZE));
+        return pixels.isEmpty() ? null : pixels;
+    }
+
+    /**
+     * Identity of a tile: zoom level, device scale and position in the tile grid of that level and scale.
+     *
+     * @param level zoom level
+     * @param scale device pixels per screen pixel
+     * @param x     column of the tile
+     * @param y     row of the tile
+     */
+    private record TileKey(int level, double scale, int x, int y) {
+        /**
+         * Return the device pixels per world unit of the tile.
+         *
+         * @return zoom of the level times the device scale
+         */
+        private double zoom() {
+            return zoomOf(level) * scale;
+        }
+    }
+
+    /**
+     * Cache entry of a single tile.
+     */
+    private static class Tile {
+        /**
+         * Rendered pixels, null until the first render completes
+         */
+        private BufferedImage image;
+        /**
+         * Area of the image that no longer matches the shapes, null if up to date
+         */
+        private Rectangle dirty;
+        /**
+         * Counter of invalidations, used to detect edits during the first render
+         */
+        private long version;
+        /**
+         * True while a background render of the tile is queued or running
+         */
+        private boolean pending;
+
+        /**
+         * Mark part of the tile as outdated.
+         *
+         * @param region outdated area in tile pixels
+         */
+        private void markDirty(final Rectangle region) {
+            version++;
+            if (dirty == null) {
+                dirty = new Rectangle(region);
+            } else {
+                dirty.add(region);
+            }
+        }
+    }
+}
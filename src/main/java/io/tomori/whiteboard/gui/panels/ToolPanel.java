@@ -77,6 +77,7 @@ public class ToolPanel extends JPanel {
         toolButtonGroup = new ButtonGroup();
         addToolButton(toolButtonPanel, "Pen", new PenTool());
         addToolButton(toolButtonPanel, "Eraser", new EraserTool());
+        addToolButton(toolButtonPanel, "Precise Eraser", new EraserTool(true));
         addToolButton(toolButtonPanel, "Select", new SelectionTool());
         addToolButton(toolButtonPanel, "Fill", new FillTool());
         addToolButton(toolButtonPanel, "Rectangle", new RectangleTool());
@@ -112,6 +113,7 @@ public class ToolPanel extends JPanel {
             newTool.setColor(currentColor);
             newTool.setStrokeWidth(currentStrokeWidth);
             currentActiveTool = newTool;
+            DrawingPanel.getInstance().repaint();
         });
         button.setToolTipText(toolName);
         toolButtonGroup.add(button);
@@ -5,18 +5,24 @@ package io.tomori.whiteboard.mcp;
 import com.google.gson.internal.LinkedTreeMap;
 import io.modelcontextprotocol.server.McpServerFeatures;
 import io.modelcontextprotocol.spec.McpSchema;
+import io.tomori.whiteboard.model.Color;
+import io.tomori.whiteboard.model.ShapeSummary;
+import io.tomori.whiteboard.model.board.ShapeQuery;
 import io.tomori.whiteboard.model.shapes.*;
 import io.tomori.whiteboard.service.AdminService;
 import io.tomori.whiteboard.service.ChatService;
 import io.tomori.whiteboard.service.UserService;
 import io.tomori.whiteboard.service.WhiteboardService;
 import io.tomori.whiteboard.util.JsonUtil;
+import io.tomori.whiteboard.util.PreviewRenderer;
 import io.tomori.whiteboard.util.SvgUtil;
 import reactor.core.publisher.Mono;
 
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 /**
  * Tool provider for Model Context Protocol (MCP) integration with whiteboard app.
@@ -33,6 +39,22 @@ public class McpTools {
             "properties": {}
             }
             """;
+    /**
+     * Largest side in pixels of a preview requested without a size or scale
+     */
+    private static final int DEFAULT_PREVIEW_SIZE = 1024;
+    /**
+     * Number of shapes listed per page when no limit is given
+     */
+    private static final int DEFAULT_LIST_LIMIT = 100;
+    /**
+     * Largest number of shapes listed per page
+     */
+    private static final int MAX_LIST_LIMIT = 1000;
+    /**
+     * Accepted form of color filters, #rrggbb with an optional #
+     */
+    private static final Pattern HEX_COLOR = Pattern.compile("^#?[0-9a-fA-F]{6}$");
     /**
      * Singleton instance of the McpTools
      */
@@ -47,12 +69,75 @@ public class McpTools {
      */
     private McpTools() {
         final McpServerFeatures.AsyncToolSpecification previewCanvas = new McpServerFeatures.AsyncToolSpecification(
-                new McpSchema.Tool("PreviewCanvas", "Preview the current canvas", EMPTY_JSON_SCHEMA),
-                (_, _) -> {
+                new McpSchema.Tool("PreviewCanvas", "Preview the canvas as an image. " +
+                        "By default the whole drawing is shown at most " + DEFAULT_PREVIEW_SIZE + " pixels wide or high; " +
+                        "give a region and a larger size or scale to zoom into details", """
+                        {
+                        "$schema": "http://json-schema.org/draft-07/schema#",
+                        "type": "object",
+                        "properties": {
+                            "region": {
+                                "type": "object",
+                                "description": "Canvas region to show, defaults to the area covered by all shapes",
+                                "properties": {
+                                    "x": { "type": "integer" },
+                                    "y": { "type": "integer" },
+                                    "width": { "type": "integer", "minimum": 1 },
+                                    "height": { "type": "integer", "minimum": 1 }
+                                },
+                                "required": ["x", "y", "width", "height"]
+                            },
+                            "size": {
+                                "type": "integer",
+                                "description": "Largest width or height of the image in pixels",
+                                "minimum": 1,
+                                "maximum": %d
+                            },
+                            "scale": {
+                                "type": "number",
+                                "description": "Image pixels per canvas unit, lowered if the image would exceed the size",
+                                "exclusiveMinimum": 0
+                            },
+                            "format": {
+                                "type": "string",
+                                "enum": ["png", "jpeg"],
+                                "default": "png"
+                            },
+                            "quality": {
+                                "type": "number",
+                                "description": "Compression quality, lower is smaller but lossy for jpeg and slower for png",
+                                "minimum": 0,
+                                "maximum": 1
+                            }
+                        }
+                        }
+                        """.formatted(PreviewRenderer.MAX_IMAGE_SIZE)),
+                (_, args) -> {
+                    final PreviewRenderer.Preview preview;
+                    try {
+                        final Number size = readNumber(args, "size");
+                        final Number scale = readNumber(args, "scale");
+                        final Number quality = readNumber(args, "quality");
+                        final String format = readString(args, "format");
+                        if (size != null && size.intValue() < 1 || scale != null && scale.doubleValue() <= 0) {
+                            throw new IllegalArgumentException("size and scale must be positive");
+                        }
+                        preview = WhiteboardService.preview(
+                                readRegion(args, "region"),
+                                scale == null ? 0 : scale.doubleValue(),
+                                size != null ? size.intValue() : scale == null ? DEFAULT_PREVIEW_SIZE : 0,
+                                PreviewRenderer.Format.fromName(format == null ? "png" : format),
+                                quality == null ? null : quality.floatValue());
+                    } catch (final IllegalArgumentException e) {
+                        return Mono.just(new McpSchema.CallToolResult(e.getMessage(), true));
+                    }
+                    if (preview == null) {
+                        return Mono.just(new McpSchema.CallToolResult("Failed to render preview", true));
+                    }
                     final LinkedTreeMap<String, Object> content = new LinkedTreeMap<>();
-                    content.put("data", WhiteboardService.previewAsBase64());
-                    content.put("type", "png");
-                    content.put("mimeType", "image/png");
+                    content.put("data", preview.data());
+                    content.put("type", "image");
+                    content.put("mimeType", preview.mimeType());
                     final McpSchema.ImageContent imageContent = JsonUtil.fromJson(
                             JsonUtil.toJson(content),
                             McpSchema.ImageContent.class
@@ -62,8 +147,92 @@ public class McpTools {
         );
         tools.add(previewCanvas);
         final McpServerFeatures.AsyncToolSpecification listShapes = new McpServerFeatures.AsyncToolSpecification(
-                new McpSchema.Tool("ListShapes", "List all shapes on canvas", EMPTY_JSON_SCHEMA),
-                (_, _) -> Mono.just(new McpSchema.CallToolResult(JsonUtil.toJson(WhiteboardService.getInstance().getShapes()), false))
+                new McpSchema.Tool("ListShapes", "List shapes on canvas in z-order, one page at a time. " +
+                        "Pass the returned nextCursor to get the next page; the listing is complete when it is absent. " +
+                        "The summary projection gives id, type, bounds and point count; use full for geometry", """
+                        {
+                        "$schema": "http://json-schema.org/draft-07/schema#",
+                        "type": "object",
+                        "properties": {
+                            "cursor": {
+                                "type": "string",
+                                "description": "nextCursor of the previous page"
+                            },
+                            "limit": {
+                                "type": "integer",
+                                "minimum": 1,
+                                "maximum": %d,
+                                "default": %d
+                            },
+                            "bbox": {
+                                "type": "object",
+                                "description": "Only shapes intersecting this canvas region",
+                                "properties": {
+                                    "x": { "type": "integer" },
+                                    "y": { "type": "integer" },
+                                    "width": { "type": "integer", "minimum": 1 },
+                                    "height": { "type": "integer", "minimum": 1 }
+                                },
+                                "required": ["x", "y", "width", "height"]
+                            },
+                            "types": {
+                                "type": "array",
+                                "items": {
+                                    "type": "string",
+                                    "enum": ["circle", "rectangle", "line", "oval", "triangle", "path", "text"]
+                                }
+                            },
+                            "color": {
+                                "type": "string",
+                                "description": "Only shapes with this stroke or fill color, as #rrggbb"
+                            },
+                            "idPrefix": {
+                                "type": "string"
+                            },
+                            "projection": {
+                                "type": "string",
+                                "enum": ["summary", "full"],
+                                "default": "summary"
+                            }
+                        }
+                        }
+                        """.formatted(MAX_LIST_LIMIT, DEFAULT_LIST_LIMIT)),
+                (_, args) -> {
+                    final ShapeQuery.Page page;
+                    final String projection;
+                    try {
+                        final String color = readString(args, "color");
+                        final Number limit = readNumber(args, "limit");
+                        projection = readString(args, "projection");
+                        if (color != null && !HEX_COLOR.matcher(color).matches()) {
+                            throw new IllegalArgumentException("color must be a hex color such as #ff0000");
+                        }
+                        if (limit != null && limit.intValue() < 1) {
+                            throw new IllegalArgumentException("limit must be positive");
+                        }
+                        final ShapeQuery query = new ShapeQuery(
+                                readRegion(args, "bbox"),
+                                readStrings(args, "types"),
+                                color == null ? null : Color.fromHex(color),
+                                readString(args, "idPrefix"));
+                        page = WhiteboardService.getInstance().listShapes(query, readString(args, "cursor"),
+                                limit == null ? DEFAULT_LIST_LIMIT : Math.min(limit.intValue(), MAX_LIST_LIMIT));
+                    } catch (final IllegalArgumentException e) {
+                        return Mono.just(new McpSchema.CallToolResult(e.getMessage(), true));
+                    }
+                    final LinkedTreeMap<String, Object> result = new LinkedTreeMap<>();
+                    result.put("shapes", "full".equals(projection)
+                            ? page.shapes()
+                            : page.shapes().stream().map(ShapeSummary::new).toList());
+                    if (page.nextCursor() != null) {
+                        result.put("nextCursor", page.nextCursor());
+                    }
+                    final String json = JsonUtil.toJson(result);
+                    if (json == null) {
+                        return Mono.just(new McpSchema.CallToolResult("Failed to serialize shapes", true));
+                    }
+                    return Mono.just(new McpSchema.CallToolResult(json, false));
+                }
         );
         tools.add(listShapes);
         final McpServerFeatures.AsyncToolSpecification listUsers = new McpServerFeatures.AsyncToolSpecification(
@@ -166,6 +335,94 @@ public class McpTools {
         return instance;
     }
 
+    /**
+     * Read an optional number argument of a tool call.
+     *
+     * @param args arguments of the call
+     * @param name argument name
+     * @return argument value, null if absent
+     * @throws IllegalArgumentException if the argument is not a number
+     */
+    private static Number readNumber(final Map<String, Object> args, final String name) {
+        final Object value = args.get(name);
+        if (value != null && !(value instanceof Number)) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+        return (Number) value;
+    }
+
+    /**
+     * Read an optional string argument of a tool call.
+     *
+     * @param args arguments of the call
+     * @param name argument name
+     * @return argument value, null if absent
+     * @throws IllegalArgumentException if the argument is not a string
+     */
+    private static String readString(final Map<String, Object> args, final String name) {
+        final Object value = args.get(name);
+        if (value != null && !(value instanceof String)) {
+            throw new IllegalArgumentException(name + " must be a string");
+        }
+        return (String) value;
+    }
+
+    /**
+     * Read an optional string array argument of a tool call.
+     *
+     * @param args arguments of the call
+     * @param name argument name
+     * @return argument values, null if absent
+     * @throws IllegalArgumentException if the argument is not an array of strings
+     */
+    private static List<String> readStrings(final Map<String, Object> args, final String name) {
+        final Object value = args.get(name);
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof final List<?> list)) {
+            throw new IllegalArgumentException(name + " must be an array of strings");
+        }
+        final List<String> strings = new ArrayList<>(list.size());
+        for (final Object element : list) {
+            if (!(element instanceof final String string)) {
+                throw new IllegalArgumentException(name + " must be an array of strings");
+            }
+            strings.add(string);
+        }
+        return strings;
+    }
+
+    /**
+     * Read an optional region argument of a tool call, an object with integer x, y, width and height.
+     *
+     * @param args arguments of the call
+     * @param name argument name
+     * @return region, null if absent
+     * @throws IllegalArgumentException if the argument is not a valid region
+     */
+    private static Rectangle readRegion(final Map<String, Object> args, final String name) {
+        final Object value = args.get(name);
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof final Map<?, ?> region)) {
+            throw new IllegalArgumentException(name + " must be an object with x, y, width and height");
+        }
+        final int[] fields = new int[4];
+        final String[] names = {"x", "y", "width", "height"};
+        for (int i = 0; i < names.length; i++) {
+            if (!(region.get(names[i]) instanceof final Number number)) {
+                throw new IllegalArgumentException(name + "." + names[i] + " must be a number");
+            }
+            fields[i] = number.intValue();
+        }
+        if (fields[2] < 1 || fields[3] < 1) {
+            throw new IllegalArgumentException(name + " must have a positive width and height");
+        }
+        return new Rectangle(fields[0], fields[1], fields[2], fields[3]);
+    }
+
     /**
      * Return MCP tool specifications list.
      *
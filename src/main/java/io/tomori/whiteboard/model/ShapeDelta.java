@@ -0,0 +1,101 @@
+package io.tomori.whiteboard.model;
+
+import com.google.gson.internal.LinkedTreeMap;
+import io.tomori.whiteboard.model.board.BoardSnapshot;
+import io.tomori.whiteboard.model.shapes.Shape;
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Incremental change to the whiteboard shapes, sent instead of the full shapes list.
+ * Contain the added or modified shapes, the IDs of removed shapes, and new z-keys of shapes only moved in z-order.
+ */
+@Data
+public class ShapeDelta implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    /**
+     * Added or modified shapes, placed by their z-keys
+     */
+    private final List<Shape> shapes;
+    /**
+     * IDs of removed shapes
+     */
+    private final List<String> removedIds;
+    /**
+     * New z-keys of shapes only moved in z-order, by shape ID
+     */
+    private final Map<String, String> zKeys;
+
+    /**
+     * Create a delta with the specified changes.
+     *
+     * @param shapes     added or modified shapes
+     * @param removedIds IDs of removed shapes
+     * @param zKeys      new z-keys by shape ID
+     */
+    public ShapeDelta(final List<Shape> shapes, final List<String> removedIds, final Map<String, String> zKeys) {
+        this.shapes = shapes;
+        this.removedIds = removedIds;
+        this.zKeys = zKeys;
+    }
+
+    /**
+     * Create the delta bringing another board up to date with the affected shapes of a board.
+     *
+     * @param changed   IDs of shapes added, removed or modified
+     * @param reordered IDs of shapes only moved in z-order
+     * @param snapshot  board after the change
+     * @return delta of the affected shapes
+     */
+    public static ShapeDelta of(final Set<String> changed, final Set<String> reordered, final BoardSnapshot snapshot) {
+        final List<Shape> shapes = new ArrayList<>();
+        final List<String> removedIds = new ArrayList<>();
+        final Map<String, String> zKeys = new HashMap<>();
+        for (final String id : changed) {
+            final Shape shape = snapshot.getById(id);
+            if (shape != null) {
+                shapes.add(shape);
+            } else {
+                removedIds.add(id);
+            }
+        }
+        for (final String id : reordered) {
+            final Shape shape = snapshot.getById(id);
+            if (shape != null && !changed.contains(id)) {
+                zKeys.put(id, shape.getZKey());
+            }
+        }
+        return new ShapeDelta(shapes, removedIds, zKeys);
+    }
+
+    /**
+     * Create a ShapeDelta from a LinkedTreeMap representation.
+     *
+     * @param map map containing delta data
+     * @return A new ShapeDelta instance
+     */
+    @SuppressWarnings("unchecked")
+    public static ShapeDelta fromLinkedTreeMap(final LinkedTreeMap<?, ?> map) {
+        final List<Shape> shapes = ((List<LinkedTreeMap<?, ?>>) map.get("shapes")).stream().map(Shape::fromLinkedTreeMap).toList();
+        final List<String> removedIds = (List<String>) map.get("removedIds");
+        final Map<String, String> zKeys = (Map<String, String>) map.get("zKeys");
+        return new ShapeDelta(shapes, removedIds, zKeys);
+    }
+
+    /**
+     * Check if the delta contains no change.
+     *
+     * @return True if nothing changed
+     */
+    public boolean isEmpty() {
+        return shapes.isEmpty() && removedIds.isEmpty() && zKeys.isEmpty();
+    }
+}
@@ -0,0 +1,62 @@
+package io.tomori.whiteboard.model;
+
+import io.tomori.whiteboard.model.shapes.PathShape;
+import io.tomori.whiteboard.model.shapes.Shape;
+import lombok.Data;
+
+import java.awt.*;
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Compact description of a shape without its geometry, for listing large boards.
+ */
+@Data
+public class ShapeSummary implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    /**
+     * ID of the shape
+     */
+    private final String id;
+    /**
+     * Type identifier of the shape
+     */
+    private final String type;
+    /**
+     * Left edge of the shape's bounds
+     */
+    private final int x;
+    /**
+     * Top edge of the shape's bounds
+     */
+    private final int y;
+    /**
+     * Width of the shape's bounds
+     */
+    private final int width;
+    /**
+     * Height of the shape's bounds
+     */
+    private final int height;
+    /**
+     * Number of points of a path, null for other shapes
+     */
+    private final Integer pointCount;
+
+    /**
+     * Create a summary of a shape.
+     *
+     * @param shape shape to summarize
+     */
+    public ShapeSummary(final Shape shape) {
+        final Rectangle bounds = shape.getBounds();
+        id = shape.getId();
+        type = shape.getTypeId();
+        x = bounds.x;
+        y = bounds.y;
+        width = bounds.width;
+        height = bounds.height;
+        pointCount = shape instanceof final PathShape path ? path.getPointCount() : null;
+    }
+}
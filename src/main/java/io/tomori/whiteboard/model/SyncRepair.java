@@ -0,0 +1,53 @@
+package io.tomori.whiteboard.model;
+
+import com.google.gson.internal.LinkedTreeMap;
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * IDs and content hashes of the server's shapes in the digest buckets where a user's board differs.
+ * The receiver removes its shapes in those buckets that are not listed and fetches only the listed shapes whose
+ * content differs, so a repair transfers shapes in proportion to the divergence rather than to the bucket size.
+ */
+@Data
+public class SyncRepair implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    /**
+     * Indices of the repaired buckets
+     */
+    private final List<Integer> buckets;
+    /**
+     * Content hash of each shape of the server's board in the repaired buckets, by shape ID
+     */
+    private final Map<String, String> hashes;
+
+    /**
+     * Create a repair for the specified buckets.
+     *
+     * @param buckets indices of the repaired buckets
+     * @param hashes  content hashes of all shapes in those buckets by ID
+     */
+    public SyncRepair(final List<Integer> buckets, final Map<String, String> hashes) {
+        this.buckets = buckets;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Create a SyncRepair from a LinkedTreeMap representation.
+     *
+     * @param map map containing repair data
+     * @return A new SyncRepair instance
+     */
+    @SuppressWarnings("unchecked")
+    public static SyncRepair fromLinkedTreeMap(final LinkedTreeMap<?, ?> map) {
+        final List<Integer> buckets = ((List<Number>) map.get("buckets")).stream().map(Number::intValue).toList();
+        final Map<String, String> hashes = new HashMap<>((Map<String, String>) map.get("hashes"));
+        return new SyncRepair(buckets, hashes);
+    }
+}
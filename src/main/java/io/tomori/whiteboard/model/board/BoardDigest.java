@@ -0,0 +1,219 @@
+package io.tomori.whiteboard.model.board;
+
+import io.tomori.whiteboard.model.shapes.Shape;
+import io.tomori.whiteboard.util.JsonUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Two-level Merkle tree of hashes summarizing the content of a board, used to find where two boards differ.
+ * Shapes are spread over buckets by a hash of their ID. The hash of a bucket combines the content hashes of its shapes
+ * regardless of order, and groups of consecutive buckets are hashed into group hashes.
+ * Two boards with equal hashes at a node hold the same shapes below it, so comparing top-down only descends into
+ * the parts that differ. The shapes of each bucket are kept with their content hashes, so the shapes that differ
+ * within a bucket are found without scanning the board.
+ */
+public final class BoardDigest {
+    /**
+     * Number of buckets shapes are spread over
+     */
+    public static final int BUCKETS = 256;
+    /**
+     * Number of buckets in each group
+     */
+    public static final int GROUP_SIZE = 16;
+    /**
+     * Number of groups
+     */
+    public static final int GROUPS = BUCKETS / GROUP_SIZE;
+    /**
+     * Digest of the empty board
+     */
+    public static final BoardDigest EMPTY = new BoardDigest(-1, new long[BUCKETS], emptyMembers(), new IdentityHashMap<>());
+    /**
+     * Version of the board this digest was computed from
+     */
+    private final long version;
+    /**
+     * Hash of each bucket
+     */
+    private final long[] buckets;
+    /**
+     * Hash of each group of buckets
+     */
+    private final long[] groups = new long[GROUPS];
+    /**
+     * Shapes of each bucket in z-order
+     */
+    private final List<List<Shape>> members;
+    /**
+     * Content hashes of the shapes of the board, reused by the next digest for shapes that did not change
+     */
+    private final Map<Shape, Long> shapeHashes;
+
+    /**
+     * Create a digest from its bucket hashes.
+     *
+     * @param version     version of the board
+     * @param buckets     hash of each bucket
+     * @param members     shapes of each bucket
+     * @param shapeHashes content hashes of the shapes
+     */
+    private BoardDigest(final long version, final long[] buckets, final List<List<Shape>> members,
+                        final Map<Shape, Long> shapeHashes) {
+        this.version = version;
+        this.buckets = buckets;
+        this.members = members;
+        this.shapeHashes = shapeHashes;
+        for (int group = 0; group < GROUPS; group++) {
+            long groupHash = 0;
+            for (int i = group * GROUP_SIZE; i < (group + 1) * GROUP_SIZE; i++) {
+                groupHash = mix(groupHash ^ buckets[i]);
+            }
+            groups[group] = groupHash;
+        }
+    }
+
+    /**
+     * Compute the digest of a board.
+     * Shapes already hashed by the previous digest are not serialized again, so digests of successive versions
+     * cost little more than a pass over the board.
+     *
+     * @param snapshot board to summarize
+     * @param previous digest of an earlier version of the board
+     * @return digest of the board, the previous digest if the board has not changed
+     */
+    public static BoardDigest of(final BoardSnapshot snapshot, final BoardDigest previous) {
+        if (snapshot.getVersion() == previous.version) {
+            return previous;
+        }
+        final long[] buckets = new long[BUCKETS];
+        final List<List<Shape>> members = emptyMembers();
+        final Map<Shape, Long> shapeHashes = new IdentityHashMap<>(snapshot.size());
+        for (final Shape shape : snapshot) {
+            Long hash = previous.shapeHashes.get(shape);
+            if (hash == null) {
+                hash = hash(shape);
+            }
+            shapeHashes.put(shape, hash);
+            final int bucket = bucketOf(shape.getId());
+            buckets[bucket] += hash;
+            members.get(bucket).add(shape);
+        }
+        return new BoardDigest(snapshot.getVersion(), buckets, members, shapeHashes);
+    }
+
+    /**
+     * Create empty member lists for all buckets.
+     *
+     * @return one empty list per bucket
+     */
+    private static List<List<Shape>> emptyMembers() {
+        final List<List<Shape>> members = new ArrayList<>(BUCKETS);
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            members.add(new ArrayList<>());
+        }
+        return members;
+    }
+
+    /**
+     * Return the bucket of a shape.
+     *
+     * @param id ID of the shape
+     * @return bucket index
+     */
+    public static int bucketOf(final String id) {
+        return (int) (mix(id.hashCode()) & (BUCKETS - 1));
+    }
+
+    /**
+     * Format a hash for sending.
+     *
+     * @param hash hash value
+     * @return hexadecimal text
+     */
+    public static String format(final long hash) {
+        return Long.toHexString(hash);
+    }
+
+    /**
+     * Parse a hash that was sent.
+     *
+     * @param text hexadecimal text
+     * @return hash value
+     */
+    public static long parse(final String text) {
+        return Long.parseUnsignedLong(text, 16);
+    }
+
+    /**
+     * Return the content hash of a shape, covering every field that is sent to other users.
+     *
+     * @param shape shape to hash
+     * @return 64-bit hash
+     */
+    private static long hash(final Shape shape) {
+        final String json = JsonUtil.toJson(shape);
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < json.length(); i++) {
+            hash = (hash ^ json.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Scramble the bits of a value so that nearby inputs give unrelated outputs.
+     *
+     * @param value value to scramble
+     * @return scrambled value
+     */
+    private static long mix(final long value) {
+        long mixed = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        mixed = (mixed ^ (mixed >>> 27)) * 0x94d049bb133111ebL;
+        return mixed ^ (mixed >>> 31);
+    }
+
+    /**
+     * Return the hash of a group of buckets.
+     *
+     * @param group group index
+     * @return group hash
+     */
+    public long getGroup(final int group) {
+        return groups[group];
+    }
+
+    /**
+     * Return the hash of a bucket.
+     *
+     * @param bucket bucket index
+     * @return bucket hash
+     */
+    public long getBucket(final int bucket) {
+        return buckets[bucket];
+    }
+
+    /**
+     * Return the shapes of a bucket.
+     *
+     * @param bucket bucket index
+     * @return shapes of the bucket in z-order
+     */
+    public List<Shape> getMembers(final int bucket) {
+        return Collections.unmodifiableList(members.get(bucket));
+    }
+
+    /**
+     * Return the content hash of a shape of the board.
+     *
+     * @param shape shape of the board this digest was computed from
+     * @return 64-bit hash
+     */
+    public long getHash(final Shape shape) {
+        return shapeHashes.get(shape);
+    }
+}
@@ -0,0 +1,348 @@
+package io.tomori.whiteboard.model.board;
+
+import io.tomori.whiteboard.model.shapes.Shape;
+import lombok.Getter;
+
+import java.awt.*;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable version of the whiteboard shapes in z-order.
+ * Deriving a new version shares all unchanged structure with this one, so snapshots are cheap to keep and safe to
+ * read from any thread. Shapes in a snapshot must not be modified; writers replace them with modified copies.
+ * Shapes are ordered by their fractional z-keys. Shape IDs are unique within a snapshot and indexed for lookup.
+ * Shapes are also indexed by area, so the shapes near a region are found without scanning the board.
+ */
+public final class BoardSnapshot extends AbstractList<Shape> {
+    /**
+     * Snapshot without shapes
+     */
+    public static final BoardSnapshot EMPTY = new BoardSnapshot(null, null, SpatialIndex.EMPTY, 0);
+    /**
+     * Batches changing more than this fraction of the board rebuild the z-order tree instead of editing it per shape
+     */
+    private static final int REBUILD_RATIO = 8;
+    /**
+     * Root of the shape tree, null if empty
+     */
+    private final ShapeTree root;
+    /**
+     * Root of the ID index, null if empty
+     */
+    private final IdIndex ids;
+    /**
+     * Index of the shapes by area
+     */
+    private final SpatialIndex spatial;
+    /**
+     * Number of changes made to the board before this snapshot
+     */
+    @Getter
+    private final long version;
+
+    /**
+     * Create a snapshot.
+     *
+     * @param root    root of the shape tree
+     * @param ids     root of the ID index
+     * @param spatial index of the shapes by area
+     * @param version version number
+     */
+    private BoardSnapshot(final ShapeTree root, final IdIndex ids, final SpatialIndex spatial, final long version) {
+        this.root = root;
+        this.ids = ids;
+        this.spatial = spatial;
+        this.version = version;
+    }
+
+    /**
+     * Return the shape at a position in z-order.
+     *
+     * @param index position, 0 for the bottom shape
+     * @return shape at the position
+     */
+    @Override
+    public Shape get(final int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        return ShapeTree.get(root, index);
+    }
+
+    /**
+     * Return the shape with an ID.
+     *
+     * @param id ID of the shape
+     * @return shape with the ID, or null if absent
+     */
+    public Shape getById(final String id) {
+        return IdIndex.get(ids, id);
+    }
+
+    /**
+     * Return the position of the shape with an ID.
+     *
+     * @param id ID of the shape
+     * @return position in z-order, or -1 if absent
+     */
+    public int indexOfId(final String id) {
+        final Shape shape = IdIndex.get(ids, id);
+        return shape == null ? -1 : ShapeTree.rank(root, shape);
+    }
+
+    /**
+     * Return the shapes whose painted or hit area intersects a region.
+     *
+     * @param region world region
+     * @return shapes in z-order
+     */
+    public List<Shape> query(final Rectangle region) {
+        final List<Shape> shapes = spatial.query(region);
+        shapes.sort(ShapeTree.Z_ORDER);
+        return shapes;
+    }
+
+    /**
+     * Return the shapes whose ID starts with a prefix.
+     *
+     * @param prefix ID prefix
+     * @return shapes in z-order
+     */
+    public List<Shape> queryIdPrefix(final String prefix) {
+        final List<Shape> shapes = new ArrayList<>();
+        IdIndex.collectPrefix(ids, prefix, shapes);
+        shapes.sort(ShapeTree.Z_ORDER);
+        return shapes;
+    }
+
+    /**
+     * Return the number of shapes.
+     *
+     * @return number of shapes
+     */
+    @Override
+    public int size() {
+        return ShapeTree.size(root);
+    }
+
+    /**
+     * Return an iterator over the shapes from bottom to top.
+     *
+     * @return read-only iterator
+     */
+    @Override
+    public Iterator<Shape> iterator() {
+        return ShapeTree.iterator(root);
+    }
+
+    /**
+     * Return the next version with a shape inserted at the position given by its z-key.
+     *
+     * @param shape shape to insert
+     * @return new snapshot
+     * @throws IllegalArgumentException if the shape has no z-key or a shape with the same ID exists
+     */
+    public BoardSnapshot withInserted(final Shape shape) {
+        if (shape.getZKey() == null) {
+            throw new IllegalArgumentException("Shape has no z-key: " + shape.getId());
+        }
+        requireAbsent(shape.getId());
+        return new BoardSnapshot(ShapeTree.insert(root, shape), IdIndex.put(ids, shape), spatial.with(shape), version + 1);
+    }
+
+    /**
+     * Return the next version with shapes inserted at the positions given by their z-keys.
+     * The area index is updated once for the whole batch, so each affected grid cell is copied only once.
+     *
+     * @param shapes shapes to insert
+     * @return new snapshot
+     * @throws IllegalArgumentException if a shape has no z-key or a shape with the same ID exists
+     */
+    public BoardSnapshot withAllInserted(final Collection<? extends Shape> shapes) {
+        IdIndex newIds = ids;
+        for (final Shape shape : shapes) {
+            if (shape.getZKey() == null) {
+                throw new IllegalArgumentException("Shape has no z-key: " + shape.getId());
+            }
+            if (IdIndex.get(newIds, shape.getId()) != null) {
+                throw new IllegalArgumentException("Duplicate shape ID: " + shape.getId());
+            }
+            newIds = IdIndex.put(newIds, shape);
+        }
+        ShapeTree newRoot = root;
+        for (final Shape shape : shapes) {
+            newRoot = ShapeTree.insert(newRoot, shape);
+        }
+        return new BoardSnapshot(newRoot, newIds, spatial.withAll(shapes), version + 1);
+    }
+
+    /**
+     * Return the next version with a shape replaced by a shape with the same z-key.
+     *
+     * @param index position to replace
+     * @param shape new shape
+     * @return new snapshot
+     * @throws IllegalArgumentException if the z-key differs or the new shape takes the ID of another shape
+     */
+    public BoardSnapshot withReplaced(final int index, final Shape shape) {
+        final Shape replaced = get(index);
+        if (!replaced.getZKey().equals(shape.getZKey())) {
+            throw new IllegalArgumentException("Replacement changes the z-key of shape: " + replaced.getId());
+        }
+        IdIndex newIds = ids;
+        if (!replaced.getId().equals(shape.getId())) {
+            requireAbsent(shape.getId());
+            newIds = IdIndex.remove(newIds, replaced.getId());
+        }
+        return new BoardSnapshot(ShapeTree.set(root, index, shape), IdIndex.put(newIds, shape),
+                spatial.without(replaced).with(shape), version + 1);
+    }
+
+    /**
+     * Return the next version with a shape removed.
+     *
+     * @param index position to remove
+     * @return new snapshot
+     */
+    public BoardSnapshot withRemoved(final int index) {
+        final Shape removed = get(index);
+        return new BoardSnapshot(ShapeTree.remove(root, index), IdIndex.remove(ids, removed.getId()),
+                spatial.without(removed), version + 1);
+    }
+
+    /**
+     * Return the next version holding only the specified shapes.
+     *
+     * @param shapes shapes sorted by z-key
+     * @return new snapshot
+     * @throws IllegalArgumentException if shapes lack z-keys, are out of order, or two shapes have the same ID
+     */
+    public BoardSnapshot withShapes(final List<? extends Shape> shapes) {
+        for (int i = 0; i < shapes.size(); i++) {
+            if (shapes.get(i).getZKey() == null) {
+                throw new IllegalArgumentException("Shape has no z-key: " + shapes.get(i).getId());
+            }
+            if (i > 0 && ShapeTree.Z_ORDER.compare(shapes.get(i - 1), shapes.get(i)) >= 0) {
+                throw new IllegalArgumentException("Shapes out of z-order at: " + shapes.get(i).getId());
+            }
+        }
+        final List<Shape> sorted = new ArrayList<>(shapes);
+        sorted.sort(Comparator.comparing(Shape::getId));
+        for (int i = 1; i < sorted.size(); i++) {
+            if (sorted.get(i).getId().equals(sorted.get(i - 1).getId())) {
+                throw new IllegalArgumentException("Duplicate shape ID: " + sorted.get(i).getId());
+            }
+        }
+        return new BoardSnapshot(ShapeTree.build(shapes, 0, shapes.size()), IdIndex.build(sorted, 0, sorted.size()),
+                SpatialIndex.build(shapes), version + 1);
+    }
+
+    /**
+     * Return the next version without some of its shapes.
+     * Each shape is located through the indexes, unless the batch is a large part of the board, in which case the
+     * z-order tree is rebuilt in one pass.
+     *
+     * @param removed shapes of this snapshot to remove, without duplicates
+     * @return new snapshot
+     */
+    BoardSnapshot withAllRemoved(final Collection<Shape> removed) {
+        if ((long) removed.size() * REBUILD_RATIO > size()) {
+            final Set<String> removedIds = new HashSet<>();
+            for (final Shape shape : removed) {
+                removedIds.add(shape.getId());
+            }
+            final List<Shape> kept = new ArrayList<>(size() - removed.size());
+            for (final Shape shape : this) {
+                if (!removedIds.contains(shape.getId())) {
+                    kept.add(shape);
+                }
+            }
+            return withBatch(kept, removed, List.of());
+        }
+        ShapeTree newRoot = root;
+        IdIndex newIds = ids;
+        SpatialIndex newSpatial = spatial;
+        for (final Shape shape : removed) {
+            newRoot = ShapeTree.remove(newRoot, ShapeTree.rank(newRoot, shape));
+            newIds = IdIndex.remove(newIds, shape.getId());
+            newSpatial = newSpatial.without(shape);
+        }
+        return new BoardSnapshot(newRoot, newIds, newSpatial, version + 1);
+    }
+
+    /**
+     * Return the next version with shapes replaced by new versions with the same IDs and z-keys.
+     * Each shape is located through the indexes, unless the batch is a large part of the board, in which case the
+     * z-order tree is rebuilt in one pass.
+     *
+     * @param updated new versions of shapes of this snapshot, without duplicate IDs
+     * @return new snapshot
+     */
+    BoardSnapshot withAllReplaced(final Collection<Shape> updated) {
+        if ((long) updated.size() * REBUILD_RATIO > size()) {
+            final Map<String, Shape> updates = new HashMap<>();
+            for (final Shape shape : updated) {
+                updates.put(shape.getId(), shape);
+            }
+            final List<Shape> result = new ArrayList<>(size());
+            for (final Shape shape : this) {
+                result.add(updates.getOrDefault(shape.getId(), shape));
+            }
+            return withBatch(result, List.of(), updated);
+        }
+        ShapeTree newRoot = root;
+        IdIndex newIds = ids;
+        SpatialIndex newSpatial = spatial;
+        for (final Shape shape : updated) {
+            final Shape replaced = IdIndex.get(ids, shape.getId());
+            newRoot = ShapeTree.set(newRoot, ShapeTree.rank(newRoot, replaced), shape);
+            newIds = IdIndex.put(newIds, shape);
+            newSpatial = newSpatial.without(replaced).with(shape);
+        }
+        return new BoardSnapshot(newRoot, newIds, newSpatial, version + 1);
+    }
+
+    /**
+     * Return the next version after a batch change computed in one pass over this snapshot.
+     * The ID and area indexes are updated incrementally for the changed shapes only.
+     *
+     * @param shapes  all shapes of the new version in z-order
+     * @param removed shapes of this snapshot that are not in the new version
+     * @param updated shapes of the new version replacing shapes with the same ID and z-key
+     * @return new snapshot
+     */
+    BoardSnapshot withBatch(final List<Shape> shapes, final Collection<Shape> removed, final Collection<Shape> updated) {
+        IdIndex newIds = ids;
+        SpatialIndex newSpatial = spatial;
+        for (final Shape shape : removed) {
+            newIds = IdIndex.remove(newIds, shape.getId());
+            newSpatial = newSpatial.without(shape);
+        }
+        for (final Shape shape : updated) {
+            newSpatial = newSpatial.without(IdIndex.get(ids, shape.getId())).with(shape);
+            newIds = IdIndex.put(newIds, shape);
+        }
+        return new BoardSnapshot(ShapeTree.build(shapes, 0, shapes.size()), newIds, newSpatial, version + 1);
+    }
+
+    /**
+     * Check that no shape has an ID.
+     *
+     * @param id ID to check
+     * @throws IllegalArgumentException if a shape with the ID exists
+     */
+    private void requireAbsent(final String id) {
+        if (IdIndex.get(ids, id) != null) {
+            throw new IllegalArgumentException("Duplicate shape ID: " + id);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package io.tomori.whiteboard.model.board;
+
+import io.tomori.whiteboard.model.shapes.Shape;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Immutable node of a persistent AVL tree mapping grid cells to the shapes overlapping them.
+ * Cells are keyed by column, then row, so the cells of a column form a contiguous key range. Updates copy only the
+ * path to the changed cell and the cell's own shape array. A null node is the empty grid.
+ */
+final class GridCell {
+    /**
+     * Key of the cell, packing its column and row
+     */
+    final long key;
+    /**
+     * Shapes overlapping the cell, never empty
+     */
+    final Shape[] shapes;
+    /**
+     * Subtree of smaller keys
+     */
+    final GridCell left;
+    /**
+     * Subtree of larger keys
+     */
+    final GridCell right;
+    /**
+     * Height of this subtree
+     */
+    final int height;
+
+    /**
+     * Create a node from its entry and subtrees.
+     *
+     * @param key    key of the cell
+     * @param shapes shapes overlapping the cell
+     * @param left   subtree of smaller keys
+     * @param right  subtree of larger keys
+     */
+    private GridCell(final long key, final Shape[] shapes, final GridCell left, final GridCell right) {
+        this.key = key;
+        this.shapes = shapes;
+        this.left = left;
+        this.right = right;
+        height = Math.max(height(left), height(right)) + 1;
+    }
+
+    /**
+     * Return the key of a cell.
+     *
+     * @param column column of the cell
+     * @param row    row of the cell
+     * @return key ordering cells by column, then row
+     */
+    static long key(final int column, final int row) {
+        return ((long) column << 32) | (row - (long) Integer.MIN_VALUE);
+    }
+
+    /**
+     * Return the height of a grid.
+     *
+     * @param cell grid, null if empty
+     * @return height, 0 if empty
+     */
+    private static int height(final GridCell cell) {
+        return cell == null ? 0 : cell.height;
+    }
+
+    /**
+     * Build a balanced grid from cells sorted by key.
+     *
+     * @param keys   sorted cell keys
+     * @param shapes shapes of each cell, in the order of the keys
+     * @param from   first index, inclusive
+     * @param to     last index, exclusive
+     * @return balanced grid, null if the range is empty
+     */
+    static GridCell build(final long[] keys, final List<Shape[]> shapes, final int from, final int to) {
+        if (from >= to) {
+            return null;
+        }
+        final int middle = (from + to) >>> 1;
+        return new GridCell(keys[middle], shapes.get(middle),
+                build(keys, shapes, from, middle), build(keys, shapes, middle + 1, to));
+    }
+
+    /**
+     * Visit the shape arrays of the cells with keys in a range.
+     *
+     * @param cell    grid to search
+     * @param from    smallest key, inclusive
+     * @param to      largest key, inclusive
+     * @param visitor receives the shapes of each cell in the range
+     */
+    static void forEachInRange(final GridCell cell, final long from, final long to, final Consumer<Shape[]> visitor) {
+        if (cell == null) {
+            return;
+        }
+        if (from < cell.key) {
+            forEachInRange(cell.left, from, to, visitor);
+        }
+        if (from <= cell.key && cell.key <= to) {
+            visitor.accept(cell.shapes);
+        }
+        if (to > cell.key) {
+            forEachInRange(cell.right, from, to, visitor);
+        }
+    }
+
+    /**
+     * Return a grid with a shape added to a cell.
+     *
+     * @param cell  original grid
+     * @param key   key of the cell
+     * @param shape shape to add
+     * @return new grid
+     */
+    static GridCell add(final GridCell cell, final long key, final Shape shape) {
+        return addAll(cell, key, new Shape[]{shape});
+    }
+
+    /**
+     * Return a grid with shapes added to a cell, copying the cell's shape array once.
+     *
+     * @param cell   original grid
+     * @param key    key of the cell
+     * @param shapes shapes to add, not empty
+     * @return new grid
+     */
+    static GridCell addAll(final GridCell cell, final long key, final Shape[] shapes) {
+        if (cell == null) {
+            return new GridCell(key, shapes.clone(), null, null);
+        }
+        if (key < cell.key) {
+            return balance(cell.key, cell.shapes, addAll(cell.left, key, shapes), cell.right);
+        }
+        if (key > cell.key) {
+            return balance(cell.key, cell.shapes, cell.left, addAll(cell.right, key, shapes));
+        }
+        final Shape[] merged = Arrays.copyOf(cell.shapes, cell.shapes.length + shapes.length);
+        System.arraycopy(shapes, 0, merged, cell.shapes.length, shapes.length);
+        return new GridCell(key, merged, cell.left, cell.right);
+    }
+
+    /**
+     * Return a grid with a shape removed from a cell, dropping the cell once it is empty.
+     *
+     * @param cell  original grid
+     * @param key   key of the cell
+     * @param shape shape to remove, compared by identity
+     * @return new grid, the same grid if the shape is not in the cell
+     */
+    static GridCell remove(final GridCell cell, final long key, final Shape shape) {
+        if (cell == null) {
+            return null;
+        }
+        if (key < cell.key) {
+            final GridCell left = remove(cell.left, key, shape);
+            return left == cell.left ? cell : balance(cell.key, cell.shapes, left, cell.right);
+        }
+        if (key > cell.key) {
+            final GridCell right = remove(cell.right, key, shape);
+            return right == cell.right ? cell : balance(cell.key, cell.shapes, cell.left, right);
+        }
+        int position = 0;
+        while (position < cell.shapes.length && cell.shapes[position] != shape) {
+            position++;
+        }
+        if (position == cell.shapes.length) {
+            return cell;
+        }
+        if (cell.shapes.length > 1) {
+            final Shape[] shapes = new Shape[cell.shapes.length - 1];
+            System.arraycopy(cell.shapes, 0, shapes, 0, position);
+            System.arraycopy(cell.shapes, position + 1, shapes, position, shapes.length - position);
+            return new GridCell(key, shapes, cell.left, cell.right);
+        }
+        if (cell.left == null) {
+            return cell.right;
+        }
+        if (cell.right == null) {
+            return cell.left;
+        }
+        GridCell first = cell.right;
+        while (first.left != null) {
+            first = first.left;
+        }
+        return balance(first.key, first.shapes, cell.left, removeFirst(cell.right));
+    }
+
+    /**
+     * Return a grid without its smallest cell.
+     *
+     * @param cell original grid, not empty
+     * @return new grid
+     */
+    private static GridCell removeFirst(final GridCell cell) {
+        if (cell.left == null) {
+            return cell.right;
+        }
+        return balance(cell.key, cell.shapes, removeFirst(cell.left), cell.right);
+    }
+
+    /**
+     * Create a node, rotating it if its subtrees differ in height by more than one.
+     *
+     * @param key    key of the cell
+     * @param shapes shapes of the cell
+     * @param left   subtree of smaller keys
+     * @param right  subtree of larger keys
+     * @return balanced node
+     */
+    private static GridCell balance(final long key, final Shape[] shapes, final GridCell left, final GridCell right) {
+        final int difference = height(left) - height(right);
+        if (difference > 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new GridCell(left.key, left.shapes, left.left, new GridCell(key, shapes, left.right, right));
+            }
+            return new GridCell(left.right.key, left.right.shapes,
+                    new GridCell(left.key, left.shapes, left.left, left.right.left),
+                    new GridCell(key, shapes, left.right.right, right));
+        }
+        if (difference < -1) {
+            if (height(right.right) >= height(right.left)) {
+                return new GridCell(right.key, right.shapes, new GridCell(key, shapes, left, right.left), right.right);
+            }
+            return new GridCell(right.left.key, right.left.shapes,
+                    new GridCell(key, shapes, left, right.left.left),
+                    new GridCell(right.key, right.shapes, right.left.right, right.right));
+        }
+        return new GridCell(key, shapes, left, right);
+    }
+}
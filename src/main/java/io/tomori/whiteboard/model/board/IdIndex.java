@@ -0,0 +1,202 @@
+package io.tomori.whiteboard.model.board;
+
+import io.tomori.whiteboard.model.shapes.Shape;
+
+import java.util.List;
+
+/**
+ * Immutable node of a persistent AVL tree mapping shape IDs to shapes.
+ * Updates copy only the path to the changed key, sharing the rest with the previous version. A null node is the
+ * empty index.
+ */
+final class IdIndex {
+    /**
+     * ID of the shape
+     */
+    final String id;
+    /**
+     * Shape with the ID
+     */
+    final Shape shape;
+    /**
+     * Subtree of smaller IDs
+     */
+    final IdIndex left;
+    /**
+     * Subtree of larger IDs
+     */
+    final IdIndex right;
+    /**
+     * Height of this subtree
+     */
+    final int height;
+
+    /**
+     * Create a node from its entry and subtrees.
+     *
+     * @param shape shape stored at the node, keyed by its ID
+     * @param left  subtree of smaller IDs
+     * @param right subtree of larger IDs
+     */
+    private IdIndex(final Shape shape, final IdIndex left, final IdIndex right) {
+        id = shape.getId();
+        this.shape = shape;
+        this.left = left;
+        this.right = right;
+        height = Math.max(height(left), height(right)) + 1;
+    }
+
+    /**
+     * Return the height of an index.
+     *
+     * @param index index, null if empty
+     * @return height, 0 if empty
+     */
+    private static int height(final IdIndex index) {
+        return index == null ? 0 : index.height;
+    }
+
+    /**
+     * Build a balanced index from shapes sorted by ID.
+     *
+     * @param shapes shapes sorted by ID, without duplicate IDs
+     * @param from   first index, inclusive
+     * @param to     last index, exclusive
+     * @return balanced index, null if the range is empty
+     */
+    static IdIndex build(final List<? extends Shape> shapes, final int from, final int to) {
+        if (from >= to) {
+            return null;
+        }
+        final int middle = (from + to) >>> 1;
+        return new IdIndex(shapes.get(middle), build(shapes, from, middle), build(shapes, middle + 1, to));
+    }
+
+    /**
+     * Return the shape with an ID.
+     *
+     * @param index index to search
+     * @param id    ID of the shape
+     * @return shape with the ID, or null if absent
+     */
+    static Shape get(IdIndex index, final String id) {
+        while (index != null) {
+            final int comparison = id.compareTo(index.id);
+            if (comparison < 0) {
+                index = index.left;
+            } else if (comparison > 0) {
+                index = index.right;
+            } else {
+                return index.shape;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Add the shapes whose ID starts with a prefix to a list, in ID order.
+     * Only subtrees that can hold such IDs are visited.
+     *
+     * @param index  index to search
+     * @param prefix ID prefix
+     * @param out    list receiving the shapes
+     */
+    static void collectPrefix(final IdIndex index, final String prefix, final List<Shape> out) {
+        if (index == null) {
+            return;
+        }
+        final boolean matches = index.id.startsWith(prefix);
+        if (matches || index.id.compareTo(prefix) > 0) {
+            collectPrefix(index.left, prefix, out);
+        }
+        if (matches) {
+            out.add(index.shape);
+        }
+        if (matches || index.id.compareTo(prefix) < 0) {
+            collectPrefix(index.right, prefix, out);
+        }
+    }
+
+    /**
+     * Return an index with a shape added or replaced under its ID.
+     *
+     * @param index original index
+     * @param shape shape to store
+     * @return new index
+     */
+    static IdIndex put(final IdIndex index, final Shape shape) {
+        if (index == null) {
+            return new IdIndex(shape, null, null);
+        }
+        final int comparison = shape.getId().compareTo(index.id);
+        if (comparison < 0) {
+            return balance(index.shape, put(index.left, shape), index.right);
+        }
+        if (comparison > 0) {
+            return balance(index.shape, index.left, put(index.right, shape));
+        }
+        return new IdIndex(shape, index.left, index.right);
+    }
+
+    /**
+     * Return an index without an ID.
+     *
+     * @param index original index
+     * @param id    ID to remove
+     * @return new index, the same index if the ID is absent
+     */
+    static IdIndex remove(final IdIndex index, final String id) {
+        if (index == null) {
+            return null;
+        }
+        final int comparison = id.compareTo(index.id);
+        if (comparison < 0) {
+            final IdIndex left = remove(index.left, id);
+            return left == index.left ? index : balance(index.shape, left, index.right);
+        }
+        if (comparison > 0) {
+            final IdIndex right = remove(index.right, id);
+            return right == index.right ? index : balance(index.shape, index.left, right);
+        }
+        if (index.left == null) {
+            return index.right;
+        }
+        if (index.right == null) {
+            return index.left;
+        }
+        IdIndex first = index.right;
+        while (first.left != null) {
+            first = first.left;
+        }
+        return balance(first.shape, index.left, remove(index.right, first.id));
+    }
+
+    /**
+     * Create a node, rotating it if its subtrees differ in height by more than one.
+     *
+     * @param shape shape stored at the node
+     * @param left  subtree of smaller IDs
+     * @param right subtree of larger IDs
+     * @return balanced node
+     */
+    private static IdIndex balance(final Shape shape, final IdIndex left, final IdIndex right) {
+        final int difference = height(left) - height(right);
+        if (difference > 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new IdIndex(left.shape, left.left, new IdIndex(shape, left.right, right));
+            }
+            return new IdIndex(left.right.shape,
+                    new IdIndex(left.shape, left.left, left.right.left),
+                    new IdIndex(shape, left.right.right, right));
+        }
+        if (difference < -1) {
+            if (height(right.right) >= height(right.left)) {
+                return new IdIndex(right.shape, new IdIndex(shape, left, right.left), right.right);
+            }
+            return new IdIndex(right.left.shape,
+                    new IdIndex(shape, left, right.left.left),
+                    new IdIndex(right.shape, right.left.right, right.right));
+        }
+        return new IdIndex(shape, left, right);
+    }
+}
@@ -0,0 +1,178 @@
+package io.tomori.whiteboard.model.board;
+
+import io.tomori.whiteboard.model.Color;
+import io.tomori.whiteboard.model.shapes.Shape;
+
+import java.awt.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Filter over the shapes of a board, listed page by page in z-order.
+ * A region or ID prefix narrows the candidates through the indexes of the snapshot; type and color are checked
+ * on the candidates. Pages continue from a cursor naming the last shape examined, so listing stays consistent
+ * while the board changes between pages.
+ */
+public final class ShapeQuery {
+    /**
+     * Maximum number of candidates examined for one page, a page may end early with a cursor when filters are sparse
+     */
+    private static final int MAX_EXAMINED = 65536;
+    /**
+     * Suffix of shape type identifiers, optional in type filters
+     */
+    private static final String TYPE_SUFFIX = "_SHAPE";
+    /**
+     * Region the shapes must intersect, null for any
+     */
+    private final Rectangle region;
+    /**
+     * Accepted type identifiers, empty for any
+     */
+    private final Set<String> types;
+    /**
+     * Stroke or fill color the shapes must have, null for any
+     */
+    private final Color color;
+    /**
+     * Prefix the shape IDs must start with, null for any
+     */
+    private final String idPrefix;
+
+    /**
+     * Create a query.
+     *
+     * @param region   region the shapes must intersect, null for any
+     * @param types    accepted types, such as "circle" or "CIRCLE_SHAPE", null or empty for any
+     * @param color    stroke or fill color the shapes must have, null for any
+     * @param idPrefix prefix the shape IDs must start with, null or empty for any
+     */
+    public ShapeQuery(final Rectangle region, final Collection<String> types, final Color color, final String idPrefix) {
+        this.region = region == null ? null : new Rectangle(region);
+        this.types = types == null ? Set.of() : types.stream().map(ShapeQuery::toTypeId).collect(Collectors.toSet());
+        this.color = color;
+        this.idPrefix = idPrefix == null || idPrefix.isEmpty() ? null : idPrefix;
+    }
+
+    /**
+     * Return the next page of matching shapes.
+     *
+     * @param snapshot board to list
+     * @param cursor   cursor returned with the previous page, null for the first page
+     * @param limit    maximum number of shapes in the page
+     * @return matching shapes after the cursor in z-order
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public Page page(final BoardSnapshot snapshot, final String cursor, final int limit) {
+        final List<Shape> candidates;
+        if (region != null) {
+            candidates = snapshot.query(region);
+        } else if (idPrefix != null) {
+            candidates = snapshot.queryIdPrefix(idPrefix);
+        } else {
+            candidates = snapshot;
+        }
+        int index = cursor == null ? 0 : firstAfter(candidates, cursor);
+        final int end = (int) Math.min(candidates.size(), (long) index + MAX_EXAMINED);
+        final List<Shape> shapes = new ArrayList<>();
+        while (index < end && shapes.size() < limit) {
+            final Shape shape = candidates.get(index++);
+            if (matches(shape)) {
+                shapes.add(shape);
+            }
+        }
+        final String next = index < candidates.size() ? toCursor(candidates.get(index - 1)) : null;
+        return new Page(shapes, next);
+    }
+
+    /**
+     * Check whether a shape passes the filters not served by an index.
+     *
+     * @param shape shape to check
+     * @return true if the shape matches
+     */
+    private boolean matches(final Shape shape) {
+        if (!types.isEmpty() && !types.contains(shape.getTypeId())) {
+            return false;
+        }
+        if (color != null && !color.equals(shape.getColor()) && !color.equals(shape.getFill())) {
+            return false;
+        }
+        return idPrefix == null || shape.getId().startsWith(idPrefix);
+    }
+
+    /**
+     * Return the position of the first candidate after the shape named by a cursor.
+     *
+     * @param candidates shapes in z-order
+     * @param cursor     cursor naming a shape, which may no longer exist
+     * @return position of the first later shape
+     */
+    private static int firstAfter(final List<Shape> candidates, final String cursor) {
+        final String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (final IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        final int separator = decoded.indexOf('\n');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        final String zKey = decoded.substring(0, separator);
+        final String id = decoded.substring(separator + 1);
+        int low = 0;
+        int high = candidates.size();
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            final Shape shape = candidates.get(middle);
+            int comparison = shape.getZKey().compareTo(zKey);
+            if (comparison == 0) {
+                comparison = shape.getId().compareTo(id);
+            }
+            if (comparison <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Return a cursor naming a shape by its place in z-order.
+     *
+     * @param shape last shape examined
+     * @return opaque cursor
+     */
+    private static String toCursor(final Shape shape) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((shape.getZKey() + "\n" + shape.getId()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Convert a type name to a shape type identifier.
+     *
+     * @param type type name, such as "circle" or "CIRCLE_SHAPE"
+     * @return type identifier
+     */
+    private static String toTypeId(final String type) {
+        final String upper = type.trim().toUpperCase(Locale.ROOT);
+        return upper.endsWith(TYPE_SUFFIX) ? upper : upper + TYPE_SUFFIX;
+    }
+
+    /**
+     * One page of a listing.
+     *
+     * @param shapes     matching shapes in z-order
+     * @param nextCursor cursor of the next page, null if the listing is complete
+     */
+    public record Page(List<Shape> shapes, String nextCursor) {
+    }
+}
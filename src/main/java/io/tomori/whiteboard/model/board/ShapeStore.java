@@ -0,0 +1,388 @@
+package io.tomori.whiteboard.model.board;
+
+import io.tomori.whiteboard.model.shapes.Shape;
+import io.tomori.whiteboard.util.ZKeyUtil;
+
+import java.awt.*;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * Mutable list of the whiteboard shapes backed by persistent snapshots.
+ * Every change derives a new snapshot in O(log n) and publishes it atomically, so readers can take a consistent
+ * snapshot at any time without locking or copying. Writers are serialized.
+ * Shapes are also indexed by ID and by area, and batched removals and updates rebuild the board in a single linear
+ * pass.
+ * The z-order is defined by each shape's fractional z-key. Inserting by position assigns the inserted shape a key
+ * between its neighbours, and moving a shape in the z-order only changes its own key.
+ */
+public class ShapeStore extends AbstractList<Shape> {
+    /**
+     * Latest published snapshot
+     */
+    private final AtomicReference<BoardSnapshot> current = new AtomicReference<>(BoardSnapshot.EMPTY);
+
+    /**
+     * Return the latest snapshot of the shapes.
+     *
+     * @return immutable snapshot
+     */
+    public BoardSnapshot getSnapshot() {
+        return current.get();
+    }
+
+    /**
+     * Return the shape at a position in the latest snapshot.
+     *
+     * @param index position in z-order
+     * @return shape at the position
+     */
+    @Override
+    public Shape get(final int index) {
+        return current.get().get(index);
+    }
+
+    /**
+     * Return the shape with an ID in the latest snapshot.
+     *
+     * @param id ID of the shape
+     * @return shape with the ID, or null if absent
+     */
+    public Shape getById(final String id) {
+        return current.get().getById(id);
+    }
+
+    /**
+     * Return the position of the shape with an ID in the latest snapshot.
+     *
+     * @param id ID of the shape
+     * @return position in z-order, or -1 if absent
+     */
+    public int indexOfId(final String id) {
+        return current.get().indexOfId(id);
+    }
+
+    /**
+     * Return the shapes whose painted or hit area intersects a region in the latest snapshot.
+     *
+     * @param region world region
+     * @return shapes in z-order
+     */
+    public List<Shape> query(final Rectangle region) {
+        return current.get().query(region);
+    }
+
+    /**
+     * Return the number of shapes in the latest snapshot.
+     *
+     * @return number of shapes
+     */
+    @Override
+    public int size() {
+        return current.get().size();
+    }
+
+    /**
+     * Return an iterator over the latest snapshot, unaffected by later changes.
+     *
+     * @return read-only iterator
+     */
+    @Override
+    public Iterator<Shape> iterator() {
+        return current.get().iterator();
+    }
+
+    /**
+     * Append a shape on top, assigning it a z-key above all others.
+     *
+     * @param shape shape to append
+     * @return True
+     */
+    @Override
+    public synchronized boolean add(final Shape shape) {
+        final BoardSnapshot snapshot = current.get();
+        shape.setZKey(keyAt(snapshot, snapshot.size()));
+        publish(snapshot.withInserted(shape));
+        return true;
+    }
+
+    /**
+     * Insert a shape at a position, assigning it a z-key between its neighbours.
+     * If concurrent edits gave both neighbours the same key, the shape goes above all shapes sharing that key.
+     *
+     * @param index position to insert at
+     * @param shape shape to insert
+     */
+    @Override
+    public synchronized void add(final int index, final Shape shape) {
+        final BoardSnapshot snapshot = current.get();
+        if (index < 0 || index > snapshot.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + snapshot.size());
+        }
+        shape.setZKey(keyAt(snapshot, index));
+        publish(snapshot.withInserted(shape));
+    }
+
+    /**
+     * Insert a shape at the position given by its own z-key, replacing any shape with the same ID.
+     * A shape without a z-key is placed on top.
+     *
+     * @param shape shape to insert or update
+     * @return replaced shape, or null if the ID was not on the board
+     */
+    public synchronized Shape put(final Shape shape) {
+        BoardSnapshot snapshot = current.get();
+        final int index = snapshot.indexOfId(shape.getId());
+        final Shape replaced = index < 0 ? null : snapshot.get(index);
+        if (replaced != null && replaced.getZKey().equals(shape.getZKey())) {
+            publish(snapshot.withReplaced(index, shape));
+            return replaced;
+        }
+        if (replaced != null) {
+            snapshot = snapshot.withRemoved(index);
+        }
+        if (shape.getZKey() == null) {
+            shape.setZKey(keyAt(snapshot, snapshot.size()));
+        }
+        publish(snapshot.withInserted(shape));
+        return replaced;
+    }
+
+    /**
+     * Replace the shape at a position, keeping the position by giving the new shape the same z-key.
+     *
+     * @param index position to replace
+     * @param shape new shape
+     * @return replaced shape
+     */
+    @Override
+    public synchronized Shape set(final int index, final Shape shape) {
+        final BoardSnapshot snapshot = current.get();
+        final Shape replaced = snapshot.get(index);
+        shape.setZKey(replaced.getZKey());
+        publish(snapshot.withReplaced(index, shape));
+        return replaced;
+    }
+
+    /**
+     * Remove the shape at a position.
+     *
+     * @param index position to remove
+     * @return removed shape
+     */
+    @Override
+    public synchronized Shape remove(final int index) {
+        final BoardSnapshot snapshot = current.get();
+        final Shape removed = snapshot.get(index);
+        publish(snapshot.withRemoved(index));
+        return removed;
+    }
+
+    /**
+     * Append shapes on top, publishing a single new snapshot.
+     *
+     * @param shapes shapes to append
+     * @return True if any shape was appended
+     */
+    @Override
+    public synchronized boolean addAll(final Collection<? extends Shape> shapes) {
+        if (shapes.isEmpty()) {
+            return false;
+        }
+        BoardSnapshot snapshot = current.get();
+        for (final Shape shape : shapes) {
+            shape.setZKey(keyAt(snapshot, snapshot.size()));
+            snapshot = snapshot.withInserted(shape);
+        }
+        publish(snapshot);
+        return true;
+    }
+
+    /**
+     * Insert shapes at the positions given by their own z-keys, publishing a single new snapshot.
+     *
+     * @param shapes shapes with z-keys and IDs not on the board
+     * @throws IllegalArgumentException if a shape has no z-key or its ID is already on the board
+     */
+    public synchronized void insertAll(final Collection<? extends Shape> shapes) {
+        if (shapes.isEmpty()) {
+            return;
+        }
+        publish(current.get().withAllInserted(shapes));
+    }
+
+    /**
+     * Remove the shapes matching a condition in a single pass.
+     *
+     * @param filter condition of the shapes to remove
+     * @return True if any shape was removed
+     */
+    @Override
+    public boolean removeIf(final Predicate<? super Shape> filter) {
+        return !removeMatching(filter).isEmpty();
+    }
+
+    /**
+     * Remove the shapes with any of the specified IDs, locating each through the ID index.
+     *
+     * @param ids IDs of the shapes to remove
+     * @return removed shapes in z-order
+     */
+    public synchronized List<Shape> removeAllById(final Collection<String> ids) {
+        final BoardSnapshot snapshot = current.get();
+        final List<Shape> removed = new ArrayList<>();
+        for (final String id : new HashSet<>(ids)) {
+            final Shape shape = snapshot.getById(id);
+            if (shape != null) {
+                removed.add(shape);
+            }
+        }
+        if (!removed.isEmpty()) {
+            publish(snapshot.withAllRemoved(removed));
+            removed.sort(ShapeTree.Z_ORDER);
+        }
+        return removed;
+    }
+
+    /**
+     * Replace the shapes having the IDs of the specified shapes, keeping their positions and locating each through
+     * the ID index.
+     * The new versions are given the z-keys of the shapes they replace. Shapes whose ID is not on the board are
+     * ignored.
+     *
+     * @param shapes new versions of the shapes
+     * @return replaced shapes in z-order
+     */
+    public synchronized List<Shape> replaceAllById(final Collection<? extends Shape> shapes) {
+        final Map<String, Shape> updates = new HashMap<>();
+        for (final Shape shape : shapes) {
+            updates.put(shape.getId(), shape);
+        }
+        final BoardSnapshot snapshot = current.get();
+        final List<Shape> replaced = new ArrayList<>();
+        final List<Shape> updated = new ArrayList<>();
+        for (final Shape update : updates.values()) {
+            final Shape shape = snapshot.getById(update.getId());
+            if (shape != null) {
+                update.setZKey(shape.getZKey());
+                replaced.add(shape);
+                updated.add(update);
+            }
+        }
+        if (!replaced.isEmpty()) {
+            publish(snapshot.withAllReplaced(updated));
+            replaced.sort(ShapeTree.Z_ORDER);
+        }
+        return replaced;
+    }
+
+    /**
+     * Remove the shapes contained in a collection in a single pass.
+     *
+     * @param shapes shapes to remove
+     * @return True if any shape was removed
+     */
+    @Override
+    public boolean removeAll(final Collection<?> shapes) {
+        return removeIf(shapes::contains);
+    }
+
+    /**
+     * Remove the shapes not contained in a collection in a single pass.
+     *
+     * @param shapes shapes to keep
+     * @return True if any shape was removed
+     */
+    @Override
+    public boolean retainAll(final Collection<?> shapes) {
+        return removeIf(shape -> !shapes.contains(shape));
+    }
+
+    /**
+     * Remove all shapes.
+     */
+    @Override
+    public synchronized void clear() {
+        if (!current.get().isEmpty()) {
+            publish(current.get().withShapes(List.of()));
+        }
+    }
+
+    /**
+     * Replace all shapes, publishing a single new snapshot.
+     * Shapes are ordered by their z-keys if all of them have one, otherwise they are given new keys in list order.
+     *
+     * @param shapes new shapes
+     */
+    public synchronized void reset(final List<? extends Shape> shapes) {
+        final List<Shape> ordered = new ArrayList<>(shapes);
+        if (ordered.stream().allMatch(shape -> shape.getZKey() != null)) {
+            ordered.sort(ShapeTree.Z_ORDER);
+        } else {
+            String key = null;
+            for (final Shape shape : ordered) {
+                key = ZKeyUtil.between(key, null);
+                shape.setZKey(key);
+            }
+        }
+        publish(current.get().withShapes(ordered));
+    }
+
+    /**
+     * Generate a z-key for a shape inserted at a position.
+     *
+     * @param snapshot snapshot to insert into
+     * @param index    position to insert at
+     * @return key between the neighbours at the position
+     */
+    private static String keyAt(final BoardSnapshot snapshot, final int index) {
+        final String lower = index > 0 ? snapshot.get(index - 1).getZKey() : null;
+        int next = index;
+        while (next < snapshot.size() && snapshot.get(next).getZKey().equals(lower)) {
+            next++;
+        }
+        return ZKeyUtil.between(lower, next < snapshot.size() ? snapshot.get(next).getZKey() : null);
+    }
+
+    /**
+     * Remove the shapes matching a condition in a single pass.
+     *
+     * @param filter condition of the shapes to remove
+     * @return removed shapes in z-order
+     */
+    private synchronized List<Shape> removeMatching(final Predicate<? super Shape> filter) {
+        final BoardSnapshot snapshot = current.get();
+        final List<Shape> kept = new ArrayList<>(snapshot.size());
+        final List<Shape> removed = new ArrayList<>();
+        for (final Shape shape : snapshot) {
+            if (filter.test(shape)) {
+                removed.add(shape);
+            } else {
+                kept.add(shape);
+            }
+        }
+        if (!removed.isEmpty()) {
+            publish(snapshot.withBatch(kept, removed, List.of()));
+        }
+        return removed;
+    }
+
+    /**
+     * Publish a new snapshot to readers.
+     *
+     * @param snapshot new snapshot
+     */
+    private void publish(final BoardSnapshot snapshot) {
+        current.set(snapshot);
+        modCount++;
+    }
+}
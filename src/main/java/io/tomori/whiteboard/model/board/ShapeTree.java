@@ -0,0 +1,266 @@
+package io.tomori.whiteboard.model.board;
+
+import io.tomori.whiteboard.model.shapes.Shape;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable node of a persistent AVL tree holding shapes in z-order.
+ * Shapes are ordered by z-key, then by ID for shapes given the same key concurrently. Subtree sizes allow access by
+ * position. Updates copy only the path from the root to the changed node, so every version shares the rest of its
+ * nodes with the previous one. A null node is the empty tree.
+ */
+final class ShapeTree {
+    /**
+     * Z-order of shapes: by z-key, then by ID
+     */
+    static final Comparator<Shape> Z_ORDER = Comparator.comparing(Shape::getZKey).thenComparing(Shape::getId);
+    /**
+     * Shape stored at this node
+     */
+    final Shape shape;
+    /**
+     * Subtree of shapes below this one in z-order
+     */
+    final ShapeTree left;
+    /**
+     * Subtree of shapes above this one in z-order
+     */
+    final ShapeTree right;
+    /**
+     * Number of shapes in this subtree
+     */
+    final int size;
+    /**
+     * Height of this subtree
+     */
+    final int height;
+
+    /**
+     * Create a node from its shape and subtrees.
+     *
+     * @param shape shape stored at the node
+     * @param left  subtree below in z-order
+     * @param right subtree above in z-order
+     */
+    private ShapeTree(final Shape shape, final ShapeTree left, final ShapeTree right) {
+        this.shape = shape;
+        this.left = left;
+        this.right = right;
+        size = size(left) + size(right) + 1;
+        height = Math.max(height(left), height(right)) + 1;
+    }
+
+    /**
+     * Return the number of shapes in a tree.
+     *
+     * @param tree tree, null if empty
+     * @return number of shapes
+     */
+    static int size(final ShapeTree tree) {
+        return tree == null ? 0 : tree.size;
+    }
+
+    /**
+     * Return the height of a tree.
+     *
+     * @param tree tree, null if empty
+     * @return height, 0 if empty
+     */
+    private static int height(final ShapeTree tree) {
+        return tree == null ? 0 : tree.height;
+    }
+
+    /**
+     * Build a balanced tree from shapes in z-order.
+     *
+     * @param shapes shapes sorted by z-order
+     * @param from   first index, inclusive
+     * @param to     last index, exclusive
+     * @return balanced tree, null if the range is empty
+     */
+    static ShapeTree build(final List<? extends Shape> shapes, final int from, final int to) {
+        if (from >= to) {
+            return null;
+        }
+        final int middle = (from + to) >>> 1;
+        return new ShapeTree(shapes.get(middle), build(shapes, from, middle), build(shapes, middle + 1, to));
+    }
+
+    /**
+     * Return the shape at a position.
+     *
+     * @param tree  tree to search
+     * @param index position in z-order
+     * @return shape at the position
+     */
+    static Shape get(ShapeTree tree, int index) {
+        while (tree != null) {
+            final int leftSize = size(tree.left);
+            if (index < leftSize) {
+                tree = tree.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                tree = tree.right;
+            } else {
+                return tree.shape;
+            }
+        }
+        throw new IndexOutOfBoundsException();
+    }
+
+    /**
+     * Return the position of a shape.
+     *
+     * @param tree  tree to search
+     * @param shape shape to find, compared by z-key and ID
+     * @return position in z-order, or -1 if absent
+     */
+    static int rank(ShapeTree tree, final Shape shape) {
+        int index = 0;
+        while (tree != null) {
+            final int comparison = Z_ORDER.compare(shape, tree.shape);
+            if (comparison < 0) {
+                tree = tree.left;
+            } else if (comparison > 0) {
+                index += size(tree.left) + 1;
+                tree = tree.right;
+            } else {
+                return index + size(tree.left);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return a tree with a shape inserted at the position given by its z-key.
+     *
+     * @param tree  original tree
+     * @param shape shape to insert
+     * @return new tree
+     */
+    static ShapeTree insert(final ShapeTree tree, final Shape shape) {
+        if (tree == null) {
+            return new ShapeTree(shape, null, null);
+        }
+        if (Z_ORDER.compare(shape, tree.shape) < 0) {
+            return balance(tree.shape, insert(tree.left, shape), tree.right);
+        }
+        return balance(tree.shape, tree.left, insert(tree.right, shape));
+    }
+
+    /**
+     * Return a tree with the shape at a position replaced by a shape with the same z-key.
+     *
+     * @param tree  original tree
+     * @param index position to replace
+     * @param shape new shape
+     * @return new tree
+     */
+    static ShapeTree set(final ShapeTree tree, final int index, final Shape shape) {
+        final int leftSize = size(tree.left);
+        if (index < leftSize) {
+            return new ShapeTree(tree.shape, set(tree.left, index, shape), tree.right);
+        }
+        if (index > leftSize) {
+            return new ShapeTree(tree.shape, tree.left, set(tree.right, index - leftSize - 1, shape));
+        }
+        return new ShapeTree(shape, tree.left, tree.right);
+    }
+
+    /**
+     * Return a tree with the shape at a position removed.
+     *
+     * @param tree  original tree
+     * @param index position to remove
+     * @return new tree
+     */
+    static ShapeTree remove(final ShapeTree tree, final int index) {
+        final int leftSize = size(tree.left);
+        if (index < leftSize) {
+            return balance(tree.shape, remove(tree.left, index), tree.right);
+        }
+        if (index > leftSize) {
+            return balance(tree.shape, tree.left, remove(tree.right, index - leftSize - 1));
+        }
+        if (tree.left == null) {
+            return tree.right;
+        }
+        if (tree.right == null) {
+            return tree.left;
+        }
+        return balance(get(tree.right, 0), tree.left, remove(tree.right, 0));
+    }
+
+    /**
+     * Create a node, rotating it if its subtrees differ in height by more than one.
+     *
+     * @param shape shape stored at the node
+     * @param left  subtree below in z-order
+     * @param right subtree above in z-order
+     * @return balanced node
+     */
+    private static ShapeTree balance(final Shape shape, final ShapeTree left, final ShapeTree right) {
+        final int difference = height(left) - height(right);
+        if (difference > 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new ShapeTree(left.shape, left.left, new ShapeTree(shape, left.right, right));
+            }
+            return new ShapeTree(left.right.shape,
+                    new ShapeTree(left.shape, left.left, left.right.left),
+                    new ShapeTree(shape, left.right.right, right));
+        }
+        if (difference < -1) {
+            if (height(right.right) >= height(right.left)) {
+                return new ShapeTree(right.shape, new ShapeTree(shape, left, right.left), right.right);
+            }
+            return new ShapeTree(right.left.shape,
+                    new ShapeTree(shape, left, right.left.left),
+                    new ShapeTree(right.shape, right.left.right, right.right));
+        }
+        return new ShapeTree(shape, left, right);
+    }
+
+    /**
+     * Return an iterator over the shapes of a tree in z-order.
+     *
+     * @param tree tree to iterate
+     * @return in-order iterator
+     */
+    static Iterator<Shape> iterator(final ShapeTree tree) {
+        return new Iterator<>() {
+            private final Deque<ShapeTree> path = new ArrayDeque<>();
+
+            {
+                pushLeft(tree);
+            }
+
+            private void pushLeft(ShapeTree node) {
+                while (node != null) {
+                    path.push(node);
+                    node = node.left;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public Shape next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                final ShapeTree node = path.pop();
+                pushLeft(node.right);
+                return node.shape;
+            }
+        };
+    }
+}
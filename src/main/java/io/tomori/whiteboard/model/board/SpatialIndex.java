@@ -0,0 +1,237 @@
+package io.tomori.whiteboard.model.board;
+
+import io.tomori.whiteboard.model.shapes.Shape;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Immutable spatial index of the shapes of a snapshot.
+ * Each shape is registered in the cells of a uniform grid covered by its painted and hit area, so region queries
+ * only look at shapes near the region. Shapes covering too many cells are kept in a separate list instead.
+ * Adding or removing a shape copies only the affected cells and shares the rest with the previous version.
+ */
+final class SpatialIndex {
+    /**
+     * Index without shapes
+     */
+    static final SpatialIndex EMPTY = new SpatialIndex(null, null);
+    /**
+     * Width and height of a grid cell in world units
+     */
+    private static final int CELL_SIZE = 256;
+    /**
+     * Shapes covering more cells are kept out of the grid
+     */
+    private static final int MAX_CELLS = 64;
+    /**
+     * Queries spanning more columns visit every cell instead of one key range per column
+     */
+    private static final int MAX_QUERY_COLUMNS = 4096;
+    /**
+     * Grid of cells, null if empty
+     */
+    private final GridCell cells;
+    /**
+     * Shapes too large for the grid by ID, null if none
+     */
+    private final IdIndex large;
+
+    /**
+     * Create an index.
+     *
+     * @param cells grid of cells
+     * @param large shapes too large for the grid
+     */
+    private SpatialIndex(final GridCell cells, final IdIndex large) {
+        this.cells = cells;
+        this.large = large;
+    }
+
+    /**
+     * Build an index of shapes.
+     *
+     * @param shapes shapes to index
+     * @return new index
+     */
+    static SpatialIndex build(final Iterable<? extends Shape> shapes) {
+        final Map<Long, List<Shape>> grid = new TreeMap<>();
+        IdIndex large = null;
+        for (final Shape shape : shapes) {
+            final Rectangle range = cellRange(shape);
+            if (range == null) {
+                large = IdIndex.put(large, shape);
+                continue;
+            }
+            for (int column = range.x; column < range.x + range.width; column++) {
+                for (int row = range.y; row < range.y + range.height; row++) {
+                    grid.computeIfAbsent(GridCell.key(column, row), key -> new ArrayList<>(4)).add(shape);
+                }
+            }
+        }
+        final long[] keys = new long[grid.size()];
+        final List<Shape[]> cellShapes = new ArrayList<>(grid.size());
+        int i = 0;
+        for (final Map.Entry<Long, List<Shape>> entry : grid.entrySet()) {
+            keys[i++] = entry.getKey();
+            cellShapes.add(entry.getValue().toArray(new Shape[0]));
+        }
+        return new SpatialIndex(GridCell.build(keys, cellShapes, 0, keys.length), large);
+    }
+
+    /**
+     * Return an index with a shape added.
+     *
+     * @param shape shape to add
+     * @return new index
+     */
+    SpatialIndex with(final Shape shape) {
+        final Rectangle range = cellRange(shape);
+        if (range == null) {
+            return new SpatialIndex(cells, IdIndex.put(large, shape));
+        }
+        GridCell newCells = cells;
+        for (int column = range.x; column < range.x + range.width; column++) {
+            for (int row = range.y; row < range.y + range.height; row++) {
+                newCells = GridCell.add(newCells, GridCell.key(column, row), shape);
+            }
+        }
+        return new SpatialIndex(newCells, large);
+    }
+
+    /**
+     * Return an index with shapes added, copying each affected cell once however many shapes it receives.
+     *
+     * @param shapes shapes to add
+     * @return new index
+     */
+    SpatialIndex withAll(final Collection<? extends Shape> shapes) {
+        final Map<Long, List<Shape>> grid = new HashMap<>();
+        IdIndex newLarge = large;
+        for (final Shape shape : shapes) {
+            final Rectangle range = cellRange(shape);
+            if (range == null) {
+                newLarge = IdIndex.put(newLarge, shape);
+                continue;
+            }
+            for (int column = range.x; column < range.x + range.width; column++) {
+                for (int row = range.y; row < range.y + range.height; row++) {
+                    grid.computeIfAbsent(GridCell.key(column, row), key -> new ArrayList<>(4)).add(shape);
+                }
+            }
+        }
+        GridCell newCells = cells;
+        for (final Map.Entry<Long, List<Shape>> entry : grid.entrySet()) {
+            newCells = GridCell.addAll(newCells, entry.getKey(), entry.getValue().toArray(new Shape[0]));
+        }
+        return new SpatialIndex(newCells, newLarge);
+    }
+
+    /**
+     * Return an index with a shape removed.
+     *
+     * @param shape shape to remove, the same instance that was added
+     * @return new index
+     */
+    SpatialIndex without(final Shape shape) {
+        final Rectangle range = cellRange(shape);
+        if (range == null) {
+            return new SpatialIndex(cells, IdIndex.remove(large, shape.getId()));
+        }
+        GridCell newCells = cells;
+        for (int column = range.x; column < range.x + range.width; column++) {
+            for (int row = range.y; row < range.y + range.height; row++) {
+                newCells = GridCell.remove(newCells, GridCell.key(column, row), shape);
+            }
+        }
+        return new SpatialIndex(newCells, large);
+    }
+
+    /**
+     * Collect the shapes whose painted or hit area may intersect a region.
+     * The result can include shapes near the region that do not actually reach it.
+     *
+     * @param region world region
+     * @return candidate shapes without duplicates, in no particular order
+     */
+    List<Shape> query(final Rectangle region) {
+        final Set<Shape> found = Collections.newSetFromMap(new IdentityHashMap<>());
+        final int firstColumn = Math.floorDiv(region.x, CELL_SIZE);
+        final int lastColumn = Math.floorDiv(region.x + region.width, CELL_SIZE);
+        final int firstRow = Math.floorDiv(region.y, CELL_SIZE);
+        final int lastRow = Math.floorDiv(region.y + region.height, CELL_SIZE);
+        final Consumer<Shape[]> collector = shapes -> {
+            for (final Shape shape : shapes) {
+                found.add(shape);
+            }
+        };
+        if ((long) lastColumn - firstColumn > MAX_QUERY_COLUMNS) {
+            GridCell.forEachInRange(cells, Long.MIN_VALUE, Long.MAX_VALUE, collector);
+        } else {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                GridCell.forEachInRange(cells, GridCell.key(column, firstRow), GridCell.key(column, lastRow), collector);
+            }
+        }
+        addAll(large, found);
+        final List<Shape> result = new ArrayList<>(found.size());
+        for (final Shape shape : found) {
+            if (extent(shape).intersects(region)) {
+                result.add(shape);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Add every shape of an ID index to a set.
+     *
+     * @param index ID index
+     * @param found receives the shapes
+     */
+    private static void addAll(final IdIndex index, final Set<Shape> found) {
+        if (index != null) {
+            addAll(index.left, found);
+            found.add(index.shape);
+            addAll(index.right, found);
+        }
+    }
+
+    /**
+     * Return the area where a shape paints or can be hit.
+     *
+     * @param shape shape
+     * @return area in world coordinates
+     */
+    private static Rectangle extent(final Shape shape) {
+        final Rectangle extent = shape.getPaintBounds();
+        extent.add(shape.getHitBounds());
+        return extent;
+    }
+
+    /**
+     * Return the grid cells covered by a shape.
+     *
+     * @param shape shape
+     * @return first column and row with the numbers of columns and rows, or null if the shape covers too many cells
+     */
+    private static Rectangle cellRange(final Shape shape) {
+        final Rectangle extent = extent(shape);
+        final int firstColumn = Math.floorDiv(extent.x, CELL_SIZE);
+        final int firstRow = Math.floorDiv(extent.y, CELL_SIZE);
+        final long columns = Math.floorDiv((long) extent.x + extent.width, CELL_SIZE) - firstColumn + 1;
+        final long rows = Math.floorDiv((long) extent.y + extent.height, CELL_SIZE) - firstRow + 1;
+        if (columns * rows > MAX_CELLS) {
+            return null;
+        }
+        return new Rectangle(firstColumn, firstRow, (int) columns, (int) rows);
+    }
+}
@@ -0,0 +1,64 @@
+package io.tomori.whiteboard.model.operations;
+
+import io.tomori.whiteboard.model.board.ShapeStore;
+import io.tomori.whiteboard.model.shapes.Shape;
+
+import java.awt.*;
+import java.util.Set;
+
+/**
+ * Operation that inserts a shape into the shapes store.
+ */
+public class AddShapeOperation extends Operation {
+    /**
+     * Snapshot of the shape to insert, cloned on every application
+     */
+    private final Shape shape;
+
+    /**
+     * Create an operation that inserts a shape.
+     * A shape with a z-key goes back to that position in the z-order, a new shape without one goes on top.
+     *
+     * @param shape shape to add
+     */
+    public AddShapeOperation(final Shape shape) {
+        this.shape = shape.clone();
+    }
+
+    /**
+     * Insert a copy of the shape, unless a shape with the same ID is already present.
+     *
+     * @param shapes shapes store to modify
+     * @return painted area of the inserted shape
+     */
+    @Override
+    public Rectangle apply(final ShapeStore shapes) {
+        if (shapes.getById(shape.getId()) != null) {
+            return null;
+        }
+        final Shape added = shape.clone();
+        shapes.put(added);
+        return added.getPaintBounds();
+    }
+
+    /**
+     * Create the operation that removes the shape again.
+     *
+     * @return removal of the shape
+     */
+    @Override
+    public Operation inverse() {
+        return new RemoveShapeOperation(shape.getId());
+    }
+
+    /**
+     * Collect the ID of the added shape.
+     *
+     * @param changed   IDs of shapes added, removed or modified
+     * @param reordered IDs of shapes only moved in the z-order
+     */
+    @Override
+    public void collectShapeIds(final Set<String> changed, final Set<String> reordered) {
+        changed.add(shape.getId());
+    }
+}
@@ -0,0 +1,69 @@
+package io.tomori.whiteboard.model.operations;
+
+import io.tomori.whiteboard.model.board.ShapeStore;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Operation made of a sequence of operations, such as everything a tool did between mouse press and release.
+ */
+public class CompoundOperation extends Operation {
+    /**
+     * Operations in the order they are applied
+     */
+    private final List<Operation> operations;
+
+    /**
+     * Create an operation from a sequence of operations.
+     *
+     * @param operations operations in the order they are applied
+     */
+    public CompoundOperation(final List<Operation> operations) {
+        this.operations = List.copyOf(operations);
+    }
+
+    /**
+     * Apply every operation in order.
+     *
+     * @param shapes shapes store to modify
+     * @return union of the regions changed by the operations
+     */
+    @Override
+    public Rectangle apply(final ShapeStore shapes) {
+        Rectangle region = null;
+        for (final Operation operation : operations) {
+            region = union(region, operation.apply(shapes));
+        }
+        return region;
+    }
+
+    /**
+     * Create the operation that reverts every operation in reverse order.
+     *
+     * @return compound of the inverses
+     */
+    @Override
+    public Operation inverse() {
+        final List<Operation> inverses = new ArrayList<>(operations.size());
+        for (int i = operations.size() - 1; i >= 0; i--) {
+            inverses.add(operations.get(i).inverse());
+        }
+        return new CompoundOperation(inverses);
+    }
+
+    /**
+     * Collect the IDs of the shapes affected by every operation.
+     *
+     * @param changed   IDs of shapes added, removed or modified
+     * @param reordered IDs of shapes only moved in the z-order
+     */
+    @Override
+    public void collectShapeIds(final Set<String> changed, final Set<String> reordered) {
+        for (final Operation operation : operations) {
+            operation.collectShapeIds(changed, reordered);
+        }
+    }
+}
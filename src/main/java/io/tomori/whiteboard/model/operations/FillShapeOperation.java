@@ -0,0 +1,77 @@
+package io.tomori.whiteboard.model.operations;
+
+import io.tomori.whiteboard.model.Color;
+import io.tomori.whiteboard.model.board.ShapeStore;
+import io.tomori.whiteboard.model.shapes.Shape;
+
+import java.awt.*;
+import java.util.Set;
+
+/**
+ * Operation that changes the fill color of a shape.
+ */
+public class FillShapeOperation extends Operation {
+    /**
+     * ID of the shape to fill
+     */
+    private final String shapeId;
+    /**
+     * New fill color, null for no fill
+     */
+    private final Color fill;
+    /**
+     * Fill color before the operation, captured when applied
+     */
+    private Color previousFill = null;
+
+    /**
+     * Create an operation that fills a shape.
+     *
+     * @param shapeId ID of the shape to fill
+     * @param fill    new fill color, null for no fill
+     */
+    public FillShapeOperation(final String shapeId, final Color fill) {
+        this.shapeId = shapeId;
+        this.fill = fill;
+    }
+
+    /**
+     * Replace the shape with a filled copy, remembering the previous fill color.
+     *
+     * @param shapes shapes store to modify
+     * @return painted area of the shape, or null if it is not present
+     */
+    @Override
+    public Rectangle apply(final ShapeStore shapes) {
+        final int index = shapes.indexOfId(shapeId);
+        if (index < 0) {
+            return null;
+        }
+        final Shape filled = shapes.get(index).clone();
+        previousFill = filled.getFill();
+        filled.setFill(fill);
+        shapes.set(index, filled);
+        return filled.getPaintBounds();
+    }
+
+    /**
+     * Create the operation that restores the previous fill color.
+     *
+     * @return fill with the previous color
+     */
+    @Override
+    public Operation inverse() {
+        return new FillShapeOperation(shapeId, previousFill);
+    }
+
+    /**
+     * Collect the ID of the filled shape.
+     *
+     * @param changed   IDs of shapes added, removed or modified
+     * @param reordered IDs of shapes only moved in the z-order
+     */
+    @Override
+    public void collectShapeIds(final Set<String> changed, final Set<String> reordered) {
+        changed.add(shapeId);
+    }
+}
@@ -0,0 +1,93 @@
+package io.tomori.whiteboard.model.operations;
+
+import io.tomori.whiteboard.model.board.ShapeStore;
+import io.tomori.whiteboard.model.shapes.Shape;
+
+import java.awt.*;
+import java.util.Set;
+
+/**
+ * Operation that moves a shape by a distance.
+ */
+public class MoveShapeOperation extends Operation {
+    /**
+     * ID of the shape to move
+     */
+    private final String shapeId;
+    /**
+     * x-axis distance
+     */
+    private final int dx;
+    /**
+     * y-axis distance
+     */
+    private final int dy;
+
+    /**
+     * Create an operation that moves a shape.
+     *
+     * @param shapeId ID of the shape to move
+     * @param dx      x-axis distance
+     * @param dy      y-axis distance
+     */
+    public MoveShapeOperation(final String shapeId, final int dx, final int dy) {
+        this.shapeId = shapeId;
+        this.dx = dx;
+        this.dy = dy;
+    }
+
+    /**
+     * Replace the shape with a moved copy.
+     *
+     * @param shapes shapes store to modify
+     * @return painted area before and after the move, or null if the shape is not present
+     */
+    @Override
+    public Rectangle apply(final ShapeStore shapes) {
+        final int index = shapes.indexOfId(shapeId);
+        if (index < 0) {
+            return null;
+        }
+        final Shape moved = shapes.get(index).clone();
+        final Rectangle region = moved.getPaintBounds();
+        moved.move(dx, dy);
+        shapes.set(index, moved);
+        region.add(moved.getPaintBounds());
+        return region;
+    }
+
+    /**
+     * Create the operation that moves the shape back.
+     *
+     * @return move by the opposite distance
+     */
+    @Override
+    public Operation inverse() {
+        return new MoveShapeOperation(shapeId, -dx, -dy);
+    }
+
+    /**
+     * Combine consecutive moves of the same shape into one.
+     *
+     * @param next operation applied after this one
+     * @return move by the total distance, or null if next is not a move of the same shape
+     */
+    @Override
+    public Operation merge(final Operation next) {
+        if (next instanceof final MoveShapeOperation move && move.shapeId.equals(shapeId)) {
+            return new MoveShapeOperation(shapeId, dx + move.dx, dy + move.dy);
+        }
+        return null;
+    }
+
+    /**
+     * Collect the ID of the moved shape.
+     *
+     * @param changed   IDs of shapes added, removed or modified
+     * @param reordered IDs of shapes only moved in the z-order
+     */
+    @Override
+    public void collectShapeIds(final Set<String> changed, final Set<String> reordered) {
+        changed.add(shapeId);
+    }
+}
@@ -0,0 +1,64 @@
+package io.tomori.whiteboard.model.operations;
+
+import io.tomori.whiteboard.model.board.ShapeStore;
+
+import java.awt.*;
+import java.util.Set;
+
+/**
+ * Abstract class for reversible changes to the shapes store.
+ * Operations find their target shapes by ID, so they stay valid when the board is replaced by a remote update.
+ * An operation captures whatever its inverse needs while it is applied, so inverse() is only valid after apply().
+ * Shapes in the store are never modified in place; operations replace them with modified copies.
+ */
+public abstract class Operation {
+    /**
+     * Apply the operation to the shapes store.
+     *
+     * @param shapes shapes store to modify
+     * @return region whose painting changed, or null if nothing changed
+     */
+    public abstract Rectangle apply(ShapeStore shapes);
+
+    /**
+     * Create the operation that reverts the last application of this operation.
+     *
+     * @return inverse operation
+     */
+    public abstract Operation inverse();
+
+    /**
+     * Collect the IDs of the shapes affected by the last application of this operation.
+     *
+     * @param changed   IDs of shapes added, removed or modified
+     * @param reordered IDs of shapes only moved in the z-order
+     */
+    public abstract void collectShapeIds(final Set<String> changed, final Set<String> reordered);
+
+    /**
+     * Combine this operation with an operation applied right after it, such as consecutive moves of a shape.
+     *
+     * @param next operation applied after this one
+     * @return single operation with the combined effect, or null if they cannot be combined
+     */
+    public Operation merge(final Operation next) {
+        return null;
+    }
+
+    /**
+     * Extend a region by another region.
+     *
+     * @param region region to extend, null if empty
+     * @param other  region to add, null if empty
+     * @return combined region, null if both are empty
+     */
+    protected static Rectangle union(final Rectangle region, final Rectangle other) {
+        if (region == null) {
+            return other == null ? null : new Rectangle(other);
+        }
+        if (other != null) {
+            region.add(other);
+        }
+        return region;
+    }
+}
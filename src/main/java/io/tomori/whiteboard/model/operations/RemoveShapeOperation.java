@@ -0,0 +1,83 @@
+package io.tomori.whiteboard.model.operations;
+
+import io.tomori.whiteboard.model.board.ShapeStore;
+import io.tomori.whiteboard.model.shapes.Shape;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Operation that removes shapes from the shapes store in a single pass.
+ */
+public class RemoveShapeOperation extends Operation {
+    /**
+     * IDs of the shapes to remove
+     */
+    private final List<String> shapeIds;
+    /**
+     * Removed shapes with their z-keys, captured when applied
+     */
+    private List<Shape> removed = List.of();
+
+    /**
+     * Create an operation that removes a shape.
+     *
+     * @param shapeId ID of the shape to remove
+     */
+    public RemoveShapeOperation(final String shapeId) {
+        this(List.of(shapeId));
+    }
+
+    /**
+     * Create an operation that removes several shapes at once.
+     *
+     * @param shapeIds IDs of the shapes to remove
+     */
+    public RemoveShapeOperation(final Collection<String> shapeIds) {
+        this.shapeIds = List.copyOf(shapeIds);
+    }
+
+    /**
+     * Remove the shapes, remembering them.
+     *
+     * @param shapes shapes store to modify
+     * @return painted area of the removed shapes, or null if none was present
+     */
+    @Override
+    public Rectangle apply(final ShapeStore shapes) {
+        removed = shapes.removeAllById(shapeIds);
+        Rectangle region = null;
+        for (final Shape shape : removed) {
+            region = union(region, shape.getPaintBounds());
+        }
+        return region;
+    }
+
+    /**
+     * Create the operation that puts the shapes back at their z-keys.
+     *
+     * @return re-insertion of the removed shapes
+     */
+    @Override
+    public Operation inverse() {
+        final List<Operation> additions = new ArrayList<>(removed.size());
+        for (final Shape shape : removed) {
+            additions.add(new AddShapeOperation(shape));
+        }
+        return new CompoundOperation(additions);
+    }
+
+    /**
+     * Collect the IDs of the removed shapes.
+     *
+     * @param changed   IDs of shapes added, removed or modified
+     * @param reordered IDs of shapes only moved in the z-order
+     */
+    @Override
+    public void collectShapeIds(final Set<String> changed, final Set<String> reordered) {
+        changed.addAll(shapeIds);
+    }
+}
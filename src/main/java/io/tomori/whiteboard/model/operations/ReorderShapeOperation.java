@@ -0,0 +1,90 @@
+package io.tomori.whiteboard.model.operations;
+
+import io.tomori.whiteboard.model.board.ShapeStore;
+import io.tomori.whiteboard.model.shapes.Shape;
+import io.tomori.whiteboard.util.ZKeyUtil;
+
+import java.awt.*;
+import java.util.Set;
+
+/**
+ * Operation that moves a shape in the z-order by changing only its z-key.
+ */
+public class ReorderShapeOperation extends Operation {
+    /**
+     * ID of the shape to reorder
+     */
+    private final String shapeId;
+    /**
+     * Target z-key, null for the top
+     */
+    private final String zKey;
+    /**
+     * Z-key before the operation, captured when applied
+     */
+    private String previousZKey = null;
+
+    /**
+     * Create an operation that brings a shape to the front.
+     *
+     * @param shapeId ID of the shape to reorder
+     */
+    public ReorderShapeOperation(final String shapeId) {
+        this(shapeId, null);
+    }
+
+    /**
+     * Create an operation that gives a shape a z-key.
+     *
+     * @param shapeId ID of the shape to reorder
+     * @param zKey    target z-key, null for the top
+     */
+    public ReorderShapeOperation(final String shapeId, final String zKey) {
+        this.shapeId = shapeId;
+        this.zKey = zKey;
+    }
+
+    /**
+     * Replace the shape with a copy holding the target z-key, remembering the previous key.
+     *
+     * @param shapes shapes store to modify
+     * @return painted area of the shape, or null if it is not present or already in place
+     */
+    @Override
+    public Rectangle apply(final ShapeStore shapes) {
+        final int index = shapes.indexOfId(shapeId);
+        if (index < 0) {
+            return null;
+        }
+        final Shape shape = shapes.get(index);
+        previousZKey = shape.getZKey();
+        if (zKey == null && index == shapes.size() - 1 || previousZKey.equals(zKey)) {
+            return null;
+        }
+        final Shape reordered = shape.clone();
+        reordered.setZKey(zKey != null ? zKey : ZKeyUtil.between(shapes.getLast().getZKey(), null));
+        shapes.put(reordered);
+        return reordered.getPaintBounds();
+    }
+
+    /**
+     * Create the operation that restores the previous z-key.
+     *
+     * @return reorder to the previous z-key
+     */
+    @Override
+    public Operation inverse() {
+        return new ReorderShapeOperation(shapeId, previousZKey);
+    }
+
+    /**
+     * Collect the ID of the reordered shape.
+     *
+     * @param changed   IDs of shapes added, removed or modified
+     * @param reordered IDs of shapes only moved in the z-order
+     */
+    @Override
+    public void collectShapeIds(final Set<String> changed, final Set<String> reordered) {
+        reordered.add(shapeId);
+    }
+}
@@ -0,0 +1,72 @@
+package io.tomori.whiteboard.model.operations;
+
+import io.tomori.whiteboard.model.board.ShapeStore;
+import io.tomori.whiteboard.model.shapes.Shape;
+
+import java.awt.*;
+import java.util.Set;
+
+/**
+ * Operation that replaces a shape with a modified version of it, such as after a resize.
+ * Used for changes that cannot be reverted by a simple inverse computation.
+ */
+public class ReplaceShapeOperation extends Operation {
+    /**
+     * Snapshot of the shape before the change
+     */
+    private final Shape before;
+    /**
+     * Snapshot of the shape after the change
+     */
+    private final Shape after;
+
+    /**
+     * Create an operation that replaces a shape.
+     *
+     * @param before shape before the change
+     * @param after  shape after the change, with the same ID
+     */
+    public ReplaceShapeOperation(final Shape before, final Shape after) {
+        this.before = before.clone();
+        this.after = after.clone();
+    }
+
+    /**
+     * Replace the shape with a copy of the changed version.
+     *
+     * @param shapes shapes store to modify
+     * @return painted area of both versions, or null if the shape is not present
+     */
+    @Override
+    public Rectangle apply(final ShapeStore shapes) {
+        final int index = shapes.indexOfId(after.getId());
+        if (index < 0) {
+            return null;
+        }
+        final Shape replaced = shapes.set(index, after.clone());
+        final Rectangle region = replaced.getPaintBounds();
+        region.add(after.getPaintBounds());
+        return region;
+    }
+
+    /**
+     * Create the operation that restores the previous version.
+     *
+     * @return replacement with the versions swapped
+     */
+    @Override
+    public Operation inverse() {
+        return new ReplaceShapeOperation(after, before);
+    }
+
+    /**
+     * Collect the ID of the replaced shape.
+     *
+     * @param changed   IDs of shapes added, removed or modified
+     * @param reordered IDs of shapes only moved in the z-order
+     */
+    @Override
+    public void collectShapeIds(final Set<String> changed, final Set<String> reordered) {
+        changed.add(after.getId());
+    }
+}
@@ -3,11 +3,14 @@
 package io.tomori.whiteboard.model.shapes;
 
 import io.tomori.whiteboard.constant.ShapeConstant;
+import io.tomori.whiteboard.util.SvgElement;
+import io.tomori.whiteboard.util.SvgWriter;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
-import org.w3c.dom.Element;
 
 import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.io.IOException;
 
 /**
  * Circle shape implementation for the whiteboard.
@@ -43,12 +46,28 @@ public class CircleShape extends Shape {
         typeId = ShapeConstant.CIRCLE_SHAPE;
     }
 
+    /**
+     * Create a circle with the specified ID, center and radius.
+     *
+     * @param id     shape identifier
+     * @param x      x-coord of the center
+     * @param y      y-coord of the center
+     * @param radius radius of the circle
+     */
+    public CircleShape(final String id, final int x, final int y, final int radius) {
+        super(id);
+        this.x = x;
+        this.y = y;
+        this.radius = radius;
+        typeId = ShapeConstant.CIRCLE_SHAPE;
+    }
+
     /**
      * Create a circle from an SVG element.
      *
      * @param element SVG element
      */
-    public CircleShape(final Element element) {
+    public CircleShape(final SvgElement element) {
         super(element);
         try {
             x = Integer.parseInt(element.getAttribute("cx"));
@@ -60,6 +79,46 @@ public class CircleShape extends Shape {
         }
     }
 
+    /**
+     * Set the x-coord of the center point.
+     *
+     * @param x new x-coord of the center point
+     */
+    public void setX(final int x) {
+        this.x = x;
+        invalidate();
+    }
+
+    /**
+     * Set the y-coord of the center point.
+     *
+     * @param y new y-coord of the center point
+     */
+    public void setY(final int y) {
+        this.y = y;
+        invalidate();
+    }
+
+    /**
+     * Set the radius of the circle.
+     *
+     * @param radius new radius of the circle
+     */
+    public void setRadius(final int radius) {
+        this.radius = radius;
+        invalidate();
+    }
+
+    /**
+     * Create the ellipse outlining the circle.
+     *
+     * @return circle's geometry
+     */
+    @Override
+    protected java.awt.Shape createGeometry() {
+        return new Ellipse2D.Double(x - radius, y - radius, radius * 2, radius * 2);
+    }
+
     /**
      * Draw the circle on the graphics context.
      *
@@ -71,13 +130,13 @@ public class CircleShape extends Shape {
         final Color originalColor = g2d.getColor();
 
         if (fill != null) {
-            g2d.setColor(fill.toAwtColor());
-            g2d.fillOval(x - radius, y - radius, radius * 2, radius * 2);
+            g2d.setColor(getAwtFill());
+            g2d.fill(getGeometry());
         }
 
-        g2d.setStroke(new BasicStroke(strokeWidth));
-        g2d.setColor(color.toAwtColor());
-        g2d.drawOval(x - radius, y - radius, radius * 2, radius * 2);
+        g2d.setStroke(getStroke());
+        g2d.setColor(getAwtColor());
+        g2d.draw(getGeometry());
 
         g2d.setStroke(originalStroke);
         g2d.setColor(originalColor);
@@ -99,6 +158,19 @@ public class CircleShape extends Shape {
         return Math.abs(distance - radius) <= tolerance;
     }
 
+    /**
+     * Check if the circle's outline comes within a distance of a point.
+     *
+     * @param px       x-coord of the point
+     * @param py       y-coord of the point
+     * @param distance maximum distance from the outline
+     * @return True if the outline is within the distance
+     */
+    @Override
+    protected boolean isOutlineWithin(final double px, final double py, final double distance) {
+        return Math.abs(Math.hypot(px - x, py - y) - radius) <= distance;
+    }
+
     /**
      * Move the circle by the specified delta.
      *
@@ -109,15 +181,16 @@ public class CircleShape extends Shape {
     public void move(final int dx, final int dy) {
         x += dx;
         y += dy;
+        invalidate();
     }
 
     /**
-     * Get the bounding rectangle of the circle.
+     * Compute the bounding rectangle of the circle.
      *
      * @return circle's bounding rectangle
      */
     @Override
-    public Rectangle getBounds() {
+    protected Rectangle computeBounds() {
         return new Rectangle(x - radius, y - radius, radius * 2, radius * 2);
     }
 
@@ -132,20 +205,29 @@ public class CircleShape extends Shape {
         copy.setColor(color);
         copy.setStrokeWidth(strokeWidth);
         copy.setId(id);
+        copy.setZKey(zKey);
         copy.setFill(fill);
         return copy;
     }
 
     /**
-     * Convert the circle to an SVG string.
+     * Write the circle as an SVG element.
      *
-     * @return SVG representation of the circle
+     * @param out SVG writer
+     * @throws IOException if the writer fails
      */
     @Override
-    public String toSvgString() {
-        final String fillValue = fill != null ? fill.toHex() : "none";
-        return String.format("<circle cx=\"%d\" cy=\"%d\" r=\"%d\" stroke=\"%s\" stroke-width=\"%f\" fill=\"%s\" id=\"%s\" typeId=\"%s\"/>",
-                x, y, radius, color.toHex(), strokeWidth, fillValue, id, typeId);
+    public void writeSvg(final SvgWriter out) throws IOException {
+        out.startElement("circle");
+        out.attribute("cx", x);
+        out.attribute("cy", y);
+        out.attribute("r", radius);
+        out.attribute("stroke", color);
+        out.attribute("stroke-width", strokeWidth);
+        out.attribute("fill", fill);
+        out.attribute("id", id);
+        out.attribute("typeId", typeId);
+        out.endEmptyElement();
     }
 
     /**
@@ -162,6 +244,7 @@ public class CircleShape extends Shape {
         }
         if (radius + dr > 5) {
             radius += dr;
+            invalidate();
         }
     }
 } 
@@ -3,12 +3,14 @@
 package io.tomori.whiteboard.model.shapes;
 
 import io.tomori.whiteboard.constant.ShapeConstant;
+import io.tomori.whiteboard.util.SvgElement;
+import io.tomori.whiteboard.util.SvgWriter;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
-import org.w3c.dom.Element;
 
 import java.awt.*;
 import java.awt.geom.Line2D;
+import java.io.IOException;
 
 /**
  * Line shape implementation for the whiteboard.
@@ -50,12 +52,30 @@ public class LineShape extends Shape {
         typeId = ShapeConstant.LINE_SHAPE;
     }
 
+    /**
+     * Create a line with the specified ID and endpoints.
+     *
+     * @param id shape identifier
+     * @param x1 x-coord of the start point
+     * @param y1 y-coord of the start point
+     * @param x2 x-coord of the end point
+     * @param y2 y-coord of the end point
+     */
+    public LineShape(final String id, final int x1, final int y1, final int x2, final int y2) {
+        super(id);
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+        typeId = ShapeConstant.LINE_SHAPE;
+    }
+
     /**
      * Create a line from an SVG element.
      *
      * @param element SVG element
      */
-    public LineShape(final Element element) {
+    public LineShape(final SvgElement element) {
         super(element);
         try {
             x1 = Integer.parseInt(element.getAttribute("x1"));
@@ -68,6 +88,56 @@ public class LineShape extends Shape {
         }
     }
 
+    /**
+     * Set the x-coord of the start point.
+     *
+     * @param x1 new x-coord of the start point
+     */
+    public void setX1(final int x1) {
+        this.x1 = x1;
+        invalidate();
+    }
+
+    /**
+     * Set the y-coord of the start point.
+     *
+     * @param y1 new y-coord of the start point
+     */
+    public void setY1(final int y1) {
+        this.y1 = y1;
+        invalidate();
+    }
+
+    /**
+     * Set the x-coord of the end point.
+     *
+     * @param x2 new x-coord of the end point
+     */
+    public void setX2(final int x2) {
+        this.x2 = x2;
+        invalidate();
+    }
+
+    /**
+     * Set the y-coord of the end point.
+     *
+     * @param y2 new y-coord of the end point
+     */
+    public void setY2(final int y2) {
+        this.y2 = y2;
+        invalidate();
+    }
+
+    /**
+     * Create the segment of the line.
+     *
+     * @return line's geometry
+     */
+    @Override
+    protected java.awt.Shape createGeometry() {
+        return new Line2D.Double(x1, y1, x2, y2);
+    }
+
     /**
      * Draw the line on the graphics context.
      *
@@ -77,9 +147,9 @@ public class LineShape extends Shape {
     public void draw(final Graphics2D g2d) {
         final Stroke originalStroke = g2d.getStroke();
         final Color originalColor = g2d.getColor();
-        g2d.setStroke(new BasicStroke(strokeWidth));
-        g2d.setColor(color.toAwtColor());
-        g2d.drawLine(x1, y1, x2, y2);
+        g2d.setStroke(getStroke());
+        g2d.setColor(getAwtColor());
+        g2d.draw(getGeometry());
         g2d.setStroke(originalStroke);
         g2d.setColor(originalColor);
     }
@@ -97,6 +167,19 @@ public class LineShape extends Shape {
         return line.ptSegDist(point) <= tolerance;
     }
 
+    /**
+     * Check if the line segment comes within a distance of a point.
+     *
+     * @param px       x-coord of the point
+     * @param py       y-coord of the point
+     * @param distance maximum distance from the segment
+     * @return True if the segment is within the distance
+     */
+    @Override
+    protected boolean isOutlineWithin(final double px, final double py, final double distance) {
+        return Line2D.ptSegDistSq(x1, y1, x2, y2, px, py) <= distance * distance;
+    }
+
     /**
      * Move the line by the specified delta.
      *
@@ -109,15 +192,16 @@ public class LineShape extends Shape {
         y1 += dy;
         x2 += dx;
         y2 += dy;
+        invalidate();
     }
 
     /**
-     * Get the bounding rectangle of the line.
+     * Compute the bounding rectangle of the line.
      *
      * @return line's bounding rectangle
      */
     @Override
-    public Rectangle getBounds() {
+    protected Rectangle computeBounds() {
         return new Rectangle(
                 Math.min(x1, x2),
                 Math.min(y1, y2),
@@ -137,19 +221,29 @@ public class LineShape extends Shape {
         copy.setColor(color);
         copy.setStrokeWidth(strokeWidth);
         copy.setId(id);
+        copy.setZKey(zKey);
         copy.setFill(fill);
         return copy;
     }
 
     /**
-     * Convert the line to an SVG string.
+     * Write the line as an SVG element.
      *
-     * @return SVG representation of the line
+     * @param out SVG writer
+     * @throws IOException if the writer fails
      */
     @Override
-    public String toSvgString() {
-        return String.format("<line x1=\"%d\" y1=\"%d\" x2=\"%d\" y2=\"%d\" stroke=\"%s\" stroke-width=\"%f\" id=\"%s\" typeId=\"%s\"/>",
-                x1, y1, x2, y2, color.toHex(), strokeWidth, id, typeId);
+    public void writeSvg(final SvgWriter out) throws IOException {
+        out.startElement("line");
+        out.attribute("x1", x1);
+        out.attribute("y1", y1);
+        out.attribute("x2", x2);
+        out.attribute("y2", y2);
+        out.attribute("stroke", color);
+        out.attribute("stroke-width", strokeWidth);
+        out.attribute("id", id);
+        out.attribute("typeId", typeId);
+        out.endEmptyElement();
     }
 
     /**
@@ -170,5 +264,6 @@ public class LineShape extends Shape {
         } else {
             y2 -= dh;
         }
+        invalidate();
     }
 } 
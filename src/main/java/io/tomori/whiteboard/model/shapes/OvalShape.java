@@ -3,11 +3,15 @@
 package io.tomori.whiteboard.model.shapes;
 
 import io.tomori.whiteboard.constant.ShapeConstant;
+import io.tomori.whiteboard.util.SvgElement;
+import io.tomori.whiteboard.util.SvgWriter;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
-import org.w3c.dom.Element;
 
 import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.io.IOException;
 
 /**
  * Oval shape implementation for the whiteboard.
@@ -49,12 +53,30 @@ public class OvalShape extends Shape {
         typeId = ShapeConstant.OVAL_SHAPE;
     }
 
+    /**
+     * Create an oval with the specified ID, center and dimensions.
+     *
+     * @param id         shape identifier
+     * @param x          x-coord of the center
+     * @param y          y-coord of the center
+     * @param halfWidth  horizontal radius
+     * @param halfHeight vertical radius
+     */
+    public OvalShape(final String id, final int x, final int y, final int halfWidth, final int halfHeight) {
+        super(id);
+        this.x = x;
+        this.y = y;
+        this.halfWidth = halfWidth;
+        this.halfHeight = halfHeight;
+        typeId = ShapeConstant.OVAL_SHAPE;
+    }
+
     /**
      * Create an oval from an SVG element.
      *
      * @param element SVG element
      */
-    public OvalShape(final Element element) {
+    public OvalShape(final SvgElement element) {
         super(element);
         try {
             x = Integer.parseInt(element.getAttribute("cx"));
@@ -67,6 +89,56 @@ public class OvalShape extends Shape {
         }
     }
 
+    /**
+     * Set the x-coord of the center point.
+     *
+     * @param x new x-coord of the center point
+     */
+    public void setX(final int x) {
+        this.x = x;
+        invalidate();
+    }
+
+    /**
+     * Set the y-coord of the center point.
+     *
+     * @param y new y-coord of the center point
+     */
+    public void setY(final int y) {
+        this.y = y;
+        invalidate();
+    }
+
+    /**
+     * Set the horizontal radius of the oval.
+     *
+     * @param halfWidth new horizontal radius of the oval
+     */
+    public void setHalfWidth(final int halfWidth) {
+        this.halfWidth = halfWidth;
+        invalidate();
+    }
+
+    /**
+     * Set the vertical radius of the oval.
+     *
+     * @param halfHeight new vertical radius of the oval
+     */
+    public void setHalfHeight(final int halfHeight) {
+        this.halfHeight = halfHeight;
+        invalidate();
+    }
+
+    /**
+     * Create the ellipse outlining the oval.
+     *
+     * @return oval's geometry
+     */
+    @Override
+    protected java.awt.Shape createGeometry() {
+        return new Ellipse2D.Double(x - halfWidth, y - halfHeight, halfWidth * 2, halfHeight * 2);
+    }
+
     /**
      * Draw the oval on the graphics context.
      *
@@ -78,13 +150,13 @@ public class OvalShape extends Shape {
         final Color originalColor = g2d.getColor();
 
         if (fill != null) {
-            g2d.setColor(fill.toAwtColor());
-            g2d.fillOval(x - halfWidth, y - halfHeight, halfWidth * 2, halfHeight * 2);
+            g2d.setColor(getAwtFill());
+            g2d.fill(getGeometry());
         }
 
-        g2d.setStroke(new BasicStroke(strokeWidth));
-        g2d.setColor(color.toAwtColor());
-        g2d.drawOval(x - halfWidth, y - halfHeight, halfWidth * 2, halfHeight * 2);
+        g2d.setStroke(getStroke());
+        g2d.setColor(getAwtColor());
+        g2d.draw(getGeometry());
 
         g2d.setStroke(originalStroke);
         g2d.setColor(originalColor);
@@ -105,6 +177,46 @@ public class OvalShape extends Shape {
         return Math.abs(distanceSquared - 1.0) * Math.min(halfWidth, halfHeight) <= tolerance;
     }
 
+    /**
+     * Check if the oval's outline comes within a distance of a point.
+     * The nearest point of the ellipse is found by a few steps of iteration
+     * on the first quadrant, which converges without trigonometry.
+     *
+     * @param px       x-coord of the point
+     * @param py       y-coord of the point
+     * @param distance maximum distance from the outline
+     * @return True if the outline is within the distance
+     */
+    @Override
+    protected boolean isOutlineWithin(final double px, final double py, final double distance) {
+        final double a = Math.abs(halfWidth);
+        final double b = Math.abs(halfHeight);
+        final double qx = Math.abs(px - x);
+        final double qy = Math.abs(py - y);
+        if (a == 0 || b == 0) {
+            return Line2D.ptSegDistSq(-a, -b, a, b, qx, qy) <= distance * distance;
+        }
+        double tx = Math.sqrt(0.5);
+        double ty = Math.sqrt(0.5);
+        for (int i = 0; i < 3; i++) {
+            final double ex = (a * a - b * b) * tx * tx * tx / a;
+            final double ey = (b * b - a * a) * ty * ty * ty / b;
+            final double r = Math.hypot(a * tx - ex, b * ty - ey);
+            final double q = Math.hypot(qx - ex, qy - ey);
+            if (q == 0) {
+                break;
+            }
+            tx = Math.min(1, Math.max(0, ((qx - ex) * r / q + ex) / a));
+            ty = Math.min(1, Math.max(0, ((qy - ey) * r / q + ey) / b));
+            final double length = Math.hypot(tx, ty);
+            tx /= length;
+            ty /= length;
+        }
+        final double dx = qx - a * tx;
+        final double dy = qy - b * ty;
+        return dx * dx + dy * dy <= distance * distance;
+    }
+
     /**
      * Move the oval by the specified delta.
      *
@@ -115,15 +227,16 @@ public class OvalShape extends Shape {
     public void move(final int dx, final int dy) {
         x += dx;
         y += dy;
+        invalidate();
     }
 
     /**
-     * Get the bounding rectangle of the oval.
+     * Compute the bounding rectangle of the oval.
      *
      * @return oval's bounding rectangle
      */
     @Override
-    public Rectangle getBounds() {
+    protected Rectangle computeBounds() {
         return new Rectangle(x - halfWidth, y - halfHeight, halfWidth * 2, halfHeight * 2);
     }
 
@@ -138,20 +251,30 @@ public class OvalShape extends Shape {
         copy.setColor(color);
         copy.setStrokeWidth(strokeWidth);
         copy.setId(id);
+        copy.setZKey(zKey);
         copy.setFill(fill);
         return copy;
     }
 
     /**
-     * Convert the oval to an SVG string.
+     * Write the oval as an SVG element.
      *
-     * @return SVG representation of the oval
+     * @param out SVG writer
+     * @throws IOException if the writer fails
      */
     @Override
-    public String toSvgString() {
-        final String fillValue = fill != null ? fill.toHex() : "none";
-        return String.format("<ellipse cx=\"%d\" cy=\"%d\" rx=\"%d\" ry=\"%d\" stroke=\"%s\" stroke-width=\"%f\" fill=\"%s\" id=\"%s\" typeId=\"%s\"/>",
-                x, y, halfWidth, halfHeight, color.toHex(), strokeWidth, fillValue, id, typeId);
+    public void writeSvg(final SvgWriter out) throws IOException {
+        out.startElement("ellipse");
+        out.attribute("cx", x);
+        out.attribute("cy", y);
+        out.attribute("rx", halfWidth);
+        out.attribute("ry", halfHeight);
+        out.attribute("stroke", color);
+        out.attribute("stroke-width", strokeWidth);
+        out.attribute("fill", fill);
+        out.attribute("id", id);
+        out.attribute("typeId", typeId);
+        out.endEmptyElement();
     }
 
     /**
@@ -168,5 +291,6 @@ public class OvalShape extends Shape {
         if (halfHeight + dh / 2 > 5) {
             halfHeight += dh / 2;
         }
+        invalidate();
     }
 } 
@@ -1,29 +1,75 @@
-
-
 package io.tomori.whiteboard.model.shapes;
 
 import io.tomori.whiteboard.constant.ShapeConstant;
+import io.tomori.whiteboard.util.StrokeUtil;
+import io.tomori.whiteboard.util.SvgElement;
+import io.tomori.whiteboard.util.SvgWriter;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
-import org.w3c.dom.Element;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.awt.*;
-import java.awt.geom.GeneralPath;
 import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Path shape implementation for the whiteboard.
  * Represent a freehand drawing as a series of connected points.
+ * Points are packed into a single int array that is never modified in place,
+ * so clones share it and a mutation replaces it with a new array.
+ * In curve mode the array holds a start point followed by cubic Bezier segments
+ * of two control points and an end point each.
  */
 @EqualsAndHashCode(callSuper = true)
 @Data
 public class PathShape extends Shape {
     /**
-     * Points list that make up the path
+     * Number of segments covered by each bounding box of the chunk index
+     */
+    private static final int CHUNK_SEGMENTS = 32;
+    /**
+     * Squared distance in pixels below which a cubic segment is treated as its chord
+     */
+    private static final double FLATNESS_SQUARED = 0.0625;
+    /**
+     * Command letters of SVG path data
+     */
+    private static final String PATH_COMMANDS = "MmLlZzCcHhVvQqSsTtAa";
+    /**
+     * Numbers with more digits are not parsed exactly by dividing their digits by a power of ten
+     */
+    private static final int MAX_EXACT_DIGITS = 15;
+    /**
+     * Exact powers of ten used to place the decimal point of parsed numbers
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+    /**
+     * Packed coordinates of the points that make up the path: x0, y0, x1, y1, ...
      */
-    private final List<Point> points;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private int[] coords;
+    /**
+     * True if the coordinates describe cubic Bezier segments rather than a polyline
+     */
+    @Setter(AccessLevel.NONE)
+    private boolean curved;
+    /**
+     * Bounding boxes of consecutive runs of segments: minX, minY, maxX, maxY per run, null until computed
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient int[] chunkBounds;
 
     /**
      * Create a path with the specified points.
@@ -31,42 +77,277 @@ public class PathShape extends Shape {
      * @param points list of points defining the path
      */
     public PathShape(final List<Point> points) {
-        this.points = new ArrayList<>();
-        for (final Point p : points) {
-            this.points.add(new Point(p));
+        coords = new int[points.size() * 2];
+        for (int i = 0; i < points.size(); i++) {
+            coords[i * 2] = points.get(i).x;
+            coords[i * 2 + 1] = points.get(i).y;
         }
         typeId = ShapeConstant.PATH_SHAPE;
     }
 
+    /**
+     * Create a path over packed coordinates, taking ownership of the array.
+     *
+     * @param coords packed coordinates, must not be modified afterward
+     * @param curved True if the coordinates describe cubic Bezier segments
+     */
+    private PathShape(final int[] coords, final boolean curved) {
+        this.coords = coords;
+        this.curved = curved;
+        typeId = ShapeConstant.PATH_SHAPE;
+    }
+
+    /**
+     * Create a path with the specified ID over packed coordinates, taking ownership of the array.
+     *
+     * @param id     shape identifier
+     * @param coords packed coordinates, must not be modified afterward
+     * @param curved True if the coordinates describe cubic Bezier segments
+     */
+    public PathShape(final String id, final int[] coords, final boolean curved) {
+        super(id);
+        this.coords = coords;
+        this.curved = curved;
+        typeId = ShapeConstant.PATH_SHAPE;
+    }
+
     /**
      * Create a path from an SVG element.
+     * Accept absolute and relative move, line and cubic curve commands, including implicit repeated commands.
      *
      * @param element SVG element
      */
-    public PathShape(final Element element) {
+    public PathShape(final SvgElement element) {
         super(element);
-        points = new ArrayList<>();
         try {
             final String pathData = element.getAttribute("d");
-            if (pathData != null && !pathData.isEmpty()) {
-                final String[] commands = pathData.split(" ");
-                for (int i = 0; i < commands.length; i += 3) {
-                    if (i + 2 < commands.length && (commands[i].equals("M") || commands[i].equals("L"))) {
-                        try {
-                            final int x = Integer.parseInt(commands[i + 1]);
-                            final int y = Integer.parseInt(commands[i + 2]);
-                            points.add(new Point(x, y));
-                        } catch (final NumberFormatException e) {
-                        }
-                    }
-                }
-            }
+            parsePathData(pathData == null ? "" : pathData);
             typeId = ShapeConstant.PATH_SHAPE;
         } catch (final Exception e) {
             throw new IllegalArgumentException("Invalid SVG path element", e);
         }
     }
 
+    /**
+     * Parse an SVG path data string, ignoring commands other than move, line, cubic curve and close.
+     * Lines are kept as a polyline unless the data contains curves,
+     * in which case they become straight cubic segments.
+     *
+     * @param pathData SVG path data
+     */
+    private void parsePathData(final String pathData) {
+        final Builder ends = new Builder();
+        final Builder segments = new Builder();
+        final int[] tokens = tokenize(pathData);
+        final int tokenCount = tokens.length / 2;
+        final double[] values = new double[6];
+        char command = 'M';
+        int currentX = 0;
+        int currentY = 0;
+        int i = 0;
+        while (i < tokenCount) {
+            final char first = pathData.charAt(tokens[i * 2]);
+            if (Character.isLetter(first)) {
+                command = first;
+                i++;
+                continue;
+            }
+            final int arity = command == 'C' || command == 'c' ? 6 : 2;
+            if (i + arity > tokenCount) {
+                break;
+            }
+            try {
+                for (int k = 0; k < arity; k++) {
+                    values[k] = parseNumber(pathData, tokens[(i + k) * 2], tokens[(i + k) * 2 + 1]);
+                }
+            } catch (final NumberFormatException e) {
+                i += arity;
+                continue;
+            }
+            final boolean relative = Character.isLowerCase(command) && ends.size() > 0;
+            final int offsetX = relative ? currentX : 0;
+            final int offsetY = relative ? currentY : 0;
+            final int x = offsetX + (int) Math.round(values[arity - 2]);
+            final int y = offsetY + (int) Math.round(values[arity - 1]);
+            switch (command) {
+                case 'M', 'm', 'L', 'l' -> {
+                    if (ends.size() == 0) {
+                        segments.add(x, y);
+                    } else {
+                        segments.add(currentX, currentY);
+                        segments.add(x, y);
+                        segments.add(x, y);
+                    }
+                    ends.add(x, y);
+                }
+                case 'C', 'c' -> {
+                    if (ends.size() == 0) {
+                        segments.add(currentX, currentY);
+                        ends.add(currentX, currentY);
+                    }
+                    segments.add(offsetX + (int) Math.round(values[0]), offsetY + (int) Math.round(values[1]));
+                    segments.add(offsetX + (int) Math.round(values[2]), offsetY + (int) Math.round(values[3]));
+                    segments.add(x, y);
+                    ends.add(x, y);
+                    curved = true;
+                }
+                default -> {
+                }
+            }
+            currentX = x;
+            currentY = y;
+            if (command == 'M') {
+                command = 'L';
+            } else if (command == 'm') {
+                command = 'l';
+            }
+            i += arity;
+        }
+        coords = curved ? segments.toCoords() : ends.toCoords();
+    }
+
+    /**
+     * Split SVG path data into tokens.
+     * Tokens are separated by whitespace and commas, and every command letter is a token of its own.
+     *
+     * @param pathData SVG path data
+     * @return start and end index of each token, in pairs
+     */
+    private static int[] tokenize(final String pathData) {
+        int[] bounds = new int[16];
+        int count = 0;
+        int start = -1;
+        for (int i = 0; i <= pathData.length(); i++) {
+            final char c = i < pathData.length() ? pathData.charAt(i) : ' ';
+            final boolean command = PATH_COMMANDS.indexOf(c) >= 0;
+            if (c == ',' || Character.isWhitespace(c) || command) {
+                if (start >= 0) {
+                    if (count + 2 > bounds.length) {
+                        bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                    }
+                    bounds[count++] = start;
+                    bounds[count++] = i;
+                    start = -1;
+                }
+                if (command) {
+                    if (count + 2 > bounds.length) {
+                        bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                    }
+                    bounds[count++] = i;
+                    bounds[count++] = i + 1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Parse a number token of SVG path data.
+     * Plain decimals short enough to be converted exactly are parsed without allocating, others fall back to
+     * {@link Double#parseDouble(String)}, so the result is the same in both cases.
+     *
+     * @param text  path data
+     * @param start index of the first character of the token
+     * @param end   index after the last character of the token
+     * @return parsed number
+     * @throws NumberFormatException if the token is not a number
+     */
+    private static double parseNumber(final String text, final int start, final int end) {
+        int i = start;
+        final boolean negative = i < end && text.charAt(i) == '-';
+        if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < end; i++) {
+            final char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        if (i < end || digits == 0 || digits > MAX_EXACT_DIGITS) {
+            return Double.parseDouble(text.substring(start, end));
+        }
+        final double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Return the number of points in the path, including control points in curve mode.
+     *
+     * @return point count
+     */
+    public int getPointCount() {
+        return coords.length / 2;
+    }
+
+    /**
+     * Return the x-coord of a point.
+     *
+     * @param index point index
+     * @return x-coord of the point
+     */
+    public int getX(final int index) {
+        return coords[index * 2];
+    }
+
+    /**
+     * Return the y-coord of a point.
+     *
+     * @param index point index
+     * @return y-coord of the point
+     */
+    public int getY(final int index) {
+        return coords[index * 2 + 1];
+    }
+
+    /**
+     * Create the open polyline or curve through the points.
+     * Filling it closes the path implicitly, while the outline stays open.
+     *
+     * @return path's geometry
+     */
+    @Override
+    protected java.awt.Shape createGeometry() {
+        final int count = getPointCount();
+        final Path2D path = new Path2D.Float(Path2D.WIND_NON_ZERO, count);
+        if (count > 0) {
+            path.moveTo(coords[0], coords[1]);
+            if (curved) {
+                for (int i = 2; i + 5 < coords.length; i += 6) {
+                    path.curveTo(coords[i], coords[i + 1], coords[i + 2], coords[i + 3], coords[i + 4], coords[i + 5]);
+                }
+            } else {
+                for (int i = 2; i < coords.length; i += 2) {
+                    path.lineTo(coords[i], coords[i + 1]);
+                }
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Create a stroke with round caps and joins for smooth freehand lines.
+     *
+     * @return path's stroke
+     */
+    @Override
+    protected Stroke createStroke() {
+        return new BasicStroke(strokeWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    }
+
     /**
      * Draw the path on the graphics context.
      *
@@ -74,36 +355,20 @@ public class PathShape extends Shape {
      */
     @Override
     public void draw(final Graphics2D g2d) {
-        if (points.size() < 2) {
+        if (getPointCount() < 2) {
             return;
         }
         final Stroke originalStroke = g2d.getStroke();
         final Color originalColor = g2d.getColor();
 
-        final GeneralPath path = new GeneralPath();
-        if (!points.isEmpty()) {
-            final Point firstPoint = points.getFirst();
-            path.moveTo(firstPoint.x, firstPoint.y);
-
-            for (int i = 1; i < points.size(); i++) {
-                final Point point = points.get(i);
-                path.lineTo(point.x, point.y);
-            }
+        if (fill != null && (curved || getPointCount() >= 3)) {
+            g2d.setColor(getAwtFill());
+            g2d.fill(getGeometry());
         }
 
-        if (fill != null && points.size() >= 3) {
-            path.closePath();
-            g2d.setColor(fill.toAwtColor());
-            g2d.fill(path);
-        }
-
-        g2d.setStroke(new BasicStroke(strokeWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-        g2d.setColor(color.toAwtColor());
-        for (int i = 0; i < points.size() - 1; i++) {
-            final Point p1 = points.get(i);
-            final Point p2 = points.get(i + 1);
-            g2d.drawLine(p1.x, p1.y, p2.x, p2.y);
-        }
+        g2d.setStroke(getStroke());
+        g2d.setColor(getAwtColor());
+        g2d.draw(getGeometry());
 
         g2d.setStroke(originalStroke);
         g2d.setColor(originalColor);
@@ -117,18 +382,180 @@ public class PathShape extends Shape {
      */
     @Override
     public boolean contains(final Point point) {
-        final int tolerance = Math.max(3, (int) strokeWidth);
-        for (int i = 0; i < points.size() - 1; i++) {
-            final Point p1 = points.get(i);
-            final Point p2 = points.get(i + 1);
-            final Line2D.Double line = new Line2D.Double(p1, p2);
-            if (line.ptSegDist(point) <= tolerance) {
-                return true;
+        return coords.length > 0 && isOutlineWithin(point.x, point.y, Math.max(3, (int) strokeWidth));
+    }
+
+    /**
+     * Check if any segment of the path comes within a distance of a point.
+     * Runs of segments whose bounding box is out of reach are skipped, and cubic segments are subdivided only
+     * near the point.
+     *
+     * @param px       x-coord of the point
+     * @param py       y-coord of the point
+     * @param distance maximum distance from the path
+     * @return True if a segment is within the distance
+     */
+    @Override
+    protected boolean isOutlineWithin(final double px, final double py, final double distance) {
+        final double limit = distance * distance;
+        if (coords.length == 2) {
+            final double dx = px - coords[0];
+            final double dy = py - coords[1];
+            return dx * dx + dy * dy <= limit;
+        }
+        final int stride = curved ? 6 : 2;
+        final int[] chunks = getChunkBounds();
+        for (int chunk = 0; chunk * 4 < chunks.length; chunk++) {
+            final double gapX = Math.max(0, Math.max(chunks[chunk * 4] - px, px - chunks[chunk * 4 + 2]));
+            final double gapY = Math.max(0, Math.max(chunks[chunk * 4 + 1] - py, py - chunks[chunk * 4 + 3]));
+            if (gapX * gapX + gapY * gapY > limit) {
+                continue;
+            }
+            final int from = chunk * CHUNK_SEGMENTS * stride;
+            final int to = Math.min(coords.length - 2, from + CHUNK_SEGMENTS * stride);
+            for (int i = from; i < to; i += stride) {
+                final boolean within = curved
+                        ? isCubicWithin(coords[i], coords[i + 1], coords[i + 2], coords[i + 3],
+                        coords[i + 4], coords[i + 5], coords[i + 6], coords[i + 7], px, py, limit)
+                        : Line2D.ptSegDistSq(coords[i], coords[i + 1], coords[i + 2], coords[i + 3], px, py) <= limit;
+                if (within) {
+                    return true;
+                }
             }
         }
         return false;
     }
 
+    /**
+     * Check if a cubic segment comes within a distance of a point, by subdividing it until the pieces near the
+     * point are flat enough to be measured as lines.
+     *
+     * @param x0    x-coord of the start point
+     * @param y0    y-coord of the start point
+     * @param x1    x-coord of the first control point
+     * @param y1    y-coord of the first control point
+     * @param x2    x-coord of the second control point
+     * @param y2    y-coord of the second control point
+     * @param x3    x-coord of the end point
+     * @param y3    y-coord of the end point
+     * @param px    x-coord of the point
+     * @param py    y-coord of the point
+     * @param limit squared maximum distance
+     * @return True if the segment is within the distance
+     */
+    private static boolean isCubicWithin(final double x0, final double y0, final double x1, final double y1,
+                                         final double x2, final double y2, final double x3, final double y3,
+                                         final double px, final double py, final double limit) {
+        final double gapX = Math.max(0, Math.max(Math.min(Math.min(x0, x1), Math.min(x2, x3)) - px,
+                px - Math.max(Math.max(x0, x1), Math.max(x2, x3))));
+        final double gapY = Math.max(0, Math.max(Math.min(Math.min(y0, y1), Math.min(y2, y3)) - py,
+                py - Math.max(Math.max(y0, y1), Math.max(y2, y3))));
+        if (gapX * gapX + gapY * gapY > limit) {
+            return false;
+        }
+        if (Line2D.ptSegDistSq(x0, y0, x3, y3, x1, y1) <= FLATNESS_SQUARED
+                && Line2D.ptSegDistSq(x0, y0, x3, y3, x2, y2) <= FLATNESS_SQUARED) {
+            return Line2D.ptSegDistSq(x0, y0, x3, y3, px, py) <= limit;
+        }
+        final double x01 = (x0 + x1) / 2;
+        final double y01 = (y0 + y1) / 2;
+        final double x12 = (x1 + x2) / 2;
+        final double y12 = (y1 + y2) / 2;
+        final double x23 = (x2 + x3) / 2;
+        final double y23 = (y2 + y3) / 2;
+        final double x012 = (x01 + x12) / 2;
+        final double y012 = (y01 + y12) / 2;
+        final double x123 = (x12 + x23) / 2;
+        final double y123 = (y12 + y23) / 2;
+        final double xMid = (x012 + x123) / 2;
+        final double yMid = (y012 + y123) / 2;
+        return isCubicWithin(x0, y0, x01, y01, x012, y012, xMid, yMid, px, py, limit)
+                || isCubicWithin(xMid, yMid, x123, y123, x23, y23, x3, y3, px, py, limit);
+    }
+
+    /**
+     * Return the bounding boxes of consecutive runs of segments, computing them on first use.
+     * In curve mode the control points are included, which bound the curve.
+     *
+     * @return packed boxes: minX, minY, maxX, maxY per run
+     */
+    private int[] getChunkBounds() {
+        int[] cached = chunkBounds;
+        if (cached == null) {
+            final int stride = curved ? 6 : 2;
+            final int segments = (coords.length - 2) / stride;
+            final int chunkCount = (segments + CHUNK_SEGMENTS - 1) / CHUNK_SEGMENTS;
+            cached = new int[chunkCount * 4];
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                final int from = chunk * CHUNK_SEGMENTS * stride;
+                final int to = Math.min(coords.length, from + CHUNK_SEGMENTS * stride + 2);
+                int minX = Integer.MAX_VALUE;
+                int minY = Integer.MAX_VALUE;
+                int maxX = Integer.MIN_VALUE;
+                int maxY = Integer.MIN_VALUE;
+                for (int i = from; i < to; i += 2) {
+                    minX = Math.min(minX, coords[i]);
+                    minY = Math.min(minY, coords[i + 1]);
+                    maxX = Math.max(maxX, coords[i]);
+                    maxY = Math.max(maxY, coords[i + 1]);
+                }
+                cached[chunk * 4] = minX;
+                cached[chunk * 4 + 1] = minY;
+                cached[chunk * 4 + 2] = maxX;
+                cached[chunk * 4 + 3] = maxY;
+            }
+            chunkBounds = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Return the pieces of the path left after erasing the ink under a circle.
+     * The ink of the stroke reaches half the stroke width past the path, so the path is cut where it comes
+     * that close to the circle. Pieces keep the style and z-key of the path and get new IDs.
+     *
+     * @param centerX x-coord of the circle's center
+     * @param centerY y-coord of the circle's center
+     * @param radius  radius of the circle
+     * @return remaining pieces in stroke order, empty if the whole path is erased, or null if the circle misses it
+     */
+    public List<PathShape> eraseCircle(final double centerX, final double centerY, final double radius) {
+        final double reach = radius + strokeWidth / 2;
+        final Rectangle bounds = getBounds();
+        if (coords.length == 0
+                || centerX < bounds.x - reach || centerX > bounds.x + bounds.width + reach
+                || centerY < bounds.y - reach || centerY > bounds.y + bounds.height + reach
+                || !isOutlineWithin(centerX, centerY, reach)) {
+            return null;
+        }
+        if (coords.length == 2) {
+            return List.of();
+        }
+        final List<int[]> parts = StrokeUtil.cut(coords, curved, centerX, centerY, reach);
+        if (parts == null) {
+            return null;
+        }
+        final List<PathShape> pieces = new ArrayList<>(parts.size());
+        for (final int[] part : parts) {
+            final PathShape piece = new PathShape(part, curved);
+            piece.setColor(color);
+            piece.setStrokeWidth(strokeWidth);
+            piece.setFill(fill);
+            piece.setZKey(zKey);
+            pieces.add(piece);
+        }
+        return pieces;
+    }
+
+    /**
+     * Discard the cached geometry, bounds and chunk index.
+     */
+    @Override
+    protected void invalidate() {
+        super.invalidate();
+        chunkBounds = null;
+    }
+
     /**
      * Move the path by the specified delta.
      *
@@ -137,73 +564,100 @@ public class PathShape extends Shape {
      */
     @Override
     public void move(final int dx, final int dy) {
-        for (final Point p : points) {
-            p.translate(dx, dy);
+        final int[] moved = new int[coords.length];
+        for (int i = 0; i < coords.length; i += 2) {
+            moved[i] = coords[i] + dx;
+            moved[i + 1] = coords[i + 1] + dy;
         }
+        coords = moved;
+        invalidate();
     }
 
     /**
-     * Get the bounding rectangle of the path.
+     * Compute the bounding rectangle of the path.
      *
      * @return path's bounding rectangle
      */
     @Override
-    public Rectangle getBounds() {
-        if (points.isEmpty()) {
+    protected Rectangle computeBounds() {
+        if (coords.length == 0) {
             return new Rectangle();
         }
+        if (curved) {
+            return getGeometry().getBounds();
+        }
         int minX = Integer.MAX_VALUE;
         int minY = Integer.MAX_VALUE;
         int maxX = Integer.MIN_VALUE;
         int maxY = Integer.MIN_VALUE;
-        for (final Point p : points) {
-            minX = Math.min(minX, p.x);
-            minY = Math.min(minY, p.y);
-            maxX = Math.max(maxX, p.x);
-            maxY = Math.max(maxY, p.y);
+        for (int i = 0; i < coords.length; i += 2) {
+            minX = Math.min(minX, coords[i]);
+            minY = Math.min(minY, coords[i + 1]);
+            maxX = Math.max(maxX, coords[i]);
+            maxY = Math.max(maxY, coords[i + 1]);
         }
         return new Rectangle(minX, minY, maxX - minX, maxY - minY);
     }
 
     /**
-     * Create a copy of this path.
+     * Create a copy of this path, sharing the point array.
      *
      * @return A new path with same properties
      */
     @Override
     public Shape clone() {
-        final PathShape copy = new PathShape(new ArrayList<>(points));
+        final PathShape copy = new PathShape(coords, curved);
         copy.setColor(color);
         copy.setStrokeWidth(strokeWidth);
         copy.setId(id);
+        copy.setZKey(zKey);
         copy.setFill(fill);
+        copy.chunkBounds = chunkBounds;
         return copy;
     }
 
     /**
-     * Convert the path to an SVG string.
+     * Write the path as an SVG element.
+     * The first point is absolute and the rest are relative line or cubic curve commands, which keeps the output short.
      *
-     * @return SVG representation of the path
+     * @param out SVG writer
+     * @throws IOException if the writer fails
      */
     @Override
-    public String toSvgString() {
-        final StringBuilder pathData = new StringBuilder();
-        if (!points.isEmpty()) {
-            final Point first = points.getFirst();
-            pathData.append(String.format("M %d %d", first.x, first.y));
-            for (int i = 1; i < points.size(); i++) {
-                final Point p = points.get(i);
-                pathData.append(String.format(" L %d %d", p.x, p.y));
+    public void writeSvg(final SvgWriter out) throws IOException {
+        out.startElement("path");
+        out.startAttribute("d");
+        if (coords.length > 0) {
+            out.raw("M ");
+            out.number(coords[0]);
+            out.raw(' ');
+            out.number(coords[1]);
+            if (coords.length > 2) {
+                out.raw(curved ? " c" : " l");
+            }
+            final int stride = curved ? 6 : 2;
+            for (int i = 2; i + stride <= coords.length; i += stride) {
+                final int startX = coords[i - 2];
+                final int startY = coords[i - 1];
+                for (int k = i; k < i + stride; k += 2) {
+                    out.raw(' ');
+                    out.number(coords[k] - startX);
+                    out.raw(' ');
+                    out.number(coords[k + 1] - startY);
+                }
             }
 
-            if (fill != null && points.size() >= 3) {
-                pathData.append(" Z");
+            if (fill != null && (curved || getPointCount() >= 3)) {
+                out.raw(" Z");
             }
         }
-
-        final String fillValue = fill != null ? fill.toHex() : "none";
-        return String.format("<path d=\"%s\" stroke=\"%s\" stroke-width=\"%f\" fill=\"%s\" id=\"%s\" typeId=\"%s\"/>",
-                pathData, color.toHex(), strokeWidth, fillValue, id, typeId);
+        out.endAttribute();
+        out.attribute("stroke", color);
+        out.attribute("stroke-width", strokeWidth);
+        out.attribute("fill", fill);
+        out.attribute("id", id);
+        out.attribute("typeId", typeId);
+        out.endEmptyElement();
     }
 
     /**
@@ -214,7 +668,7 @@ public class PathShape extends Shape {
      */
     @Override
     public void resize(final int dw, final int dh) {
-        if (points.isEmpty()) {
+        if (coords.length == 0) {
             return;
         }
         final Rectangle bounds = getBounds();
@@ -225,9 +679,158 @@ public class PathShape extends Shape {
         final int centerY = bounds.y + bounds.height / 2;
         final double widthRatio = bounds.width == 0 ? 1.0 : (double) (bounds.width + dw) / bounds.width;
         final double heightRatio = bounds.height == 0 ? 1.0 : (double) (bounds.height + dh) / bounds.height;
-        for (final Point p : points) {
-            p.x = centerX + (int) ((p.x - centerX) * widthRatio);
-            p.y = centerY + (int) ((p.y - centerY) * heightRatio);
+        final int[] resized = new int[coords.length];
+        for (int i = 0; i < coords.length; i += 2) {
+            resized[i] = centerX + (int) ((coords[i] - centerX) * widthRatio);
+            resized[i + 1] = centerY + (int) ((coords[i + 1] - centerY) * heightRatio);
+        }
+        coords = resized;
+        invalidate();
+    }
+
+    /**
+     * Incremental builder of a path, used while a stroke is being drawn.
+     * Keep the coordinates in a growable int array and, once requested, the preview geometry up to date as points arrive.
+     */
+    public static class Builder {
+        /**
+         * Growable packed coordinates
+         */
+        private int[] coords = new int[64];
+        /**
+         * Number of used entries in the coordinate array
+         */
+        private int length = 0;
+        /**
+         * Polyline through the points added so far, null until a preview is requested
+         */
+        private Path2D.Float preview = null;
+
+        /**
+         * Append a point to the path.
+         *
+         * @param x x-coord of the point
+         * @param y y-coord of the point
+         */
+        public void add(final int x, final int y) {
+            if (length == coords.length) {
+                coords = Arrays.copyOf(coords, coords.length * 2);
+            }
+            coords[length++] = x;
+            coords[length++] = y;
+            if (preview != null) {
+                appendToPreview(x, y);
+            }
+        }
+
+        /**
+         * Extend the preview polyline with a point.
+         *
+         * @param x x-coord of the point
+         * @param y y-coord of the point
+         */
+        private void appendToPreview(final int x, final int y) {
+            if (preview.getCurrentPoint() == null) {
+                preview.moveTo(x, y);
+            } else {
+                preview.lineTo(x, y);
+            }
+        }
+
+        /**
+         * Return the number of points added so far.
+         *
+         * @return point count
+         */
+        public int size() {
+            return length / 2;
+        }
+
+        /**
+         * Return the x-coord of a point.
+         *
+         * @param index point index
+         * @return x-coord of the point
+         */
+        public int getX(final int index) {
+            return coords[index * 2];
+        }
+
+        /**
+         * Return the y-coord of a point.
+         *
+         * @param index point index
+         * @return y-coord of the point
+         */
+        public int getY(final int index) {
+            return coords[index * 2 + 1];
+        }
+
+        /**
+         * Return the polyline through the points added so far, for previewing.
+         *
+         * @return preview geometry, updated in place as points are added
+         */
+        public java.awt.Shape getPreview() {
+            if (preview == null) {
+                preview = new Path2D.Float();
+                for (int i = 0; i < length; i += 2) {
+                    appendToPreview(coords[i], coords[i + 1]);
+                }
+            }
+            return preview;
+        }
+
+        /**
+         * Remove every point so the builder can be reused.
+         */
+        public void clear() {
+            length = 0;
+            if (preview != null) {
+                preview.reset();
+            }
+        }
+
+        /**
+         * Return a trimmed copy of the coordinates.
+         *
+         * @return packed coordinates
+         */
+        private int[] toCoords() {
+            return Arrays.copyOf(coords, length);
+        }
+
+        /**
+         * Create a path shape from the points added so far.
+         *
+         * @return new path shape
+         */
+        public PathShape build() {
+            return new PathShape(toCoords(), false);
+        }
+
+        /**
+         * Create a path shape from the points added so far, dropping points that deviate
+         * less than the tolerance from the simplified path.
+         *
+         * @param tolerance maximum deviation in pixels, 0 to keep every point
+         * @return new path shape
+         */
+        public PathShape build(final double tolerance) {
+            return new PathShape(StrokeUtil.simplify(toCoords(), tolerance), false);
+        }
+
+        /**
+         * Create a curve-mode path shape by fitting cubic Bezier segments to the points added so far.
+         *
+         * @param tolerance maximum distance in pixels between the points and the fitted curve
+         * @return new path shape, a polyline if there are too few points to fit
+         */
+        public PathShape buildCurve(final double tolerance) {
+            if (size() < 3) {
+                return build();
+            }
+            return new PathShape(StrokeUtil.fitCurve(toCoords(), tolerance), true);
         }
     }
-} 
+}
@@ -3,11 +3,13 @@
 package io.tomori.whiteboard.model.shapes;
 
 import io.tomori.whiteboard.constant.ShapeConstant;
+import io.tomori.whiteboard.util.SvgElement;
+import io.tomori.whiteboard.util.SvgWriter;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
-import org.w3c.dom.Element;
 
 import java.awt.*;
+import java.io.IOException;
 
 /**
  * Rectangle shape implementation for the whiteboard.
@@ -49,12 +51,30 @@ public class RectangleShape extends Shape {
         typeId = ShapeConstant.RECTANGLE_SHAPE;
     }
 
+    /**
+     * Create a rectangle with the specified ID and dimensions.
+     *
+     * @param id     shape identifier
+     * @param x      x-coord
+     * @param y      y-coord
+     * @param width  width
+     * @param height height
+     */
+    public RectangleShape(final String id, final int x, final int y, final int width, final int height) {
+        super(id);
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        typeId = ShapeConstant.RECTANGLE_SHAPE;
+    }
+
     /**
      * Create a rectangle from an SVG element.
      *
      * @param element SVG element
      */
-    public RectangleShape(final Element element) {
+    public RectangleShape(final SvgElement element) {
         super(element);
         try {
             x = Integer.parseInt(element.getAttribute("x"));
@@ -67,6 +87,56 @@ public class RectangleShape extends Shape {
         }
     }
 
+    /**
+     * Set the x-coord of the top-left corner.
+     *
+     * @param x new x-coord of the top-left corner
+     */
+    public void setX(final int x) {
+        this.x = x;
+        invalidate();
+    }
+
+    /**
+     * Set the y-coord of the top-left corner.
+     *
+     * @param y new y-coord of the top-left corner
+     */
+    public void setY(final int y) {
+        this.y = y;
+        invalidate();
+    }
+
+    /**
+     * Set the width of the rectangle.
+     *
+     * @param width new width of the rectangle
+     */
+    public void setWidth(final int width) {
+        this.width = width;
+        invalidate();
+    }
+
+    /**
+     * Set the height of the rectangle.
+     *
+     * @param height new height of the rectangle
+     */
+    public void setHeight(final int height) {
+        this.height = height;
+        invalidate();
+    }
+
+    /**
+     * Create the outline of the rectangle.
+     *
+     * @return rectangle's geometry
+     */
+    @Override
+    protected java.awt.Shape createGeometry() {
+        return new Rectangle(x, y, width, height);
+    }
+
     /**
      * Draw the rectangle on the graphics context.
      *
@@ -78,13 +148,13 @@ public class RectangleShape extends Shape {
         final Color originalColor = g2d.getColor();
 
         if (fill != null) {
-            g2d.setColor(fill.toAwtColor());
-            g2d.fillRect(x, y, width, height);
+            g2d.setColor(getAwtFill());
+            g2d.fill(getGeometry());
         }
 
-        g2d.setStroke(new BasicStroke(strokeWidth));
-        g2d.setColor(color.toAwtColor());
-        g2d.drawRect(x, y, width, height);
+        g2d.setStroke(getStroke());
+        g2d.setColor(getAwtColor());
+        g2d.draw(getGeometry());
 
         g2d.setStroke(originalStroke);
         g2d.setColor(originalColor);
@@ -110,6 +180,29 @@ public class RectangleShape extends Shape {
         return false;
     }
 
+    /**
+     * Check if the rectangle's outline comes within a distance of a point.
+     * Inside the rectangle the nearest edge is measured, outside the nearest point of the border.
+     *
+     * @param px       x-coord of the point
+     * @param py       y-coord of the point
+     * @param distance maximum distance from the outline
+     * @return True if the outline is within the distance
+     */
+    @Override
+    protected boolean isOutlineWithin(final double px, final double py, final double distance) {
+        final double left = px - x;
+        final double right = x + width - px;
+        final double top = py - y;
+        final double bottom = y + height - py;
+        if (left >= 0 && right >= 0 && top >= 0 && bottom >= 0) {
+            return Math.min(Math.min(left, right), Math.min(top, bottom)) <= distance;
+        }
+        final double dx = Math.max(0, Math.max(-left, -right));
+        final double dy = Math.max(0, Math.max(-top, -bottom));
+        return dx * dx + dy * dy <= distance * distance;
+    }
+
     /**
      * Move the rectangle by the specified delta.
      *
@@ -120,15 +213,16 @@ public class RectangleShape extends Shape {
     public void move(final int dx, final int dy) {
         x += dx;
         y += dy;
+        invalidate();
     }
 
     /**
-     * Get the bounding rectangle.
+     * Compute the bounding rectangle.
      *
      * @return rectangle as a bounding box
      */
     @Override
-    public Rectangle getBounds() {
+    protected Rectangle computeBounds() {
         return new Rectangle(x, y, width, height);
     }
 
@@ -143,20 +237,30 @@ public class RectangleShape extends Shape {
         copy.setColor(color);
         copy.setStrokeWidth(strokeWidth);
         copy.setId(id);
+        copy.setZKey(zKey);
         copy.setFill(fill);
         return copy;
     }
 
     /**
-     * Convert the rectangle to an SVG string.
+     * Write the rectangle as an SVG element.
      *
-     * @return SVG representation of the rectangle
+     * @param out SVG writer
+     * @throws IOException if the writer fails
      */
     @Override
-    public String toSvgString() {
-        final String fillValue = fill != null ? fill.toHex() : "none";
-        return String.format("<rect x=\"%d\" y=\"%d\" width=\"%d\" height=\"%d\" stroke=\"%s\" stroke-width=\"%f\" fill=\"%s\" id=\"%s\" typeId=\"%s\"/>",
-                x, y, width, height, color.toHex(), strokeWidth, fillValue, id, typeId);
+    public void writeSvg(final SvgWriter out) throws IOException {
+        out.startElement("rect");
+        out.attribute("x", x);
+        out.attribute("y", y);
+        out.attribute("width", width);
+        out.attribute("height", height);
+        out.attribute("stroke", color);
+        out.attribute("stroke-width", strokeWidth);
+        out.attribute("fill", fill);
+        out.attribute("id", id);
+        out.attribute("typeId", typeId);
+        out.endEmptyElement();
     }
 
     /**
@@ -173,5 +277,6 @@ public class RectangleShape extends Shape {
         if (height + dh > 0) {
             height += dh;
         }
+        invalidate();
     }
 } 
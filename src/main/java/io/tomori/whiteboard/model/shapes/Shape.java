@@ -6,17 +6,26 @@ import com.google.gson.internal.LinkedTreeMap;
 import io.tomori.whiteboard.constant.ShapeConstant;
 import io.tomori.whiteboard.model.Color;
 import io.tomori.whiteboard.util.JsonUtil;
+import io.tomori.whiteboard.util.SvgElement;
+import io.tomori.whiteboard.util.SvgWriter;
+import lombok.AccessLevel;
 import lombok.Data;
-import org.w3c.dom.Element;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.awt.*;
+import java.io.IOException;
 import java.io.Serial;
 import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.UUID;
 
 /**
  * Abstract class for all whiteboard shapes.
  * Define common properties and operations for drawable elements.
+ * Java2D objects derived from the shape are computed lazily and cached until the shape is mutated.
  */
 @Data
 public abstract class Shape implements Serializable {
@@ -42,6 +51,52 @@ public abstract class Shape implements Serializable {
      * Type identifier to distinguish shape types
      */
     protected String typeId = ShapeConstant.ABSTRACT_SHAPE;
+    /**
+     * Fractional z-order key, shapes with larger keys are drawn on top, null until placed on a board
+     */
+    protected String zKey;
+    /**
+     * Cached Java2D geometry, null until computed
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient java.awt.Shape geometry;
+    /**
+     * Cached stroke, null until computed
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient Stroke stroke;
+    /**
+     * Cached AWT stroke color, null until computed
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient java.awt.Color awtColor;
+    /**
+     * Cached AWT fill color, null until computed or if the shape has no fill
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient java.awt.Color awtFill;
+    /**
+     * Cached bounding rectangle, null until computed
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient Rectangle bounds;
+    /**
+     * Cached painted area, null until computed
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient Rectangle paintBounds;
 
     /**
      * Create a new shape with a random UUID.
@@ -64,7 +119,7 @@ public abstract class Shape implements Serializable {
      *
      * @param svgElement SVG element containing shape data
      */
-    public Shape(final Element svgElement) {
+    public Shape(final SvgElement svgElement) {
         id = svgElement.getAttribute("id");
         typeId = svgElement.getAttribute("typeId");
         try {
@@ -119,6 +174,136 @@ public abstract class Shape implements Serializable {
         this.id = id;
     }
 
+    /**
+     * Give the shape a new random identifier, used when its identifier is missing or taken by another shape.
+     */
+    public void renewId() {
+        id = UUID.randomUUID().toString();
+    }
+
+    /**
+     * Set the stroke color of the shape.
+     *
+     * @param color new stroke color
+     */
+    public void setColor(final Color color) {
+        this.color = color;
+        awtColor = null;
+    }
+
+    /**
+     * Set the fill color of the shape.
+     *
+     * @param fill new fill color, null for no fill
+     */
+    public void setFill(final Color fill) {
+        this.fill = fill;
+        awtFill = null;
+    }
+
+    /**
+     * Set the stroke width of the shape.
+     *
+     * @param strokeWidth new stroke width in pixels
+     */
+    public void setStrokeWidth(final float strokeWidth) {
+        this.strokeWidth = strokeWidth;
+        stroke = null;
+        paintBounds = null;
+    }
+
+    /**
+     * Discard the cached geometry and bounds.
+     * Must be called by subclasses whenever their position or size changes.
+     */
+    protected void invalidate() {
+        geometry = null;
+        bounds = null;
+        paintBounds = null;
+    }
+
+    /**
+     * Return the Java2D geometry of the shape, creating it on first use.
+     *
+     * @return cached geometry
+     */
+    protected java.awt.Shape getGeometry() {
+        java.awt.Shape cached = geometry;
+        if (cached == null) {
+            cached = createGeometry();
+            geometry = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Return the stroke used to outline the shape, creating it on first use.
+     *
+     * @return cached stroke
+     */
+    protected Stroke getStroke() {
+        Stroke cached = stroke;
+        if (cached == null) {
+            cached = createStroke();
+            stroke = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Return the stroke color as an AWT color, converting it on first use.
+     *
+     * @return cached AWT stroke color
+     */
+    public java.awt.Color getAwtColor() {
+        java.awt.Color cached = awtColor;
+        if (cached == null) {
+            cached = color.toAwtColor();
+            awtColor = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Return the fill color as an AWT color, converting it on first use.
+     *
+     * @return cached AWT fill color, null if the shape has no fill
+     */
+    protected java.awt.Color getAwtFill() {
+        if (fill == null) {
+            return null;
+        }
+        java.awt.Color cached = awtFill;
+        if (cached == null) {
+            cached = fill.toAwtColor();
+            awtFill = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Create the Java2D geometry of the shape.
+     *
+     * @return shape's geometry
+     */
+    protected abstract java.awt.Shape createGeometry();
+
+    /**
+     * Create the stroke used to outline the shape.
+     *
+     * @return shape's stroke
+     */
+    protected Stroke createStroke() {
+        return new BasicStroke(strokeWidth);
+    }
+
+    /**
+     * Compute the bounding rectangle of the shape.
+     *
+     * @return shape's bounding rectangle
+     */
+    protected abstract Rectangle computeBounds();
+
     /**
      * Create a copy of this shape.
      *
@@ -142,6 +327,51 @@ public abstract class Shape implements Serializable {
      */
     public abstract boolean contains(Point point);
 
+    /**
+     * Check if a circle touches the shape.
+     * The circle touches the shape if it comes within the hit tolerance of the outline,
+     * or if the shape is filled and the circle's center lies inside it.
+     * Shapes whose bounds are out of reach are rejected before any exact test.
+     *
+     * @param centerX x-coord of the circle's center
+     * @param centerY y-coord of the circle's center
+     * @param radius  radius of the circle
+     * @return True if the circle touches the shape
+     */
+    public boolean intersectsCircle(final double centerX, final double centerY, final double radius) {
+        Rectangle cached = bounds;
+        if (cached == null) {
+            cached = computeBounds();
+            bounds = cached;
+        }
+        final double reach = radius + getHitTolerance();
+        if (centerX < cached.x - reach || centerX > cached.x + cached.width + reach
+                || centerY < cached.y - reach || centerY > cached.y + cached.height + reach) {
+            return false;
+        }
+        return isOutlineWithin(centerX, centerY, reach)
+                || fill != null && getGeometry().contains(centerX, centerY);
+    }
+
+    /**
+     * Return the distance from the outline within which a point counts as touching the shape.
+     *
+     * @return hit tolerance in pixels
+     */
+    protected int getHitTolerance() {
+        return Math.max(3, (int) strokeWidth);
+    }
+
+    /**
+     * Check if the outline of the shape comes within a distance of a point.
+     *
+     * @param px       x-coord of the point
+     * @param py       y-coord of the point
+     * @param distance maximum distance from the outline
+     * @return True if some point of the outline is within the distance
+     */
+    protected abstract boolean isOutlineWithin(double px, double py, double distance);
+
     /**
      * Move the shape by the specified delta.
      *
@@ -153,16 +383,79 @@ public abstract class Shape implements Serializable {
     /**
      * Get the bounding rectangle of the shape.
      *
-     * @return shape's bounding rectangle
+     * @return copy of the shape's bounding rectangle
      */
-    public abstract Rectangle getBounds();
+    public Rectangle getBounds() {
+        Rectangle cached = bounds;
+        if (cached == null) {
+            cached = computeBounds();
+            bounds = cached;
+        }
+        return new Rectangle(cached);
+    }
+
+    /**
+     * Get the rectangle covering every pixel the shape paints,
+     * including stroke width and an antialiasing margin.
+     *
+     * @return copy of the shape's painted area
+     */
+    public Rectangle getPaintBounds() {
+        Rectangle cached = paintBounds;
+        if (cached == null) {
+            cached = computePaintBounds();
+            paintBounds = cached;
+        }
+        return new Rectangle(cached);
+    }
+
+    /**
+     * Get the rectangle within which the shape can be hit, its bounds grown by the hit tolerance.
+     *
+     * @return shape's hit area
+     */
+    public Rectangle getHitBounds() {
+        final Rectangle bounds = getBounds();
+        final int tolerance = getHitTolerance();
+        bounds.grow(tolerance, tolerance);
+        return bounds;
+    }
+
+    /**
+     * Compute the painted area of the shape.
+     * Square caps and right-angle miters reach half the stroke width times sqrt(2) past the outline.
+     *
+     * @return shape's painted area
+     */
+    protected Rectangle computePaintBounds() {
+        final Rectangle bounds = getBounds();
+        final int margin = (int) Math.ceil(strokeWidth * Math.sqrt(0.5)) + 2;
+        bounds.grow(margin, margin);
+        return bounds;
+    }
 
     /**
      * Convert the shape to an SVG string representation.
      *
      * @return SVG string representation
      */
-    public abstract String toSvgString();
+    public String toSvgString() {
+        final StringWriter svg = new StringWriter();
+        try (final SvgWriter out = new SvgWriter(svg)) {
+            writeSvg(out);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return svg.toString();
+    }
+
+    /**
+     * Write the shape as an SVG element.
+     *
+     * @param out SVG writer
+     * @throws IOException if the writer fails
+     */
+    public abstract void writeSvg(SvgWriter out) throws IOException;
 
     /**
      * Resize the shape by the specified deltas.
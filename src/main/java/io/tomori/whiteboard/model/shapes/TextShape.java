@@ -4,18 +4,25 @@ package io.tomori.whiteboard.model.shapes;
 
 import io.tomori.whiteboard.constant.ShapeConstant;
 import io.tomori.whiteboard.model.Color;
+import io.tomori.whiteboard.util.FontUtil;
+import io.tomori.whiteboard.util.SvgElement;
+import io.tomori.whiteboard.util.SvgWriter;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
-import org.w3c.dom.Element;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.awt.*;
-import java.awt.font.FontRenderContext;
 import java.awt.font.TextLayout;
 import java.awt.geom.Rectangle2D;
+import java.io.IOException;
 
 /**
  * Text shape implementation for the whiteboard.
  * Represent a text element with position and font attributes.
+ * The laid-out text is cached and only rebuilt when the text or font changes.
  */
 @EqualsAndHashCode(callSuper = true)
 @Data
@@ -40,6 +47,13 @@ public class TextShape extends Shape {
      * Style of the font (PLAIN, BOLD, ITALIC)
      */
     private int fontStyle;
+    /**
+     * Cached layout of the text at the origin, null until computed
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient TextLayout layout;
 
     /**
      * Create a text shape at the specified position.
@@ -58,12 +72,31 @@ public class TextShape extends Shape {
         typeId = ShapeConstant.TEXT_SHAPE;
     }
 
+    /**
+     * Create a text shape with the specified ID at the specified position.
+     *
+     * @param id   shape identifier
+     * @param x    x-coord
+     * @param y    y-coord
+     * @param text text content
+     */
+    public TextShape(final String id, final int x, final int y, final String text) {
+        super(id);
+        this.x = x;
+        this.y = y;
+        this.text = text;
+        fontName = "SansSerif";
+        fontSize = 14;
+        fontStyle = Font.PLAIN;
+        typeId = ShapeConstant.TEXT_SHAPE;
+    }
+
     /**
      * Create a text shape from an SVG element.
      *
      * @param element SVG element
      */
-    public TextShape(final Element element) {
+    public TextShape(final SvgElement element) {
         super(element);
         try {
             color = Color.fromHex(element.getAttribute("color"));
@@ -96,6 +129,101 @@ public class TextShape extends Shape {
         }
     }
 
+    /**
+     * Set the x-coord of the text position.
+     *
+     * @param x new x-coord of the text position
+     */
+    public void setX(final int x) {
+        this.x = x;
+        invalidate();
+    }
+
+    /**
+     * Set the y-coord of the text baseline.
+     *
+     * @param y new y-coord of the text baseline
+     */
+    public void setY(final int y) {
+        this.y = y;
+        invalidate();
+    }
+
+    /**
+     * Set the text content.
+     *
+     * @param text new text content
+     */
+    public void setText(final String text) {
+        this.text = text;
+        invalidateLayout();
+    }
+
+    /**
+     * Set the name of the font.
+     *
+     * @param fontName new name of the font
+     */
+    public void setFontName(final String fontName) {
+        this.fontName = fontName;
+        invalidateLayout();
+    }
+
+    /**
+     * Set the size of the font in pixels.
+     *
+     * @param fontSize new size of the font in pixels
+     */
+    public void setFontSize(final int fontSize) {
+        this.fontSize = fontSize;
+        invalidateLayout();
+    }
+
+    /**
+     * Set the style of the font.
+     *
+     * @param fontStyle new style of the font
+     */
+    public void setFontStyle(final int fontStyle) {
+        this.fontStyle = fontStyle;
+        invalidateLayout();
+    }
+
+    /**
+     * Discard the cached layout along with the cached geometry and bounds.
+     */
+    private void invalidateLayout() {
+        layout = null;
+        invalidate();
+    }
+
+    /**
+     * Return the layout of the text at the origin, creating it on first use.
+     *
+     * @return cached layout, null if the text is empty
+     */
+    private TextLayout getLayout() {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        TextLayout cached = layout;
+        if (cached == null) {
+            cached = new TextLayout(text, FontUtil.getFont(fontName, fontStyle, fontSize), FontUtil.RENDER_CONTEXT);
+            layout = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Create the geometry of the text, approximated by its bounding rectangle.
+     *
+     * @return text's geometry
+     */
+    @Override
+    protected java.awt.Shape createGeometry() {
+        return getBounds();
+    }
+
     /**
      * Draw the text on the graphics context.
      *
@@ -104,13 +232,15 @@ public class TextShape extends Shape {
     @Override
     public void draw(final Graphics2D g2d) {
         if (fill != null) {
-            g2d.setColor(fill.toAwtColor());
+            g2d.setColor(getAwtFill());
         } else {
-            g2d.setColor(color.toAwtColor());
+            g2d.setColor(getAwtColor());
         }
 
-        g2d.setFont(new Font(fontName, fontStyle, fontSize));
-        g2d.drawString(text, x, y);
+        final TextLayout textLayout = getLayout();
+        if (textLayout != null) {
+            textLayout.draw(g2d, x, y);
+        }
     }
 
     /**
@@ -126,6 +256,33 @@ public class TextShape extends Shape {
         return bounds.contains(point);
     }
 
+    /**
+     * Return the hit tolerance around the text bounds.
+     *
+     * @return hit tolerance in pixels
+     */
+    @Override
+    protected int getHitTolerance() {
+        return 5;
+    }
+
+    /**
+     * Check if the text's bounding box comes within a distance of a point.
+     * The box counts as solid, so points inside it are always within reach.
+     *
+     * @param px       x-coord of the point
+     * @param py       y-coord of the point
+     * @param distance maximum distance from the box
+     * @return True if the box is within the distance
+     */
+    @Override
+    protected boolean isOutlineWithin(final double px, final double py, final double distance) {
+        final Rectangle bounds = getBounds();
+        final double dx = Math.max(0, Math.max(bounds.x - px, px - bounds.x - bounds.width));
+        final double dy = Math.max(0, Math.max(bounds.y - py, py - bounds.y - bounds.height));
+        return dx * dx + dy * dy <= distance * distance;
+    }
+
     /**
      * Move the text by the specified delta.
      *
@@ -136,19 +293,21 @@ public class TextShape extends Shape {
     public void move(final int dx, final int dy) {
         x += dx;
         y += dy;
+        invalidate();
     }
 
     /**
-     * Get the bounding rectangle of the text.
+     * Compute the bounding rectangle of the text.
      *
      * @return text's bounding rectangle
      */
     @Override
-    public Rectangle getBounds() {
-        final FontRenderContext frc = new FontRenderContext(null, true, true);
-        final Font font = new Font(fontName, fontStyle, fontSize);
-        final TextLayout layout = new TextLayout(text, font, frc);
-        final Rectangle2D bounds = layout.getBounds();
+    protected Rectangle computeBounds() {
+        final TextLayout textLayout = getLayout();
+        if (textLayout == null) {
+            return new Rectangle(x, y, 0, 0);
+        }
+        final Rectangle2D bounds = textLayout.getBounds();
         return new Rectangle(
                 x,
                 y - (int) bounds.getHeight(),
@@ -157,6 +316,20 @@ public class TextShape extends Shape {
         );
     }
 
+    /**
+     * Compute the painted area of the text, including descenders below the baseline.
+     *
+     * @return text's painted area
+     */
+    @Override
+    protected Rectangle computePaintBounds() {
+        final TextLayout textLayout = getLayout();
+        final Rectangle bounds = textLayout == null ? new Rectangle() : textLayout.getBounds().getBounds();
+        bounds.translate(x, y);
+        bounds.grow(2, 2);
+        return bounds;
+    }
+
     /**
      * Create a copy of this text shape.
      *
@@ -171,27 +344,32 @@ public class TextShape extends Shape {
         copy.setColor(color);
         copy.setStrokeWidth(strokeWidth);
         copy.setId(id);
+        copy.setZKey(zKey);
         copy.setFill(fill);
+        copy.layout = layout;
         return copy;
     }
 
     /**
-     * Convert the text to an SVG string.
+     * Write the text as an SVG element.
      *
-     * @return SVG representation of the text
+     * @param out SVG writer
+     * @throws IOException if the writer fails
      */
     @Override
-    public String toSvgString() {
-        final String escapedText = text.replace("&", "&amp;")
-                .replace("<", "&lt;")
-                .replace(">", "&gt;")
-                .replace("\"", "&quot;")
-                .replace("'", "&apos;");
-
-        final String fillValue = fill != null ? fill.toHex() : color.toHex();
-
-        return String.format("<text x=\"%d\" y=\"%d\" font-family=\"%s\" font-size=\"%d\" fill=\"%s\" id=\"%s\" typeId=\"%s\" color=\"%s\">%s</text>",
-                x, y, fontName, fontSize, fillValue, id, typeId, color.toHex(), escapedText);
+    public void writeSvg(final SvgWriter out) throws IOException {
+        out.startElement("text");
+        out.attribute("x", x);
+        out.attribute("y", y);
+        out.attribute("font-family", fontName);
+        out.attribute("font-size", fontSize);
+        out.attribute("fill", fill != null ? fill : color);
+        out.attribute("id", id);
+        out.attribute("typeId", typeId);
+        out.attribute("color", color);
+        out.endStartTag();
+        out.escaped(text);
+        out.endElement("text");
     }
 
     /**
@@ -210,6 +388,7 @@ public class TextShape extends Shape {
         final int newFontSize = (int) (fontSize * ratio);
         if (newFontSize >= 8 && newFontSize <= 72) {
             fontSize = newFontSize;
+            invalidateLayout();
         }
     }
 } 
@@ -3,12 +3,15 @@
 package io.tomori.whiteboard.model.shapes;
 
 import io.tomori.whiteboard.constant.ShapeConstant;
+import io.tomori.whiteboard.util.SvgElement;
+import io.tomori.whiteboard.util.SvgWriter;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
-import org.w3c.dom.Element;
 
 import java.awt.*;
+import java.awt.geom.Line2D;
 import java.awt.geom.Path2D;
+import java.io.IOException;
 
 /**
  * Triangle shape implementation for the whiteboard.
@@ -44,12 +47,28 @@ public class TriangleShape extends Shape {
         typeId = ShapeConstant.TRIANGLE_SHAPE;
     }
 
+    /**
+     * Create a triangle with the specified ID and vertices.
+     *
+     * @param id shape identifier
+     * @param p1 first vertex
+     * @param p2 second vertex
+     * @param p3 third vertex
+     */
+    public TriangleShape(final String id, final Point p1, final Point p2, final Point p3) {
+        super(id);
+        this.p1 = new Point(p1);
+        this.p2 = new Point(p2);
+        this.p3 = new Point(p3);
+        typeId = ShapeConstant.TRIANGLE_SHAPE;
+    }
+
     /**
      * Create a triangle from an SVG element.
      *
      * @param element SVG element
      */
-    public TriangleShape(final Element element) {
+    public TriangleShape(final SvgElement element) {
         super(element);
         try {
             final String pointsStr = element.getAttribute("points");
@@ -115,6 +134,36 @@ public class TriangleShape extends Shape {
         }
     }
 
+    /**
+     * Set the first vertex of the triangle.
+     *
+     * @param p1 new first vertex of the triangle
+     */
+    public void setP1(final Point p1) {
+        this.p1 = p1;
+        invalidate();
+    }
+
+    /**
+     * Set the second vertex of the triangle.
+     *
+     * @param p2 new second vertex of the triangle
+     */
+    public void setP2(final Point p2) {
+        this.p2 = p2;
+        invalidate();
+    }
+
+    /**
+     * Set the third vertex of the triangle.
+     *
+     * @param p3 new third vertex of the triangle
+     */
+    public void setP3(final Point p3) {
+        this.p3 = p3;
+        invalidate();
+    }
+
     /**
      * Draw the triangle on the graphics context.
      *
@@ -124,16 +173,15 @@ public class TriangleShape extends Shape {
     public void draw(final Graphics2D g2d) {
         final Stroke originalStroke = g2d.getStroke();
         final Color originalColor = g2d.getColor();
-        final Path2D path = createTrianglePath();
 
         if (fill != null) {
-            g2d.setColor(fill.toAwtColor());
-            g2d.fill(path);
+            g2d.setColor(getAwtFill());
+            g2d.fill(getGeometry());
         }
 
-        g2d.setStroke(new BasicStroke(strokeWidth));
-        g2d.setColor(color.toAwtColor());
-        g2d.draw(path);
+        g2d.setStroke(getStroke());
+        g2d.setColor(getAwtColor());
+        g2d.draw(getGeometry());
 
         g2d.setStroke(originalStroke);
         g2d.setColor(originalColor);
@@ -144,7 +192,8 @@ public class TriangleShape extends Shape {
      *
      * @return triangle as a Path2D object
      */
-    private Path2D createTrianglePath() {
+    @Override
+    protected java.awt.Shape createGeometry() {
         final Path2D path = new Path2D.Double();
         path.moveTo(p1.x, p1.y);
         path.lineTo(p2.x, p2.y);
@@ -167,6 +216,22 @@ public class TriangleShape extends Shape {
                 isPointNearLine(p3, p1, point, tolerance);
     }
 
+    /**
+     * Check if any edge of the triangle comes within a distance of a point.
+     *
+     * @param px       x-coord of the point
+     * @param py       y-coord of the point
+     * @param distance maximum distance from the edges
+     * @return True if an edge is within the distance
+     */
+    @Override
+    protected boolean isOutlineWithin(final double px, final double py, final double distance) {
+        final double limit = distance * distance;
+        return Line2D.ptSegDistSq(p1.x, p1.y, p2.x, p2.y, px, py) <= limit
+                || Line2D.ptSegDistSq(p2.x, p2.y, p3.x, p3.y, px, py) <= limit
+                || Line2D.ptSegDistSq(p3.x, p3.y, p1.x, p1.y, px, py) <= limit;
+    }
+
     /**
      * Move the triangle by the specified delta.
      *
@@ -178,15 +243,16 @@ public class TriangleShape extends Shape {
         p1.translate(dx, dy);
         p2.translate(dx, dy);
         p3.translate(dx, dy);
+        invalidate();
     }
 
     /**
-     * Get the bounding rectangle of the triangle.
+     * Compute the bounding rectangle of the triangle.
      *
      * @return triangle's bounding rectangle
      */
     @Override
-    public Rectangle getBounds() {
+    protected Rectangle computeBounds() {
         final int minX = Math.min(Math.min(p1.x, p2.x), p3.x);
         final int minY = Math.min(Math.min(p1.y, p2.y), p3.y);
         final int maxX = Math.max(Math.max(p1.x, p2.x), p3.x);
@@ -194,6 +260,18 @@ public class TriangleShape extends Shape {
         return new Rectangle(minX, minY, maxX - minX, maxY - minY);
     }
 
+    /**
+     * Compute the painted area of the triangle, including mitered corners.
+     *
+     * @return triangle's painted area
+     */
+    @Override
+    protected Rectangle computePaintBounds() {
+        final Rectangle bounds = getStroke().createStrokedShape(getGeometry()).getBounds();
+        bounds.grow(2, 2);
+        return bounds;
+    }
+
     /**
      * Create a copy of this triangle.
      *
@@ -205,22 +283,46 @@ public class TriangleShape extends Shape {
         copy.setColor(color);
         copy.setStrokeWidth(strokeWidth);
         copy.setId(id);
+        copy.setZKey(zKey);
         copy.setFill(fill);
         return copy;
     }
 
     /**
-     * Convert the triangle to an SVG string.
+     * Write the triangle as an SVG element.
      *
-     * @return SVG representation of the triangle
+     * @param out SVG writer
+     * @throws IOException if the writer fails
      */
     @Override
-    public String toSvgString() {
-        final String pointsStr = String.format("%d,%d %d,%d %d,%d",
-                p1.x, p1.y, p2.x, p2.y, p3.x, p3.y);
-        final String fillValue = fill != null ? fill.toHex() : "none";
-        return String.format("<polygon points=\"%s\" stroke=\"%s\" stroke-width=\"%f\" fill=\"%s\" id=\"%s\" typeId=\"%s\"/>",
-                pointsStr, color.toHex(), strokeWidth, fillValue, id, typeId);
+    public void writeSvg(final SvgWriter out) throws IOException {
+        out.startElement("polygon");
+        out.startAttribute("points");
+        writePoint(out, p1);
+        out.raw(' ');
+        writePoint(out, p2);
+        out.raw(' ');
+        writePoint(out, p3);
+        out.endAttribute();
+        out.attribute("stroke", color);
+        out.attribute("stroke-width", strokeWidth);
+        out.attribute("fill", fill);
+        out.attribute("id", id);
+        out.attribute("typeId", typeId);
+        out.endEmptyElement();
+    }
+
+    /**
+     * Write a vertex as "x,y".
+     *
+     * @param out   SVG writer
+     * @param point vertex to write
+     * @throws IOException if the writer fails
+     */
+    private static void writePoint(final SvgWriter out, final Point point) throws IOException {
+        out.number(point.x);
+        out.raw(',');
+        out.number(point.y);
     }
 
     /**
@@ -245,5 +347,6 @@ public class TriangleShape extends Shape {
         p2.y = centerY + (int) ((p2.y - centerY) * heightRatio);
         p3.x = centerX + (int) ((p3.x - centerX) * widthRatio);
         p3.y = centerY + (int) ((p3.y - centerY) * heightRatio);
+        invalidate();
     }
 }
@@ -3,12 +3,13 @@
 package io.tomori.whiteboard.model.tools;
 
 import io.tomori.whiteboard.model.Color;
+import io.tomori.whiteboard.model.board.ShapeStore;
+import io.tomori.whiteboard.model.operations.AddShapeOperation;
 import io.tomori.whiteboard.model.shapes.CircleShape;
 import io.tomori.whiteboard.model.shapes.Shape;
 
 import java.awt.*;
 import java.awt.event.MouseEvent;
-import java.util.List;
 
 /**
  * Tool for creating circle shapes on the whiteboard.
@@ -32,7 +33,7 @@ public class CircleTool extends Tool {
      * @return True if the event was handled
      */
     @Override
-    public boolean mousePressed(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mousePressed(final MouseEvent e, final ShapeStore shapes) {
         startPoint = e.getPoint();
         currentPoint = e.getPoint();
         return true;
@@ -46,7 +47,7 @@ public class CircleTool extends Tool {
      * @return True if the event was handled
      */
     @Override
-    public boolean mouseDragged(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mouseDragged(final MouseEvent e, final ShapeStore shapes) {
         currentPoint = e.getPoint();
         return true;
     }
@@ -59,7 +60,7 @@ public class CircleTool extends Tool {
      * @return True if a circle was created
      */
     @Override
-    public boolean mouseReleased(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mouseReleased(final MouseEvent e, final ShapeStore shapes) {
         if (startPoint != null) {
             currentPoint = e.getPoint();
             final int diameter = Math.max(
@@ -72,7 +73,7 @@ public class CircleTool extends Tool {
                 final CircleShape circle = new CircleShape(centerX, centerY, diameter / 2);
                 circle.setColor(color);
                 circle.setStrokeWidth(strokeWidth);
-                shapes.add(circle);
+                apply(new AddShapeOperation(circle), shapes);
             }
             startPoint = null;
             currentPoint = null;
@@ -103,6 +104,23 @@ public class CircleTool extends Tool {
         }
     }
 
+    /**
+     * Return the area of the circle preview.
+     *
+     * @return preview bounds, or null if no shape is being created
+     */
+    @Override
+    public Rectangle getTemporaryBounds() {
+        if (startPoint == null || currentPoint == null) {
+            return null;
+        }
+        final int radius = Math.max(
+                Math.abs(currentPoint.x - startPoint.x),
+                Math.abs(currentPoint.y - startPoint.y)
+        );
+        return withStrokeMargin(new Rectangle(startPoint.x - radius, startPoint.y - radius, radius * 2, radius * 2));
+    }
+
     /**
      * Create a copy of this tool.
      *
@@ -2,6 +2,12 @@
 
 package io.tomori.whiteboard.model.tools;
 
+import io.tomori.whiteboard.model.board.ShapeStore;
+import io.tomori.whiteboard.model.operations.AddShapeOperation;
+import io.tomori.whiteboard.model.operations.CompoundOperation;
+import io.tomori.whiteboard.model.operations.Operation;
+import io.tomori.whiteboard.model.operations.RemoveShapeOperation;
+import io.tomori.whiteboard.model.shapes.PathShape;
 import io.tomori.whiteboard.model.shapes.Shape;
 
 import java.awt.*;
@@ -12,12 +18,17 @@ import java.util.List;
 /**
  * Tool for erasing shapes from the whiteboard.
  * Remove shapes that come in contact with the circular eraser area.
+ * In precise mode, paths are cut where the eraser touches them and only the ink under the eraser is removed.
  */
 public class EraserTool extends Tool {
     /**
      * Minimum size of the eraser in pixels
      */
     private static final int MIN_SIZE = 10;
+    /**
+     * True to cut paths where the eraser touches them instead of removing them whole
+     */
+    private final boolean precise;
     /**
      * List of IDs of erased shapes for potential undo operations
      */
@@ -28,27 +39,19 @@ public class EraserTool extends Tool {
     private Point currentPoint = null;
 
     /**
-     * Check if a shape intersects with the eraser circle.
+     * Create an eraser that removes whole shapes.
+     */
+    public EraserTool() {
+        this(false);
+    }
+
+    /**
+     * Create an eraser.
      *
-     * @param shape        shape to check
-     * @param eraserCenter center point of the eraser
-     * @param eraserRadius radius of the eraser
-     * @return True if the shape intersects with the eraser
-     */
-    private static boolean shapeContainsEraserPoint(final Shape shape, final Point eraserCenter, final int eraserRadius) {
-        final double[] angles = {0, Math.PI / 4, Math.PI / 2, 3 * Math.PI / 4, Math.PI, 5 * Math.PI / 4, 3 * Math.PI / 2, 7 * Math.PI / 4};
-        for (final double angle : angles) {
-            final int x = (int) (eraserCenter.x + eraserRadius * Math.cos(angle));
-            final int y = (int) (eraserCenter.y + eraserRadius * Math.sin(angle));
-            final Point pointOnCircle = new Point(x, y);
-            if (shape.contains(pointOnCircle)) {
-                return true;
-            }
-        }
-        if (shape.contains(eraserCenter)) {
-            return true;
-        }
-        return false;
+     * @param precise True to cut paths where the eraser touches them instead of removing them whole
+     */
+    public EraserTool(final boolean precise) {
+        this.precise = precise;
     }
 
     /**
@@ -59,7 +62,7 @@ public class EraserTool extends Tool {
      * @return True if the event was handled
      */
     @Override
-    public boolean mousePressed(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mousePressed(final MouseEvent e, final ShapeStore shapes) {
         currentPoint = e.getPoint();
         erasedShapeIds.clear();
         eraseAt(currentPoint, shapes);
@@ -74,7 +77,7 @@ public class EraserTool extends Tool {
      * @return True if the event was handled
      */
     @Override
-    public boolean mouseDragged(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mouseDragged(final MouseEvent e, final ShapeStore shapes) {
         currentPoint = e.getPoint();
         eraseAt(currentPoint, shapes);
         return true;
@@ -88,7 +91,7 @@ public class EraserTool extends Tool {
      * @return True if the event was handled
      */
     @Override
-    public boolean mouseReleased(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mouseReleased(final MouseEvent e, final ShapeStore shapes) {
         currentPoint = null;
         return true;
     }
@@ -114,21 +117,42 @@ public class EraserTool extends Tool {
 
     /**
      * Erase shapes at the specified point.
+     * Only shapes the spatial index places near the eraser are tested. In precise mode, a cut path is replaced
+     * by its remaining pieces in the same operation, so the change is a single removal plus additions.
      *
      * @param point  center point of the eraser
      * @param shapes shapes list to check against
      */
-    private void eraseAt(final Point point, final List<Shape> shapes) {
-        final int eraserSize = calculateEraserSize();
-        final int eraserRadius = eraserSize / 2;
-        final List<Shape> shapesToRemove = new ArrayList<>();
-        for (final Shape shape : shapes) {
-            if (shapeContainsEraserPoint(shape, point, eraserRadius)) {
-                erasedShapeIds.add(shape.getId());
-                shapesToRemove.add(shape);
+    private void eraseAt(final Point point, final ShapeStore shapes) {
+        final double eraserRadius = calculateEraserSize() / 2.0;
+        final int reach = (int) Math.ceil(eraserRadius);
+        final Rectangle region = new Rectangle(point.x - reach, point.y - reach, reach * 2, reach * 2);
+        final List<String> shapeIdsToRemove = new ArrayList<>();
+        final List<Operation> additions = new ArrayList<>();
+        for (final Shape shape : shapes.query(region)) {
+            if (precise && shape instanceof final PathShape path) {
+                final List<PathShape> pieces = path.eraseCircle(point.x, point.y, eraserRadius);
+                if (pieces != null) {
+                    shapeIdsToRemove.add(path.getId());
+                    for (final PathShape piece : pieces) {
+                        additions.add(new AddShapeOperation(piece));
+                    }
+                }
+            } else if (shape.intersectsCircle(point.x, point.y, eraserRadius)) {
+                shapeIdsToRemove.add(shape.getId());
             }
         }
-        shapes.removeAll(shapesToRemove);
+        if (shapeIdsToRemove.isEmpty()) {
+            return;
+        }
+        erasedShapeIds.addAll(shapeIdsToRemove);
+        final Operation removal = new RemoveShapeOperation(shapeIdsToRemove);
+        if (additions.isEmpty()) {
+            apply(removal, shapes);
+        } else {
+            additions.addFirst(removal);
+            apply(new CompoundOperation(additions), shapes);
+        }
     }
 
     /**
@@ -157,6 +181,22 @@ public class EraserTool extends Tool {
         super.setStrokeWidth(width);
     }
 
+    /**
+     * Return the area of the eraser circle preview.
+     *
+     * @return eraser bounds, or null if the eraser is not active
+     */
+    @Override
+    public Rectangle getTemporaryBounds() {
+        if (currentPoint == null) {
+            return null;
+        }
+        final int size = calculateEraserSize();
+        final Rectangle bounds = new Rectangle(currentPoint.x - size / 2, currentPoint.y - size / 2, size, size);
+        bounds.grow(2, 2);
+        return bounds;
+    }
+
     /**
      * Create a copy of this tool.
      *
@@ -164,7 +204,7 @@ public class EraserTool extends Tool {
      */
     @Override
     public Tool clone() {
-        final EraserTool tool = new EraserTool();
+        final EraserTool tool = new EraserTool(precise);
         tool.setColor(color);
         tool.setStrokeWidth(strokeWidth);
         return tool;
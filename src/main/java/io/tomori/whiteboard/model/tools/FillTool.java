@@ -2,11 +2,12 @@
 
 package io.tomori.whiteboard.model.tools;
 
+import io.tomori.whiteboard.model.board.ShapeStore;
+import io.tomori.whiteboard.model.operations.FillShapeOperation;
 import io.tomori.whiteboard.model.shapes.Shape;
 
 import java.awt.*;
 import java.awt.event.MouseEvent;
-import java.util.List;
 
 /**
  * Tool for filling shapes on the whiteboard.
@@ -26,13 +27,13 @@ public class FillTool extends Tool {
      * @return True if a shape was selected and filled
      */
     @Override
-    public boolean mousePressed(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mousePressed(final MouseEvent e, final ShapeStore shapes) {
         selectedShape = null;
         for (int i = shapes.size() - 1; i >= 0; i--) {
             final Shape shape = shapes.get(i);
             if (shape.contains(e.getPoint())) {
                 selectedShape = shape;
-                selectedShape.setFill(color);
+                apply(new FillShapeOperation(selectedShape.getId(), color), shapes);
                 return true;
             }
         }
@@ -47,7 +48,7 @@ public class FillTool extends Tool {
      * @return Always true to maintain operation
      */
     @Override
-    public boolean mouseDragged(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mouseDragged(final MouseEvent e, final ShapeStore shapes) {
         return true;
     }
 
@@ -59,7 +60,7 @@ public class FillTool extends Tool {
      * @return True if a shape was filled
      */
     @Override
-    public boolean mouseReleased(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mouseReleased(final MouseEvent e, final ShapeStore shapes) {
         return selectedShape != null;
     }
 
@@ -2,12 +2,13 @@
 
 package io.tomori.whiteboard.model.tools;
 
+import io.tomori.whiteboard.model.board.ShapeStore;
+import io.tomori.whiteboard.model.operations.AddShapeOperation;
 import io.tomori.whiteboard.model.shapes.OvalShape;
 import io.tomori.whiteboard.model.shapes.Shape;
 
 import java.awt.*;
 import java.awt.event.MouseEvent;
-import java.util.List;
 
 /**
  * Tool for creating oval shapes on the whiteboard.
@@ -31,7 +32,7 @@ public class OvalTool extends Tool {
      * @return True if the event was handled
      */
     @Override
-    public boolean mousePressed(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mousePressed(final MouseEvent e, final ShapeStore shapes) {
         startPoint = e.getPoint();
         currentPoint = e.getPoint();
         return true;
@@ -45,7 +46,7 @@ public class OvalTool extends Tool {
      * @return True if the event was handled
      */
     @Override
-    public boolean mouseDragged(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mouseDragged(final MouseEvent e, final ShapeStore shapes) {
         currentPoint = e.getPoint();
         return true;
     }
@@ -58,7 +59,7 @@ public class OvalTool extends Tool {
      * @return True if an oval was created
      */
     @Override
-    public boolean mouseReleased(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mouseReleased(final MouseEvent e, final ShapeStore shapes) {
         if (startPoint != null) {
             currentPoint = e.getPoint();
             final int radiusX = Math.abs(currentPoint.x - startPoint.x);
@@ -69,7 +70,7 @@ public class OvalTool extends Tool {
                 final OvalShape oval = new OvalShape(centerX, centerY, radiusX, radiusY);
                 oval.setColor(color);
                 oval.setStrokeWidth(strokeWidth);
-                shapes.add(oval);
+                apply(new AddShapeOperation(oval), shapes);
             }
             startPoint = null;
             currentPoint = null;
@@ -98,6 +99,21 @@ public class OvalTool extends Tool {
         }
     }
 
+    /**
+     * Return the area of the oval preview.
+     *
+     * @return preview bounds, or null if no shape is being created
+     */
+    @Override
+    public Rectangle getTemporaryBounds() {
+        if (startPoint == null || currentPoint == null) {
+            return null;
+        }
+        final int radiusX = Math.abs(currentPoint.x - startPoint.x);
+        final int radiusY = Math.abs(currentPoint.y - startPoint.y);
+        return withStrokeMargin(new Rectangle(startPoint.x - radiusX, startPoint.y - radiusY, radiusX * 2, radiusY * 2));
+    }
+
     /**
      * Create a copy of this tool.
      *
@@ -3,23 +3,48 @@
 package io.tomori.whiteboard.model.tools;
 
 import io.tomori.whiteboard.model.Color;
+import io.tomori.whiteboard.model.board.ShapeStore;
+import io.tomori.whiteboard.model.operations.AddShapeOperation;
 import io.tomori.whiteboard.model.shapes.PathShape;
 import io.tomori.whiteboard.model.shapes.Shape;
+import io.tomori.whiteboard.util.StrokeUtil;
+import lombok.Getter;
+import lombok.Setter;
 
 import java.awt.*;
 import java.awt.event.MouseEvent;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Tool for freehand drawing on the whiteboard.
  * Create path shapes by tracking mouse movements during drag operations.
+ * Jitter is filtered while capturing and the finished stroke is simplified or fitted with curves,
+ * within a tolerance proportional to the stroke width.
  */
 public class PenTool extends Tool {
     /**
-     * List of points that make up the current drawing path
+     * Default simplification tolerance as a fraction of the stroke width
      */
-    private final List<Point> temporaryPoints = new ArrayList<>();
+    public static final float DEFAULT_SIMPLIFICATION = 0.25f;
+    /**
+     * Minimum distance in pixels between captured points, so that single-pixel jitter is dropped
+     */
+    private static final double MIN_CAPTURE_DISTANCE = 1.5;
+    /**
+     * Simplification tolerance as a fraction of the stroke width, 0 to keep every captured point
+     */
+    @Getter
+    @Setter
+    private float simplification = DEFAULT_SIMPLIFICATION;
+    /**
+     * True to store finished strokes as fitted Bezier curves instead of simplified polylines
+     */
+    @Getter
+    @Setter
+    private boolean curveFitting = true;
+    /**
+     * Builder collecting the points of the current drawing path
+     */
+    private final PathShape.Builder pathBuilder = new PathShape.Builder();
 
     /**
      * Handle mouse press to start a new path.
@@ -29,9 +54,9 @@ public class PenTool extends Tool {
      * @return True if the event was handled
      */
     @Override
-    public boolean mousePressed(final MouseEvent e, final List<Shape> shapes) {
-        temporaryPoints.clear();
-        temporaryPoints.add(e.getPoint());
+    public boolean mousePressed(final MouseEvent e, final ShapeStore shapes) {
+        pathBuilder.clear();
+        pathBuilder.add(e.getX(), e.getY());
         return true;
     }
 
@@ -43,11 +68,26 @@ public class PenTool extends Tool {
      * @return True if the event was handled
      */
     @Override
-    public boolean mouseDragged(final MouseEvent e, final List<Shape> shapes) {
-        temporaryPoints.add(e.getPoint());
+    public boolean mouseDragged(final MouseEvent e, final ShapeStore shapes) {
+        final int size = pathBuilder.size();
+        if (size == 0 || simplification <= 0 || StrokeUtil.isSignificant(
+                size >= 2 ? pathBuilder.getX(size - 2) : 0, size >= 2 ? pathBuilder.getY(size - 2) : 0, size >= 2,
+                pathBuilder.getX(size - 1), pathBuilder.getY(size - 1), e.getX(), e.getY(),
+                Math.max(MIN_CAPTURE_DISTANCE, getTolerance()))) {
+            pathBuilder.add(e.getX(), e.getY());
+        }
         return true;
     }
 
+    /**
+     * Return the maximum distance a simplified stroke may deviate from the captured one.
+     *
+     * @return tolerance in pixels
+     */
+    private double getTolerance() {
+        return simplification * strokeWidth;
+    }
+
     /**
      * Handle mouse release to finish and create the final path.
      *
@@ -56,14 +96,19 @@ public class PenTool extends Tool {
      * @return True if a path was created
      */
     @Override
-    public boolean mouseReleased(final MouseEvent e, final List<Shape> shapes) {
-        temporaryPoints.add(e.getPoint());
-        if (temporaryPoints.size() >= 2) {
-            final PathShape currentPath = new PathShape(new ArrayList<>(temporaryPoints));
+    public boolean mouseReleased(final MouseEvent e, final ShapeStore shapes) {
+        final int size = pathBuilder.size();
+        if (size == 1 || size > 1 && (pathBuilder.getX(size - 1) != e.getX() || pathBuilder.getY(size - 1) != e.getY())) {
+            pathBuilder.add(e.getX(), e.getY());
+        }
+        if (pathBuilder.size() >= 2) {
+            final PathShape currentPath = curveFitting && simplification > 0
+                    ? pathBuilder.buildCurve(getTolerance())
+                    : pathBuilder.build(getTolerance());
             currentPath.setColor(color);
             currentPath.setStrokeWidth(strokeWidth);
-            shapes.add(currentPath);
-            temporaryPoints.clear();
+            apply(new AddShapeOperation(currentPath), shapes);
+            pathBuilder.clear();
             return true;
         }
         return false;
@@ -76,21 +121,35 @@ public class PenTool extends Tool {
      */
     @Override
     public void drawTemporary(final Graphics2D g2d) {
-        if (temporaryPoints.size() >= 2) {
+        if (pathBuilder.size() >= 2) {
             final Stroke originalStroke = g2d.getStroke();
             final Color originalColor = new Color(g2d.getColor());
             g2d.setStroke(new BasicStroke(strokeWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
             g2d.setColor(color.toAwtColor());
-            for (int i = 0; i < temporaryPoints.size() - 1; i++) {
-                final Point p1 = temporaryPoints.get(i);
-                final Point p2 = temporaryPoints.get(i + 1);
-                g2d.drawLine(p1.x, p1.y, p2.x, p2.y);
-            }
+            g2d.draw(pathBuilder.getPreview());
             g2d.setStroke(originalStroke);
             g2d.setColor(originalColor.toAwtColor());
         }
     }
 
+    /**
+     * Return the area of the most recent preview segment, as earlier segments are already painted.
+     *
+     * @return bounds of the last segment, or null if no path is in progress
+     */
+    @Override
+    public Rectangle getTemporaryBounds() {
+        final int size = pathBuilder.size();
+        if (size == 0) {
+            return null;
+        }
+        final Rectangle bounds = new Rectangle(pathBuilder.getX(size - 1), pathBuilder.getY(size - 1), 0, 0);
+        if (size >= 2) {
+            bounds.add(pathBuilder.getX(size - 2), pathBuilder.getY(size - 2));
+        }
+        return withStrokeMargin(bounds);
+    }
+
     /**
      * Create a copy of this tool.
      *
@@ -101,6 +160,8 @@ public class PenTool extends Tool {
         final PenTool tool = new PenTool();
         tool.setColor(color);
         tool.setStrokeWidth(strokeWidth);
+        tool.setSimplification(simplification);
+        tool.setCurveFitting(curveFitting);
         return tool;
     }
 } 
@@ -2,12 +2,13 @@
 
 package io.tomori.whiteboard.model.tools;
 
+import io.tomori.whiteboard.model.board.ShapeStore;
+import io.tomori.whiteboard.model.operations.AddShapeOperation;
 import io.tomori.whiteboard.model.shapes.RectangleShape;
 import io.tomori.whiteboard.model.shapes.Shape;
 
 import java.awt.*;
 import java.awt.event.MouseEvent;
-import java.util.List;
 
 /**
  * Tool for creating rectangle shapes on the whiteboard.
@@ -31,7 +32,7 @@ public class RectangleTool extends Tool {
      * @return True if the event was handled
      */
     @Override
-    public boolean mousePressed(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mousePressed(final MouseEvent e, final ShapeStore shapes) {
         startPoint = e.getPoint();
         currentPoint = e.getPoint();
         return true;
@@ -45,7 +46,7 @@ public class RectangleTool extends Tool {
      * @return True if the event was handled
      */
     @Override
-    public boolean mouseDragged(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mouseDragged(final MouseEvent e, final ShapeStore shapes) {
         currentPoint = e.getPoint();
         return true;
     }
@@ -58,7 +59,7 @@ public class RectangleTool extends Tool {
      * @return True if a rectangle was created
      */
     @Override
-    public boolean mouseReleased(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mouseReleased(final MouseEvent e, final ShapeStore shapes) {
         if (startPoint != null) {
             currentPoint = e.getPoint();
             final int x = Math.min(startPoint.x, currentPoint.x);
@@ -69,7 +70,7 @@ public class RectangleTool extends Tool {
                 final RectangleShape rectangle = new RectangleShape(x, y, width, height);
                 rectangle.setColor(color);
                 rectangle.setStrokeWidth(strokeWidth);
-                shapes.add(rectangle);
+                apply(new AddShapeOperation(rectangle), shapes);
             }
             startPoint = null;
             currentPoint = null;
@@ -100,6 +101,21 @@ public class RectangleTool extends Tool {
         }
     }
 
+    /**
+     * Return the area of the rectangle preview.
+     *
+     * @return preview bounds, or null if no shape is being created
+     */
+    @Override
+    public Rectangle getTemporaryBounds() {
+        if (startPoint == null || currentPoint == null) {
+            return null;
+        }
+        final Rectangle bounds = new Rectangle(startPoint);
+        bounds.add(currentPoint);
+        return withStrokeMargin(bounds);
+    }
+
     /**
      * Create a copy of this tool.
      *
@@ -2,12 +2,15 @@
 
 package io.tomori.whiteboard.model.tools;
 
+import io.tomori.whiteboard.model.board.ShapeStore;
+import io.tomori.whiteboard.model.operations.MoveShapeOperation;
+import io.tomori.whiteboard.model.operations.ReorderShapeOperation;
+import io.tomori.whiteboard.model.operations.ReplaceShapeOperation;
 import io.tomori.whiteboard.model.shapes.Shape;
 
 import java.awt.*;
 import java.awt.event.MouseEvent;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Tool for selecting and manipulating shapes on the whiteboard.
@@ -34,6 +37,10 @@ public class SelectionTool extends Tool {
      * Current resize handle being manipulated
      */
     private ResizeHandle currentHandle = ResizeHandle.NONE;
+    /**
+     * Copy of the selected shape before the current resize, null if not resizing
+     */
+    private Shape shapeBeforeResize = null;
 
     /**
      * Check if a point is within a handle's bounds.
@@ -83,31 +90,25 @@ public class SelectionTool extends Tool {
      * @return True if the event was handled
      */
     @Override
-    public boolean mousePressed(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mousePressed(final MouseEvent e, final ShapeStore shapes) {
         startPoint = e.getPoint();
         lastPoint = e.getPoint();
+        if (selectedShape != null) {
+            selectedShape = shapes.getById(selectedShape.getId());
+        }
         if (selectedShape != null) {
             currentHandle = getResizeHandleAt(e.getPoint());
             if (currentHandle != ResizeHandle.NONE) {
+                shapeBeforeResize = selectedShape.clone();
                 return true;
             }
         }
-        for (int i = shapes.size() - 1; i >= 0; i--) {
-            final Shape shape = shapes.get(i);
+        final List<Shape> candidates = shapes.getSnapshot().query(new Rectangle(e.getX(), e.getY(), 1, 1));
+        for (int i = candidates.size() - 1; i >= 0; i--) {
+            final Shape shape = candidates.get(i);
             if (shape.contains(e.getPoint())) {
-                selectedShape = shape;
-                if (i < shapes.size() - 1) {
-                    final Shape shapeToMove = shapes.get(i);
-                    final List<Shape> newShapes = new CopyOnWriteArrayList<>();
-                    for (int j = 0; j < shapes.size(); j++) {
-                        if (j != i) {
-                            newShapes.add(shapes.get(j));
-                        }
-                    }
-                    newShapes.add(shapeToMove);
-                    shapes.clear();
-                    shapes.addAll(newShapes);
-                }
+                apply(new ReorderShapeOperation(shape.getId()), shapes);
+                selectedShape = shapes.getById(shape.getId());
                 return true;
             }
         }
@@ -123,19 +124,31 @@ public class SelectionTool extends Tool {
      * @return True if a shape was manipulated
      */
     @Override
-    public boolean mouseDragged(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mouseDragged(final MouseEvent e, final ShapeStore shapes) {
         if (selectedShape != null) {
+            final String id = selectedShape.getId();
             if (currentHandle != ResizeHandle.NONE) {
-                resizeShape(e.getPoint());
-                lastPoint = e.getPoint();
-                return true;
+                final Shape resized = selectedShape.clone();
+                resizeShape(resized, e.getPoint());
+                final List<Shape> replaced;
+                synchronized (shapes) {
+                    replaced = shapes.replaceAllById(List.of(resized));
+                }
+                if (!replaced.isEmpty()) {
+                    markDirty(replaced.getFirst());
+                    markDirty(resized);
+                }
             } else {
                 final int dx = e.getX() - lastPoint.x;
                 final int dy = e.getY() - lastPoint.y;
-                selectedShape.move(dx, dy);
-                lastPoint = e.getPoint();
-                return true;
+                apply(new MoveShapeOperation(id, dx, dy), shapes);
             }
+            selectedShape = shapes.getById(id);
+            if (selectedShape == null) {
+                return false;
+            }
+            lastPoint = e.getPoint();
+            return true;
         }
         return false;
     }
@@ -148,11 +161,15 @@ public class SelectionTool extends Tool {
      * @return True if an operation was completed
      */
     @Override
-    public boolean mouseReleased(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mouseReleased(final MouseEvent e, final ShapeStore shapes) {
         if (selectedShape != null) {
             if (Math.abs(e.getX() - startPoint.x) < 5 && Math.abs(e.getY() - startPoint.y) < 5
                     && currentHandle == ResizeHandle.NONE) {
             }
+            if (shapeBeforeResize != null && !shapeBeforeResize.equals(selectedShape)) {
+                record(new ReplaceShapeOperation(shapeBeforeResize, selectedShape));
+            }
+            shapeBeforeResize = null;
             currentHandle = ResizeHandle.NONE;
             return true;
         }
@@ -202,40 +219,41 @@ public class SelectionTool extends Tool {
     }
 
     /**
-     * Resize selected shape based on the current handle and mouse position.
+     * Resize a shape based on the current handle and mouse position.
      *
+     * @param shape shape to resize
      * @param point current mouse position
      */
-    private void resizeShape(final Point point) {
-        if (selectedShape == null || currentHandle == ResizeHandle.NONE) {
+    private void resizeShape(final Shape shape, final Point point) {
+        if (currentHandle == ResizeHandle.NONE) {
             return;
         }
         final int dx = point.x - lastPoint.x;
         final int dy = point.y - lastPoint.y;
         switch (currentHandle) {
             case TOP_LEFT:
-                resizeShape(selectedShape, -dx, -dy);
+                resizeShape(shape, -dx, -dy);
                 break;
             case TOP_RIGHT:
-                resizeShape(selectedShape, dx, -dy);
+                resizeShape(shape, dx, -dy);
                 break;
             case BOTTOM_LEFT:
-                resizeShape(selectedShape, -dx, dy);
+                resizeShape(shape, -dx, dy);
                 break;
             case BOTTOM_RIGHT:
-                resizeShape(selectedShape, dx, dy);
+                resizeShape(shape, dx, dy);
                 break;
             case TOP_CENTER:
-                resizeShape(selectedShape, 0, -dy);
+                resizeShape(shape, 0, -dy);
                 break;
             case BOTTOM_CENTER:
-                resizeShape(selectedShape, 0, dy);
+                resizeShape(shape, 0, dy);
                 break;
             case LEFT_CENTER:
-                resizeShape(selectedShape, -dx, 0);
+                resizeShape(shape, -dx, 0);
                 break;
             case RIGHT_CENTER:
-                resizeShape(selectedShape, dx, 0);
+                resizeShape(shape, dx, 0);
                 break;
             default:
                 break;
@@ -270,6 +288,21 @@ public class SelectionTool extends Tool {
         }
     }
 
+    /**
+     * Return the area of the selection outline and its resize handles.
+     *
+     * @return selection bounds, or null if nothing is selected
+     */
+    @Override
+    public Rectangle getTemporaryBounds() {
+        if (selectedShape == null) {
+            return null;
+        }
+        final Rectangle bounds = selectedShape.getBounds();
+        bounds.grow(HANDLE_SIZE, HANDLE_SIZE);
+        return bounds;
+    }
+
     /**
      * Create a copy of this tool.
      *
@@ -2,12 +2,13 @@
 
 package io.tomori.whiteboard.model.tools;
 
+import io.tomori.whiteboard.model.board.ShapeStore;
+import io.tomori.whiteboard.model.operations.AddShapeOperation;
 import io.tomori.whiteboard.model.shapes.RectangleShape;
 import io.tomori.whiteboard.model.shapes.Shape;
 
 import java.awt.*;
 import java.awt.event.MouseEvent;
-import java.util.List;
 
 /**
  * Tool for creating square shapes on the whiteboard.
@@ -31,7 +32,7 @@ public class SquareTool extends Tool {
      * @return True if the event was handled
      */
     @Override
-    public boolean mousePressed(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mousePressed(final MouseEvent e, final ShapeStore shapes) {
         startPoint = e.getPoint();
         currentPoint = e.getPoint();
         return true;
@@ -45,7 +46,7 @@ public class SquareTool extends Tool {
      * @return True if the event was handled
      */
     @Override
-    public boolean mouseDragged(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mouseDragged(final MouseEvent e, final ShapeStore shapes) {
         currentPoint = e.getPoint();
         return true;
     }
@@ -58,7 +59,7 @@ public class SquareTool extends Tool {
      * @return True if a square was created
      */
     @Override
-    public boolean mouseReleased(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mouseReleased(final MouseEvent e, final ShapeStore shapes) {
         if (startPoint != null) {
             currentPoint = e.getPoint();
             final int size = Math.max(
@@ -77,7 +78,7 @@ public class SquareTool extends Tool {
                 final RectangleShape square = new RectangleShape(x, y, size, size);
                 square.setColor(color);
                 square.setStrokeWidth(strokeWidth);
-                shapes.add(square);
+                apply(new AddShapeOperation(square), shapes);
             }
             startPoint = null;
             currentPoint = null;
@@ -116,6 +117,25 @@ public class SquareTool extends Tool {
         }
     }
 
+    /**
+     * Return the area of the square preview.
+     *
+     * @return preview bounds, or null if no shape is being created
+     */
+    @Override
+    public Rectangle getTemporaryBounds() {
+        if (startPoint == null || currentPoint == null) {
+            return null;
+        }
+        final int size = Math.max(
+                Math.abs(currentPoint.x - startPoint.x),
+                Math.abs(currentPoint.y - startPoint.y)
+        );
+        final int x = currentPoint.x < startPoint.x ? startPoint.x - size : startPoint.x;
+        final int y = currentPoint.y < startPoint.y ? startPoint.y - size : startPoint.y;
+        return withStrokeMargin(new Rectangle(x, y, size, size));
+    }
+
     /**
      * Create a copy of this tool.
      *
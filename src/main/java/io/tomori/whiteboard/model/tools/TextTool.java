@@ -2,13 +2,14 @@
 
 package io.tomori.whiteboard.model.tools;
 
+import io.tomori.whiteboard.model.board.ShapeStore;
+import io.tomori.whiteboard.model.operations.AddShapeOperation;
 import io.tomori.whiteboard.model.shapes.Shape;
 import io.tomori.whiteboard.model.shapes.TextShape;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseEvent;
-import java.util.List;
 
 /**
  * Tool for adding text to the whiteboard.
@@ -28,7 +29,7 @@ public class TextTool extends Tool {
      * @return True if the event was handled
      */
     @Override
-    public boolean mousePressed(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mousePressed(final MouseEvent e, final ShapeStore shapes) {
         clickPoint = e.getPoint();
         return true;
     }
@@ -41,7 +42,7 @@ public class TextTool extends Tool {
      * @return Always false as dragging is not used
      */
     @Override
-    public boolean mouseDragged(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mouseDragged(final MouseEvent e, final ShapeStore shapes) {
         return false;
     }
 
@@ -53,7 +54,7 @@ public class TextTool extends Tool {
      * @return True if a text shape was created
      */
     @Override
-    public boolean mouseReleased(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mouseReleased(final MouseEvent e, final ShapeStore shapes) {
         if (clickPoint != null && Math.abs(e.getX() - clickPoint.x) < 5 && Math.abs(e.getY() - clickPoint.y) < 5) {
             final String text = JOptionPane.showInputDialog(null, "Enter text:", "Add Text", JOptionPane.PLAIN_MESSAGE);
             if (text != null && !text.trim().isEmpty()) {
@@ -62,7 +63,7 @@ public class TextTool extends Tool {
                 textShape.setFontName("SansSerif");
                 textShape.setFontSize(14);
                 textShape.setFontStyle(Font.PLAIN);
-                shapes.add(textShape);
+                apply(new AddShapeOperation(textShape), shapes);
             }
             clickPoint = null;
             return true;
@@ -3,11 +3,17 @@
 package io.tomori.whiteboard.model.tools;
 
 import io.tomori.whiteboard.model.Color;
+import io.tomori.whiteboard.model.board.ShapeStore;
+import io.tomori.whiteboard.model.operations.Operation;
 import io.tomori.whiteboard.model.shapes.Shape;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 
 import java.awt.*;
 import java.awt.event.MouseEvent;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -24,6 +30,18 @@ public abstract class Tool {
      * stroke width in pixels
      */
     protected float strokeWidth = 2.0f;
+    /**
+     * region of committed shapes changed since it was last consumed, null if nothing changed
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Rectangle dirtyRegion = null;
+    /**
+     * operations applied to committed shapes since they were last consumed, in order
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private List<Operation> operations = new ArrayList<>();
 
     /**
      * Create a copy of this tool.
@@ -40,6 +58,105 @@ public abstract class Tool {
      */
     public abstract void drawTemporary(final Graphics2D g2d);
 
+    /**
+     * Return the area covered by the temporary preview after the last event.
+     * The drawing panel repaints this area together with the previous one.
+     *
+     * @return preview bounds, or null if nothing is previewed
+     */
+    public Rectangle getTemporaryBounds() {
+        return null;
+    }
+
+    /**
+     * Grow a preview outline to cover the pixels painted by this tool's stroke.
+     *
+     * @param outline geometric outline of the preview
+     * @return the same rectangle, grown by the stroke margin
+     */
+    protected Rectangle withStrokeMargin(final Rectangle outline) {
+        final int margin = (int) Math.ceil(strokeWidth * Math.sqrt(0.5)) + 2;
+        outline.grow(margin, margin);
+        return outline;
+    }
+
+    /**
+     * Record that a shape was added, removed or changed by this tool.
+     *
+     * @param shape shape whose painted area must be redrawn
+     */
+    protected void markDirty(final Shape shape) {
+        markDirty(shape.getPaintBounds());
+    }
+
+    /**
+     * Record a region of committed shapes that must be redrawn.
+     *
+     * @param region region to redraw
+     */
+    protected void markDirty(final Rectangle region) {
+        if (dirtyRegion == null) {
+            dirtyRegion = new Rectangle(region);
+        } else {
+            dirtyRegion.add(region);
+        }
+    }
+
+    /**
+     * Return and reset the region of committed shapes changed since the last call.
+     *
+     * @return changed region, or null if no shape changed
+     */
+    public Rectangle consumeDirtyRegion() {
+        final Rectangle region = dirtyRegion;
+        dirtyRegion = null;
+        return region;
+    }
+
+    /**
+     * Apply an operation to the shapes list, marking its region dirty and recording it for undo.
+     *
+     * @param operation operation to apply
+     * @param shapes    shapes list in the whiteboard
+     */
+    protected void apply(final Operation operation, final ShapeStore shapes) {
+        final Rectangle region;
+        synchronized (shapes) {
+            region = operation.apply(shapes);
+        }
+        if (region != null) {
+            markDirty(region);
+            record(operation);
+        }
+    }
+
+    /**
+     * Record an operation this tool already performed, merging it with the previous one when possible.
+     *
+     * @param operation applied operation
+     */
+    protected void record(final Operation operation) {
+        if (!operations.isEmpty()) {
+            final Operation merged = operations.getLast().merge(operation);
+            if (merged != null) {
+                operations.set(operations.size() - 1, merged);
+                return;
+            }
+        }
+        operations.add(operation);
+    }
+
+    /**
+     * Return and reset the operations applied since the last call.
+     *
+     * @return applied operations in order, empty if no shape changed
+     */
+    public List<Operation> consumeOperations() {
+        final List<Operation> applied = operations;
+        operations = new ArrayList<>();
+        return applied;
+    }
+
     /**
      * Handle mouse press events for this tool.
      *
@@ -47,7 +164,7 @@ public abstract class Tool {
      * @param shapes shapes list in the whiteboard
      * @return True if the event was handled
      */
-    public abstract boolean mousePressed(MouseEvent e, List<Shape> shapes);
+    public abstract boolean mousePressed(MouseEvent e, ShapeStore shapes);
 
     /**
      * Handle mouse drag events for this tool.
@@ -56,7 +173,7 @@ public abstract class Tool {
      * @param shapes shapes list in the whiteboard
      * @return True if the event was handled
      */
-    public abstract boolean mouseDragged(MouseEvent e, List<Shape> shapes);
+    public abstract boolean mouseDragged(MouseEvent e, ShapeStore shapes);
 
     /**
      * Handle mouse release events for this tool.
@@ -65,5 +182,5 @@ public abstract class Tool {
      * @param shapes shapes list in the whiteboard
      * @return True if the event was handled
      */
-    public abstract boolean mouseReleased(MouseEvent e, List<Shape> shapes);
+    public abstract boolean mouseReleased(MouseEvent e, ShapeStore shapes);
 }
@@ -2,12 +2,13 @@
 
 package io.tomori.whiteboard.model.tools;
 
+import io.tomori.whiteboard.model.board.ShapeStore;
+import io.tomori.whiteboard.model.operations.AddShapeOperation;
 import io.tomori.whiteboard.model.shapes.Shape;
 import io.tomori.whiteboard.model.shapes.TriangleShape;
 
 import java.awt.*;
 import java.awt.event.MouseEvent;
-import java.util.List;
 
 /**
  * Tool for creating triangle shapes on the whiteboard.
@@ -31,7 +32,7 @@ public class TriangleTool extends Tool {
      * @return True if the event was handled
      */
     @Override
-    public boolean mousePressed(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mousePressed(final MouseEvent e, final ShapeStore shapes) {
         startPoint = e.getPoint();
         currentPoint = e.getPoint();
         return true;
@@ -45,7 +46,7 @@ public class TriangleTool extends Tool {
      * @return True if the event was handled
      */
     @Override
-    public boolean mouseDragged(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mouseDragged(final MouseEvent e, final ShapeStore shapes) {
         currentPoint = e.getPoint();
         return true;
     }
@@ -58,7 +59,7 @@ public class TriangleTool extends Tool {
      * @return True if a triangle was created
      */
     @Override
-    public boolean mouseReleased(final MouseEvent e, final List<Shape> shapes) {
+    public boolean mouseReleased(final MouseEvent e, final ShapeStore shapes) {
         if (startPoint != null && !startPoint.equals(e.getPoint())) {
             currentPoint = e.getPoint();
             final int width = Math.abs(currentPoint.x - startPoint.x) * 2;
@@ -80,7 +81,7 @@ public class TriangleTool extends Tool {
                 final TriangleShape triangle = new TriangleShape(p1, p2, p3);
                 triangle.setColor(color);
                 triangle.setStrokeWidth(strokeWidth);
-                shapes.add(triangle);
+                apply(new AddShapeOperation(triangle), shapes);
             }
             startPoint = null;
             currentPoint = null;
@@ -101,32 +102,56 @@ public class TriangleTool extends Tool {
             final Color originalColor = g2d.getColor();
             g2d.setStroke(new BasicStroke(strokeWidth));
             g2d.setColor(color.toAwtColor());
-            final int width = Math.abs(currentPoint.x - startPoint.x) * 2;
-            final int height = Math.abs(currentPoint.y - startPoint.y);
-            final boolean inverted = currentPoint.y < startPoint.y;
-            final int[] xPoints = new int[3];
-            final int[] yPoints = new int[3];
-            if (inverted) {
-                xPoints[0] = startPoint.x;
-                yPoints[0] = startPoint.y;
-                xPoints[1] = startPoint.x - width / 2;
-                yPoints[1] = currentPoint.y;
-                xPoints[2] = startPoint.x + width / 2;
-                yPoints[2] = currentPoint.y;
-            } else {
-                xPoints[0] = startPoint.x;
-                yPoints[0] = startPoint.y;
-                xPoints[1] = startPoint.x - width / 2;
-                yPoints[1] = startPoint.y + height;
-                xPoints[2] = startPoint.x + width / 2;
-                yPoints[2] = startPoint.y + height;
-            }
-            g2d.drawPolygon(xPoints, yPoints, 3);
+            g2d.draw(createPreviewPolygon());
             g2d.setStroke(originalStroke);
             g2d.setColor(originalColor);
         }
     }
 
+    /**
+     * Create the outline of the triangle preview from the current drag.
+     *
+     * @return preview triangle polygon
+     */
+    private Polygon createPreviewPolygon() {
+        final int width = Math.abs(currentPoint.x - startPoint.x) * 2;
+        final int height = Math.abs(currentPoint.y - startPoint.y);
+        final boolean inverted = currentPoint.y < startPoint.y;
+        final int[] xPoints = new int[3];
+        final int[] yPoints = new int[3];
+        if (inverted) {
+            xPoints[0] = startPoint.x;
+            yPoints[0] = startPoint.y;
+            xPoints[1] = startPoint.x - width / 2;
+            yPoints[1] = currentPoint.y;
+            xPoints[2] = startPoint.x + width / 2;
+            yPoints[2] = currentPoint.y;
+        } else {
+            xPoints[0] = startPoint.x;
+            yPoints[0] = startPoint.y;
+            xPoints[1] = startPoint.x - width / 2;
+            yPoints[1] = startPoint.y + height;
+            xPoints[2] = startPoint.x + width / 2;
+            yPoints[2] = startPoint.y + height;
+        }
+        return new Polygon(xPoints, yPoints, 3);
+    }
+
+    /**
+     * Return the area of the triangle preview, including mitered corners.
+     *
+     * @return preview bounds, or null if no shape is being created
+     */
+    @Override
+    public Rectangle getTemporaryBounds() {
+        if (startPoint == null || currentPoint == null) {
+            return null;
+        }
+        final Rectangle bounds = new BasicStroke(strokeWidth).createStrokedShape(createPreviewPolygon()).getBounds();
+        bounds.grow(2, 2);
+        return bounds;
+    }
+
     /**
      * Create a copy of this tool.
      *
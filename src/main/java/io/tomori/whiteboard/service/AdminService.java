@@ -73,7 +73,7 @@ public class AdminService {
      * @param username username of the joined user
      */
     public void onUserJoined(final String username) {
-        final List<Shape> currentShapes = WhiteboardService.getInstance().getShapes();
+        final List<Shape> currentShapes = WhiteboardService.getInstance().getSnapshot();
         final SocketMessage whiteboardUpdate = new SocketMessage(
                 adminUsername,
                 CommandType.UPDATE_SHAPES,
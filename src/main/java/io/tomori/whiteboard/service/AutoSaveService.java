@@ -0,0 +1,123 @@
+package io.tomori.whiteboard.service;
+
+import io.tomori.whiteboard.model.board.BoardSnapshot;
+import io.tomori.whiteboard.model.shapes.Shape;
+import io.tomori.whiteboard.util.DocumentManager;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service for saving the current document in the background.
+ * All writes run on a single worker thread, so the UI never waits for the disk and saves are never interleaved.
+ * The worker periodically saves the board when it is modified and differs from what was last written.
+ */
+public class AutoSaveService {
+    private static AutoSaveService instance;
+    /**
+     * Worker thread running all saves
+     */
+    private final ScheduledExecutorService executor;
+    /**
+     * File last written, accessed only by the worker
+     */
+    private File savedFile;
+    /**
+     * Version of the board last written, accessed only by the worker
+     */
+    private long savedVersion = -1;
+
+    /**
+     * Create an autosave service and schedule periodic saves.
+     *
+     * @param intervalSeconds seconds between checks for unsaved changes, 0 to save only on request
+     */
+    private AutoSaveService(final int intervalSeconds) {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "board-autosave");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (intervalSeconds > 0) {
+            executor.scheduleWithFixedDelay(this::autosave, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Return singleton instance of AutoSaveService.
+     *
+     * @return AutoSaveService instance
+     * @throws IllegalStateException if the service is not initialized
+     */
+    public static synchronized AutoSaveService getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("AutoSaveService not initialized. Call initialize() first.");
+        }
+        return instance;
+    }
+
+    /**
+     * Initialize the AutoSaveService singleton.
+     *
+     * @param intervalSeconds seconds between checks for unsaved changes, 0 to save only on request
+     * @return initialized AutoSaveService instance
+     */
+    public static synchronized AutoSaveService initialize(final int intervalSeconds) {
+        if (instance == null) {
+            instance = new AutoSaveService(intervalSeconds);
+        }
+        return instance;
+    }
+
+    /**
+     * Save the current board to the current document file in the background.
+     *
+     * @return future completing with true if the board was written
+     */
+    public CompletableFuture<Boolean> save() {
+        final File file = DocumentManager.getInstance().getCurrentFile();
+        final BoardSnapshot snapshot = WhiteboardService.getInstance().getSnapshot();
+        return CompletableFuture.supplyAsync(() -> write(file, snapshot), executor);
+    }
+
+    /**
+     * Save the board if it has unsaved changes that were not written yet.
+     */
+    private void autosave() {
+        final WhiteboardService service = WhiteboardService.getInstance();
+        final File file = DocumentManager.getInstance().getCurrentFile();
+        if (file == null || !service.isModified()) {
+            return;
+        }
+        final BoardSnapshot snapshot = service.getSnapshot();
+        if (file.equals(savedFile) && snapshot.getVersion() == savedVersion) {
+            return;
+        }
+        write(file, snapshot);
+    }
+
+    /**
+     * Write a board to a file, with any shapes of the document not paged in yet, and mark the document saved if
+     * the board has not changed since.
+     *
+     * @param file     file to write
+     * @param snapshot board to write
+     * @return true if the board was written
+     */
+    private boolean write(final File file, final BoardSnapshot snapshot) {
+        final List<Shape> document = WhiteboardService.getInstance().getDocumentShapes(snapshot);
+        if (!DocumentManager.getInstance().saveShapes(file, document)) {
+            return false;
+        }
+        savedFile = file;
+        savedVersion = snapshot.getVersion();
+        if (file.equals(DocumentManager.getInstance().getCurrentFile())) {
+            WhiteboardService.getInstance().markSaved(savedVersion);
+        }
+        return true;
+    }
+}
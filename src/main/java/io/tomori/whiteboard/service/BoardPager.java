@@ -0,0 +1,291 @@
+package io.tomori.whiteboard.service;
+
+import io.tomori.whiteboard.model.board.BoardSnapshot;
+import io.tomori.whiteboard.model.shapes.Shape;
+import io.tomori.whiteboard.util.BoardFile;
+
+import java.awt.*;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pages the shapes of a native board file onto the board tile by tile.
+ * The tiles of a first region are loaded when paging starts, then the remaining tiles are loaded in the background,
+ * nearest first. Regions requested later, such as the view of a user, are loaded before the remaining tiles.
+ */
+public class BoardPager {
+    /**
+     * Number of shapes above which a batch of tiles is handed to the board
+     */
+    private static final int BATCH_SHAPES = 4096;
+    /**
+     * Board file being paged in
+     */
+    private final BoardFile file;
+    /**
+     * Receiver of the loaded shapes
+     */
+    private final Sink sink;
+    /**
+     * Version of the board when paging started, earlier snapshots belong to another document
+     */
+    private final long baseVersion;
+    /**
+     * Board version at which each tile was paged in, 0 while the tile is not loaded
+     */
+    private final long[] loadedAt;
+    /**
+     * Regions requested since the last batch, served before the remaining tiles
+     */
+    private final ConcurrentLinkedQueue<Rectangle> requests = new ConcurrentLinkedQueue<>();
+    /**
+     * Worker thread loading tiles in the background
+     */
+    private final ExecutorService executor;
+    /**
+     * Tiles in background loading order, accessed only by the worker
+     */
+    private int[] order;
+    /**
+     * Position in the background loading order, accessed only by the worker
+     */
+    private int cursor;
+    /**
+     * True once the pager is closed and must not load anything more
+     */
+    private volatile boolean closed;
+
+    /**
+     * Create a pager for a board file.
+     *
+     * @param file        board file to page in
+     * @param baseVersion version of the board when paging starts
+     * @param sink        receiver of the loaded shapes
+     */
+    public BoardPager(final BoardFile file, final long baseVersion, final Sink sink) {
+        this.file = file;
+        this.baseVersion = baseVersion;
+        this.sink = sink;
+        loadedAt = new long[file.getTileCount()];
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "board-pager");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Load the tiles of a region on the calling thread, then load the remaining tiles in the background.
+     *
+     * @param region board region to load first
+     */
+    public void start(final Rectangle region) {
+        loadRegion(region);
+        final double centerX = region.getCenterX();
+        final double centerY = region.getCenterY();
+        order = new int[loadedAt.length];
+        final Integer[] tiles = new Integer[loadedAt.length];
+        final double[] distances = new double[loadedAt.length];
+        for (int tile = 0; tile < tiles.length; tile++) {
+            final Rectangle bounds = file.getTileBounds(tile);
+            tiles[tile] = tile;
+            distances[tile] = Math.hypot(bounds.getCenterX() - centerX, bounds.getCenterY() - centerY);
+        }
+        Arrays.sort(tiles, Comparator.comparingDouble(tile -> distances[tile]));
+        for (int i = 0; i < tiles.length; i++) {
+            order[i] = tiles[i];
+        }
+        executor.execute(this::run);
+        executor.shutdown();
+    }
+
+    /**
+     * Ask for the tiles of a region to be loaded before the remaining tiles.
+     *
+     * @param region board region to load
+     */
+    public void request(final Rectangle region) {
+        if (!closed) {
+            requests.add(new Rectangle(region));
+        }
+    }
+
+    /**
+     * Stop loading tiles. Tiles being loaded are still handed to the sink, which should ignore them.
+     */
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+    }
+
+    /**
+     * Record that tiles were added to the board.
+     *
+     * @param tiles   indices of the loaded tiles
+     * @param version version of the first board snapshot holding their shapes
+     */
+    public synchronized void markLoaded(final int[] tiles, final long version) {
+        for (final int tile : tiles) {
+            loadedAt[tile] = version;
+        }
+    }
+
+    /**
+     * Return the shapes of a document as a board snapshot would be saved: the shapes of the snapshot merged in
+     * z-order with the shapes of the file that were not on the board yet at that snapshot.
+     * Shapes of the file are decoded only when the returned list is read.
+     *
+     * @param snapshot board to save
+     * @return shapes of the whole document in z-order
+     */
+    public List<Shape> withUnloaded(final BoardSnapshot snapshot) {
+        if (snapshot.getVersion() < baseVersion) {
+            return snapshot;
+        }
+        final List<Integer> pending = new ArrayList<>();
+        synchronized (this) {
+            for (int tile = 0; tile < loadedAt.length; tile++) {
+                if (loadedAt[tile] == 0 || loadedAt[tile] > snapshot.getVersion()) {
+                    for (int i = 0; i < file.getTileSize(tile); i++) {
+                        pending.add(file.getTileStart(tile) + i);
+                    }
+                }
+            }
+        }
+        if (pending.isEmpty()) {
+            return snapshot;
+        }
+        final String[] keys = new String[pending.size()];
+        final Integer[] sorted = new Integer[pending.size()];
+        for (int i = 0; i < keys.length; i++) {
+            final String key = file.getZKey(pending.get(i));
+            keys[i] = key == null ? "" : key;
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, Comparator.comparing(i -> keys[i]));
+        final int[] merged = new int[snapshot.size() + keys.length];
+        int fromBoard = 0;
+        int fromFile = 0;
+        for (int i = 0; i < merged.length; i++) {
+            if (fromFile == keys.length || fromBoard < snapshot.size()
+                    && snapshot.get(fromBoard).getZKey().compareTo(keys[sorted[fromFile]]) <= 0) {
+                merged[i] = fromBoard++;
+            } else {
+                merged[i] = -pending.get(sorted[fromFile++]) - 1;
+            }
+        }
+        return new AbstractList<>() {
+            @Override
+            public Shape get(final int index) {
+                return merged[index] >= 0 ? snapshot.get(merged[index]) : file.get(-merged[index] - 1);
+            }
+
+            @Override
+            public int size() {
+                return merged.length;
+            }
+        };
+    }
+
+    /**
+     * Load requested regions and the remaining tiles until every tile is loaded or the pager is closed.
+     */
+    private void run() {
+        try {
+            while (!closed) {
+                final Rectangle region = requests.poll();
+                if (region != null) {
+                    loadRegion(region);
+                    continue;
+                }
+                final List<Integer> batch = new ArrayList<>();
+                int shapeCount = 0;
+                while (cursor < order.length && shapeCount < BATCH_SHAPES) {
+                    final int tile = order[cursor++];
+                    if (!isLoaded(tile)) {
+                        batch.add(tile);
+                        shapeCount += file.getTileSize(tile);
+                    }
+                }
+                if (batch.isEmpty()) {
+                    System.out.println("Paged in all " + file.size() + " shapes of the board");
+                    return;
+                }
+                load(batch);
+            }
+        } catch (final Exception e) {
+            System.out.println("Error paging in board: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Load the tiles overlapping a region that are not loaded yet.
+     *
+     * @param region board region to load
+     */
+    private void loadRegion(final Rectangle region) {
+        final List<Integer> batch = new ArrayList<>();
+        int shapeCount = 0;
+        for (int tile = 0; tile < loadedAt.length && !closed; tile++) {
+            if (!isLoaded(tile) && file.getTileBounds(tile).intersects(region)) {
+                batch.add(tile);
+                shapeCount += file.getTileSize(tile);
+                if (shapeCount >= BATCH_SHAPES) {
+                    load(batch);
+                    batch.clear();
+                    shapeCount = 0;
+                }
+            }
+        }
+        if (!batch.isEmpty() && !closed) {
+            load(batch);
+        }
+    }
+
+    /**
+     * Decode the shapes of tiles and hand them to the sink.
+     *
+     * @param tiles indices of the tiles to load
+     */
+    private void load(final List<Integer> tiles) {
+        final List<Shape> shapes = new ArrayList<>();
+        for (final int tile : tiles) {
+            final int start = file.getTileStart(tile);
+            for (int i = start; i < start + file.getTileSize(tile); i++) {
+                shapes.add(file.get(i));
+            }
+        }
+        sink.pageIn(this, tiles.stream().mapToInt(Integer::intValue).toArray(), shapes);
+    }
+
+    /**
+     * Check whether a tile was added to the board.
+     *
+     * @param tile index of the tile
+     * @return True if the tile is loaded
+     */
+    private synchronized boolean isLoaded(final int tile) {
+        return loadedAt[tile] != 0;
+    }
+
+    /**
+     * Receiver of the shapes loaded by a pager.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        /**
+         * Add loaded shapes to the board and mark their tiles loaded with {@link #markLoaded(int[], long)}.
+         *
+         * @param pager  pager that loaded the shapes
+         * @param tiles  indices of the loaded tiles
+         * @param shapes shapes of the tiles
+         */
+        void pageIn(BoardPager pager, int[] tiles, List<Shape> shapes);
+    }
+}
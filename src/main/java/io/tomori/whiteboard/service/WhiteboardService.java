@@ -6,40 +6,87 @@ import io.tomori.whiteboard.constant.CommandType;
 import io.tomori.whiteboard.core.NetworkManager;
 import io.tomori.whiteboard.core.Server;
 import io.tomori.whiteboard.gui.panels.DrawingPanel;
+import io.tomori.whiteboard.model.ShapeDelta;
 import io.tomori.whiteboard.model.SocketMessage;
+import io.tomori.whiteboard.model.SyncRepair;
+import io.tomori.whiteboard.model.board.BoardDigest;
+import io.tomori.whiteboard.model.board.BoardSnapshot;
+import io.tomori.whiteboard.model.board.ShapeQuery;
+import io.tomori.whiteboard.model.board.ShapeStore;
+import io.tomori.whiteboard.model.operations.CompoundOperation;
+import io.tomori.whiteboard.model.operations.Operation;
 import io.tomori.whiteboard.model.shapes.Shape;
-import io.tomori.whiteboard.model.tools.EraserTool;
+import io.tomori.whiteboard.util.BoardFile;
+import io.tomori.whiteboard.util.BoardJournal;
 import io.tomori.whiteboard.util.DocumentManager;
+import io.tomori.whiteboard.util.PreviewRenderer;
 import io.tomori.whiteboard.util.SvgUtil;
 import lombok.Getter;
 
+import java.awt.*;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Stack;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
 
 /**
  * Service for managing whiteboard drawing operation.
  * Handle shape creation, modification, and sync among sever and clients.
  */
 public class WhiteboardService {
-    private static final int MAX_UNDO_STEPS = 20;
+    private static final int MAX_UNDO_STEPS = 500;
     private static final int SYNC_INTERVAL = 10000;
     private static WhiteboardService instance;
     private final NetworkManager networkManager;
     private final DocumentManager documentManager;
-    private final Stack<CopyOnWriteArrayList<Shape>> undoStack = new Stack<>();
-    private final Stack<CopyOnWriteArrayList<Shape>> redoStack = new Stack<>();
     /**
-     * Current shapes list on whiteboard
+     * Recorded user actions that can be undone, most recent first
+     */
+    private final Deque<Operation> undoStack = new ArrayDeque<>();
+    /**
+     * Undone user actions that can be redone, most recent first
+     */
+    private final Deque<Operation> redoStack = new ArrayDeque<>();
+    /**
+     * Operations of the user action in progress, recorded as one undo step when it ends
+     */
+    private final List<Operation> pendingAction = new ArrayList<>();
+    /**
+     * Current shapes list on whiteboard, modified by tools and operations
      */
     @Getter
-    private CopyOnWriteArrayList<Shape> shapes = new CopyOnWriteArrayList<>();
+    private final ShapeStore shapes = new ShapeStore();
+    /**
+     * Renderer of board previews for MCP clients, caching the encoded images
+     */
+    private final PreviewRenderer previewRenderer = new PreviewRenderer();
+    /**
+     * Journal receiving every change to the board for crash recovery, null if not journaling
+     */
+    private BoardJournal journal;
+    /**
+     * Digest of the latest board version summarized for anti-entropy sync
+     */
+    private BoardDigest digest = BoardDigest.EMPTY;
+    /**
+     * Pager loading the open board file region by region, null if the whole document is on the board
+     */
+    private volatile BoardPager pager;
 
     /**
      * Flag to track if the document has been modified since the last save
      */
-    private boolean modified = false;
+    private volatile boolean modified = false;
 
     /**
      * Create a whiteboard service with the specified network manager.
@@ -78,12 +125,151 @@ public class WhiteboardService {
     }
 
     /**
-     * Generate a Base64 preview of the current whiteboard state.
+     * Compute the region where two versions of the shapes list paint differently.
+     * Cover shapes that were added, removed, modified, or moved down in z-order relative to another shape.
+     *
+     * @param before shapes before the change
+     * @param after  shapes after the change
+     * @return changed region, or null if both versions paint the same
+     */
+    private static Rectangle changedRegion(final List<Shape> before, final List<Shape> after) {
+        final Map<String, Integer> beforeIndices = new HashMap<>();
+        for (int i = 0; i < before.size(); i++) {
+            beforeIndices.put(before.get(i).getId(), i);
+        }
+        final Set<String> keptIds = new HashSet<>();
+        Rectangle region = null;
+        int maxBeforeIndex = -1;
+        for (final Shape shape : after) {
+            final Integer beforeIndex = beforeIndices.get(shape.getId());
+            if (beforeIndex == null) {
+                region = union(region, shape.getPaintBounds());
+                continue;
+            }
+            keptIds.add(shape.getId());
+            final Shape previous = before.get(beforeIndex);
+            if (!previous.equals(shape)) {
+                region = union(region, previous.getPaintBounds());
+                region = union(region, shape.getPaintBounds());
+            } else if (beforeIndex < maxBeforeIndex) {
+                region = union(region, shape.getPaintBounds());
+            }
+            maxBeforeIndex = Math.max(maxBeforeIndex, beforeIndex);
+        }
+        for (final Shape shape : before) {
+            if (!keptIds.contains(shape.getId())) {
+                region = union(region, shape.getPaintBounds());
+            }
+        }
+        return region;
+    }
+
+    /**
+     * Extend a region by the bounds of a shape.
+     *
+     * @param region region to extend, null if empty
+     * @param bounds bounds to add
+     * @return extended region
+     */
+    private static Rectangle union(final Rectangle region, final Rectangle bounds) {
+        if (region == null) {
+            return new Rectangle(bounds);
+        }
+        region.add(bounds);
+        return region;
+    }
+
+    /**
+     * Give new identifiers to incoming shapes whose identifier is empty, repeated, or already on the board.
+     *
+     * @param incoming shapes about to be added
+     * @param existing shapes already on the board
+     * @return the same shapes, with unique identifiers
+     */
+    private static List<Shape> withUniqueIds(final List<Shape> incoming, final BoardSnapshot existing) {
+        final Set<String> ids = new HashSet<>();
+        for (final Shape shape : incoming) {
+            if (shape.getId() == null || shape.getId().isEmpty()
+                    || existing.getById(shape.getId()) != null || !ids.add(shape.getId())) {
+                shape.renewId();
+                ids.add(shape.getId());
+            }
+        }
+        return incoming;
+    }
+
+    /**
+     * Return a consistent snapshot of the current shapes, safe to read from any thread.
+     *
+     * @return immutable shapes snapshot
+     */
+    public BoardSnapshot getSnapshot() {
+        return shapes.getSnapshot();
+    }
+
+    /**
+     * Return the shapes of the current document as they should be saved for a board snapshot, including the shapes
+     * of the open board file that were not paged in at that snapshot.
+     *
+     * @param snapshot board to save
+     * @return shapes of the whole document in z-order
+     */
+    public List<Shape> getDocumentShapes(final BoardSnapshot snapshot) {
+        final BoardPager current = pager;
+        return current == null ? snapshot : current.withUnloaded(snapshot);
+    }
+
+    /**
+     * Ask for the shapes of a board region to be loaded first while the open board file is being paged in.
+     * Clients forward the request to the server, which holds the file.
+     *
+     * @param region board region a user is looking at
+     */
+    public void requestRegion(final Rectangle region) {
+        if (!(networkManager instanceof Server)) {
+            final SocketMessage update = new SocketMessage(
+                    networkManager.getUsername(),
+                    CommandType.REGION_REQUEST,
+                    region
+            );
+            networkManager.sendUpdate(update);
+            return;
+        }
+        final BoardPager current = pager;
+        if (current != null) {
+            current.request(region);
+        }
+    }
+
+    /**
+     * List one page of the shapes matching a query on the current board.
+     *
+     * @param query  filters of the listing
+     * @param cursor cursor returned with the previous page, null for the first page
+     * @param limit  maximum number of shapes in the page, at least 1
+     * @return page of matching shapes in z-order
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public ShapeQuery.Page listShapes(final ShapeQuery query, final String cursor, final int limit) {
+        return query.page(getSnapshot(), cursor, Math.max(1, limit));
+    }
+
+    /**
+     * Generate a Base64 preview of a region of the current whiteboard state.
+     * The board is rendered headlessly from a snapshot, so this is safe off the event dispatch thread,
+     * and an unchanged board is not rendered again for the same request.
      *
-     * @return Base64 encoded string of the whiteboard preview
+     * @param region  board region to show, null for the region covered by the shapes
+     * @param scale   image pixels per world unit, 0 for no limit other than the size
+     * @param size    largest width or height of the image in pixels, 0 for no limit other than the scale
+     * @param format  image format
+     * @param quality compression quality between 0 and 1, null for the default of the format
+     * @return encoded preview, or null if encoding failed
      */
-    public static String previewAsBase64() {
-        return DrawingPanel.getInstance().toBase64(0.3f);
+    public static PreviewRenderer.Preview preview(final Rectangle region, final double scale, final int size,
+                                                  final PreviewRenderer.Format format, final Float quality) {
+        final WhiteboardService service = getInstance();
+        return service.previewRenderer.preview(service.getSnapshot(), region, scale, size, format, quality);
     }
 
     /**
@@ -104,6 +290,43 @@ public class WhiteboardService {
         this.modified = modified;
     }
 
+    /**
+     * Mark the document as saved unless the board changed after the saved version.
+     * Changes set the modified flag after deriving a new version, so checking the version again after clearing the
+     * flag cannot lose a concurrent change.
+     *
+     * @param version version of the board that was saved
+     */
+    public void markSaved(final long version) {
+        if (shapes.getSnapshot().getVersion() != version) {
+            return;
+        }
+        modified = false;
+        if (shapes.getSnapshot().getVersion() != version) {
+            modified = true;
+        }
+    }
+
+    /**
+     * Restore the board left by a previous run from a journal, then record every later change in it.
+     *
+     * @param journal journal to recover from and write to
+     */
+    public void attachJournal(final BoardJournal journal) {
+        final List<Shape> recovered = journal.recover();
+        if (!recovered.isEmpty()) {
+            shapes.reset(withUniqueIds(recovered, BoardSnapshot.EMPTY));
+            DrawingPanel.getInstance().invalidateShapes();
+            setModified(true);
+        }
+        try {
+            journal.start();
+            this.journal = journal;
+        } catch (final IOException e) {
+            System.out.println("Error starting board journal: " + e.getMessage());
+        }
+    }
+
     /**
      * Synchronize shapes with all connected clients.
      */
@@ -113,27 +336,217 @@ public class WhiteboardService {
             final SocketMessage update = new SocketMessage(
                     networkManager.getUsername(),
                     CommandType.UPDATE_SHAPES,
-                    shapes
+                    shapes.getSnapshot()
             );
             networkManager.sendUpdate(update);
         }
     }
 
+    /**
+     * Start publishing the shapes digest to clients every sync interval, so clients that drifted from the server's
+     * shapes can repair only the parts that differ. Does nothing on clients.
+     */
+    public void startSync() {
+        if (!(networkManager instanceof Server)) {
+            return;
+        }
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "board-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::publishDigest, SYNC_INTERVAL, SYNC_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Return the digest of the current shapes, reusing the work done for the previous digest.
+     *
+     * @return current digest
+     */
+    private synchronized BoardDigest currentDigest() {
+        digest = BoardDigest.of(shapes.getSnapshot(), digest);
+        return digest;
+    }
+
+    /**
+     * Send the group hashes of the shapes digest to all clients.
+     */
+    private void publishDigest() {
+        try {
+            final BoardDigest current = currentDigest();
+            final List<String> groups = new ArrayList<>(BoardDigest.GROUPS);
+            for (int group = 0; group < BoardDigest.GROUPS; group++) {
+                groups.add(BoardDigest.format(current.getGroup(group)));
+            }
+            final SocketMessage update = new SocketMessage(
+                    networkManager.getUsername(),
+                    CommandType.SYNC_DIGEST,
+                    groups
+            );
+            networkManager.sendUpdate(update);
+        } catch (final Exception e) {
+            System.out.println("Error publishing shapes digest: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Compare the digest group hashes published by the server with the local shapes and, if any group differs,
+     * send the local bucket hashes of the differing groups to the server.
+     *
+     * @param groups server's group hashes
+     */
+    public void compareDigest(final List<String> groups) {
+        final BoardDigest current = currentDigest();
+        final Map<String, List<String>> differing = new HashMap<>();
+        for (int group = 0; group < BoardDigest.GROUPS && group < groups.size(); group++) {
+            if (BoardDigest.parse(groups.get(group)) == current.getGroup(group)) {
+                continue;
+            }
+            final List<String> buckets = new ArrayList<>(BoardDigest.GROUP_SIZE);
+            for (int i = 0; i < BoardDigest.GROUP_SIZE; i++) {
+                buckets.add(BoardDigest.format(current.getBucket(group * BoardDigest.GROUP_SIZE + i)));
+            }
+            differing.put(String.valueOf(group), buckets);
+        }
+        if (differing.isEmpty()) {
+            return;
+        }
+        System.out.println("Shapes differ from server in " + differing.size() + " digest groups, requesting repair...");
+        final SocketMessage update = new SocketMessage(
+                networkManager.getUsername(),
+                CommandType.SYNC_REQUEST,
+                differing
+        );
+        networkManager.sendUpdate(update);
+    }
+
+    /**
+     * Send a client the IDs and content hashes of the local shapes in the buckets where its bucket hashes differ.
+     *
+     * @param username username of the client
+     * @param groups   client's bucket hashes by group index
+     */
+    public void answerSyncRequest(final String username, final Map<String, List<String>> groups) {
+        if (!(networkManager instanceof final Server server)) {
+            return;
+        }
+        final BoardDigest current = currentDigest();
+        final List<Integer> buckets = new ArrayList<>();
+        final Map<String, String> hashes = new HashMap<>();
+        for (final Map.Entry<String, List<String>> entry : groups.entrySet()) {
+            final int group = Integer.parseInt(entry.getKey());
+            final List<String> bucketHashes = entry.getValue();
+            for (int i = 0; i < BoardDigest.GROUP_SIZE && i < bucketHashes.size(); i++) {
+                final int bucket = group * BoardDigest.GROUP_SIZE + i;
+                if (bucket < BoardDigest.BUCKETS && BoardDigest.parse(bucketHashes.get(i)) != current.getBucket(bucket)) {
+                    buckets.add(bucket);
+                    for (final Shape shape : current.getMembers(bucket)) {
+                        hashes.put(shape.getId(), BoardDigest.format(current.getHash(shape)));
+                    }
+                }
+            }
+        }
+        if (buckets.isEmpty()) {
+            return;
+        }
+        final SocketMessage update = new SocketMessage(
+                networkManager.getUsername(),
+                CommandType.SYNC_REPAIR,
+                new SyncRepair(buckets, hashes)
+        );
+        server.sendUpdate(username, update);
+    }
+
+    /**
+     * Repair the local shapes in the buckets where they differ from the server: remove the shapes the server does
+     * not have and fetch the shapes that are missing or whose content differs.
+     *
+     * @param repair IDs and content hashes of the server's shapes in the differing buckets
+     */
+    public void applyRepair(final SyncRepair repair) {
+        final BoardDigest current = currentDigest();
+        final Map<String, String> hashes = repair.getHashes();
+        final List<String> staleIds = new ArrayList<>();
+        final Set<String> matching = new HashSet<>();
+        for (final int bucket : repair.getBuckets()) {
+            if (bucket < 0 || bucket >= BoardDigest.BUCKETS) {
+                continue;
+            }
+            for (final Shape shape : current.getMembers(bucket)) {
+                final String hash = hashes.get(shape.getId());
+                if (hash == null) {
+                    staleIds.add(shape.getId());
+                } else if (BoardDigest.parse(hash) == current.getHash(shape)) {
+                    matching.add(shape.getId());
+                }
+            }
+        }
+        if (!staleIds.isEmpty()) {
+            applyDelta(new ShapeDelta(List.of(), staleIds, Map.of()));
+        }
+        final List<String> fetchedIds = new ArrayList<>();
+        for (final String id : hashes.keySet()) {
+            if (!matching.contains(id)) {
+                fetchedIds.add(id);
+            }
+        }
+        if (fetchedIds.isEmpty()) {
+            return;
+        }
+        final SocketMessage update = new SocketMessage(
+                networkManager.getUsername(),
+                CommandType.SYNC_FETCH,
+                fetchedIds
+        );
+        networkManager.sendUpdate(update);
+    }
+
+    /**
+     * Send a client the current version of the shapes it fetches to repair its board.
+     *
+     * @param username username of the client
+     * @param ids      IDs of the fetched shapes, those no longer on the board are skipped
+     */
+    public void answerFetch(final String username, final List<String> ids) {
+        if (!(networkManager instanceof final Server server)) {
+            return;
+        }
+        final BoardSnapshot snapshot = shapes.getSnapshot();
+        final List<Shape> fetched = new ArrayList<>();
+        for (final String id : ids) {
+            final Shape shape = snapshot.getById(id);
+            if (shape != null) {
+                fetched.add(shape);
+            }
+        }
+        if (fetched.isEmpty()) {
+            return;
+        }
+        final SocketMessage update = new SocketMessage(
+                networkManager.getUsername(),
+                CommandType.UPDATE_SHAPE_DELTA,
+                new ShapeDelta(fetched, List.of(), Map.of())
+        );
+        server.sendUpdate(username, update);
+    }
+
     /**
      * Clear all shapes from the whiteboard.
      *
      * @param silent If true, doesn't broadcast the update to other clients
      */
     public void clearAll(final boolean silent) {
+        closePager();
         shapes.clear();
         undoStack.clear();
         redoStack.clear();
-        DrawingPanel.getInstance().repaint();
+        journalReset();
+        DrawingPanel.getInstance().invalidateShapes();
         if (!silent) {
             final SocketMessage update = new SocketMessage(
                     networkManager.getUsername(),
                     CommandType.UPDATE_SHAPES,
-                    shapes
+                    shapes.getSnapshot()
             );
             networkManager.sendUpdate(update);
         }
@@ -153,11 +566,15 @@ public class WhiteboardService {
      * @param shapes new shapes list to display
      */
     public synchronized void updateShapes(final List<Shape> shapes) {
-        this.shapes = new CopyOnWriteArrayList<>();
+        closePager();
+        final List<Shape> previousShapes = this.shapes.getSnapshot();
+        final List<Shape> clones = new ArrayList<>(shapes.size());
         for (final Shape shape : shapes) {
-            this.shapes.add(shape.clone());
+            clones.add(shape.clone());
         }
-        DrawingPanel.getInstance().repaint();
+        this.shapes.reset(withUniqueIds(clones, BoardSnapshot.EMPTY));
+        journalReset();
+        DrawingPanel.getInstance().invalidateShapes(changedRegion(previousShapes, this.shapes.getSnapshot()));
         setModified(true);
     }
 
@@ -168,14 +585,20 @@ public class WhiteboardService {
      */
     public synchronized void addShapesSvg(final String svgString) {
         final List<Shape> svgShapes = SvgUtil.fromSvg(svgString);
-        shapes.addAll(svgShapes);
-        DrawingPanel.getInstance().repaint();
-        final SocketMessage update = new SocketMessage(
-                networkManager.getUsername(),
-                CommandType.UPDATE_SHAPES,
-                shapes
-        );
-        networkManager.sendUpdate(update);
+        final List<Shape> added;
+        final ShapeDelta delta;
+        synchronized (shapes) {
+            added = withUniqueIds(svgShapes, shapes.getSnapshot());
+            shapes.addAll(added);
+            final Set<String> addedIds = new HashSet<>();
+            for (final Shape shape : added) {
+                addedIds.add(shape.getId());
+            }
+            delta = ShapeDelta.of(addedIds, Set.of(), shapes.getSnapshot());
+            journalDelta(delta);
+        }
+        DrawingPanel.getInstance().invalidateShapes(changedRegion(List.of(), added));
+        broadcastDelta(delta);
         setModified(true);
     }
 
@@ -185,30 +608,86 @@ public class WhiteboardService {
      * @param shapeIds ID of the shapes to remove
      */
     public synchronized void removeShapes(final List<String> shapeIds) {
-        for (final String shapeId : shapeIds) {
-            shapes.removeIf(shape -> shape.getId().equals(shapeId));
+        Rectangle region = null;
+        final List<String> removedIds = new ArrayList<>();
+        final ShapeDelta delta;
+        synchronized (shapes) {
+            for (final Shape shape : shapes.removeAllById(shapeIds)) {
+                region = union(region, shape.getPaintBounds());
+                removedIds.add(shape.getId());
+            }
+            delta = new ShapeDelta(List.of(), removedIds, Map.of());
+            journalDelta(delta);
         }
-        DrawingPanel.getInstance().repaint();
-        final SocketMessage update = new SocketMessage(
-                networkManager.getUsername(),
-                CommandType.UPDATE_SHAPES,
-                shapes
-        );
-        networkManager.sendUpdate(update);
+        DrawingPanel.getInstance().invalidateShapes(region);
+        broadcastDelta(delta);
         setModified(true);
     }
 
     /**
-     * Save the current state for undo operations.
+     * Apply an incremental change received from another user.
+     *
+     * @param delta change to apply
      */
-    public void saveState() {
-        final CopyOnWriteArrayList<Shape> currentState = new CopyOnWriteArrayList<>();
-        for (final Shape shape : shapes) {
-            currentState.add(shape.clone());
+    public void applyDelta(final ShapeDelta delta) {
+        Rectangle region = null;
+        synchronized (shapes) {
+            for (final Shape shape : shapes.removeAllById(delta.getRemovedIds())) {
+                region = union(region, shape.getPaintBounds());
+            }
+            for (final Map.Entry<String, String> entry : delta.getZKeys().entrySet()) {
+                final Shape shape = shapes.getById(entry.getKey());
+                if (shape != null && !entry.getValue().equals(shape.getZKey())) {
+                    final Shape reordered = shape.clone();
+                    reordered.setZKey(entry.getValue());
+                    shapes.put(reordered);
+                    region = union(region, reordered.getPaintBounds());
+                }
+            }
+            for (final Shape shape : delta.getShapes()) {
+                final Shape replaced = shapes.put(shape);
+                if (replaced != null) {
+                    region = union(region, replaced.getPaintBounds());
+                }
+                region = union(region, shape.getPaintBounds());
+            }
+            journalDelta(delta);
         }
-        undoStack.push(currentState);
+        DrawingPanel.getInstance().invalidateShapes(region);
+        setModified(true);
+    }
+
+    /**
+     * Handle operations applied by a drawing tool: broadcast their changes and record them for undo operations.
+     *
+     * @param operations     operations applied since the last call, in order
+     * @param actionFinished true when the user action ended, so the operations since its start form one undo step
+     */
+    public void applyToolOperations(final List<Operation> operations, final boolean actionFinished) {
+        pendingAction.addAll(operations);
+        final ShapeDelta delta;
+        synchronized (shapes) {
+            delta = journalOperations(operations);
+        }
+        broadcastDelta(delta);
+        if (actionFinished) {
+            recordAction(pendingAction);
+            pendingAction.clear();
+        }
+    }
+
+    /**
+     * Record the operations of a user action for undo operations.
+     *
+     * @param operations operations applied by the action, in order
+     */
+    private void recordAction(final List<Operation> operations) {
+        if (operations.isEmpty()) {
+            return;
+        }
+        undoStack.push(operations.size() == 1 ? operations.getFirst() : new CompoundOperation(operations));
         if (undoStack.size() > MAX_UNDO_STEPS) {
-            undoStack.removeFirst();
+            undoStack.removeLast();
         }
         redoStack.clear();
         setModified(true);
@@ -219,19 +698,17 @@ public class WhiteboardService {
      */
     public void undo() {
         if (!undoStack.isEmpty()) {
-            final CopyOnWriteArrayList<Shape> currentState = new CopyOnWriteArrayList<>();
-            for (final Shape shape : shapes) {
-                currentState.add(shape.clone());
+            final Operation action = undoStack.pop();
+            final Operation inverse = action.inverse();
+            final Rectangle region;
+            final ShapeDelta delta;
+            synchronized (shapes) {
+                region = inverse.apply(shapes);
+                delta = journalOperations(List.of(inverse));
             }
-            redoStack.push(currentState);
-            shapes = undoStack.pop();
-            DrawingPanel.getInstance().repaint();
-            final SocketMessage update = new SocketMessage(
-                    networkManager.getUsername(),
-                    CommandType.UPDATE_SHAPES,
-                    shapes
-            );
-            networkManager.sendUpdate(update);
+            DrawingPanel.getInstance().invalidateShapes(region);
+            redoStack.push(action);
+            broadcastDelta(delta);
             setModified(true);
         }
     }
@@ -241,23 +718,68 @@ public class WhiteboardService {
      */
     public void redo() {
         if (!redoStack.isEmpty()) {
-            final CopyOnWriteArrayList<Shape> currentState = new CopyOnWriteArrayList<>();
-            for (final Shape shape : shapes) {
-                currentState.add(shape.clone());
+            final Operation action = redoStack.pop();
+            final Rectangle region;
+            final ShapeDelta delta;
+            synchronized (shapes) {
+                region = action.apply(shapes);
+                delta = journalOperations(List.of(action));
             }
-            undoStack.push(currentState);
-            shapes = redoStack.pop();
-            DrawingPanel.getInstance().repaint();
-            final SocketMessage update = new SocketMessage(
-                    networkManager.getUsername(),
-                    CommandType.UPDATE_SHAPES,
-                    shapes
-            );
-            networkManager.sendUpdate(update);
+            DrawingPanel.getInstance().invalidateShapes(region);
+            undoStack.push(action);
+            broadcastDelta(delta);
             setModified(true);
         }
     }
 
+    /**
+     * Build the delta of the changes made by applied operations and record it in the journal.
+     * Called while holding the lock of the shapes, so the delta reflects the board the journal has reached.
+     *
+     * @param operations applied operations
+     * @return delta of the shapes the operations affected
+     */
+    private ShapeDelta journalOperations(final List<Operation> operations) {
+        final Set<String> changed = new HashSet<>();
+        final Set<String> reordered = new HashSet<>();
+        for (final Operation operation : operations) {
+            operation.collectShapeIds(changed, reordered);
+        }
+        final ShapeDelta delta = ShapeDelta.of(changed, reordered, shapes.getSnapshot());
+        journalDelta(delta);
+        return delta;
+    }
+
+    /**
+     * Record an applied change in the journal.
+     * Called while holding the lock of the shapes in the section that applied the change, so records are written
+     * in the order the changes reached the board.
+     *
+     * @param delta applied change, ignored if empty
+     */
+    private void journalDelta(final ShapeDelta delta) {
+        if (journal != null && !delta.isEmpty()) {
+            journal.append(delta);
+        }
+    }
+
+    /**
+     * Send an incremental change to other users.
+     *
+     * @param delta change to send, ignored if empty
+     */
+    private void broadcastDelta(final ShapeDelta delta) {
+        if (delta.isEmpty()) {
+            return;
+        }
+        final SocketMessage update = new SocketMessage(
+                networkManager.getUsername(),
+                CommandType.UPDATE_SHAPE_DELTA,
+                delta
+        );
+        networkManager.sendUpdate(update);
+    }
+
     /**
      * Load shapes from a document file.
      *
@@ -265,14 +787,30 @@ public class WhiteboardService {
      * @return True if loaded successfully
      */
     public boolean loadFromDocument(final File file) {
-        shapes = documentManager.loadShapes(file);
+        return loadFromDocument(file, null);
+    }
+
+    /**
+     * Load shapes from a document file, reporting how much of the file has been read.
+     *
+     * @param file     file to load shapes from
+     * @param progress receives the percentage of the file read as loading advances, null if unused
+     * @return True if loaded successfully
+     */
+    public boolean loadFromDocument(final File file, final IntConsumer progress) {
+        if (file != null && file.isFile() && BoardFile.isBoardFile(file.toPath())) {
+            return pageFromDocument(file);
+        }
+        closePager();
+        shapes.reset(withUniqueIds(documentManager.loadShapes(file, progress), BoardSnapshot.EMPTY));
         undoStack.clear();
         redoStack.clear();
-        DrawingPanel.getInstance().repaint();
+        journalReset();
+        DrawingPanel.getInstance().invalidateShapes();
         final SocketMessage update = new SocketMessage(
                 networkManager.getUsername(),
                 CommandType.UPDATE_SHAPES,
-                shapes
+                shapes.getSnapshot()
         );
         networkManager.sendUpdate(update);
         setModified(false);
@@ -280,20 +818,81 @@ public class WhiteboardService {
     }
 
     /**
-     * Handle tool release events and synchronizes the updated shapes.
+     * Open a native board file and page its shapes onto the board, starting with the region in view.
+     * The rest of the board is loaded in the background and sent to other users as it arrives.
      *
-     * @param eraserTool eraser tool that was used
+     * @param file board file to open
+     * @return True if the file was opened and holds shapes
      */
-    public void handleToolReleased(final EraserTool eraserTool) {
-        if (eraserTool != null) {
-            eraserTool.clearErasedShapeIds();
+    private boolean pageFromDocument(final File file) {
+        final BoardFile board = documentManager.openBoard(file);
+        if (board == null) {
+            return false;
+        }
+        final BoardPager newPager;
+        synchronized (this) {
+            closePager();
+            shapes.reset(List.of());
+            undoStack.clear();
+            redoStack.clear();
+            if (journal != null) {
+                journal.reset(shapes.getSnapshot(), file.toPath());
+            }
+            newPager = new BoardPager(board, shapes.getSnapshot().getVersion(), this::pageIn);
+            pager = newPager;
         }
+        DrawingPanel.getInstance().invalidateShapes();
         final SocketMessage update = new SocketMessage(
                 networkManager.getUsername(),
                 CommandType.UPDATE_SHAPES,
-                shapes
+                shapes.getSnapshot()
         );
         networkManager.sendUpdate(update);
+        newPager.start(DrawingPanel.getInstance().getViewRegion());
+        setModified(false);
+        return !board.isEmpty();
+    }
+
+    /**
+     * Add shapes paged in from the open board file and send them to other users.
+     * They are not journaled, since the journal references the file as the base of the board.
+     * Shapes from a pager that was replaced or closed are ignored.
+     *
+     * @param source pager that loaded the shapes
+     * @param tiles  indices of the loaded tiles
+     * @param paged  shapes of the tiles
+     */
+    private synchronized void pageIn(final BoardPager source, final int[] tiles, final List<Shape> paged) {
+        if (pager != source) {
+            return;
+        }
+        final List<Shape> added;
+        synchronized (shapes) {
+            added = withUniqueIds(paged, shapes.getSnapshot());
+            shapes.insertAll(added);
+            source.markLoaded(tiles, shapes.getSnapshot().getVersion());
+        }
+        DrawingPanel.getInstance().invalidateShapes(changedRegion(List.of(), added));
+        broadcastDelta(new ShapeDelta(added, List.of(), Map.of()));
+    }
+
+    /**
+     * Stop paging in the open board file, used when the board is replaced.
+     */
+    private synchronized void closePager() {
+        if (pager != null) {
+            pager.close();
+            pager = null;
+        }
+    }
+
+    /**
+     * Record in the journal that the whole board was replaced.
+     */
+    private void journalReset() {
+        if (journal != null) {
+            journal.reset(shapes.getSnapshot());
+        }
     }
 
     /**
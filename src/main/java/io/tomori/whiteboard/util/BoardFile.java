@@ -0,0 +1,748 @@
+package io.tomori.whiteboard.util;
+
+import io.tomori.whiteboard.constant.ShapeConstant;
+import io.tomori.whiteboard.model.Color;
+import io.tomori.whiteboard.model.shapes.CircleShape;
+import io.tomori.whiteboard.model.shapes.LineShape;
+import io.tomori.whiteboard.model.shapes.OvalShape;
+import io.tomori.whiteboard.model.shapes.PathShape;
+import io.tomori.whiteboard.model.shapes.RectangleShape;
+import io.tomori.whiteboard.model.shapes.Shape;
+import io.tomori.whiteboard.model.shapes.TextShape;
+import io.tomori.whiteboard.model.shapes.TriangleShape;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Native binary board format, read through a memory-mapped view of the file.
+ * The file starts with a fixed header, followed by one packed record per shape, an index giving the offset and
+ * bounds of each record, and a tile table. Opening a board only maps the file and checks the header; shapes are
+ * decoded when they are first requested, so even very large boards open in constant time.
+ * <p>
+ * Records are laid out by tile: each shape belongs to the square tile holding the center of its bounds, and the
+ * shapes of a tile are stored contiguously in z-order, so the shapes of a region can be read without touching the
+ * rest of the file. The tile table gives for each tile its position, its range of shapes and the union of their
+ * bounds, which serves as a coarse spatial index.
+ * <p>
+ * Header: magic, format version, shape count, tile count, index offset (long), tile table offset (long).
+ * Record: type, flags, stroke color, fill color if present, stroke width, ID, z-order key if present, geometry.
+ * Index entry: record offset (long), bounds x, y, width and height.
+ * Tile entry: column, row, first shape, shape count, bounds x, y, width and height. All values are big-endian.
+ */
+public final class BoardFile extends AbstractList<Shape> implements RandomAccess {
+    /**
+     * File name extension of native board files
+     */
+    public static final String EXTENSION = ".wbd";
+    /**
+     * Magic number at the start of every board file, "WBRD" in ASCII
+     */
+    private static final int MAGIC = 0x57425244;
+    /**
+     * Version of the format written by this class
+     */
+    private static final int VERSION = 2;
+    /**
+     * Size of the header in bytes
+     */
+    private static final int HEADER_SIZE = 32;
+    /**
+     * Size of an index entry in bytes
+     */
+    private static final int INDEX_ENTRY_SIZE = 24;
+    /**
+     * Size of a tile table entry in bytes
+     */
+    private static final int TILE_ENTRY_SIZE = 32;
+    /**
+     * Side of a tile in board pixels
+     */
+    private static final int TILE_SIZE = 1024;
+    /**
+     * Buffered bytes above which the output buffer is passed to the file
+     */
+    private static final int FLUSH_THRESHOLD = 1 << 16;
+    /**
+     * Record flag set when the shape has a fill color
+     */
+    private static final int HAS_FILL = 1;
+    /**
+     * Record flag set when the shape has a z-order key
+     */
+    private static final int HAS_Z_KEY = 1 << 1;
+    /**
+     * Record flag set when a path is made of cubic Bezier segments
+     */
+    private static final int CURVED = 1 << 2;
+    /**
+     * Shape type identifiers in the order of their record type codes
+     */
+    private static final List<String> TYPES = List.of(
+            ShapeConstant.CIRCLE_SHAPE, ShapeConstant.RECTANGLE_SHAPE, ShapeConstant.LINE_SHAPE,
+            ShapeConstant.OVAL_SHAPE, ShapeConstant.TRIANGLE_SHAPE, ShapeConstant.TEXT_SHAPE,
+            ShapeConstant.PATH_SHAPE);
+    /**
+     * Read-only view of the whole file
+     */
+    private final ByteBuffer buffer;
+    /**
+     * Number of shapes in the file
+     */
+    private final int count;
+    /**
+     * Offset of the index in the file
+     */
+    private final int indexOffset;
+    /**
+     * Number of tiles holding shapes
+     */
+    private final int tileCount;
+    /**
+     * Offset of the tile table in the file
+     */
+    private final int tileOffset;
+
+    /**
+     * Create a view over a mapped board file.
+     *
+     * @param buffer      read-only view of the whole file
+     * @param count       number of shapes
+     * @param indexOffset offset of the index
+     * @param tileCount   number of tiles
+     * @param tileOffset  offset of the tile table
+     */
+    private BoardFile(final ByteBuffer buffer, final int count, final int indexOffset, final int tileCount,
+                      final int tileOffset) {
+        this.buffer = buffer;
+        this.count = count;
+        this.indexOffset = indexOffset;
+        this.tileCount = tileCount;
+        this.tileOffset = tileOffset;
+    }
+
+    /**
+     * Check whether a file name has the native board extension.
+     *
+     * @param file file to check
+     * @return True if the file should be written in the native format
+     */
+    public static boolean hasExtension(final File file) {
+        return file.getName().toLowerCase().endsWith(EXTENSION);
+    }
+
+    /**
+     * Check whether a file starts with the board file magic number.
+     *
+     * @param path file to check
+     * @return True if the file is a native board file
+     */
+    public static boolean isBoardFile(final Path path) {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // Keep reading until the magic number is complete or the file ends
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Open a board file by mapping it into memory.
+     * No shape is decoded until it is requested, the mapping stays valid after the file is closed.
+     *
+     * @param path file to open
+     * @return board file view
+     * @throws IOException if the file cannot be mapped or is not a valid board file
+     */
+    public static BoardFile open(final Path path) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Board file too large to map: " + size + " bytes");
+            }
+            if (size < HEADER_SIZE) {
+                throw new IOException("Not a board file: " + path);
+            }
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a board file: " + path);
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported board file version " + buffer.getInt(4));
+            }
+            final int count = buffer.getInt(8);
+            final int tileCount = buffer.getInt(12);
+            final long indexOffset = buffer.getLong(16);
+            final long tileOffset = buffer.getLong(24);
+            if (count < 0 || indexOffset < HEADER_SIZE
+                    || indexOffset + (long) count * INDEX_ENTRY_SIZE > size
+                    || tileCount < 0 || tileOffset < HEADER_SIZE
+                    || tileOffset + (long) tileCount * TILE_ENTRY_SIZE > size) {
+                throw new IOException("Corrupt board file index: " + path);
+            }
+            return new BoardFile(buffer, count, (int) indexOffset, tileCount, (int) tileOffset);
+        }
+    }
+
+    /**
+     * Write shapes to a file in the native format, replacing the file atomically.
+     * Shapes without a z-order key are all given keys in list order, so that every record can be placed on a board
+     * on its own.
+     *
+     * @param path   file to write
+     * @param shapes shapes to write, in drawing order
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(final Path path, final List<Shape> shapes) throws IOException {
+        final int size = shapes.size();
+        final Rectangle[] bounds = new Rectangle[size];
+        final Map<Long, Integer> tileIds = new HashMap<>();
+        final List<long[]> tiles = new ArrayList<>();
+        final int[] tileOf = new int[size];
+        boolean keyed = true;
+        for (int i = 0; i < size; i++) {
+            final Shape shape = shapes.get(i);
+            bounds[i] = shape.getBounds();
+            keyed &= shape.getZKey() != null;
+            final long column = Math.floorDiv((long) bounds[i].x + bounds[i].width / 2, TILE_SIZE);
+            final long row = Math.floorDiv((long) bounds[i].y + bounds[i].height / 2, TILE_SIZE);
+            final Integer tile = tileIds.computeIfAbsent(row << 32 | column & 0xffffffffL, key -> {
+                tiles.add(new long[]{row, column, tiles.size(), 0});
+                return tiles.size() - 1;
+            });
+            tileOf[i] = tile;
+            tiles.get(tile)[3]++;
+        }
+        final String[] keys = keyed ? null : new String[size];
+        if (!keyed) {
+            String key = null;
+            for (int i = 0; i < size; i++) {
+                key = ZKeyUtil.between(key, null);
+                keys[i] = key;
+            }
+        }
+        tiles.sort(Comparator.<long[]>comparingLong(tile -> tile[0]).thenComparingLong(tile -> tile[1]));
+        final int[] firstOfTile = new int[tiles.size()];
+        final int[] tileRank = new int[tiles.size()];
+        for (int rank = 0, first = 0; rank < tiles.size(); rank++) {
+            tileRank[(int) tiles.get(rank)[2]] = rank;
+            firstOfTile[rank] = first;
+            first += (int) tiles.get(rank)[3];
+        }
+        final int[] order = new int[size];
+        final int[] next = firstOfTile.clone();
+        for (int i = 0; i < size; i++) {
+            order[next[tileRank[tileOf[i]]]++] = i;
+        }
+        FileUtil.writeAtomically(path, channel -> {
+            final Encoder encoder = new Encoder(channel);
+            final long[] offsets = new long[size];
+            encoder.ensure(HEADER_SIZE);
+            encoder.out.position(HEADER_SIZE);
+            for (int i = 0; i < size; i++) {
+                offsets[i] = encoder.position();
+                encoder.record(shapes.get(order[i]), keys == null ? null : keys[order[i]]);
+            }
+            final long indexOffset = encoder.position();
+            for (int i = 0; i < size; i++) {
+                final Rectangle shapeBounds = bounds[order[i]];
+                encoder.ensure(INDEX_ENTRY_SIZE);
+                encoder.out.putLong(offsets[i]).putInt(shapeBounds.x).putInt(shapeBounds.y)
+                        .putInt(shapeBounds.width).putInt(shapeBounds.height);
+            }
+            final long tileOffset = encoder.position();
+            for (int rank = 0; rank < tiles.size(); rank++) {
+                final int first = firstOfTile[rank];
+                final int shapeCount = (int) tiles.get(rank)[3];
+                final Rectangle tileBounds = new Rectangle(bounds[order[first]]);
+                for (int i = first + 1; i < first + shapeCount; i++) {
+                    tileBounds.add(bounds[order[i]]);
+                }
+                encoder.ensure(TILE_ENTRY_SIZE);
+                encoder.out.putInt((int) tiles.get(rank)[1]).putInt((int) tiles.get(rank)[0])
+                        .putInt(first).putInt(shapeCount).putInt(tileBounds.x).putInt(tileBounds.y)
+                        .putInt(tileBounds.width).putInt(tileBounds.height);
+            }
+            encoder.drain();
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC).putInt(VERSION).putInt(size).putInt(tiles.size())
+                    .putLong(indexOffset).putLong(tileOffset)
+                    .flip();
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+        });
+    }
+
+    /**
+     * Decode a shape from its record.
+     * Every call decodes a new instance, callers keep the shapes they need.
+     *
+     * @param index index of the shape
+     * @return decoded shape
+     */
+    @Override
+    public Shape get(final int index) {
+        return new Decoder((int) buffer.getLong(entry(index))).shape();
+    }
+
+    /**
+     * Return the number of shapes in the file.
+     *
+     * @return number of shapes
+     */
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Return the bounds of a shape as stored in the index, without decoding the shape.
+     *
+     * @param index index of the shape
+     * @return bounding rectangle of the shape
+     */
+    public Rectangle getBounds(final int index) {
+        final int entry = entry(index);
+        return new Rectangle(buffer.getInt(entry + 8), buffer.getInt(entry + 12),
+                buffer.getInt(entry + 16), buffer.getInt(entry + 20));
+    }
+
+    /**
+     * Return the z-order key of a shape without decoding the rest of the shape.
+     *
+     * @param index index of the shape
+     * @return z-order key, null if the shape has none
+     */
+    public String getZKey(final int index) {
+        return new Decoder((int) buffer.getLong(entry(index))).zKey();
+    }
+
+    /**
+     * Return the number of tiles holding shapes.
+     *
+     * @return number of tiles
+     */
+    public int getTileCount() {
+        return tileCount;
+    }
+
+    /**
+     * Return the union of the bounds of the shapes of a tile, which may extend past the tile itself.
+     *
+     * @param tile index of the tile
+     * @return area covered by the shapes of the tile
+     */
+    public Rectangle getTileBounds(final int tile) {
+        final int entry = tileEntry(tile);
+        return new Rectangle(buffer.getInt(entry + 16), buffer.getInt(entry + 20),
+                buffer.getInt(entry + 24), buffer.getInt(entry + 28));
+    }
+
+    /**
+     * Return the index of the first shape of a tile, the shapes of a tile having consecutive indices.
+     *
+     * @param tile index of the tile
+     * @return index of the first shape
+     */
+    public int getTileStart(final int tile) {
+        return buffer.getInt(tileEntry(tile) + 8);
+    }
+
+    /**
+     * Return the number of shapes of a tile.
+     *
+     * @param tile index of the tile
+     * @return number of shapes
+     */
+    public int getTileSize(final int tile) {
+        return buffer.getInt(tileEntry(tile) + 12);
+    }
+
+    /**
+     * Return the offset of the tile table entry of a tile.
+     *
+     * @param tile index of the tile
+     * @return offset of the entry in the file
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    private int tileEntry(final int tile) {
+        if (tile < 0 || tile >= tileCount) {
+            throw new IndexOutOfBoundsException("Tile index " + tile + " out of range for " + tileCount + " tiles");
+        }
+        return tileOffset + tile * TILE_ENTRY_SIZE;
+    }
+
+    /**
+     * Return the offset of the index entry of a shape.
+     *
+     * @param index index of the shape
+     * @return offset of the entry in the file
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    private int entry(final int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Shape index " + index + " out of range for " + count + " shapes");
+        }
+        return indexOffset + index * INDEX_ENTRY_SIZE;
+    }
+
+    /**
+     * Packs records into a growing buffer that is passed to the file whenever it fills up.
+     */
+    private static final class Encoder {
+        /**
+         * Channel receiving the bytes
+         */
+        private final FileChannel channel;
+        /**
+         * Bytes not yet passed to the channel
+         */
+        private ByteBuffer out = ByteBuffer.allocate(FLUSH_THRESHOLD * 2);
+        /**
+         * Number of bytes already passed to the channel
+         */
+        private long written;
+
+        /**
+         * Create an encoder.
+         *
+         * @param channel channel receiving the bytes
+         */
+        private Encoder(final FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Return the file offset of the next byte.
+         *
+         * @return offset in the file
+         */
+        private long position() {
+            return written + out.position();
+        }
+
+        /**
+         * Make room for some bytes, draining or growing the buffer.
+         *
+         * @param bytes number of bytes about to be written
+         * @throws IOException if the channel fails
+         */
+        private void ensure(final int bytes) throws IOException {
+            if (out.position() >= FLUSH_THRESHOLD) {
+                drain();
+            }
+            if (out.remaining() < bytes) {
+                final ByteBuffer grown = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+                out = grown.put(out.flip());
+            }
+        }
+
+        /**
+         * Pass all buffered bytes to the channel.
+         *
+         * @throws IOException if the channel fails
+         */
+        private void drain() throws IOException {
+            out.flip();
+            while (out.hasRemaining()) {
+                written += channel.write(out);
+            }
+            out.clear();
+        }
+
+        /**
+         * Write the record of a shape.
+         *
+         * @param shape       shape to write
+         * @param assignedKey z-order key to write instead of the shape's own, null to keep the shape's key
+         * @throws IOException if the channel fails
+         */
+        private void record(final Shape shape, final String assignedKey) throws IOException {
+            final int type = TYPES.indexOf(shape.getTypeId());
+            if (type < 0) {
+                throw new IOException("Unsupported shape type: " + shape.getTypeId());
+            }
+            final byte[] id = utf8(shape.getId());
+            final String key = assignedKey != null ? assignedKey : shape.getZKey();
+            final byte[] zKey = key == null ? null : utf8(key);
+            int flags = shape.getFill() != null ? HAS_FILL : 0;
+            flags |= zKey != null ? HAS_Z_KEY : 0;
+            flags |= shape instanceof final PathShape path && path.isCurved() ? CURVED : 0;
+            ensure(18 + id.length + (zKey == null ? 0 : zKey.length + 4));
+            out.put((byte) type).put((byte) flags).putInt(rgb(shape.getColor()));
+            if (shape.getFill() != null) {
+                out.putInt(rgb(shape.getFill()));
+            }
+            out.putFloat(shape.getStrokeWidth());
+            string(id);
+            if (zKey != null) {
+                string(zKey);
+            }
+            switch (shape) {
+                case final CircleShape circle -> ints(circle.getX(), circle.getY(), circle.getRadius());
+                case final RectangleShape rectangle ->
+                        ints(rectangle.getX(), rectangle.getY(), rectangle.getWidth(), rectangle.getHeight());
+                case final LineShape line -> ints(line.getX1(), line.getY1(), line.getX2(), line.getY2());
+                case final OvalShape oval ->
+                        ints(oval.getX(), oval.getY(), oval.getHalfWidth(), oval.getHalfHeight());
+                case final TriangleShape triangle -> ints(triangle.getP1().x, triangle.getP1().y,
+                        triangle.getP2().x, triangle.getP2().y, triangle.getP3().x, triangle.getP3().y);
+                case final TextShape text -> {
+                    ints(text.getX(), text.getY(), text.getFontSize(), text.getFontStyle());
+                    final byte[] fontName = utf8(text.getFontName());
+                    final byte[] content = utf8(text.getText());
+                    ensure(fontName.length + content.length + 8);
+                    string(fontName);
+                    string(content);
+                }
+                case final PathShape path -> coords(path);
+                default -> throw new IOException("Unsupported shape class: " + shape.getClass().getName());
+            }
+        }
+
+        /**
+         * Write integers.
+         *
+         * @param values integers to write
+         * @throws IOException if the channel fails
+         */
+        private void ints(final int... values) throws IOException {
+            ensure(values.length * Integer.BYTES);
+            for (final int value : values) {
+                out.putInt(value);
+            }
+        }
+
+        /**
+         * Write a length-prefixed byte string, room must already have been made.
+         *
+         * @param bytes bytes to write
+         */
+        private void string(final byte[] bytes) {
+            out.putInt(bytes.length).put(bytes);
+        }
+
+        /**
+         * Write packed path coordinates: their count, then each coordinate as the zigzag variable-length difference
+         * from the previous coordinate on the same axis, so that dense strokes take one or two bytes per coordinate.
+         *
+         * @param path path whose points are written
+         * @throws IOException if the channel fails
+         */
+        private void coords(final PathShape path) throws IOException {
+            ints(path.getPointCount() * 2);
+            int previousX = 0;
+            int previousY = 0;
+            for (int i = 0; i < path.getPointCount(); i++) {
+                ensure(10);
+                varint(path.getX(i) - previousX);
+                varint(path.getY(i) - previousY);
+                previousX = path.getX(i);
+                previousY = path.getY(i);
+            }
+        }
+
+        /**
+         * Write a signed integer in zigzag variable-length form, room must already have been made.
+         *
+         * @param value integer to write
+         */
+        private void varint(final int value) {
+            int zigzag = (value << 1) ^ (value >> 31);
+            while ((zigzag & ~0x7f) != 0) {
+                out.put((byte) ((zigzag & 0x7f) | 0x80));
+                zigzag >>>= 7;
+            }
+            out.put((byte) zigzag);
+        }
+
+        /**
+         * Encode text as UTF-8.
+         *
+         * @param text text to encode, null is written empty
+         * @return encoded bytes
+         */
+        private static byte[] utf8(final String text) {
+            return text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Pack a color into an integer.
+         *
+         * @param color color to pack
+         * @return packed red, green and blue components
+         */
+        private static int rgb(final Color color) {
+            return (color.getR() & 0xff) << 16 | (color.getG() & 0xff) << 8 | color.getB() & 0xff;
+        }
+    }
+
+    /**
+     * Decodes one record with absolute reads, so that several threads can decode shapes of the same file at once.
+     */
+    private final class Decoder {
+        /**
+         * Offset of the next byte to read
+         */
+        private int position;
+
+        /**
+         * Create a decoder at the start of a record.
+         *
+         * @param position offset of the record
+         */
+        private Decoder(final int position) {
+            this.position = position;
+        }
+
+        /**
+         * Decode the shape of the record.
+         *
+         * @return decoded shape
+         * @throws IllegalStateException if the record is corrupt
+         */
+        private Shape shape() {
+            final int type = buffer.get(position++);
+            final int flags = buffer.get(position++);
+            final Color color = color();
+            final Color fill = (flags & HAS_FILL) != 0 ? color() : null;
+            final float strokeWidth = buffer.getFloat(position);
+            position += Float.BYTES;
+            final String id = string();
+            final String zKey = (flags & HAS_Z_KEY) != 0 ? string() : null;
+            final Shape shape = switch (type) {
+                case 0 -> new CircleShape(id, nextInt(), nextInt(), nextInt());
+                case 1 -> new RectangleShape(id, nextInt(), nextInt(), nextInt(), nextInt());
+                case 2 -> new LineShape(id, nextInt(), nextInt(), nextInt(), nextInt());
+                case 3 -> new OvalShape(id, nextInt(), nextInt(), nextInt(), nextInt());
+                case 4 -> new TriangleShape(id, new Point(nextInt(), nextInt()), new Point(nextInt(), nextInt()),
+                        new Point(nextInt(), nextInt()));
+                case 5 -> text(id);
+                case 6 -> new PathShape(id, coords(), (flags & CURVED) != 0);
+                default -> throw new IllegalStateException("Corrupt board file, unknown shape type " + type);
+            };
+            shape.setColor(color);
+            shape.setFill(fill);
+            shape.setStrokeWidth(strokeWidth);
+            shape.setZKey(zKey);
+            return shape;
+        }
+
+        /**
+         * Read the z-order key of the record, skipping the fields before it.
+         *
+         * @return z-order key, null if the record has none
+         */
+        private String zKey() {
+            position++;
+            final int flags = buffer.get(position++);
+            position += (flags & HAS_FILL) != 0 ? 2 * Integer.BYTES + Float.BYTES : Integer.BYTES + Float.BYTES;
+            position += Integer.BYTES + buffer.getInt(position);
+            return (flags & HAS_Z_KEY) != 0 ? string() : null;
+        }
+
+        /**
+         * Decode the geometry and font of a text shape.
+         *
+         * @param id shape identifier
+         * @return text shape
+         */
+        private TextShape text(final String id) {
+            final int x = nextInt();
+            final int y = nextInt();
+            final int fontSize = nextInt();
+            final int fontStyle = nextInt();
+            final String fontName = string();
+            final TextShape text = new TextShape(id, x, y, string());
+            text.setFontName(fontName);
+            text.setFontSize(fontSize);
+            text.setFontStyle(fontStyle);
+            return text;
+        }
+
+        /**
+         * Decode packed path coordinates.
+         *
+         * @return x and y coordinates
+         */
+        private int[] coords() {
+            final int[] coords = new int[nextInt()];
+            int x = 0;
+            int y = 0;
+            for (int i = 0; i < coords.length; i += 2) {
+                x += varint();
+                y += varint();
+                coords[i] = x;
+                coords[i + 1] = y;
+            }
+            return coords;
+        }
+
+        /**
+         * Read a zigzag variable-length integer.
+         *
+         * @return decoded integer
+         */
+        private int varint() {
+            int zigzag = 0;
+            for (int shift = 0; ; shift += 7) {
+                final byte b = buffer.get(position++);
+                zigzag |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+        }
+
+        /**
+         * Read an integer.
+         *
+         * @return integer read
+         */
+        private int nextInt() {
+            final int value = buffer.getInt(position);
+            position += Integer.BYTES;
+            return value;
+        }
+
+        /**
+         * Read a packed color.
+         *
+         * @return color read
+         */
+        private Color color() {
+            final int rgb = nextInt();
+            return new Color(rgb >> 16 & 0xff, rgb >> 8 & 0xff, rgb & 0xff);
+        }
+
+        /**
+         * Read a length-prefixed UTF-8 string.
+         *
+         * @return string read
+         */
+        private String string() {
+            final byte[] bytes = new byte[nextInt()];
+            buffer.get(position, bytes);
+            position += bytes.length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,557 @@
+package io.tomori.whiteboard.util;
+
+import com.google.gson.internal.LinkedTreeMap;
+import io.tomori.whiteboard.model.ShapeDelta;
+import io.tomori.whiteboard.model.board.BoardSnapshot;
+import io.tomori.whiteboard.model.shapes.Shape;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of board changes for crash recovery.
+ * Changes are appended as length-prefixed, checksummed records to a journal segment by a single writer thread,
+ * which group commits every record queued since its last write with one gathering write and one fsync.
+ * After enough records the board is compacted into a snapshot file and a new segment is started, and older
+ * snapshots and segments are deleted.
+ * Records hold the full state of the shapes they touch, so replaying a record whose change the snapshot already
+ * includes leaves the board unchanged. This lets snapshots be taken from the live board while records are queued.
+ * A board reset may name a native board file as the base of its snapshot, so that opening a large file does not copy
+ * it into the journal: recovery then starts from the shapes of that file.
+ */
+public class BoardJournal implements AutoCloseable {
+    /**
+     * Number of records after which the board is compacted into a new snapshot
+     */
+    private static final int SNAPSHOT_RECORDS = 2000;
+    /**
+     * Number of journal bytes after which the board is compacted into a new snapshot
+     */
+    private static final long SNAPSHOT_BYTES = 8L * 1024 * 1024;
+    /**
+     * Size of a record header: payload length and CRC32 of the payload
+     */
+    private static final int HEADER_SIZE = 8;
+    /**
+     * Largest payload accepted while reading, longer lengths are treated as a torn record
+     */
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+    /**
+     * File name of a snapshot, with its generation
+     */
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.json");
+    /**
+     * File name of a journal segment, with the generation of the snapshot it follows
+     */
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d+)\\.log");
+    /**
+     * File name of the base board file reference of a snapshot, with the generation of the snapshot
+     */
+    private static final Pattern BASE_NAME = Pattern.compile("base-(\\d+)\\.txt");
+    /**
+     * Directory holding the snapshots and segments
+     */
+    private final Path directory;
+    /**
+     * Source of the shapes of the whole live document, read when compacting
+     */
+    private final Supplier<List<Shape>> board;
+    /**
+     * Entries waiting for the writer thread
+     */
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    /**
+     * Writer thread, null until started
+     */
+    private Thread writer;
+    /**
+     * Open journal segment, accessed by the writer thread only
+     */
+    private FileChannel segment;
+    /**
+     * Generation of the latest snapshot and of the open segment
+     */
+    private long generation;
+    /**
+     * Records written since the latest snapshot
+     */
+    private int recordsSinceSnapshot;
+    /**
+     * Bytes written since the latest snapshot
+     */
+    private long bytesSinceSnapshot;
+
+    /**
+     * Create a journal in a directory.
+     *
+     * @param directory directory for the snapshots and segments, created if missing
+     * @param board     source of the shapes of the whole live document, read when compacting
+     */
+    public BoardJournal(final Path directory, final Supplier<List<Shape>> board) {
+        this.directory = directory;
+        this.board = board;
+    }
+
+    /**
+     * Rebuild the board left by a previous run: the shapes of the base board file of the latest readable snapshot,
+     * if any, then the snapshot, followed by the records of every segment written after it.
+     * Reading stops at the first torn or corrupt record of a segment.
+     *
+     * @return recovered shapes with their z-keys, empty if there is nothing to recover
+     */
+    public List<Shape> recover() {
+        final TreeMap<Long, Path> snapshots = listFiles(SNAPSHOT_NAME);
+        final Map<String, Shape> shapes = new LinkedHashMap<>();
+        long start = 0;
+        for (final Map.Entry<Long, Path> entry : snapshots.descendingMap().entrySet()) {
+            final List<Shape> loaded = readSnapshot(entry.getValue());
+            if (loaded != null) {
+                readBase(entry.getKey(), shapes);
+                for (final Shape shape : loaded) {
+                    shapes.put(shape.getId(), shape);
+                }
+                start = entry.getKey();
+                break;
+            }
+        }
+        int records = 0;
+        for (final Map.Entry<Long, Path> entry : listFiles(SEGMENT_NAME).tailMap(start, true).entrySet()) {
+            records += replaySegment(entry.getValue(), shapes);
+        }
+        if (!shapes.isEmpty() || records > 0) {
+            System.out.println("Recovered " + shapes.size() + " shapes from journal, replayed " + records + " records");
+        }
+        return new ArrayList<>(shapes.values());
+    }
+
+    /**
+     * Start journaling: compact the current board into a new snapshot, open its segment and start the writer thread.
+     * Call after the recovered shapes have been put on the board.
+     *
+     * @throws IOException if the directory or the first snapshot cannot be written
+     */
+    public synchronized void start() throws IOException {
+        if (writer != null) {
+            return;
+        }
+        Files.createDirectories(directory);
+        generation = 0;
+        for (final Pattern pattern : List.of(SNAPSHOT_NAME, SEGMENT_NAME)) {
+            final TreeMap<Long, Path> files = listFiles(pattern);
+            if (!files.isEmpty()) {
+                generation = Math.max(generation, files.lastKey());
+            }
+        }
+        compact(board.get(), null);
+        writer = new Thread(this::runWriter, "board-journal");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "board-journal-shutdown"));
+    }
+
+    /**
+     * Queue a change for the journal without waiting for it to be written.
+     *
+     * @param delta change applied to the board
+     * @return future completed once the change is durable
+     */
+    public CompletableFuture<Void> append(final ShapeDelta delta) {
+        final Entry entry = new Entry(JsonUtil.toJson(delta).getBytes(StandardCharsets.UTF_8), null, null,
+                new CompletableFuture<>());
+        queue.add(entry);
+        return entry.done;
+    }
+
+    /**
+     * Queue a replacement of the whole board, written as a new snapshot rather than a record.
+     *
+     * @param snapshot board after the replacement
+     * @return future completed once the snapshot is durable
+     */
+    public CompletableFuture<Void> reset(final BoardSnapshot snapshot) {
+        return reset(snapshot, null);
+    }
+
+    /**
+     * Queue a replacement of the whole board by the shapes of a native board file and of a snapshot.
+     * The file is referenced rather than copied, so it must stay in place until the next compaction.
+     *
+     * @param snapshot shapes added to those of the file
+     * @param base     native board file holding the rest of the board, null if none
+     * @return future completed once the snapshot is durable
+     */
+    public CompletableFuture<Void> reset(final BoardSnapshot snapshot, final Path base) {
+        final Entry entry = new Entry(null, snapshot, base, new CompletableFuture<>());
+        queue.add(entry);
+        return entry.done;
+    }
+
+    /**
+     * Write the queued entries and stop the writer thread.
+     */
+    @Override
+    public void close() {
+        final Thread running;
+        synchronized (this) {
+            running = writer;
+            writer = null;
+        }
+        if (running == null) {
+            return;
+        }
+        queue.add(Entry.STOP);
+        try {
+            running.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Loop of the writer thread: wait for entries, then write every entry queued so far as one group.
+     */
+    private void runWriter() {
+        final List<Entry> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (final InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+            boolean stop = false;
+            int from = 0;
+            for (int i = 0; i <= batch.size(); i++) {
+                final Entry entry = i < batch.size() ? batch.get(i) : null;
+                if (entry != null && entry.payload != null) {
+                    continue;
+                }
+                writeRecords(batch.subList(from, i));
+                from = i + 1;
+                if (entry == Entry.STOP) {
+                    stop = true;
+                } else if (entry != null) {
+                    compactAndComplete(entry);
+                }
+            }
+            batch.clear();
+            if (stop) {
+                closeSegment();
+                return;
+            }
+            if (recordsSinceSnapshot >= SNAPSHOT_RECORDS || bytesSinceSnapshot >= SNAPSHOT_BYTES) {
+                try {
+                    compact(board.get(), null);
+                } catch (final IOException e) {
+                    System.out.println("Error compacting journal: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Append records to the open segment with one gathering write and one fsync.
+     *
+     * @param records entries holding record payloads
+     */
+    private void writeRecords(final List<Entry> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        final ByteBuffer[] buffers = new ByteBuffer[records.size() * 2];
+        final CRC32 crc = new CRC32();
+        long size = 0;
+        for (int i = 0; i < records.size(); i++) {
+            final byte[] payload = records.get(i).payload;
+            crc.reset();
+            crc.update(payload);
+            buffers[i * 2] = ByteBuffer.allocate(HEADER_SIZE).putInt(payload.length).putInt((int) crc.getValue()).flip();
+            buffers[i * 2 + 1] = ByteBuffer.wrap(payload);
+            size += HEADER_SIZE + payload.length;
+        }
+        try {
+            long written = 0;
+            while (written < size) {
+                written += segment.write(buffers);
+            }
+            segment.force(false);
+            recordsSinceSnapshot += records.size();
+            bytesSinceSnapshot += size;
+            for (final Entry entry : records) {
+                entry.done.complete(null);
+            }
+        } catch (final IOException e) {
+            System.out.println("Error writing journal: " + e.getMessage());
+            for (final Entry entry : records) {
+                entry.done.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Write the snapshot of a reset entry and complete it.
+     *
+     * @param entry reset entry
+     */
+    private void compactAndComplete(final Entry entry) {
+        try {
+            compact(entry.snapshot, entry.base);
+            entry.done.complete(null);
+        } catch (final IOException e) {
+            System.out.println("Error compacting journal: " + e.getMessage());
+            entry.done.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Start a new generation: switch to a new segment, write the board as its snapshot, and delete older files.
+     * The segment is switched before the board is written, so every record of the old segment is in the snapshot.
+     *
+     * @param snapshot shapes to write
+     * @param base     native board file holding the rest of the board, null if the snapshot holds every shape
+     * @throws IOException if the snapshot cannot be written
+     */
+    private void compact(final List<Shape> snapshot, final Path base) throws IOException {
+        final long next = generation + 1;
+        closeSegment();
+        segment = FileChannel.open(directory.resolve(segmentName(next)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        generation = next;
+        recordsSinceSnapshot = 0;
+        bytesSinceSnapshot = 0;
+        if (base != null) {
+            FileUtil.writeAtomically(directory.resolve(baseName(next)),
+                    base.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8));
+        }
+        FileUtil.writeAtomically(directory.resolve(snapshotName(next)), JsonUtil.toJson(snapshot).getBytes(StandardCharsets.UTF_8));
+        for (final Pattern pattern : List.of(SNAPSHOT_NAME, SEGMENT_NAME, BASE_NAME)) {
+            for (final Map.Entry<Long, Path> entry : listFiles(pattern).headMap(next).entrySet()) {
+                Files.deleteIfExists(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Close the open segment, if any.
+     */
+    private void closeSegment() {
+        if (segment == null) {
+            return;
+        }
+        try {
+            segment.close();
+        } catch (final IOException e) {
+            System.out.println("Error closing journal segment: " + e.getMessage());
+        }
+        segment = null;
+    }
+
+    /**
+     * Read the shapes of a snapshot file.
+     *
+     * @param file snapshot file
+     * @return shapes of the snapshot, or null if the file cannot be read
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Shape> readSnapshot(final Path file) {
+        try {
+            final List<LinkedTreeMap<?, ?>> maps = JsonUtil.fromJson(Files.readString(file), List.class);
+            if (maps == null) {
+                return null;
+            }
+            final List<Shape> shapes = new ArrayList<>(maps.size());
+            for (final LinkedTreeMap<?, ?> map : maps) {
+                shapes.add(Shape.fromLinkedTreeMap(map));
+            }
+            return shapes;
+        } catch (final Exception e) {
+            System.out.println("Error reading journal snapshot " + file.getFileName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Add the shapes of the base board file of a snapshot, if it has one.
+     *
+     * @param generation generation of the snapshot
+     * @param shapes     shapes by ID, updated in place
+     */
+    private void readBase(final long generation, final Map<String, Shape> shapes) {
+        final Path reference = directory.resolve(baseName(generation));
+        if (!Files.exists(reference)) {
+            return;
+        }
+        try {
+            final BoardFile base = BoardFile.open(Path.of(Files.readString(reference, StandardCharsets.UTF_8)));
+            for (final Shape shape : base) {
+                shapes.put(shape.getId(), shape);
+            }
+        } catch (final Exception e) {
+            System.out.println("Error reading journal base board: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Apply the records of a segment to shapes, stopping at the first torn or corrupt record.
+     *
+     * @param file   segment file
+     * @param shapes shapes by ID, updated in place
+     * @return number of records applied
+     */
+    private static int replaySegment(final Path file, final Map<String, Shape> shapes) {
+        int records = 0;
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            final CRC32 crc = new CRC32();
+            while (readFully(channel, header.clear())) {
+                final int length = header.getInt(0);
+                if (length < 0 || length > MAX_RECORD_SIZE) {
+                    break;
+                }
+                final ByteBuffer payload = ByteBuffer.allocate(length);
+                if (!readFully(channel, payload)) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload.array());
+                if ((int) crc.getValue() != header.getInt(4)) {
+                    break;
+                }
+                final LinkedTreeMap<?, ?> map = JsonUtil.fromJson(new String(payload.array(), StandardCharsets.UTF_8), LinkedTreeMap.class);
+                if (map == null) {
+                    break;
+                }
+                apply(ShapeDelta.fromLinkedTreeMap(map), shapes);
+                records++;
+            }
+        } catch (final Exception e) {
+            System.out.println("Error replaying journal segment " + file.getFileName() + ": " + e.getMessage());
+        }
+        return records;
+    }
+
+    /**
+     * Apply a recorded change to shapes.
+     *
+     * @param delta  recorded change
+     * @param shapes shapes by ID, updated in place
+     */
+    private static void apply(final ShapeDelta delta, final Map<String, Shape> shapes) {
+        for (final String id : delta.getRemovedIds()) {
+            shapes.remove(id);
+        }
+        for (final Map.Entry<String, String> entry : delta.getZKeys().entrySet()) {
+            final Shape shape = shapes.get(entry.getKey());
+            if (shape != null) {
+                shape.setZKey(entry.getValue());
+            }
+        }
+        for (final Shape shape : delta.getShapes()) {
+            shapes.put(shape.getId(), shape);
+        }
+    }
+
+    /**
+     * Fill a buffer from a channel.
+     *
+     * @param channel channel to read
+     * @param buffer  buffer to fill
+     * @return True if the buffer was filled, false if the channel ended first
+     * @throws IOException if the channel cannot be read
+     */
+    private static boolean readFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * List the files of the journal directory matching a name pattern, by generation.
+     *
+     * @param pattern name pattern capturing the generation
+     * @return files by generation, empty if the directory does not exist
+     */
+    private TreeMap<Long, Path> listFiles(final Pattern pattern) {
+        final TreeMap<Long, Path> files = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (final Stream<Path> paths = Files.list(directory)) {
+            paths.forEach(path -> {
+                final Matcher matcher = pattern.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    files.put(Long.parseLong(matcher.group(1)), path);
+                }
+            });
+        } catch (final IOException e) {
+            System.out.println("Error listing journal directory: " + e.getMessage());
+        }
+        return files;
+    }
+
+    /**
+     * Return the file name of a snapshot.
+     *
+     * @param generation generation of the snapshot
+     * @return file name
+     */
+    private static String snapshotName(final long generation) {
+        return String.format("snapshot-%020d.json", generation);
+    }
+
+    /**
+     * Return the file name of the base board file reference of a snapshot.
+     *
+     * @param generation generation of the snapshot
+     * @return file name
+     */
+    private static String baseName(final long generation) {
+        return String.format("base-%020d.txt", generation);
+    }
+
+    /**
+     * Return the file name of a journal segment.
+     *
+     * @param generation generation of the snapshot the segment follows
+     * @return file name
+     */
+    private static String segmentName(final long generation) {
+        return String.format("journal-%020d.log", generation);
+    }
+
+    /**
+     * Entry queued for the writer thread: a record, a board reset, or the stop marker.
+     *
+     * @param payload  encoded record, null for a reset or the stop marker
+     * @param snapshot board to write as a snapshot, null for a record or the stop marker
+     * @param base     native board file the snapshot is based on, null if none
+     * @param done     future completed once the entry is durable
+     */
+    private record Entry(byte[] payload, List<Shape> snapshot, Path base, CompletableFuture<Void> done) {
+        /**
+         * Marker asking the writer thread to stop
+         */
+        private static final Entry STOP = new Entry(null, null, null, new CompletableFuture<>());
+    }
+}
@@ -6,12 +6,17 @@ import io.tomori.whiteboard.model.shapes.Shape;
 import lombok.Data;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
 
 /**
  * Manage document operation for whiteboard.
@@ -23,7 +28,7 @@ public class DocumentManager {
     /**
      * Currently open file
      */
-    private File currentFile;
+    private volatile File currentFile;
 
     /**
      * Private constructor for singleton pattern.
@@ -87,20 +92,56 @@ public class DocumentManager {
     }
 
     /**
-     * Load shapes from an SVG file.
+     * Load shapes from a native board file or an SVG file.
      *
      * @param file file to load shapes
      * @return shapes list from the file
      */
     public CopyOnWriteArrayList<Shape> loadShapes(final File file) {
+        return loadShapes(file, null);
+    }
+
+    /**
+     * Load shapes from a native board file or an SVG file, reporting how much of the file has been read.
+     * The format is recognized from the content of the file rather than its name.
+     *
+     * @param file     file to load shapes
+     * @param progress receives the percentage of the file read as loading advances, null if unused
+     * @return shapes list from the file
+     */
+    public CopyOnWriteArrayList<Shape> loadShapes(final File file, final IntConsumer progress) {
         CopyOnWriteArrayList<Shape> shapes = new CopyOnWriteArrayList<>();
         if (file == null || !file.exists() || !file.isFile() || !file.canRead()) {
             System.out.println("Cannot load shapes, invalid file");
             return shapes;
         }
-        try {
-            final String svgString = Files.readString(file.toPath());
-            shapes = SvgUtil.fromSvg(svgString);
+        if (BoardFile.isBoardFile(file.toPath())) {
+            return loadBoard(file, progress);
+        }
+        final long length = Math.max(1, file.length());
+        final long[] bytesRead = {0};
+        try (final InputStream input = new FilterInputStream(Files.newInputStream(file.toPath())) {
+            @Override
+            public int read() throws IOException {
+                final int value = super.read();
+                if (value >= 0) {
+                    bytesRead[0]++;
+                }
+                return value;
+            }
+
+            @Override
+            public int read(final byte[] buffer, final int offset, final int count) throws IOException {
+                final int read = super.read(buffer, offset, count);
+                if (read > 0) {
+                    bytesRead[0] += read;
+                }
+                return read;
+            }
+        }) {
+            final Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8);
+            shapes = SvgUtil.fromSvg(reader, progress == null ? null
+                    : created -> progress.accept((int) Math.min(100, bytesRead[0] * 100 / length)));
             currentFile = file;
         } catch (final Exception e) {
             System.out.println("Error loading shapes: " + e.getMessage());
@@ -109,20 +150,85 @@ public class DocumentManager {
     }
 
     /**
-     * Save shapes to the current file in SVG format.
+     * Open a native board file without decoding its shapes and make it the current document.
+     *
+     * @param file board file to open
+     * @return mapped board file, null if the file cannot be opened
+     */
+    public BoardFile openBoard(final File file) {
+        try {
+            final BoardFile board = BoardFile.open(file.toPath());
+            currentFile = file;
+            return board;
+        } catch (final IOException e) {
+            System.out.println("Error loading shapes: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Load shapes from a native board file.
+     * The file is mapped into memory and each record is decoded straight from the mapping.
+     *
+     * @param file     board file to load
+     * @param progress receives the percentage of shapes decoded, null if unused
+     * @return shapes list from the file, empty if the file cannot be read
+     */
+    private CopyOnWriteArrayList<Shape> loadBoard(final File file, final IntConsumer progress) {
+        try {
+            final BoardFile board = BoardFile.open(file.toPath());
+            final Shape[] shapes = new Shape[board.size()];
+            final int step = Math.max(1, shapes.length / 100);
+            for (int i = 0; i < shapes.length; i++) {
+                shapes[i] = board.get(i);
+                if (progress != null && i % step == 0) {
+                    progress.accept((int) ((long) i * 100 / shapes.length));
+                }
+            }
+            currentFile = file;
+            return new CopyOnWriteArrayList<>(shapes);
+        } catch (final Exception e) {
+            System.out.println("Error loading shapes: " + e.getMessage());
+            return new CopyOnWriteArrayList<>();
+        }
+    }
+
+    /**
+     * Save shapes to the current file, in the native format or SVG depending on its extension.
      *
      * @param shapes shapes to save
+     * @return true if the shapes were written
      */
-    public void saveShapes(final List<Shape> shapes) {
-        if (currentFile == null) {
+    public boolean saveShapes(final List<Shape> shapes) {
+        return saveShapes(currentFile, shapes);
+    }
+
+    /**
+     * Save shapes to a file, in the native board format if it has the board extension and in SVG otherwise.
+     * The document is streamed to the file and replaced atomically, so a crash during the save leaves the previous
+     * content intact.
+     *
+     * @param file   file to write
+     * @param shapes shapes to save
+     * @return true if the shapes were written
+     */
+    public boolean saveShapes(final File file, final List<Shape> shapes) {
+        if (file == null) {
             System.out.println("No file specified, cannot save shapes");
-            return;
+            return false;
         }
-        try (final PrintWriter writer = new PrintWriter(new FileWriter(currentFile))) {
-            writer.print(SvgUtil.toSvg(shapes));
-            System.out.println("Shapes saved to file: " + currentFile.getAbsolutePath());
+        try {
+            if (BoardFile.hasExtension(file)) {
+                BoardFile.write(file.toPath(), shapes);
+            } else {
+                FileUtil.writeAtomically(file.toPath(),
+                        channel -> SvgUtil.writeSvg(shapes, Channels.newWriter(channel, StandardCharsets.UTF_8)));
+            }
+            System.out.println("Shapes saved to file: " + file.getAbsolutePath());
+            return true;
         } catch (final IOException e) {
             System.out.println("Error saving shapes: " + e.getMessage());
+            return false;
         }
     }
 }
@@ -0,0 +1,74 @@
+package io.tomori.whiteboard.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Util class for crash-safe file writes.
+ */
+public class FileUtil {
+    /**
+     * Replace a file with new content so that readers see either the old or the new content in full.
+     * The content goes to a temporary file in the same directory, which is synced and renamed over the target,
+     * after which the directory itself is synced.
+     *
+     * @param target  file to replace
+     * @param content new content
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeAtomically(final Path target, final byte[] content) throws IOException {
+        writeAtomically(target, channel -> {
+            final ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        });
+    }
+
+    /**
+     * Replace a file with content streamed by a writer so that readers see either the old or the new content in full.
+     *
+     * @param target  file to replace
+     * @param content writes the new content to the channel of the temporary file, without closing it
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeAtomically(final Path target, final Content content) throws IOException {
+        final Path directory = target.toAbsolutePath().getParent();
+        final Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (final FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            content.writeTo(channel);
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        try (final FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (final IOException e) {
+            // Directories cannot be opened for syncing on every platform
+        }
+    }
+
+    /**
+     * Writer of file content.
+     */
+    @FunctionalInterface
+    public interface Content {
+        /**
+         * Write the content to a channel.
+         *
+         * @param channel channel to write to
+         * @throws IOException if the content cannot be written
+         */
+        void writeTo(FileChannel channel) throws IOException;
+    }
+}
@@ -0,0 +1,43 @@
+package io.tomori.whiteboard.util;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Util class for sharing fonts between text shapes.
+ * Fonts are immutable, so each distinct name, style and size is created once and reused.
+ */
+public class FontUtil {
+    /**
+     * Render context used to lay out text independently of any device
+     */
+    public static final FontRenderContext RENDER_CONTEXT = new FontRenderContext(null, true, true);
+    /**
+     * Created fonts by name, style and size
+     */
+    private static final Map<FontKey, Font> fonts = new ConcurrentHashMap<>();
+
+    /**
+     * Return the shared font with the specified attributes.
+     *
+     * @param name  font name
+     * @param style font style (PLAIN, BOLD, ITALIC)
+     * @param size  font size in pixels
+     * @return cached font
+     */
+    public static Font getFont(final String name, final int style, final int size) {
+        return fonts.computeIfAbsent(new FontKey(name, style, size), key -> new Font(key.name, key.style, key.size));
+    }
+
+    /**
+     * Attributes identifying a font.
+     *
+     * @param name  font name
+     * @param style font style
+     * @param size  font size in pixels
+     */
+    private record FontKey(String name, int style, int size) {
+    }
+}
@@ -0,0 +1,262 @@
+package io.tomori.whiteboard.util;
+
+import io.tomori.whiteboard.model.board.BoardSnapshot;
+import io.tomori.whiteboard.model.shapes.Shape;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Renderer of board previews that draws snapshots straight into images, without any Swing component,
+ * so it is safe to call from any thread.
+ * A preview shows a region of the board at a scale bounded by a target size, and only the shapes intersecting the
+ * region are drawn. Encoded previews are cached by board version and request, so asking again for an unchanged
+ * board costs nothing.
+ */
+public class PreviewRenderer {
+    /**
+     * Largest width or height of a preview in pixels, the scale is lowered for larger regions
+     */
+    public static final int MAX_IMAGE_SIZE = 2048;
+    /**
+     * Region shown when the board is empty, the initial size of the canvas
+     */
+    private static final Rectangle DEFAULT_REGION = new Rectangle(0, 0, 800, 600);
+    /**
+     * Maximum number of cached previews
+     */
+    private static final int MAX_ENTRIES = 8;
+    /**
+     * Background color of the canvas
+     */
+    private static final Color BACKGROUND = Color.WHITE;
+    /**
+     * Encoded previews in least recently used order
+     */
+    private final Map<PreviewKey, Preview> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<PreviewKey, Preview> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Return an encoded preview of a board region, rendering it only if not cached.
+     *
+     * @param snapshot board to preview
+     * @param region   world region to show, null for the region covered by the shapes
+     * @param scale    image pixels per world unit, 0 for no limit other than the size
+     * @param size     largest width or height of the image in pixels, 0 for no limit other than the scale
+     * @param format   image format
+     * @param quality  compression quality between 0 and 1, null for the default of the format.
+     *                 Lower quality means a smaller image, lossy for JPEG and slower to encode for PNG
+     * @return encoded preview, or null if encoding failed
+     */
+    public Preview preview(final BoardSnapshot snapshot, final Rectangle region, final double scale, final int size,
+                           final Format format, final Float quality) {
+        final PreviewKey key = new PreviewKey(snapshot.getVersion(), region == null ? null : new Rectangle(region),
+                scale, size, format, quality);
+        synchronized (cache) {
+            final Preview cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final Rectangle shown = region == null ? getContentBounds(snapshot) : region;
+        try {
+            final BufferedImage image = render(snapshot, shown, fitScale(shown, scale, size));
+            final Preview preview = new Preview(encode(image, format, quality), format.getMimeType());
+            synchronized (cache) {
+                cache.put(key, preview);
+            }
+            return preview;
+        } catch (final IOException e) {
+            System.out.println("Error encoding preview: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Draw the shapes of a board intersecting a region into a new image.
+     *
+     * @param snapshot board to draw
+     * @param region   world region shown by the image
+     * @param scale    image pixels per world unit
+     * @return rendered image
+     */
+    public static BufferedImage render(final BoardSnapshot snapshot, final Rectangle region, final double scale) {
+        final int width = Math.max(1, (int) Math.ceil(region.width * scale));
+        final int height = Math.max(1, (int) Math.ceil(region.height * scale));
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g2d = image.createGraphics();
+        g2d.setColor(BACKGROUND);
+        g2d.fillRect(0, 0, width, height);
+        g2d.scale(scale, scale);
+        g2d.translate(-region.x, -region.y);
+        RenderUtil.drawShapes(g2d, snapshot.query(region), region, scale);
+        g2d.dispose();
+        return image;
+    }
+
+    /**
+     * Return the region covered by the shapes of a board.
+     *
+     * @param snapshot board to measure
+     * @return union of the painted areas of the shapes, or the initial canvas if the board is empty
+     */
+    public static Rectangle getContentBounds(final BoardSnapshot snapshot) {
+        Rectangle bounds = null;
+        for (final Shape shape : snapshot) {
+            if (bounds == null) {
+                bounds = shape.getPaintBounds();
+            } else {
+                bounds.add(shape.getPaintBounds());
+            }
+        }
+        return bounds == null || bounds.isEmpty() ? new Rectangle(DEFAULT_REGION) : bounds;
+    }
+
+    /**
+     * Return the largest scale allowed for a region by the requested scale, the requested size and the maximum size.
+     *
+     * @param region world region to show
+     * @param scale  requested scale, 0 for no limit
+     * @param size   requested largest side in pixels, 0 for no limit
+     * @return image pixels per world unit
+     */
+    private static double fitScale(final Rectangle region, final double scale, final int size) {
+        final int side = Math.max(1, Math.max(region.width, region.height));
+        final int maxSide = size > 0 ? Math.min(size, MAX_IMAGE_SIZE) : MAX_IMAGE_SIZE;
+        final double fitted = (double) maxSide / side;
+        return scale > 0 ? Math.min(scale, fitted) : fitted;
+    }
+
+    /**
+     * Encode an image as Base64.
+     *
+     * @param image   image to encode
+     * @param format  image format
+     * @param quality compression quality between 0 and 1, null for the default of the format
+     * @return Base64-encoded image
+     * @throws IOException if encoding fails
+     */
+    private static String encode(final BufferedImage image, final Format format, final Float quality) throws IOException {
+        final ImageWriter writer = ImageIO.getImageWritersByFormatName(format.getName()).next();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            final ImageWriteParam param = writer.getDefaultWriteParam();
+            if (quality != null && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(Math.clamp(quality, 0f, 1f));
+            }
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+
+    /**
+     * Image formats a preview can be encoded in.
+     */
+    public enum Format {
+        /**
+         * Lossless, best for line art
+         */
+        PNG("png", "image/png"),
+        /**
+         * Lossy, smaller and faster to encode for dense boards
+         */
+        JPEG("jpeg", "image/jpeg");
+
+        /**
+         * Format name known to ImageIO
+         */
+        private final String name;
+        /**
+         * MIME type of encoded images
+         */
+        private final String mimeType;
+
+        /**
+         * Create a format.
+         *
+         * @param name     format name known to ImageIO
+         * @param mimeType MIME type of encoded images
+         */
+        Format(final String name, final String mimeType) {
+            this.name = name;
+            this.mimeType = mimeType;
+        }
+
+        /**
+         * Return the format with a name, ignoring case.
+         *
+         * @param name format name, "jpg" is accepted for JPEG
+         * @return matching format
+         * @throws IllegalArgumentException if no format has the name
+         */
+        public static Format fromName(final String name) {
+            for (final Format format : values()) {
+                if (format.name.equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            if ("jpg".equalsIgnoreCase(name)) {
+                return JPEG;
+            }
+            throw new IllegalArgumentException("Unsupported image format: " + name);
+        }
+
+        /**
+         * Return the format name known to ImageIO.
+         *
+         * @return format name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Return the MIME type of encoded images.
+         *
+         * @return MIME type
+         */
+        public String getMimeType() {
+            return mimeType;
+        }
+    }
+
+    /**
+     * Encoded preview image.
+     *
+     * @param data     Base64-encoded image
+     * @param mimeType MIME type of the image
+     */
+    public record Preview(String data, String mimeType) {
+    }
+
+    /**
+     * Identity of a cached preview.
+     *
+     * @param version version of the board
+     * @param region  requested region, null for the region covered by the shapes
+     * @param scale   requested scale
+     * @param size    requested largest side
+     * @param format  image format
+     * @param quality compression quality, null for the default
+     */
+    private record PreviewKey(long version, Rectangle region, double scale, int size, Format format, Float quality) {
+    }
+}
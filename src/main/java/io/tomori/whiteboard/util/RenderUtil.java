@@ -0,0 +1,64 @@
+package io.tomori.whiteboard.util;
+
+import io.tomori.whiteboard.model.shapes.Shape;
+import io.tomori.whiteboard.model.shapes.TextShape;
+
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Util class for rendering shapes onto a graphics context.
+ * Skip shapes outside the drawn region and simplify shapes too small to see at the current scale.
+ */
+public class RenderUtil {
+    /**
+     * Shapes smaller than this many device pixels in both directions are drawn as a dot
+     */
+    private static final double MIN_DETAIL_SIZE = 3;
+    /**
+     * Text with a smaller font size in device pixels is drawn as a placeholder bar
+     */
+    private static final double MIN_TEXT_SIZE = 4;
+    /**
+     * Alpha of the placeholder bar drawn for unreadable text
+     */
+    private static final int TEXT_PLACEHOLDER_ALPHA = 96;
+
+    /**
+     * Draw shapes intersecting a region with level-of-detail simplification.
+     *
+     * @param g2d    graphics context, already transformed to world coordinates
+     * @param shapes shapes to draw, in z-order
+     * @param region world region to draw, null to draw every shape
+     * @param scale  device pixels per world unit
+     */
+    public static void drawShapes(final Graphics2D g2d, final List<Shape> shapes, final Rectangle region, final double scale) {
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        for (final Shape shape : shapes) {
+            final Rectangle bounds = shape.getPaintBounds();
+            if (region != null && !bounds.intersects(region)) {
+                continue;
+            }
+            if (bounds.width * scale < MIN_DETAIL_SIZE && bounds.height * scale < MIN_DETAIL_SIZE) {
+                g2d.setColor(shape.getAwtColor());
+                g2d.fill(bounds);
+            } else if (shape instanceof final TextShape text && text.getFontSize() * scale < MIN_TEXT_SIZE) {
+                final io.tomori.whiteboard.model.Color textColor = text.getFill() != null ? text.getFill() : text.getColor();
+                g2d.setColor(new Color(textColor.getR(), textColor.getG(), textColor.getB(), TEXT_PLACEHOLDER_ALPHA));
+                g2d.fill(text.getBounds());
+            } else {
+                shape.draw(g2d);
+            }
+        }
+    }
+
+    /**
+     * Return the number of device pixels per user-space unit of a graphics context.
+     *
+     * @param g2d graphics context
+     * @return uniform scale of the current transform
+     */
+    public static double getScale(final Graphics2D g2d) {
+        return Math.sqrt(Math.abs(g2d.getTransform().getDeterminant()));
+    }
+}
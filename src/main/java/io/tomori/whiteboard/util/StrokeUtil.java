@@ -0,0 +1,795 @@
+package io.tomori.whiteboard.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Util class for reducing the number of points in freehand strokes and for cutting them apart.
+ * Operate on packed coordinate arrays (x0, y0, x1, y1, ...) as used by PathShape.
+ */
+public class StrokeUtil {
+    /**
+     * Number of Newton-Raphson reparameterization attempts before a curve segment is split
+     */
+    private static final int MAX_REPARAMETERIZATIONS = 4;
+    /**
+     * Lowest curve fitting tolerance in pixels, as tighter fits only chase the rounding of captured points
+     */
+    private static final double MIN_FIT_TOLERANCE = 1.0;
+    /**
+     * Minimum turning angle in radians for a point closer than the tolerance to be kept while capturing
+     */
+    private static final double MIN_TURN_ANGLE = Math.toRadians(30);
+    /**
+     * Number of samples per cubic segment used to find where it crosses a circle
+     */
+    private static final int CUT_SAMPLES = 16;
+    /**
+     * Number of bisection steps refining each crossing of a cubic segment
+     */
+    private static final int CUT_REFINEMENTS = 12;
+    /**
+     * Initial capacity in coordinates of a piece being cut from a stroke
+     */
+    private static final int PIECE_CAPACITY = 64;
+
+    /**
+     * Decide whether a newly captured point adds visible detail to a stroke.
+     * Points farther than the tolerance from the previous point are kept,
+     * closer points only if they turn the stroke sharply, and duplicates never.
+     *
+     * @param prevX     x-coord of the point before the last kept point, ignored if hasPrev is false
+     * @param prevY     y-coord of the point before the last kept point, ignored if hasPrev is false
+     * @param hasPrev   True if the stroke has at least two kept points
+     * @param lastX     x-coord of the last kept point
+     * @param lastY     y-coord of the last kept point
+     * @param x         x-coord of the new point
+     * @param y         y-coord of the new point
+     * @param tolerance distance in pixels below which points are filtered
+     * @return True if the point should be kept
+     */
+    public static boolean isSignificant(final int prevX, final int prevY, final boolean hasPrev,
+                                        final int lastX, final int lastY, final int x, final int y,
+                                        final double tolerance) {
+        final int dx = x - lastX;
+        final int dy = y - lastY;
+        if (dx == 0 && dy == 0) {
+            return false;
+        }
+        if (dx * (double) dx + dy * (double) dy >= tolerance * tolerance || !hasPrev) {
+            return true;
+        }
+        final double heading = Math.atan2(lastY - prevY, lastX - prevX);
+        double turn = Math.abs(Math.atan2(dy, dx) - heading);
+        if (turn > Math.PI) {
+            turn = 2 * Math.PI - turn;
+        }
+        return turn >= MIN_TURN_ANGLE;
+    }
+
+    /**
+     * Simplify a polyline with the Ramer-Douglas-Peucker algorithm.
+     * Every removed point lies within the tolerance of the simplified polyline.
+     *
+     * @param coords    packed coordinates of the polyline
+     * @param tolerance maximum allowed deviation in pixels
+     * @return packed coordinates of the simplified polyline, the input array if nothing was removed
+     */
+    public static int[] simplify(final int[] coords, final double tolerance) {
+        final int count = coords.length / 2;
+        if (count < 3 || tolerance <= 0) {
+            return coords;
+        }
+        final boolean[] keep = new boolean[count];
+        keep[0] = true;
+        keep[count - 1] = true;
+        final Deque<int[]> ranges = new ArrayDeque<>();
+        ranges.push(new int[]{0, count - 1});
+        final double toleranceSquared = tolerance * tolerance;
+        int kept = 2;
+        while (!ranges.isEmpty()) {
+            final int[] range = ranges.pop();
+            final int first = range[0];
+            final int last = range[1];
+            double maxDistance = -1;
+            int farthest = -1;
+            for (int i = first + 1; i < last; i++) {
+                final double distance = segmentDistanceSquared(coords, first, last, i);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0 && maxDistance > toleranceSquared) {
+                keep[farthest] = true;
+                kept++;
+                ranges.push(new int[]{first, farthest});
+                ranges.push(new int[]{farthest, last});
+            }
+        }
+        if (kept == count) {
+            return coords;
+        }
+        final int[] simplified = new int[kept * 2];
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) {
+                simplified[j++] = coords[i * 2];
+                simplified[j++] = coords[i * 2 + 1];
+            }
+        }
+        return simplified;
+    }
+
+    /**
+     * Return the squared distance of a point from the segment between two other points.
+     *
+     * @param coords packed coordinates
+     * @param start  index of the segment start point
+     * @param end    index of the segment end point
+     * @param index  index of the point to measure
+     * @return squared distance in pixels
+     */
+    private static double segmentDistanceSquared(final int[] coords, final int start, final int end, final int index) {
+        final double x1 = coords[start * 2];
+        final double y1 = coords[start * 2 + 1];
+        final double x2 = coords[end * 2];
+        final double y2 = coords[end * 2 + 1];
+        final double px = coords[index * 2];
+        final double py = coords[index * 2 + 1];
+        final double dx = x2 - x1;
+        final double dy = y2 - y1;
+        final double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - x1) * dx + (py - y1) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        final double ex = x1 + t * dx - px;
+        final double ey = y1 + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+
+    /**
+     * Fit piecewise cubic Bezier segments to a polyline, using the algorithm by Philip J. Schneider
+     * (Graphics Gems, 1990). Segments are split at the worst-fitting point until every point
+     * lies within the tolerance of the curve, and adjacent segments share tangents.
+     *
+     * @param coords    packed coordinates of the polyline, without consecutive duplicates
+     * @param tolerance maximum distance in pixels between the points and the curve
+     * @return packed start point followed by two control points and an end point per segment
+     */
+    public static int[] fitCurve(final int[] coords, final double tolerance) {
+        final int count = coords.length / 2;
+        final double[] points = new double[count * 2];
+        for (int i = 0; i < coords.length; i++) {
+            points[i] = coords[i];
+        }
+        final CurveWriter writer = new CurveWriter(count);
+        writer.add(points[0], points[1]);
+        if (count < 2) {
+            return writer.toCoords();
+        }
+        final double[] startTangent = unit(points[2] - points[0], points[3] - points[1]);
+        final double[] endTangent = unit(points[(count - 2) * 2] - points[(count - 1) * 2],
+                points[(count - 2) * 2 + 1] - points[(count - 1) * 2 + 1]);
+        final double maxError = Math.max(tolerance, MIN_FIT_TOLERANCE);
+        fitCubic(points, 0, count - 1, startTangent, endTangent, maxError * maxError, writer);
+        return writer.toCoords();
+    }
+
+    /**
+     * Fit a cubic Bezier segment to a range of points, splitting the range if the fit is too poor.
+     *
+     * @param points       packed point coordinates
+     * @param first        index of the first point
+     * @param last         index of the last point
+     * @param startTangent unit tangent at the first point
+     * @param endTangent   unit tangent at the last point, pointing backward
+     * @param maxError     maximum squared distance between the points and the segment
+     * @param writer       receiver of the fitted segments
+     */
+    private static void fitCubic(final double[] points, final int first, final int last,
+                                 final double[] startTangent, final double[] endTangent,
+                                 final double maxError, final CurveWriter writer) {
+        if (last - first == 1) {
+            final double distance = distance(points, first, last) / 3;
+            writer.addSegment(new double[]{
+                    points[first * 2], points[first * 2 + 1],
+                    points[first * 2] + startTangent[0] * distance, points[first * 2 + 1] + startTangent[1] * distance,
+                    points[last * 2] + endTangent[0] * distance, points[last * 2 + 1] + endTangent[1] * distance,
+                    points[last * 2], points[last * 2 + 1]});
+            return;
+        }
+        double[] params = chordLengthParameterize(points, first, last);
+        double[] bezier = generateBezier(points, first, last, params, startTangent, endTangent);
+        int[] splitPoint = new int[1];
+        double error = computeMaxError(points, first, last, bezier, params, splitPoint);
+        if (error < maxError) {
+            writer.addSegment(bezier);
+            return;
+        }
+        if (error < maxError * 4) {
+            for (int i = 0; i < MAX_REPARAMETERIZATIONS; i++) {
+                params = reparameterize(points, first, last, params, bezier);
+                bezier = generateBezier(points, first, last, params, startTangent, endTangent);
+                error = computeMaxError(points, first, last, bezier, params, splitPoint);
+                if (error < maxError) {
+                    writer.addSegment(bezier);
+                    return;
+                }
+            }
+        }
+        final int split = splitPoint[0];
+        final double[] centerTangent = unit(points[(split - 1) * 2] - points[(split + 1) * 2],
+                points[(split - 1) * 2 + 1] - points[(split + 1) * 2 + 1]);
+        fitCubic(points, first, split, startTangent, centerTangent, maxError, writer);
+        fitCubic(points, split, last, new double[]{-centerTangent[0], -centerTangent[1]}, endTangent, maxError, writer);
+    }
+
+    /**
+     * Find the control points of the segment that best fits a range of points in the least-squares sense.
+     *
+     * @param points       packed point coordinates
+     * @param first        index of the first point
+     * @param last         index of the last point
+     * @param params       curve parameter of each point in the range
+     * @param startTangent unit tangent at the first point
+     * @param endTangent   unit tangent at the last point, pointing backward
+     * @return packed control polygon of the segment
+     */
+    private static double[] generateBezier(final double[] points, final int first, final int last, final double[] params,
+                                           final double[] startTangent, final double[] endTangent) {
+        final double x0 = points[first * 2];
+        final double y0 = points[first * 2 + 1];
+        final double x3 = points[last * 2];
+        final double y3 = points[last * 2 + 1];
+        double c00 = 0;
+        double c01 = 0;
+        double c11 = 0;
+        double r0 = 0;
+        double r1 = 0;
+        for (int i = 0; i < params.length; i++) {
+            final double u = params[i];
+            final double b0 = (1 - u) * (1 - u) * (1 - u);
+            final double b1 = 3 * u * (1 - u) * (1 - u);
+            final double b2 = 3 * u * u * (1 - u);
+            final double b3 = u * u * u;
+            final double a1x = startTangent[0] * b1;
+            final double a1y = startTangent[1] * b1;
+            final double a2x = endTangent[0] * b2;
+            final double a2y = endTangent[1] * b2;
+            c00 += a1x * a1x + a1y * a1y;
+            c01 += a1x * a2x + a1y * a2y;
+            c11 += a2x * a2x + a2y * a2y;
+            final double tx = points[(first + i) * 2] - (x0 * (b0 + b1) + x3 * (b2 + b3));
+            final double ty = points[(first + i) * 2 + 1] - (y0 * (b0 + b1) + y3 * (b2 + b3));
+            r0 += a1x * tx + a1y * ty;
+            r1 += a2x * tx + a2y * ty;
+        }
+        final double det = c00 * c11 - c01 * c01;
+        double alphaStart = det == 0 ? 0 : (r0 * c11 - r1 * c01) / det;
+        double alphaEnd = det == 0 ? 0 : (c00 * r1 - c01 * r0) / det;
+        final double segmentLength = Math.hypot(x3 - x0, y3 - y0);
+        final double epsilon = 1.0e-6 * segmentLength;
+        if (alphaStart < epsilon || alphaEnd < epsilon) {
+            alphaStart = segmentLength / 3;
+            alphaEnd = segmentLength / 3;
+        }
+        return new double[]{
+                x0, y0,
+                x0 + startTangent[0] * alphaStart, y0 + startTangent[1] * alphaStart,
+                x3 + endTangent[0] * alphaEnd, y3 + endTangent[1] * alphaEnd,
+                x3, y3};
+    }
+
+    /**
+     * Improve the curve parameter of each point with one Newton-Raphson step toward the closest point on the segment.
+     *
+     * @param points packed point coordinates
+     * @param first  index of the first point
+     * @param last   index of the last point
+     * @param params current curve parameters
+     * @param bezier packed control polygon of the segment
+     * @return improved curve parameters
+     */
+    private static double[] reparameterize(final double[] points, final int first, final int last,
+                                           final double[] params, final double[] bezier) {
+        final double[] improved = new double[params.length];
+        final double[] firstDerivative = new double[6];
+        final double[] secondDerivative = new double[4];
+        for (int k = 0; k < 3; k++) {
+            firstDerivative[k * 2] = (bezier[k * 2 + 2] - bezier[k * 2]) * 3;
+            firstDerivative[k * 2 + 1] = (bezier[k * 2 + 3] - bezier[k * 2 + 1]) * 3;
+        }
+        for (int k = 0; k < 2; k++) {
+            secondDerivative[k * 2] = (firstDerivative[k * 2 + 2] - firstDerivative[k * 2]) * 2;
+            secondDerivative[k * 2 + 1] = (firstDerivative[k * 2 + 3] - firstDerivative[k * 2 + 1]) * 2;
+        }
+        final double[] q = new double[2];
+        final double[] q1 = new double[2];
+        final double[] q2 = new double[2];
+        for (int i = 0; i < params.length; i++) {
+            final double u = params[i];
+            evaluate(bezier, 3, u, q);
+            evaluate(firstDerivative, 2, u, q1);
+            evaluate(secondDerivative, 1, u, q2);
+            final double dx = q[0] - points[(first + i) * 2];
+            final double dy = q[1] - points[(first + i) * 2 + 1];
+            final double numerator = dx * q1[0] + dy * q1[1];
+            final double denominator = q1[0] * q1[0] + q1[1] * q1[1] + dx * q2[0] + dy * q2[1];
+            improved[i] = denominator == 0 ? u : u - numerator / denominator;
+        }
+        return improved;
+    }
+
+    /**
+     * Return the largest squared distance between the points and the segment.
+     *
+     * @param points     packed point coordinates
+     * @param first      index of the first point
+     * @param last       index of the last point
+     * @param bezier     packed control polygon of the segment
+     * @param params     curve parameter of each point in the range
+     * @param splitPoint receives the index of the farthest interior point
+     * @return maximum squared distance
+     */
+    private static double computeMaxError(final double[] points, final int first, final int last, final double[] bezier,
+                                          final double[] params, final int[] splitPoint) {
+        double maxDistance = 0;
+        splitPoint[0] = (first + last) / 2;
+        final double[] q = new double[2];
+        for (int i = first + 1; i < last; i++) {
+            evaluate(bezier, 3, params[i - first], q);
+            final double dx = q[0] - points[i * 2];
+            final double dy = q[1] - points[i * 2 + 1];
+            final double distance = dx * dx + dy * dy;
+            if (distance >= maxDistance) {
+                maxDistance = distance;
+                splitPoint[0] = i;
+            }
+        }
+        return maxDistance;
+    }
+
+    /**
+     * Assign each point a curve parameter proportional to its distance along the polyline.
+     *
+     * @param points packed point coordinates
+     * @param first  index of the first point
+     * @param last   index of the last point
+     * @return curve parameters from 0 to 1
+     */
+    private static double[] chordLengthParameterize(final double[] points, final int first, final int last) {
+        final double[] params = new double[last - first + 1];
+        for (int i = first + 1; i <= last; i++) {
+            params[i - first] = params[i - first - 1] + distance(points, i - 1, i);
+        }
+        final double total = params[params.length - 1];
+        for (int i = 1; i < params.length; i++) {
+            params[i] = total == 0 ? (double) i / (params.length - 1) : params[i] / total;
+        }
+        return params;
+    }
+
+    /**
+     * Cut away the parts of a stroke lying inside a circle.
+     * Polyline segments are clipped exactly. Cubic segments are sampled to find where they cross the circle and
+     * split there with de Casteljau's algorithm, so the remaining pieces keep their curves.
+     * Segments the circle misses are copied unchanged.
+     *
+     * @param coords  packed coordinates of the stroke
+     * @param curved  True if the coordinates describe cubic Bezier segments
+     * @param centerX x-coord of the circle's center
+     * @param centerY y-coord of the circle's center
+     * @param radius  radius of the circle
+     * @return packed coordinates of the remaining pieces in stroke order, or null if the circle misses the stroke
+     */
+    public static List<int[]> cut(final int[] coords, final boolean curved,
+                                  final double centerX, final double centerY, final double radius) {
+        final int stride = curved ? 6 : 2;
+        if (coords.length < 2 + stride) {
+            return null;
+        }
+        final double radiusSquared = radius * radius;
+        final List<int[]> pieces = new ArrayList<>();
+        final double[] bezier = new double[8];
+        final double[] crossings = new double[CUT_SAMPLES + 2];
+        CurveWriter piece = null;
+        boolean touched = false;
+        if (distanceSquared(coords[0], coords[1], centerX, centerY) >= radiusSquared) {
+            piece = new CurveWriter(PIECE_CAPACITY);
+            piece.add(coords[0], coords[1]);
+        }
+        for (int i = 2; i + stride <= coords.length; i += stride) {
+            final int count = curved
+                    ? cubicCrossings(coords, i - 2, centerX, centerY, radiusSquared, bezier, crossings)
+                    : lineCrossings(coords, i - 2, centerX, centerY, radiusSquared, crossings);
+            if (count == 0) {
+                if (piece == null) {
+                    if (distanceSquared(coords[i - 2], coords[i - 1], centerX, centerY) < radiusSquared) {
+                        touched = true;
+                        continue;
+                    }
+                    piece = new CurveWriter(PIECE_CAPACITY);
+                    piece.add(coords[i - 2], coords[i - 1]);
+                }
+                for (int k = i; k < i + stride; k += 2) {
+                    piece.addExact(coords[k], coords[k + 1]);
+                }
+                continue;
+            }
+            touched = true;
+            final boolean startsInside = distanceSquared(coords[i - 2], coords[i - 1], centerX, centerY) < radiusSquared;
+            double from = 0;
+            boolean inside = startsInside;
+            for (int c = 0; c <= count; c++) {
+                final double to = c < count ? crossings[c] : 1;
+                if (!inside && to > from) {
+                    final boolean continuing = from == 0 && piece != null;
+                    if (!continuing) {
+                        finish(piece, curved, pieces);
+                        piece = new CurveWriter(PIECE_CAPACITY);
+                    }
+                    appendPart(coords, i - 2, curved, from, to, bezier, piece, continuing);
+                }
+                if (c < count) {
+                    inside = !inside;
+                    from = to;
+                }
+            }
+            if (inside) {
+                finish(piece, curved, pieces);
+                piece = null;
+            }
+        }
+        if (!touched) {
+            return null;
+        }
+        finish(piece, curved, pieces);
+        return pieces;
+    }
+
+    /**
+     * Find where a line segment crosses a circle.
+     *
+     * @param coords        packed coordinates of the stroke
+     * @param start         index of the segment's start x-coord
+     * @param centerX       x-coord of the circle's center
+     * @param centerY       y-coord of the circle's center
+     * @param radiusSquared squared radius of the circle
+     * @param crossings     receives the crossing parameters in increasing order, strictly between 0 and 1
+     * @return number of crossings
+     */
+    private static int lineCrossings(final int[] coords, final int start, final double centerX, final double centerY,
+                                     final double radiusSquared, final double[] crossings) {
+        final double fx = coords[start] - centerX;
+        final double fy = coords[start + 1] - centerY;
+        final double dx = coords[start + 2] - coords[start];
+        final double dy = coords[start + 3] - coords[start + 1];
+        final double a = dx * dx + dy * dy;
+        if (a == 0) {
+            return 0;
+        }
+        final double b = fx * dx + fy * dy;
+        final double discriminant = b * b - a * (fx * fx + fy * fy - radiusSquared);
+        if (discriminant <= 0) {
+            return 0;
+        }
+        final double root = Math.sqrt(discriminant);
+        int count = 0;
+        final double enter = (-b - root) / a;
+        final double exit = (-b + root) / a;
+        if (enter > 0 && enter < 1) {
+            crossings[count++] = enter;
+        }
+        if (exit > 0 && exit < 1) {
+            crossings[count++] = exit;
+        }
+        return count;
+    }
+
+    /**
+     * Find where a cubic segment crosses a circle by sampling it and refining each sign change by bisection.
+     * Segments whose control polygon keeps clear of the circle are rejected without sampling.
+     *
+     * @param coords        packed coordinates of the stroke
+     * @param start         index of the segment's start x-coord
+     * @param centerX       x-coord of the circle's center
+     * @param centerY       y-coord of the circle's center
+     * @param radiusSquared squared radius of the circle
+     * @param bezier        scratch array for the control polygon
+     * @param crossings     receives the crossing parameters in increasing order, strictly between 0 and 1
+     * @return number of crossings
+     */
+    private static int cubicCrossings(final int[] coords, final int start, final double centerX, final double centerY,
+                                      final double radiusSquared, final double[] bezier, final double[] crossings) {
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int k = 0; k < 8; k++) {
+            bezier[k] = coords[start + k];
+        }
+        for (int k = 0; k < 8; k += 2) {
+            minX = Math.min(minX, bezier[k]);
+            maxX = Math.max(maxX, bezier[k]);
+            minY = Math.min(minY, bezier[k + 1]);
+            maxY = Math.max(maxY, bezier[k + 1]);
+        }
+        final double gapX = Math.max(0, Math.max(minX - centerX, centerX - maxX));
+        final double gapY = Math.max(0, Math.max(minY - centerY, centerY - maxY));
+        if (gapX * gapX + gapY * gapY >= radiusSquared) {
+            return 0;
+        }
+        final double[] point = new double[2];
+        int count = 0;
+        double previousT = 0;
+        boolean previousInside = isInside(bezier, 0, centerX, centerY, radiusSquared, point);
+        for (int step = 1; step <= CUT_SAMPLES; step++) {
+            final double t = (double) step / CUT_SAMPLES;
+            final boolean inside = isInside(bezier, t, centerX, centerY, radiusSquared, point);
+            if (inside != previousInside) {
+                double low = previousT;
+                double high = t;
+                for (int refinement = 0; refinement < CUT_REFINEMENTS; refinement++) {
+                    final double middle = (low + high) / 2;
+                    if (isInside(bezier, middle, centerX, centerY, radiusSquared, point) == previousInside) {
+                        low = middle;
+                    } else {
+                        high = middle;
+                    }
+                }
+                final double crossing = (low + high) / 2;
+                if (crossing > 0 && crossing < 1) {
+                    crossings[count++] = crossing;
+                }
+            }
+            previousT = t;
+            previousInside = inside;
+        }
+        return count;
+    }
+
+    /**
+     * Check if a point of a cubic segment lies inside a circle.
+     *
+     * @param bezier        packed control polygon of the segment
+     * @param t             curve parameter
+     * @param centerX       x-coord of the circle's center
+     * @param centerY       y-coord of the circle's center
+     * @param radiusSquared squared radius of the circle
+     * @param point         scratch array receiving the point
+     * @return True if the point is strictly inside the circle
+     */
+    private static boolean isInside(final double[] bezier, final double t, final double centerX, final double centerY,
+                                    final double radiusSquared, final double[] point) {
+        evaluate(bezier, 3, t, point);
+        return distanceSquared(point[0], point[1], centerX, centerY) < radiusSquared;
+    }
+
+    /**
+     * Append the part of a segment between two parameters to a piece.
+     * A part starting at the segment's start continues the piece from its last point, any other part starts it.
+     *
+     * @param coords     packed coordinates of the stroke
+     * @param start      index of the segment's start x-coord
+     * @param curved     True if the segment is a cubic
+     * @param from       parameter where the part starts
+     * @param to         parameter where the part ends
+     * @param bezier     scratch array for the control polygon
+     * @param piece      piece receiving the part
+     * @param continuing True if the piece already ends at the part's start
+     */
+    private static void appendPart(final int[] coords, final int start, final boolean curved, final double from,
+                                   final double to, final double[] bezier, final CurveWriter piece,
+                                   final boolean continuing) {
+        if (!curved) {
+            final double dx = coords[start + 2] - coords[start];
+            final double dy = coords[start + 3] - coords[start + 1];
+            if (!continuing) {
+                piece.add(coords[start] + dx * from, coords[start + 1] + dy * from);
+            }
+            piece.add(coords[start] + dx * to, coords[start + 1] + dy * to);
+            return;
+        }
+        for (int k = 0; k < 8; k++) {
+            bezier[k] = coords[start + k];
+        }
+        if (to < 1) {
+            subdivide(bezier, to, true);
+        }
+        if (from > 0) {
+            subdivide(bezier, from / to, false);
+        }
+        if (!continuing) {
+            piece.add(bezier[0], bezier[1]);
+        }
+        piece.addSegment(bezier);
+    }
+
+    /**
+     * Replace a cubic control polygon by one half of it, split with de Casteljau's algorithm.
+     *
+     * @param bezier packed control polygon, replaced in place
+     * @param t      parameter to split at
+     * @param first  True to keep the part before the parameter, false for the part after it
+     */
+    private static void subdivide(final double[] bezier, final double t, final boolean first) {
+        for (int axis = 0; axis < 2; axis++) {
+            final double p0 = bezier[axis];
+            final double p1 = bezier[2 + axis];
+            final double p2 = bezier[4 + axis];
+            final double p3 = bezier[6 + axis];
+            final double p01 = p0 + (p1 - p0) * t;
+            final double p12 = p1 + (p2 - p1) * t;
+            final double p23 = p2 + (p3 - p2) * t;
+            final double p012 = p01 + (p12 - p01) * t;
+            final double p123 = p12 + (p23 - p12) * t;
+            final double split = p012 + (p123 - p012) * t;
+            if (first) {
+                bezier[2 + axis] = p01;
+                bezier[4 + axis] = p012;
+                bezier[6 + axis] = split;
+            } else {
+                bezier[axis] = split;
+                bezier[2 + axis] = p123;
+                bezier[4 + axis] = p23;
+            }
+        }
+    }
+
+    /**
+     * Add a finished piece to the result if it still draws something.
+     *
+     * @param piece  piece to finish, ignored if null
+     * @param curved True if the piece holds cubic segments
+     * @param pieces receives the coordinates of the piece
+     */
+    private static void finish(final CurveWriter piece, final boolean curved, final List<int[]> pieces) {
+        if (piece == null) {
+            return;
+        }
+        final int[] coords = piece.toCoords();
+        if (coords.length < (curved ? 8 : 4)) {
+            return;
+        }
+        for (int k = 2; k < coords.length; k += 2) {
+            if (coords[k] != coords[0] || coords[k + 1] != coords[1]) {
+                pieces.add(coords);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Return the squared distance between two points.
+     *
+     * @param x1 x-coord of the first point
+     * @param y1 y-coord of the first point
+     * @param x2 x-coord of the second point
+     * @param y2 y-coord of the second point
+     * @return squared distance
+     */
+    private static double distanceSquared(final double x1, final double y1, final double x2, final double y2) {
+        final double dx = x1 - x2;
+        final double dy = y1 - y2;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Evaluate a Bezier curve of any degree with de Casteljau's algorithm.
+     *
+     * @param control packed control points
+     * @param degree  degree of the curve
+     * @param t       curve parameter
+     * @param result  receives the point on the curve
+     */
+    private static void evaluate(final double[] control, final int degree, final double t, final double[] result) {
+        final double[] temp = new double[(degree + 1) * 2];
+        System.arraycopy(control, 0, temp, 0, temp.length);
+        for (int level = 1; level <= degree; level++) {
+            for (int k = 0; k <= degree - level; k++) {
+                temp[k * 2] = (1 - t) * temp[k * 2] + t * temp[k * 2 + 2];
+                temp[k * 2 + 1] = (1 - t) * temp[k * 2 + 1] + t * temp[k * 2 + 3];
+            }
+        }
+        result[0] = temp[0];
+        result[1] = temp[1];
+    }
+
+    /**
+     * Return the distance between two points.
+     *
+     * @param points packed point coordinates
+     * @param a      index of the first point
+     * @param b      index of the second point
+     * @return distance in pixels
+     */
+    private static double distance(final double[] points, final int a, final int b) {
+        return Math.hypot(points[b * 2] - points[a * 2], points[b * 2 + 1] - points[a * 2 + 1]);
+    }
+
+    /**
+     * Normalize a vector.
+     *
+     * @param dx x component
+     * @param dy y component
+     * @return unit vector, or the zero vector if the input has no length
+     */
+    private static double[] unit(final double dx, final double dy) {
+        final double length = Math.hypot(dx, dy);
+        return length == 0 ? new double[]{0, 0} : new double[]{dx / length, dy / length};
+    }
+
+    /**
+     * Collector of fitted or cut segments as packed integer coordinates.
+     */
+    private static class CurveWriter {
+        /**
+         * Growable packed coordinates
+         */
+        private int[] coords;
+        /**
+         * Number of used entries in the coordinate array
+         */
+        private int length = 0;
+
+        /**
+         * Create a writer sized for a polyline of the given length.
+         *
+         * @param pointCount number of points being fitted
+         */
+        private CurveWriter(final int pointCount) {
+            coords = new int[Math.max(8, pointCount)];
+        }
+
+        /**
+         * Append a point, rounded to whole pixels.
+         *
+         * @param x x-coord of the point
+         * @param y y-coord of the point
+         */
+        private void add(final double x, final double y) {
+            if (length + 2 > coords.length) {
+                coords = Arrays.copyOf(coords, coords.length * 2);
+            }
+            coords[length++] = (int) Math.round(x);
+            coords[length++] = (int) Math.round(y);
+        }
+
+        /**
+         * Append a point that is already in whole pixels.
+         *
+         * @param x x-coord of the point
+         * @param y y-coord of the point
+         */
+        private void addExact(final int x, final int y) {
+            if (length + 2 > coords.length) {
+                coords = Arrays.copyOf(coords, coords.length * 2);
+            }
+            coords[length++] = x;
+            coords[length++] = y;
+        }
+
+        /**
+         * Append the control points and end point of a segment, whose start is the current end point.
+         *
+         * @param bezier packed control polygon of the segment
+         */
+        private void addSegment(final double[] bezier) {
+            add(bezier[2], bezier[3]);
+            add(bezier[4], bezier[5]);
+            add(bezier[6], bezier[7]);
+        }
+
+        /**
+         * Return a trimmed copy of the coordinates.
+         *
+         * @return packed coordinates
+         */
+        private int[] toCoords() {
+            return Arrays.copyOf(coords, length);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package io.tomori.whiteboard.util;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Attributes and text of one SVG element, read from a stream so that shapes can be created without building a DOM.
+ */
+public class SvgElement {
+    /**
+     * Local name of the element
+     */
+    private final String name;
+    /**
+     * Attribute values by name, prefixed names keep their prefix
+     */
+    private final Map<String, String> attributes;
+    /**
+     * Concatenated text of the element and its descendants, empty unless read
+     */
+    private final String textContent;
+
+    /**
+     * Create an element.
+     *
+     * @param name        local name of the element
+     * @param attributes  attribute values by name
+     * @param textContent text of the element
+     */
+    public SvgElement(final String name, final Map<String, String> attributes, final String textContent) {
+        this.name = name;
+        this.attributes = attributes;
+        this.textContent = textContent;
+    }
+
+    /**
+     * Read the element at the current start tag of a reader.
+     * When the text is read, the reader is left at the matching end tag, otherwise it stays at the start tag.
+     *
+     * @param reader   reader positioned at a start tag
+     * @param withText true to read the text of the element and its descendants
+     * @return element read
+     * @throws XMLStreamException if the document is malformed
+     */
+    public static SvgElement read(final XMLStreamReader reader, final boolean withText) throws XMLStreamException {
+        final String name = reader.getLocalName();
+        final Map<String, String> attributes = new HashMap<>();
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            final String prefix = reader.getAttributePrefix(i);
+            final String localName = reader.getAttributeLocalName(i);
+            attributes.put(prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName,
+                    reader.getAttributeValue(i));
+        }
+        if (!withText) {
+            return new SvgElement(name, attributes, "");
+        }
+        final StringBuilder text = new StringBuilder();
+        int depth = 0;
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE) {
+                text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT && depth-- == 0) {
+                break;
+            }
+        }
+        return new SvgElement(name, attributes, text.toString());
+    }
+
+    /**
+     * Return the local name of the element.
+     *
+     * @return element name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the value of an attribute.
+     *
+     * @param attributeName attribute name
+     * @return attribute value, empty if the attribute is absent
+     */
+    public String getAttribute(final String attributeName) {
+        return attributes.getOrDefault(attributeName, "");
+    }
+
+    /**
+     * Return the text of the element and its descendants.
+     *
+     * @return text content, empty if the text was not read
+     */
+    public String getTextContent() {
+        return textContent;
+    }
+}
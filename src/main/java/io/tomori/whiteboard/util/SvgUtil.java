@@ -4,22 +4,41 @@ package io.tomori.whiteboard.util;
 
 import io.tomori.whiteboard.exception.ParseException;
 import io.tomori.whiteboard.model.shapes.*;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.ByteArrayInputStream;
-import java.nio.charset.StandardCharsets;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
 
 /**
  * Util class for SVG import and export.
  * Provide methods to convert between whiteboard shapes and SVG format.
  */
 public class SvgUtil {
+    /**
+     * Number of elements turned into shapes by each parallel task
+     */
+    private static final int BATCH_SIZE = 512;
+    /**
+     * Names of the SVG elements that are read as shapes
+     */
+    private static final Set<String> SHAPE_ELEMENTS = Set.of("circle", "rect", "line", "path", "polygon", "ellipse", "text");
+
     /**
      * Convert an SVG string into shapes list.
      *
@@ -28,81 +47,137 @@ public class SvgUtil {
      * @throws ParseException If SVG cannot be parsed
      */
     public static CopyOnWriteArrayList<Shape> fromSvg(final String svgString) throws ParseException {
-        final CopyOnWriteArrayList<Shape> shapes = new CopyOnWriteArrayList<>();
+        return fromSvg(new StringReader(svgString));
+    }
+
+    /**
+     * Convert an SVG document into shapes list in a single streaming pass.
+     *
+     * @param svg reader of the SVG document, not closed
+     * @return shapes list parsed from SVG
+     * @throws ParseException If SVG cannot be parsed
+     */
+    public static CopyOnWriteArrayList<Shape> fromSvg(final Reader svg) throws ParseException {
+        return fromSvg(svg, null);
+    }
+
+    /**
+     * Convert an SVG document into shapes list in a single streaming pass, creating shapes in parallel.
+     * The document is read on the calling thread, while batches of its elements are turned into shapes by tasks of
+     * the common fork-join pool. Batches are rejoined in document order, which is the z-order of the shapes, and at
+     * most a few batches per core are in flight, so memory stays bounded besides the result.
+     *
+     * @param svg      reader of the SVG document, not closed
+     * @param progress receives the number of shapes created so far each time a batch is rejoined, null if unused
+     * @return shapes list parsed from SVG
+     * @throws ParseException If SVG cannot be parsed
+     */
+    public static CopyOnWriteArrayList<Shape> fromSvg(final Reader svg, final IntConsumer progress) throws ParseException {
+        final List<Shape> shapes = new ArrayList<>();
+        final ForkJoinPool pool = ForkJoinPool.commonPool();
+        final int maxPending = Math.max(2, pool.getParallelism() * 2);
+        final Deque<ForkJoinTask<List<Shape>>> pending = new ArrayDeque<>();
+        XMLStreamReader reader = null;
         try {
-            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            final DocumentBuilder builder = factory.newDocumentBuilder();
-            final Document doc = builder.parse(new ByteArrayInputStream(svgString.getBytes(StandardCharsets.UTF_8)));
-            final NodeList circleNodes = doc.getElementsByTagName("circle");
-            for (int i = 0; i < circleNodes.getLength(); i++) {
-                try {
-                    final Element element = (Element) circleNodes.item(i);
-                    shapes.add(new CircleShape(element));
-                } catch (final Exception e) {
-                    System.out.println("Error parsing circle: " + e.getMessage());
+            final XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+            reader = factory.createXMLStreamReader(svg);
+            List<SvgElement> batch = new ArrayList<>(BATCH_SIZE);
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    final String name = reader.getLocalName();
+                    if (SHAPE_ELEMENTS.contains(name)) {
+                        batch.add(SvgElement.read(reader, "text".equals(name)));
+                    }
                 }
-            }
-            final NodeList rectNodes = doc.getElementsByTagName("rect");
-            for (int i = 0; i < rectNodes.getLength(); i++) {
-                try {
-                    final Element element = (Element) rectNodes.item(i);
-                    shapes.add(new RectangleShape(element));
-                } catch (final Exception e) {
-                    System.out.println("Error parsing rectangle: " + e.getMessage());
+                if (batch.size() == BATCH_SIZE) {
+                    final List<SvgElement> elements = batch;
+                    pending.add(pool.submit(() -> createShapes(elements)));
+                    batch = new ArrayList<>(BATCH_SIZE);
+                    while (pending.size() > maxPending) {
+                        rejoin(pending.poll(), shapes, progress);
+                    }
                 }
             }
-            final NodeList lineNodes = doc.getElementsByTagName("line");
-            for (int i = 0; i < lineNodes.getLength(); i++) {
-                try {
-                    final Element element = (Element) lineNodes.item(i);
-                    shapes.add(new LineShape(element));
-                } catch (final Exception e) {
-                    System.out.println("Error parsing line: " + e.getMessage());
-                }
+            final List<Shape> last = createShapes(batch);
+            while (!pending.isEmpty()) {
+                rejoin(pending.poll(), shapes, progress);
             }
-            final NodeList pathNodes = doc.getElementsByTagName("path");
-            for (int i = 0; i < pathNodes.getLength(); i++) {
-                try {
-                    final Element element = (Element) pathNodes.item(i);
-                    shapes.add(new PathShape(element));
-                } catch (final Exception e) {
-                    System.out.println("Error parsing path: " + e.getMessage());
-                }
+            shapes.addAll(last);
+            if (progress != null) {
+                progress.accept(shapes.size());
             }
-            final NodeList polygonNodes = doc.getElementsByTagName("polygon");
-            for (int i = 0; i < polygonNodes.getLength(); i++) {
-                try {
-                    final Element element = (Element) polygonNodes.item(i);
-                    shapes.add(new TriangleShape(element));
-                } catch (final Exception e) {
-                    System.out.println("Error parsing polygon: " + e.getMessage());
-                }
+        } catch (final Exception e) {
+            for (final ForkJoinTask<List<Shape>> task : pending) {
+                task.cancel(false);
             }
-            final NodeList ellipseNodes = doc.getElementsByTagName("ellipse");
-            for (int i = 0; i < ellipseNodes.getLength(); i++) {
+            System.out.println("SVG parsing error: " + e.getMessage());
+            throw new ParseException("Failed to import SVG: " + e.getMessage());
+        } finally {
+            if (reader != null) {
                 try {
-                    final Element element = (Element) ellipseNodes.item(i);
-                    shapes.add(new OvalShape(element));
-                } catch (final Exception e) {
-                    System.out.println("Error parsing ellipse: " + e.getMessage());
+                    reader.close();
+                } catch (final XMLStreamException e) {
+                    System.out.println("Error closing SVG reader: " + e.getMessage());
                 }
             }
-            final NodeList textNodes = doc.getElementsByTagName("text");
-            for (int i = 0; i < textNodes.getLength(); i++) {
-                try {
-                    final Element element = (Element) textNodes.item(i);
-                    shapes.add(new TextShape(element));
-                } catch (final Exception e) {
-                    System.out.println("Error parsing text: " + e.getMessage());
-                }
+        }
+        return new CopyOnWriteArrayList<>(shapes);
+    }
+
+    /**
+     * Wait for a batch of shapes and append it to the result.
+     *
+     * @param task     task creating the batch
+     * @param shapes   result receiving the batch
+     * @param progress receives the number of shapes created so far, null if unused
+     */
+    private static void rejoin(final ForkJoinTask<List<Shape>> task, final List<Shape> shapes, final IntConsumer progress) {
+        shapes.addAll(task.join());
+        if (progress != null) {
+            progress.accept(shapes.size());
+        }
+    }
+
+    /**
+     * Create the shapes described by a batch of SVG elements, skipping elements that cannot be parsed.
+     *
+     * @param elements SVG elements in document order
+     * @return shapes in the same order
+     */
+    private static List<Shape> createShapes(final List<SvgElement> elements) {
+        final List<Shape> shapes = new ArrayList<>(elements.size());
+        for (final SvgElement element : elements) {
+            try {
+                shapes.add(createShape(element));
+            } catch (final Exception e) {
+                System.out.println("Error parsing " + element.getName() + ": " + e.getMessage());
             }
-        } catch (final Exception e) {
-            System.out.println("SVG parsing error: " + e.getMessage());
-            throw new ParseException("Failed to import SVG: " + e.getMessage());
         }
         return shapes;
     }
 
+    /**
+     * Create the shape described by an SVG element.
+     *
+     * @param element SVG element of one of the shape element names
+     * @return shape
+     */
+    private static Shape createShape(final SvgElement element) {
+        return switch (element.getName()) {
+            case "circle" -> new CircleShape(element);
+            case "rect" -> new RectangleShape(element);
+            case "line" -> new LineShape(element);
+            case "path" -> new PathShape(element);
+            case "polygon" -> new TriangleShape(element);
+            case "ellipse" -> new OvalShape(element);
+            case "text" -> new TextShape(element);
+            default -> throw new IllegalArgumentException("Unsupported element: " + element.getName());
+        };
+    }
+
     /**
      * Convert shapes list into SVG string.
      *
@@ -110,13 +185,32 @@ public class SvgUtil {
      * @return SVG content string
      */
     public static String toSvg(final List<Shape> shapes) {
-        String svgString = "";
-        svgString += "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n";
-        svgString += "<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\">\n";
+        final StringWriter svg = new StringWriter();
+        try {
+            writeSvg(shapes, svg);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return svg.toString();
+    }
+
+    /**
+     * Stream shapes list as an SVG document to a writer, which is flushed but not closed.
+     *
+     * @param shapes shapes list to write
+     * @param writer writer receiving the document
+     * @throws IOException if the writer fails
+     */
+    public static void writeSvg(final List<Shape> shapes, final Writer writer) throws IOException {
+        final SvgWriter out = new SvgWriter(writer);
+        out.raw("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
+        out.raw("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\">\n");
         for (final Shape shape : shapes) {
-            svgString += "  " + shape.toSvgString() + "\n";
+            out.raw("  ");
+            shape.writeSvg(out);
+            out.raw('\n');
         }
-        svgString += "</svg>";
-        return svgString;
+        out.raw("</svg>");
+        out.flush();
     }
 }
@@ -0,0 +1,410 @@
+package io.tomori.whiteboard.util;
+
+import io.tomori.whiteboard.model.Color;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streaming writer for SVG markup.
+ * Markup, numbers and colors are formatted straight into a reusable character buffer that is passed to the
+ * underlying writer when full, so writing a shape allocates nothing and a document is never held in memory as a whole.
+ */
+public class SvgWriter implements Closeable, Flushable {
+    /**
+     * Size of the character buffer
+     */
+    private static final int BUFFER_SIZE = 8192;
+    /**
+     * Decimal places kept when writing fractional numbers
+     */
+    private static final int FRACTION_DIGITS = 6;
+    /**
+     * Scale turning the kept decimal places into an integer
+     */
+    private static final long FRACTION_SCALE = 1_000_000L;
+    /**
+     * Markup up to this length is copied character by character, which is faster than a bulk copy for short text
+     */
+    private static final int SHORT_MARKUP = 16;
+    /**
+     * Hexadecimal digits used for colors
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    /**
+     * Writer receiving the markup
+     */
+    private final Writer out;
+    /**
+     * Characters not yet passed to the writer
+     */
+    private final char[] buffer = new char[BUFFER_SIZE];
+    /**
+     * Number of characters in the buffer
+     */
+    private int position;
+
+    /**
+     * Create an SVG writer.
+     *
+     * @param out writer receiving the markup
+     */
+    public SvgWriter(final Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Write markup as is.
+     *
+     * @param markup markup to write
+     * @throws IOException if the writer fails
+     */
+    public void raw(final String markup) throws IOException {
+        raw(markup, 0, markup.length());
+    }
+
+    /**
+     * Write part of some markup as is.
+     *
+     * @param markup markup to write
+     * @param start  index of the first character, inclusive
+     * @param end    index of the last character, exclusive
+     * @throws IOException if the writer fails
+     */
+    private void raw(final String markup, final int start, final int end) throws IOException {
+        if (end - start <= BUFFER_SIZE - position && end - start <= SHORT_MARKUP) {
+            for (int i = start; i < end; i++) {
+                buffer[position++] = markup.charAt(i);
+            }
+            return;
+        }
+        int from = start;
+        while (from < end) {
+            if (position == BUFFER_SIZE) {
+                drain();
+            }
+            final int count = Math.min(end - from, BUFFER_SIZE - position);
+            markup.getChars(from, from + count, buffer, position);
+            position += count;
+            from += count;
+        }
+    }
+
+    /**
+     * Write a single character as is.
+     *
+     * @param c character to write
+     * @throws IOException if the writer fails
+     */
+    public void raw(final char c) throws IOException {
+        if (position == BUFFER_SIZE) {
+            drain();
+        }
+        buffer[position++] = c;
+    }
+
+    /**
+     * Open an element tag, to be followed by attributes and then {@link #endEmptyElement()} or {@link #endStartTag()}.
+     *
+     * @param name element name
+     * @throws IOException if the writer fails
+     */
+    public void startElement(final String name) throws IOException {
+        raw('<');
+        raw(name);
+    }
+
+    /**
+     * Close the tag of an element without content.
+     *
+     * @throws IOException if the writer fails
+     */
+    public void endEmptyElement() throws IOException {
+        raw("/>");
+    }
+
+    /**
+     * Close the start tag of an element with content.
+     *
+     * @throws IOException if the writer fails
+     */
+    public void endStartTag() throws IOException {
+        raw('>');
+    }
+
+    /**
+     * Write the end tag of an element with content.
+     *
+     * @param name element name
+     * @throws IOException if the writer fails
+     */
+    public void endElement(final String name) throws IOException {
+        raw("</");
+        raw(name);
+        raw('>');
+    }
+
+    /**
+     * Write an integer attribute.
+     *
+     * @param name  attribute name
+     * @param value attribute value
+     * @throws IOException if the writer fails
+     */
+    public void attribute(final String name, final int value) throws IOException {
+        startAttribute(name);
+        number(value);
+        endAttribute();
+    }
+
+    /**
+     * Write a decimal attribute.
+     *
+     * @param name  attribute name
+     * @param value attribute value
+     * @throws IOException if the writer fails
+     */
+    public void attribute(final String name, final float value) throws IOException {
+        startAttribute(name);
+        number(value);
+        endAttribute();
+    }
+
+    /**
+     * Write a text attribute, escaping characters that are not allowed in attribute values.
+     *
+     * @param name  attribute name
+     * @param value attribute value, written empty if null
+     * @throws IOException if the writer fails
+     */
+    public void attribute(final String name, final String value) throws IOException {
+        startAttribute(name);
+        if (value != null) {
+            escaped(value);
+        }
+        endAttribute();
+    }
+
+    /**
+     * Write a color attribute in "#rrggbb" form.
+     *
+     * @param name  attribute name
+     * @param color attribute value, written as "none" if null
+     * @throws IOException if the writer fails
+     */
+    public void attribute(final String name, final Color color) throws IOException {
+        startAttribute(name);
+        color(color);
+        endAttribute();
+    }
+
+    /**
+     * Open an attribute whose value is written piece by piece, to be followed by {@link #endAttribute()}.
+     *
+     * @param name attribute name
+     * @throws IOException if the writer fails
+     */
+    public void startAttribute(final String name) throws IOException {
+        raw(' ');
+        raw(name);
+        raw("=\"");
+    }
+
+    /**
+     * Close an attribute value.
+     *
+     * @throws IOException if the writer fails
+     */
+    public void endAttribute() throws IOException {
+        raw('"');
+    }
+
+    /**
+     * Write an integer.
+     *
+     * @param value number to write
+     * @throws IOException if the writer fails
+     */
+    public void number(final int value) throws IOException {
+        number((long) value);
+    }
+
+    /**
+     * Write a decimal number with up to six decimal places and without trailing zeros.
+     *
+     * @param value number to write
+     * @throws IOException if the writer fails
+     */
+    public void number(final float value) throws IOException {
+        if (!Float.isFinite(value) || Math.abs(value) >= Long.MAX_VALUE / FRACTION_SCALE) {
+            raw(Float.toString(value));
+            return;
+        }
+        final long scaled = Math.round((double) value * FRACTION_SCALE);
+        if (scaled < 0) {
+            raw('-');
+        }
+        final long magnitude = Math.abs(scaled);
+        number(magnitude / FRACTION_SCALE);
+        long fraction = magnitude % FRACTION_SCALE;
+        if (fraction == 0) {
+            return;
+        }
+        int digits = FRACTION_DIGITS;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        raw('.');
+        for (long divisor = pow10(digits - 1); divisor > 0; divisor /= 10) {
+            raw((char) ('0' + fraction / divisor % 10));
+        }
+    }
+
+    /**
+     * Write a color in "#rrggbb" form.
+     *
+     * @param color color to write, written as "none" if null
+     * @throws IOException if the writer fails
+     */
+    public void color(final Color color) throws IOException {
+        if (color == null) {
+            raw("none");
+            return;
+        }
+        raw('#');
+        hexByte(color.getR());
+        hexByte(color.getG());
+        hexByte(color.getB());
+    }
+
+    /**
+     * Write text, escaping characters that are not allowed in text content or attribute values.
+     *
+     * @param text text to write
+     * @throws IOException if the writer fails
+     */
+    public void escaped(final String text) throws IOException {
+        final int length = text.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            final String entity = switch (text.charAt(i)) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '"' -> "&quot;";
+                case '\'' -> "&apos;";
+                default -> null;
+            };
+            if (entity != null) {
+                raw(text, start, i);
+                raw(entity);
+                start = i + 1;
+            }
+        }
+        raw(text, start, length);
+    }
+
+    /**
+     * Pass buffered characters to the writer and flush it.
+     *
+     * @throws IOException if the writer fails
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    /**
+     * Pass buffered characters to the writer and close it.
+     *
+     * @throws IOException if the writer fails
+     */
+    @Override
+    public void close() throws IOException {
+        drain();
+        out.close();
+    }
+
+    /**
+     * Write a long integer.
+     *
+     * @param value number to write
+     * @throws IOException if the writer fails
+     */
+    private void number(final long value) throws IOException {
+        if (value < 0) {
+            raw('-');
+            if (value == Long.MIN_VALUE) {
+                raw("9223372036854775808");
+                return;
+            }
+            number(-value);
+            return;
+        }
+        if (BUFFER_SIZE - position < 20) {
+            drain();
+        }
+        int end = position + digitCount(value);
+        position = end;
+        long remaining = value;
+        do {
+            buffer[--end] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining > 0);
+    }
+
+    /**
+     * Write a color component as two hexadecimal digits.
+     *
+     * @param value component between 0 and 255
+     * @throws IOException if the writer fails
+     */
+    private void hexByte(final int value) throws IOException {
+        raw(HEX_DIGITS[(value >> 4) & 0xf]);
+        raw(HEX_DIGITS[value & 0xf]);
+    }
+
+    /**
+     * Pass buffered characters to the writer.
+     *
+     * @throws IOException if the writer fails
+     */
+    private void drain() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    /**
+     * Return the number of decimal digits of a non-negative number.
+     *
+     * @param value non-negative number
+     * @return number of digits, 1 for zero
+     */
+    private static int digitCount(final long value) {
+        int count = 1;
+        for (long bound = 10; count < 19 && value >= bound; bound *= 10) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Return a power of ten.
+     *
+     * @param exponent non-negative exponent
+     * @return 10 to the power of the exponent
+     */
+    private static long pow10(final int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,202 @@
+package io.tomori.whiteboard.util;
+
+/**
+ * Util class for generating fractional z-order keys.
+ * A key is a string that sorts between any two given keys, so a shape can be placed anywhere in the z-order by
+ * changing only its own key. Keys start with a variable-length integer part, which keeps them short when shapes are
+ * repeatedly added on top, followed by an optional fraction used for inserts between neighbours.
+ */
+public class ZKeyUtil {
+    /**
+     * Digits in ascending order, sorting the same as characters
+     */
+    private static final String DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    /**
+     * Key of the first shape placed on an empty board
+     */
+    private static final String INTEGER_ZERO = "a0";
+    /**
+     * Smallest integer part, keys below it only differ by fraction
+     */
+    private static final String SMALLEST_INTEGER = "A" + "0".repeat(26);
+
+    /**
+     * Generate a key that sorts strictly between two keys.
+     *
+     * @param lower key to sort after, null for no lower bound
+     * @param upper key to sort before, null for no upper bound
+     * @return new key
+     * @throws IllegalArgumentException if the bounds are invalid or not in ascending order
+     */
+    public static String between(final String lower, final String upper) {
+        if (lower != null && upper != null && lower.compareTo(upper) >= 0) {
+            throw new IllegalArgumentException("Keys out of order: " + lower + " >= " + upper);
+        }
+        if (lower == null && upper == null) {
+            return INTEGER_ZERO;
+        }
+        if (lower == null) {
+            final String integer = integerPart(upper);
+            final String fraction = upper.substring(integer.length());
+            if (integer.equals(SMALLEST_INTEGER)) {
+                return integer + midpoint("", fraction);
+            }
+            if (integer.compareTo(upper) < 0) {
+                return integer;
+            }
+            return decrement(integer);
+        }
+        final String integer = integerPart(lower);
+        final String fraction = lower.substring(integer.length());
+        if (upper == null) {
+            final String next = increment(integer);
+            return next == null ? integer + midpoint(fraction, null) : next;
+        }
+        final String upperInteger = integerPart(upper);
+        if (integer.equals(upperInteger)) {
+            return integer + midpoint(fraction, upper.substring(integer.length()));
+        }
+        final String next = increment(integer);
+        if (next != null && next.compareTo(upper) < 0) {
+            return next;
+        }
+        return integer + midpoint(fraction, null);
+    }
+
+    /**
+     * Generate a fraction that sorts strictly between two fractions.
+     *
+     * @param lower lower fraction, empty for zero
+     * @param upper upper fraction, null for one
+     * @return new fraction, never ending in the smallest digit
+     */
+    private static String midpoint(final String lower, final String upper) {
+        if (upper != null) {
+            int common = 0;
+            while (common < upper.length() && digitAt(lower, common) == upper.charAt(common)) {
+                common++;
+            }
+            if (common > 0) {
+                return upper.substring(0, common) + midpoint(
+                        lower.length() > common ? lower.substring(common) : "", upper.substring(common));
+            }
+        }
+        final int lowerDigit = lower.isEmpty() ? 0 : DIGITS.indexOf(lower.charAt(0));
+        final int upperDigit = upper != null ? DIGITS.indexOf(upper.charAt(0)) : DIGITS.length();
+        if (upperDigit - lowerDigit > 1) {
+            return String.valueOf(DIGITS.charAt((lowerDigit + upperDigit + 1) / 2));
+        }
+        if (upper != null && upper.length() > 1) {
+            return upper.substring(0, 1);
+        }
+        return DIGITS.charAt(lowerDigit) + midpoint(lower.isEmpty() ? "" : lower.substring(1), null);
+    }
+
+    /**
+     * Return the digit at a position of a fraction, padding with the smallest digit.
+     *
+     * @param fraction fraction digits
+     * @param index    position
+     * @return digit at the position
+     */
+    private static char digitAt(final String fraction, final int index) {
+        return index < fraction.length() ? fraction.charAt(index) : DIGITS.charAt(0);
+    }
+
+    /**
+     * Return the integer part of a key.
+     *
+     * @param key key
+     * @return head character followed by the integer digits
+     */
+    private static String integerPart(final String key) {
+        final int length = integerLength(key.charAt(0));
+        if (length > key.length()) {
+            throw new IllegalArgumentException("Invalid key: " + key);
+        }
+        return key.substring(0, length);
+    }
+
+    /**
+     * Return the length of an integer part from its head character.
+     * Heads a-z are non-negative integers with 1 to 26 digits, heads Z-A negative integers with 1 to 26 digits.
+     *
+     * @param head head character
+     * @return length of the integer part including the head
+     */
+    private static int integerLength(final char head) {
+        if (head >= 'a' && head <= 'z') {
+            return head - 'a' + 2;
+        }
+        if (head >= 'A' && head <= 'Z') {
+            return 'Z' - head + 2;
+        }
+        throw new IllegalArgumentException("Invalid key head: " + head);
+    }
+
+    /**
+     * Return the next integer part.
+     *
+     * @param integer integer part
+     * @return next integer part, or null if the largest integer was reached
+     */
+    private static String increment(final String integer) {
+        final char head = integer.charAt(0);
+        final StringBuilder digits = new StringBuilder(integer.substring(1));
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            final int digit = DIGITS.indexOf(digits.charAt(i)) + 1;
+            if (digit < DIGITS.length()) {
+                digits.setCharAt(i, DIGITS.charAt(digit));
+                return head + digits.toString();
+            }
+            digits.setCharAt(i, DIGITS.charAt(0));
+        }
+        if (head == 'Z') {
+            return INTEGER_ZERO;
+        }
+        if (head == 'z') {
+            return null;
+        }
+        final char nextHead = (char) (head + 1);
+        if (nextHead > 'a') {
+            digits.append(DIGITS.charAt(0));
+        } else {
+            digits.setLength(digits.length() - 1);
+        }
+        return nextHead + digits.toString();
+    }
+
+    /**
+     * Return the previous integer part.
+     *
+     * @param integer integer part
+     * @return previous integer part
+     * @throws IllegalArgumentException if the smallest integer was reached
+     */
+    private static String decrement(final String integer) {
+        final char head = integer.charAt(0);
+        final char largestDigit = DIGITS.charAt(DIGITS.length() - 1);
+        final StringBuilder digits = new StringBuilder(integer.substring(1));
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            final int digit = DIGITS.indexOf(digits.charAt(i)) - 1;
+            if (digit >= 0) {
+                digits.setCharAt(i, DIGITS.charAt(digit));
+                return head + digits.toString();
+            }
+            digits.setCharAt(i, largestDigit);
+        }
+        if (head == 'a') {
+            return "Z" + largestDigit;
+        }
+        if (head == 'A') {
+            throw new IllegalArgumentException("Cannot decrement the smallest key");
+        }
+        final char previousHead = (char) (head - 1);
+        if (previousHead < 'Z') {
+            digits.append(largestDigit);
+        } else {
+            digits.setLength(digits.length() - 1);
+        }
+        return previousHead + digits.toString();
+    }
+}